@@ -0,0 +1,31 @@
+package com.alex.mpchart.marker.data.model;
+
+import java.util.List;
+
+/**
+ * 一次加载得到的图表数据
+ * K线（已应用标记）和趋势区间一起返回，图表只需绘制一次
+ */
+public class KLineChartData {
+    public final List<KLineEntry> entries;
+    public final List<TrendRegion> trendRegions;
+    // 来自已过期的缓存，后台正在重新获取，之后还会收到最新数据
+    public final boolean stale;
+
+    public KLineChartData(List<KLineEntry> entries, List<TrendRegion> trendRegions) {
+        this(entries, trendRegions, false);
+    }
+
+    public KLineChartData(List<KLineEntry> entries, List<TrendRegion> trendRegions, boolean stale) {
+        this.entries = entries;
+        this.trendRegions = trendRegions;
+        this.stale = stale;
+    }
+
+    /**
+     * 共享同一份数据，只修改是否过期的标记
+     */
+    public KLineChartData withStale(boolean stale) {
+        return stale == this.stale ? this : new KLineChartData(entries, trendRegions, stale);
+    }
+}
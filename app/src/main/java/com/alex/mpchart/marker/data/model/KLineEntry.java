@@ -1,6 +1,9 @@
 package com.alex.mpchart.marker.data.model;
 
+import com.alex.klinemarker.data.TimeAxis;
+
 import java.util.Date;
+import java.util.List;
 
 public class KLineEntry {
     public float open;
@@ -11,6 +14,8 @@ public class KLineEntry {
     public boolean hasMarker;
     public String markerText;
     public MarkerType markerType;
+    // 同一天的其他标记（按接口返回顺序），只有一个标记时为null
+    public List<Marker> extraMarkers;
 
     // 日期字段
     public Date date;           // 日期对象，用作x轴坐标
@@ -46,11 +51,8 @@ public class KLineEntry {
      * 为了图表显示，我们使用相对天数而不是绝对时间戳
      */
     public float getXValue() {
-        if (date == null) return 0;
         // 使用相对天数，以2024年1月1日为基准
-        long baseTime = 1704067200000L; // 2024-01-01 00:00:00 UTC
-        long daysSinceBase = (date.getTime() - baseTime) / (24 * 60 * 60 * 1000);
-        return (float) daysSinceBase;
+        return TimeAxis.DAY.toXValue(date);
     }
 
     /**
@@ -60,6 +62,19 @@ public class KLineEntry {
         return date != null ? date.getTime() : 0;
     }
 
+    /**
+     * 同一天除第一个标记外的其他标记
+     */
+    public static class Marker {
+        public final MarkerType type;
+        public final String text;
+
+        public Marker(MarkerType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+    }
+
     public enum MarkerType {
         NONE,
         BUY,
@@ -0,0 +1,246 @@
+package com.alex.mpchart.marker.data.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.alex.mpchart.marker.data.model.KLineChartData;
+import com.alex.mpchart.marker.data.model.KLineEntry;
+import com.alex.mpchart.marker.data.model.TrendRegion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * K线数据两级缓存
+ * 内存中按LRU保留最近使用的图表数据，磁盘上每个 (品种, 周期) 保存一个文件；
+ * 缓存在进程内共享，页面重建或切换标签后可以直接命中内存。
+ * 每条缓存记录保存时间，超过有效期后仍可先用于显示，同时在后台重新获取。
+ */
+public class KLineCache {
+    private static final String TAG = "KLineCache";
+
+    private static final int MAGIC = 0x4B4C4343; // "KLCC"
+    private static final int VERSION = 2;
+
+    private static final int MEMORY_ENTRIES = 8;
+    private static final String DIRECTORY = "kline-cache";
+
+    private static volatile KLineCache instance;
+
+    private final File directory;
+    private final long ttlMillis;
+
+    // 按访问顺序排列，超出容量时淘汰最久未使用的记录
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+
+    KLineCache(File directory, long ttlMillis) {
+        this.directory = directory;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 获取进程内共享的缓存，磁盘缓存位于应用的缓存目录
+     */
+    public static KLineCache getInstance(Context context, long ttlMillis) {
+        if (instance == null) {
+            synchronized (KLineCache.class) {
+                if (instance == null) {
+                    File dir = new File(context.getApplicationContext().getCacheDir(), DIRECTORY);
+                    instance = new KLineCache(dir, ttlMillis);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 缓存的键
+     */
+    public static String key(String symbol, String timeframe) {
+        return symbol + "_" + timeframe;
+    }
+
+    /**
+     * 只查找内存缓存（可在主线程调用），未命中时返回null
+     */
+    public synchronized Entry getFromMemory(String key) {
+        return memory.get(key);
+    }
+
+    /**
+     * 依次查找内存和磁盘缓存，磁盘命中后放入内存；会读取文件，应在后台线程调用
+     */
+    public Entry get(String key) {
+        Entry entry = getFromMemory(key);
+        if (entry != null) {
+            return entry;
+        }
+        entry = readFromDisk(key);
+        if (entry != null) {
+            synchronized (this) {
+                memory.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * 保存到内存和磁盘；会写入文件，应在后台线程调用
+     */
+    public void put(String key, KLineChartData data) {
+        Entry entry = new Entry(data, System.currentTimeMillis());
+        synchronized (this) {
+            memory.put(key, entry);
+        }
+        try {
+            writeToDisk(key, entry);
+        } catch (IOException e) {
+            Log.w(TAG, "写入磁盘缓存失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 一条缓存记录
+     */
+    public class Entry {
+        public final KLineChartData data;
+        public final long savedAt;
+
+        Entry(KLineChartData data, long savedAt) {
+            this.data = data;
+            this.savedAt = savedAt;
+        }
+
+        /**
+         * 是否仍在有效期内，过期的记录可以先显示，但需要重新获取
+         */
+        public boolean isFresh() {
+            return System.currentTimeMillis() - savedAt < ttlMillis;
+        }
+    }
+
+    // ==================== 磁盘 ====================
+
+    private File fileFor(String key) {
+        return new File(directory, key.replaceAll("[^A-Za-z0-9_.-]", "_") + ".bin");
+    }
+
+    private Entry readFromDisk(String key) {
+        File file = fileFor(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long savedAt = in.readLong();
+
+            int entryCount = in.readInt();
+            List<KLineEntry> entries = new ArrayList<>(entryCount);
+            KLineEntry.MarkerType[] markerTypes = KLineEntry.MarkerType.values();
+            for (int i = 0; i < entryCount; i++) {
+                long time = in.readLong();
+                KLineEntry entry = new KLineEntry(in.readFloat(), in.readFloat(), in.readFloat(),
+                        in.readFloat(), in.readFloat(), time != Long.MIN_VALUE ? new Date(time) : null);
+                entry.hasMarker = in.readBoolean();
+                entry.markerText = in.readUTF();
+                entry.markerType = markerTypes[in.readByte()];
+                int extraCount = in.readInt();
+                if (extraCount > 0) {
+                    entry.extraMarkers = new ArrayList<>(extraCount);
+                    for (int k = 0; k < extraCount; k++) {
+                        KLineEntry.MarkerType type = markerTypes[in.readByte()];
+                        entry.extraMarkers.add(new KLineEntry.Marker(type, in.readUTF()));
+                    }
+                }
+                entries.add(entry);
+            }
+
+            int regionCount = in.readInt();
+            List<TrendRegion> regions = new ArrayList<>(regionCount);
+            for (int i = 0; i < regionCount; i++) {
+                String start = in.readUTF();
+                String end = in.readBoolean() ? in.readUTF() : null;
+                int size = in.readInt();
+                String updatedAt = in.readBoolean() ? in.readUTF() : null;
+                regions.add(new TrendRegion(start, end, size, updatedAt));
+            }
+            return new Entry(new KLineChartData(entries, regions), savedAt);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "读取磁盘缓存失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory: " + directory);
+        }
+        File file = fileFor(key);
+        // 先写临时文件再重命名，读取方不会看到写了一半的文件
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(entry.savedAt);
+
+            List<KLineEntry> entries = entry.data.entries;
+            out.writeInt(entries.size());
+            for (KLineEntry bar : entries) {
+                out.writeLong(bar.date != null ? bar.date.getTime() : Long.MIN_VALUE);
+                out.writeFloat(bar.open);
+                out.writeFloat(bar.close);
+                out.writeFloat(bar.high);
+                out.writeFloat(bar.low);
+                out.writeFloat(bar.volume);
+                out.writeBoolean(bar.hasMarker);
+                out.writeUTF(bar.markerText != null ? bar.markerText : "");
+                out.writeByte(bar.markerType != null ? bar.markerType.ordinal() : 0);
+                List<KLineEntry.Marker> extras = bar.extraMarkers;
+                out.writeInt(extras != null ? extras.size() : 0);
+                if (extras != null) {
+                    for (KLineEntry.Marker extra : extras) {
+                        out.writeByte(extra.type != null ? extra.type.ordinal() : 0);
+                        out.writeUTF(extra.text != null ? extra.text : "");
+                    }
+                }
+            }
+
+            List<TrendRegion> regions = entry.data.trendRegions;
+            out.writeInt(regions.size());
+            for (TrendRegion region : regions) {
+                out.writeUTF(region.start);
+                out.writeBoolean(region.end != null);
+                if (region.end != null) {
+                    out.writeUTF(region.end);
+                }
+                out.writeInt(region.size);
+                out.writeBoolean(region.updatedAt != null);
+                if (region.updatedAt != null) {
+                    out.writeUTF(region.updatedAt);
+                }
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to move cache file into place: " + file);
+        }
+    }
+}
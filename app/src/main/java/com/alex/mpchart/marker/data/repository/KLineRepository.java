@@ -1,88 +1,260 @@
 package com.alex.mpchart.marker.data.repository;
 
+import android.content.Context;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.alex.klinemarker.data.MarkerConfig;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.MarkerTypeMapping;
+import com.alex.klinemarker.data.TimeAxis;
+import com.alex.mpchart.marker.data.model.KLineChartData;
 import com.alex.mpchart.marker.data.model.KLineEntry;
-import com.alex.mpchart.marker.data.model.MarkerResponse;
+import com.alex.mpchart.marker.data.model.TrendRegion;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class KLineRepository {
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
-    private final MarkerDataService markerDataService = new MarkerDataService();
+    private static final String TAG = "KLineRepository";
 
-    public LiveData<List<KLineEntry>> getKLineData() {
-        MutableLiveData<List<KLineEntry>> liveData = new MutableLiveData<>();
-        executor.execute(() -> {
-            // 模拟网络延迟
-            try {
-                Thread.sleep(1000 + (long) (Math.random() * 1000)); // 1-2秒的随机延迟
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    // 所有仓库共享的有界线程池：K线、标记和趋势区间的请求并行执行，空闲线程超时后退出。
+    // 队列满时拒绝新任务而不是在调用线程（通常是主线程）执行，拒绝按请求失败处理
+    private static final int POOL_SIZE = 4;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final ExecutorService IO_EXECUTOR = createIoExecutor();
 
-            // 生成基础K线数据
-            List<KLineEntry> list = generateBaseKLineData();
+    // 缓存有效期，过期的缓存仍会先显示，同时在后台重新获取
+    private static final long CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
 
-            // 使用CountDownLatch等待标记数据获取完成
-            CountDownLatch latch = new CountDownLatch(1);
+    // 标记接口地址，配置后通过HTTP获取标记数据，未配置时使用模拟数据
+    private static final String MARKER_FEED_URL = null;
 
-            // 获取外部标记数据并应用到K线数据中
-            markerDataService.getMarkerData(new MarkerDataService.MarkerDataCallback() {
-                @Override
-                public void onSuccess(MarkerResponse response) {
-                    applyMarkersToKLineData(list, response);
-                    latch.countDown();
-                }
+    // 接口的标记类型映射；解析出的标记共享各类型的配置对象，按配置即可还原出应用的标记类型
+    private static final MarkerTypeMapping MARKER_TYPES = MarkerTypeMapping.defaults();
+    private static final Map<MarkerConfig, KLineEntry.MarkerType> CONFIG_TYPES = createConfigTypes();
 
-                @Override
-                public void onError(String error) {
-                    Log.e("KLineRepository", "获取标记数据失败: " + error);
-                    // 即使获取标记数据失败，也继续返回K线数据（只是没有标记）
-                    latch.countDown();
-                }
-            });
+    private final MarkerDataService markerDataService = MARKER_FEED_URL != null
+            ? new MarkerDataService(IO_EXECUTOR, MarkerDataService.sharedClient(), MARKER_FEED_URL, MARKER_TYPES)
+            : new MarkerDataService(IO_EXECUTOR, MARKER_TYPES);
+    private final KLineCache cache;
+
+    public KLineRepository(Context context) {
+        this.cache = KLineCache.getInstance(context, CACHE_TTL_MILLIS);
+    }
+
+    private static Map<MarkerConfig, KLineEntry.MarkerType> createConfigTypes() {
+        Map<MarkerConfig, KLineEntry.MarkerType> types = new IdentityHashMap<>();
+        // 接口定义的类型：0-数字标记，1-买入，2-卖出，3-上三角，4-下三角
+        for (int type = 0; type <= 4; type++) {
+            types.put(MARKER_TYPES.getConfig(type), KLineEntry.typeFromInt(type));
+        }
+        return types;
+    }
+
+    private static ExecutorService createIoExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "KLineRepository-io-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
-            try {
-                // 等待标记数据处理完成
-                latch.await();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    /**
+     * 加载图表数据（在主线程调用）
+     * 先返回缓存：内存命中时立即返回，否则在后台读取磁盘缓存。缓存未过期时不再请求；
+     * 缓存已过期、不存在或要求强制刷新时，先返回标记为 stale 的缓存，再在后台重新获取并更新缓存。
+     * 同一个 LiveData 最后一次发出的数据总是 stale == false
+     *
+     * @param symbol       品种代码
+     * @param timeframe    K线周期
+     * @param forceRefresh 是否忽略有效期强制重新获取（例如下拉刷新）
+     */
+    public LiveData<KLineChartData> getKLineData(String symbol, String timeframe, boolean forceRefresh) {
+        MutableLiveData<KLineChartData> liveData = new MutableLiveData<>();
+        String key = KLineCache.key(symbol, timeframe);
+
+        KLineCache.Entry memoryHit = cache.getFromMemory(key);
+        if (memoryHit != null) {
+            boolean revalidate = forceRefresh || !memoryHit.isFresh();
+            liveData.setValue(memoryHit.data.withStale(revalidate));
+            if (revalidate) {
+                refresh(key, memoryHit, liveData);
             }
+            return liveData;
+        }
 
-            // 统计生成的标记数量
-            int totalMarkers = 0;
-            for (KLineEntry entry : list) {
-                if (entry.hasMarker) {
-                    totalMarkers++;
-                }
+        supplyIo(() -> cache.get(key)).exceptionally(error -> {
+            // 读取不到磁盘缓存时按未命中处理，直接重新获取
+            Log.e(TAG, "读取缓存失败: " + error.getMessage());
+            return null;
+        }).thenAccept(diskHit -> {
+            boolean revalidate = diskHit == null || forceRefresh || !diskHit.isFresh();
+            if (diskHit != null) {
+                liveData.postValue(diskHit.data.withStale(revalidate));
             }
+            if (revalidate) {
+                refresh(key, diskHit, liveData);
+            }
+        });
+        return liveData;
+    }
 
-            // 输出一些日期信息用于调试
-            if (!list.isEmpty()) {
-                SimpleDateFormat debugFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-                Log.d("KLineRepository", "First entry date: " + debugFormat.format(list.get(0).date));
-                Log.d("KLineRepository", "Last entry date: " + debugFormat.format(list.get(list.size() - 1).date));
+    /**
+     * 重新获取并写入缓存；失败时保留缓存中的数据
+     */
+    private void refresh(String key, KLineCache.Entry cached, MutableLiveData<KLineChartData> liveData) {
+        loadChartData().whenComplete((data, error) -> {
+            if (error != null) {
+                Log.e(TAG, "加载图表数据失败", error);
+                liveData.postValue(cached != null ? cached.data.withStale(false)
+                        : new KLineChartData(new ArrayList<>(), new ArrayList<>()));
+            } else {
+                cache.put(key, data);
+                liveData.postValue(data);
             }
+        });
+    }
 
-            Log.d("KLineRepository", "Data generation completed. Total markers generated: " + totalMarkers + " out of " + list.size() + " entries");
+    /**
+     * 并行获取K线、标记和趋势区间并合并
+     */
+    public CompletableFuture<KLineChartData> loadChartData() {
+        CompletableFuture<List<KLineEntry>> bars = fetchBars();
+        CompletableFuture<List<MarkerData>> markers = markerDataService.fetchMarkerData()
+                .exceptionally(error -> {
+                    // 即使获取标记数据失败，也继续返回K线数据（只是没有标记）
+                    Log.e(TAG, "获取标记数据失败: " + error.getMessage());
+                    return null;
+                });
+        CompletableFuture<List<TrendRegion>> regions = fetchTrendRegions()
+                .exceptionally(error -> {
+                    Log.e(TAG, "获取趋势区间失败: " + error.getMessage());
+                    return new ArrayList<>();
+                });
+
+        return bars.thenCombine(markers, (list, markerList) -> {
+            applyMarkersToKLineData(list, markerList);
+            logSummary(list);
+            return list;
+        }).thenCombine(regions, KLineChartData::new);
+    }
 
-            liveData.postValue(list);
+    /**
+     * 获取K线数据（模拟API调用）
+     */
+    private CompletableFuture<List<KLineEntry>> fetchBars() {
+        return supplyIo(() -> {
+            // 模拟网络延迟
+            simulateLatency(1000 + (long) (Math.random() * 1000)); // 1-2秒的随机延迟
+            // 生成基础K线数据
+            return generateBaseKLineData();
         });
-        return liveData;
+    }
+
+    /**
+     * 获取趋势区间数据（模拟API调用）
+     */
+    private CompletableFuture<List<TrendRegion>> fetchTrendRegions() {
+        return supplyIo(() -> {
+            simulateLatency(300);
+            return generateTrendRegions();
+        });
+    }
+
+    /**
+     * 在IO线程池中执行；线程池拒绝时返回失败的 Future，不会在调用线程执行也不会直接抛出异常
+     */
+    private static <T> CompletableFuture<T> supplyIo(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, IO_EXECUTOR);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void simulateLatency(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private void logSummary(List<KLineEntry> list) {
+        // 统计生成的标记数量
+        int totalMarkers = 0;
+        for (KLineEntry entry : list) {
+            if (entry.hasMarker) {
+                totalMarkers++;
+            }
+        }
+
+        // 输出一些日期信息用于调试
+        if (!list.isEmpty()) {
+            SimpleDateFormat debugFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+            Log.d(TAG, "First entry date: " + debugFormat.format(list.get(0).date));
+            Log.d(TAG, "Last entry date: " + debugFormat.format(list.get(list.size() - 1).date));
+        }
+
+        Log.d(TAG, "Data generation completed. Total markers generated: " + totalMarkers + " out of " + list.size() + " entries");
+    }
+
+    /**
+     * 生成趋势区间示例数据
+     */
+    private List<TrendRegion> generateTrendRegions() {
+        List<TrendRegion> regions = new ArrayList<>();
+
+        // 获取当前日期并计算相对日期
+        Calendar calendar = Calendar.getInstance();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+
+        // 第一个区间：从15天前开始到最后（size=2）
+        calendar.add(Calendar.DAY_OF_YEAR, -15);
+        String start1 = dateFormat.format(calendar.getTime());
+        regions.add(new TrendRegion(start1, null, 2, "2025-05-22T07:09:33.289230Z"));
+
+        // 第二个区间：从80天前到75天前（size=3）
+        calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, -80);
+        String start2 = dateFormat.format(calendar.getTime());
+        calendar.add(Calendar.DAY_OF_YEAR, 5); // 5天的区间
+        String end2 = dateFormat.format(calendar.getTime());
+        regions.add(new TrendRegion(start2, end2, 3, "2025-05-22T06:46:10.313136Z"));
+
+        // 第三个区间：从50天前到45天前（size=1）- 额外测试区间
+        calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, -50);
+        String start3 = dateFormat.format(calendar.getTime());
+        calendar.add(Calendar.DAY_OF_YEAR, 5);
+        String end3 = dateFormat.format(calendar.getTime());
+        regions.add(new TrendRegion(start3, end3, 1, "2025-05-22T05:30:00.000000Z"));
+
+        return regions;
     }
 
     /**
@@ -146,88 +318,55 @@ public class KLineRepository {
 
     /**
      * 将外部标记数据应用到K线数据中
+     * K线按日期升序排列，每个标记按 {@link TimeAxis#keyOf(long)} 得到的日编号二分查找对应的K线
      *
-     * @param kLineData      K线数据列表
-     * @param markerResponse 外部标记数据
+     * @param kLineData K线数据列表
+     * @param markers   外部标记数据，可以为null
      */
-    private void applyMarkersToKLineData(List<KLineEntry> kLineData, MarkerResponse markerResponse) {
-        if (markerResponse == null || markerResponse.items == null || markerResponse.items.isEmpty()) {
-            Log.d("KLineRepository", "没有标记数据需要应用");
+    private void applyMarkersToKLineData(List<KLineEntry> kLineData, List<MarkerData> markers) {
+        if (markers == null || markers.isEmpty()) {
+            Log.d(TAG, "没有标记数据需要应用");
             return;
         }
 
-        // 创建日期到K线条目的映射，便于快速查找
-        Map<String, KLineEntry> dateToEntryMap = new HashMap<>();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-
-        for (KLineEntry entry : kLineData) {
-            String dateStr = dateFormat.format(entry.date);
-            dateToEntryMap.put(dateStr, entry);
-        }
-
-        // 输出前10个和后10个日期用于调试
-        Log.d("KLineRepository", "可用的K线日期范围（前10个）:");
-        for (int i = 0; i < Math.min(10, kLineData.size()); i++) {
-            Log.d("KLineRepository", "  " + i + ": " + dateFormat.format(kLineData.get(i).date));
-        }
-        Log.d("KLineRepository", "可用的K线日期范围（后10个）:");
-        for (int i = Math.max(0, kLineData.size() - 10); i < kLineData.size(); i++) {
-            Log.d("KLineRepository", "  " + i + ": " + dateFormat.format(kLineData.get(i).date));
+        long[] dayKeys = new long[kLineData.size()];
+        for (int i = 0; i < dayKeys.length; i++) {
+            dayKeys[i] = TimeAxis.DAY.keyOf(kLineData.get(i).getTimeStamp());
         }
 
         // 遍历标记数据，应用到对应日期的K线条目
         int appliedMarkers = 0;
-        for (MarkerResponse.MarkerItem markerItem : markerResponse.items) {
-            KLineEntry targetEntry = dateToEntryMap.get(markerItem.flag_at);
-
-            if (targetEntry != null) {
-                // 如果该位置已有标记，跳过（可根据需求调整策略）
-                if (targetEntry.hasMarker) {
-                    Log.w("KLineRepository", "日期 " + markerItem.flag_at + " 已有标记，跳过新标记");
-                    continue;
-                }
-
+        for (MarkerData marker : markers) {
+            int index = Arrays.binarySearch(dayKeys, TimeAxis.DAY.keyOf(marker.getDate().getTime()));
+            if (index < 0) {
+                continue;
+            }
+            KLineEntry targetEntry = kLineData.get(index);
+            KLineEntry.MarkerType markerType = markerTypeOf(marker);
+            if (!targetEntry.hasMarker) {
                 // 应用标记
                 targetEntry.hasMarker = true;
-                targetEntry.markerType = KLineEntry.typeFromInt(markerItem.type);
-
-                // 设置标记文本
-                if (markerItem.extra != null && !markerItem.extra.trim().isEmpty()) {
-                    targetEntry.markerText = markerItem.extra;
-                    Log.d("KLineRepository", "使用extra文本: '" + markerItem.extra + "'");
-                } else {
-                    // 如果没有指定文本，使用默认文本
-                    Log.d("KLineRepository", "extra为空，使用默认文本。extra='" + markerItem.extra + "'");
-                    switch (markerItem.type) {
-                        case 0:
-                            targetEntry.markerText = "N"; // 数字标记默认文本
-                            break;
-                        case 1:
-                            targetEntry.markerText = "B"; // 买入标记
-                            break;
-                        case 2:
-                            targetEntry.markerText = "S"; // 卖出标记
-                            break;
-                        case 3:
-                            targetEntry.markerText = "↑"; // 上三角标记
-                            break;
-                        case 4:
-                            targetEntry.markerText = "↓"; // 下三角标记
-                            break;
-                        default:
-                            targetEntry.markerText = "?";
-                            break;
-                    }
-                }
-
-                appliedMarkers++;
-                Log.d("KLineRepository", "已应用标记到日期 " + markerItem.flag_at +
-                        ", 类型: " + markerItem.type + ", 文本: " + targetEntry.markerText);
+                targetEntry.markerType = markerType;
+                targetEntry.markerText = marker.getText();
             } else {
-                Log.w("KLineRepository", "未找到日期 " + markerItem.flag_at + " 对应的K线数据");
+                // 同一天已有标记时追加，绘制时依次堆叠
+                if (targetEntry.extraMarkers == null) {
+                    targetEntry.extraMarkers = new ArrayList<>(2);
+                }
+                targetEntry.extraMarkers.add(new KLineEntry.Marker(markerType, marker.getText()));
             }
+            appliedMarkers++;
         }
 
-        Log.d("KLineRepository", "标记应用完成，共应用 " + appliedMarkers + " 个标记");
+        Log.d(TAG, "标记应用完成，共应用 " + appliedMarkers + " 个标记，"
+                + (markers.size() - appliedMarkers) + " 个标记没有对应的K线");
+    }
+
+    /**
+     * 按标记的配置还原应用的标记类型，未映射的类型返回 {@link KLineEntry.MarkerType#NONE}
+     */
+    private static KLineEntry.MarkerType markerTypeOf(MarkerData marker) {
+        KLineEntry.MarkerType type = CONFIG_TYPES.get(marker.getConfig());
+        return type != null ? type : KLineEntry.MarkerType.NONE;
     }
-} 
\ No newline at end of file
+}
@@ -2,117 +2,258 @@ package com.alex.mpchart.marker.data.repository;
 
 import android.util.Log;
 
-import com.alex.mpchart.marker.data.model.MarkerResponse;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.MarkerTypeMapping;
+import com.alex.klinemarker.utils.MarkerFeedParser;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * 标记数据服务类，用于获取外部指定的标记数据
+ * 配置了接口地址时通过 OkHttp 请求：所有服务共享同一个连接池，响应由 OkHttp 透明解压 gzip，
+ * 并边下载边交给 {@link MarkerFeedParser} 解析为 {@link MarkerData}。收到 ETag 后，之后的请求携带 If-None-Match，
+ * 标记数据未变化时服务端返回 304，直接复用上一次的解析结果，不再下载和解析。
+ * 未配置接口地址时返回模拟数据。
  */
 public class MarkerDataService {
     private static final String TAG = "MarkerDataService";
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private static volatile OkHttpClient sharedClient;
+
+    private final Executor executor;
+    private final OkHttpClient client;
+    private final String url;
+    private final MarkerTypeMapping mapping;
+    private final ResponseParser parser;
+
+    // 上一次成功响应的 ETag 和解析结果，用于条件请求
+    private String etag;
+    private List<MarkerData> lastMarkers;
+
+    /**
+     * 响应解析器
+     */
+    interface ResponseParser {
+        List<MarkerData> parse(InputStream input) throws IOException;
+    }
 
     /**
-     * 获取标记数据（模拟API调用）
+     * 使用模拟数据
      *
-     * @param callback 回调接口
+     * @param executor 执行网络请求的线程池，与仓库的其他请求共享
+     * @param mapping  标记类型映射
      */
-    public void getMarkerData(MarkerDataCallback callback) {
-        executor.execute(() -> {
-            try {
-                // 模拟网络延迟
-                Thread.sleep(500);
+    public MarkerDataService(Executor executor, MarkerTypeMapping mapping) {
+        this(executor, null, null, mapping, null);
+    }
 
-                // 模拟返回的标记数据
-                MarkerResponse response = createMockMarkerData();
+    /**
+     * 通过HTTP请求标记接口
+     *
+     * @param executor 执行网络请求的线程池，与仓库的其他请求共享
+     * @param client   HTTP客户端，通常为 {@link #sharedClient()}
+     * @param url      标记接口地址
+     * @param mapping  标记类型映射
+     */
+    public MarkerDataService(Executor executor, OkHttpClient client, String url, MarkerTypeMapping mapping) {
+        this(executor, client, url, mapping, input -> parseFeed(input, mapping));
+    }
+
+    MarkerDataService(Executor executor, OkHttpClient client, String url, MarkerTypeMapping mapping,
+                      ResponseParser parser) {
+        this.executor = executor;
+        this.client = client;
+        this.url = url;
+        this.mapping = mapping;
+        this.parser = parser;
+    }
 
-                callback.onSuccess(response);
-                Log.d(TAG, "标记数据获取成功，共 " + response.items.size() + " 个标记");
+    /**
+     * 使用标记库的流式解析器解析响应，未完整解析时视为失败
+     */
+    private static List<MarkerData> parseFeed(InputStream input, MarkerTypeMapping mapping) throws IOException {
+        List<MarkerData> markers = new ArrayList<>();
+        MarkerFeedParser.Page page = MarkerFeedParser.parse(input, mapping, markers);
+        if (!page.isComplete()) {
+            throw new IOException("Malformed marker feed after " + page.getParsed() + " markers");
+        }
+        return markers;
+    }
 
-                // 输出所有标记数据用于调试
-                for (MarkerResponse.MarkerItem item : response.items) {
-                    Log.d(TAG, "标记: 日期=" + item.flag_at + ", 类型=" + item.type + ", 文本=" + item.extra);
+    /**
+     * 进程内共享的HTTP客户端，复用连接池
+     */
+    public static OkHttpClient sharedClient() {
+        if (sharedClient == null) {
+            synchronized (MarkerDataService.class) {
+                if (sharedClient == null) {
+                    sharedClient = new OkHttpClient.Builder()
+                            .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                            .connectTimeout(10, TimeUnit.SECONDS)
+                            .readTimeout(15, TimeUnit.SECONDS)
+                            .build();
                 }
+            }
+        }
+        return sharedClient;
+    }
 
+    /**
+     * 异步获取标记数据，不阻塞调用线程；线程池拒绝任务时返回失败的 Future
+     */
+    public CompletableFuture<List<MarkerData>> fetchMarkerData() {
+        if (url != null) {
+            return supplyAsync(() -> {
+                try {
+                    return fetchFromNetwork();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+        return supplyAsync(() -> {
+            try {
+                // 模拟网络延迟
+                Thread.sleep(500);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                callback.onError("获取标记数据时发生错误: " + e.getMessage());
-            } catch (Exception e) {
-                callback.onError("获取标记数据失败: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+
+            // 模拟返回的标记数据
+            List<MarkerData> markers = createMockMarkerData();
+            Log.d(TAG, "标记数据获取成功，共 " + markers.size() + " 个标记");
+            return markers;
+        });
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 发出请求（在后台线程调用），已有 ETag 时携带 If-None-Match
+     * 不手动设置 Accept-Encoding，由 OkHttp 协商 gzip 并在读取时解压
+     */
+    List<MarkerData> fetchFromNetwork() throws IOException {
+        String cachedEtag;
+        List<MarkerData> cached;
+        synchronized (this) {
+            cachedEtag = etag;
+            cached = lastMarkers;
+        }
+
+        Request.Builder request = new Request.Builder().url(url);
+        if (cachedEtag != null && cached != null) {
+            request.header("If-None-Match", cachedEtag);
+        }
+
+        try (Response response = client.newCall(request.build()).execute()) {
+            if (response.code() == 304 && cached != null) {
+                Log.d(TAG, "标记数据未变化，复用上一次的结果");
+                return cached;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+            ResponseBody body = response.body();
+            if (body == null) {
+                throw new IOException("Empty response body");
+            }
+            List<MarkerData> parsed = parser.parse(body.byteStream());
+            String newEtag = response.header("ETag");
+            synchronized (this) {
+                etag = newEtag;
+                lastMarkers = newEtag != null ? parsed : null;
+            }
+            Log.d(TAG, "标记数据获取成功，共 " + parsed.size() + " 个标记");
+            return parsed;
+        }
+    }
+
+    /**
+     * 获取标记数据
+     *
+     * @param callback 回调接口
+     */
+    public void getMarkerData(MarkerDataCallback callback) {
+        fetchMarkerData().whenComplete((markers, error) -> {
+            if (error == null) {
+                callback.onSuccess(markers);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                callback.onError("获取标记数据失败: " + cause.getMessage());
             }
         });
     }
 
     /**
      * 创建模拟的标记数据
+     * 日期与K线数据生成逻辑保持一致：K线从100天前开始，标记按天数偏移
      */
-    private MarkerResponse createMockMarkerData() {
-        MarkerResponse response = new MarkerResponse();
-        response.items = new ArrayList<>();
-        response.total = 8;
-        response.page = 1;
-        response.size = 8;
-        response.pages = 1;
-
-        // 添加一些示例标记数据
-        List<MarkerResponse.MarkerItem> items = response.items;
-
-        // 计算相对日期（与K线数据生成逻辑保持一致）
-        // K线数据从100天前开始，所以我们也从那个日期开始计算
-        java.util.Calendar calendar = java.util.Calendar.getInstance();
-        calendar.add(java.util.Calendar.DAY_OF_YEAR, -100); // 从100天前开始
-        java.text.SimpleDateFormat dateFormat = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault());
-
-        // 为了确保日期匹配，我们使用偏移量来生成具体的标记日期
-        java.util.Calendar markerCalendar;
-
-        // 数字标记 - 改为后面的日期：倒数第30天、第20天、第10天
-        markerCalendar = (java.util.Calendar) calendar.clone();
-        markerCalendar.add(java.util.Calendar.DAY_OF_YEAR, 70); // 第70天（倒数第30天）
-        items.add(new MarkerResponse.MarkerItem("2024-12-15T07:36:19.755Z", dateFormat.format(markerCalendar.getTime()), 0, "1"));
-
-        markerCalendar = (java.util.Calendar) calendar.clone();
-        markerCalendar.add(java.util.Calendar.DAY_OF_YEAR, 80); // 第80天（倒数第20天）
-        items.add(new MarkerResponse.MarkerItem("2024-12-25T07:36:19.755Z", dateFormat.format(markerCalendar.getTime()), 0, "2"));
-
-        markerCalendar = (java.util.Calendar) calendar.clone();
-        markerCalendar.add(java.util.Calendar.DAY_OF_YEAR, 90); // 第90天（倒数第10天）
-        items.add(new MarkerResponse.MarkerItem("2025-01-05T07:36:19.755Z", dateFormat.format(markerCalendar.getTime()), 0, "虎虎虎"));
-
-        // 买入卖出标记 - 改为后面的日期：倒数第25天、第15天
-        markerCalendar = (java.util.Calendar) calendar.clone();
-        markerCalendar.add(java.util.Calendar.DAY_OF_YEAR, 75); // 第75天（倒数第25天）
-        items.add(new MarkerResponse.MarkerItem("2024-12-30T07:36:19.755Z", dateFormat.format(markerCalendar.getTime()), 1, "B"));
-
-        markerCalendar = (java.util.Calendar) calendar.clone();
-        markerCalendar.add(java.util.Calendar.DAY_OF_YEAR, 85); // 第85天（倒数第15天）
-        items.add(new MarkerResponse.MarkerItem("2025-01-10T07:36:19.755Z", dateFormat.format(markerCalendar.getTime()), 2, "S"));
-
-        // 上下三角标记 - 改为后面的日期：倒数第12天、第8天、第5天
-        markerCalendar = (java.util.Calendar) calendar.clone();
-        markerCalendar.add(java.util.Calendar.DAY_OF_YEAR, 88); // 第88天（倒数第12天）
-        items.add(new MarkerResponse.MarkerItem("2025-01-20T07:36:19.755Z", dateFormat.format(markerCalendar.getTime()), 3, "激增"));
-
-        markerCalendar = (java.util.Calendar) calendar.clone();
-        markerCalendar.add(java.util.Calendar.DAY_OF_YEAR, 92); // 第92天（倒数第8天）
-        items.add(new MarkerResponse.MarkerItem("2025-01-30T07:36:19.755Z", dateFormat.format(markerCalendar.getTime()), 4, "陡降"));
-
-        markerCalendar = (java.util.Calendar) calendar.clone();
-        markerCalendar.add(java.util.Calendar.DAY_OF_YEAR, 95); // 第95天（倒数第5天）
-        items.add(new MarkerResponse.MarkerItem("2025-02-10T07:36:19.755Z", dateFormat.format(markerCalendar.getTime()), 0, "特殊标记"));
-
-        return response;
+    private List<MarkerData> createMockMarkerData() {
+        List<MarkerData> markers = new ArrayList<>();
+        Calendar start = Calendar.getInstance();
+        start.add(Calendar.DAY_OF_YEAR, -100);
+
+        // 数字标记：倒数第30天、第20天、第10天
+        markers.add(mockMarker(start, 70, 0, "1"));
+        markers.add(mockMarker(start, 80, 0, "2"));
+        markers.add(mockMarker(start, 90, 0, "虎虎虎"));
+        // 买入卖出标记：倒数第25天、第15天
+        markers.add(mockMarker(start, 75, 1, "B"));
+        markers.add(mockMarker(start, 85, 2, "S"));
+        // 上下三角标记：倒数第12天、第8天，以及倒数第5天的数字标记
+        markers.add(mockMarker(start, 88, 3, "激增"));
+        markers.add(mockMarker(start, 92, 4, "陡降"));
+        markers.add(mockMarker(start, 95, 0, "特殊标记"));
+        return markers;
+    }
+
+    /**
+     * 与 {@link MarkerFeedParser} 相同：日期为当天零点，配置直接使用类型映射中共享的配置
+     */
+    private MarkerData mockMarker(Calendar start, int dayOffset, int type, String text) {
+        Calendar day = (Calendar) start.clone();
+        day.add(Calendar.DAY_OF_YEAR, dayOffset);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+
+        MarkerData marker = new MarkerData();
+        marker.setDate(day.getTime());
+        marker.setText(text);
+        marker.setConfig(mapping.getConfig(type));
+        return marker;
     }
 
     /**
      * 标记数据回调接口
      */
     public interface MarkerDataCallback {
-        void onSuccess(MarkerResponse response);
+        void onSuccess(List<MarkerData> markers);
 
         void onError(String error);
     }
@@ -0,0 +1,137 @@
+package com.alex.mpchart.marker.ui.dashboard;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.alex.klinemarker.KLineMarkerManager;
+import com.alex.klinemarker.core.TrendDetector;
+import com.alex.klinemarker.core.VolumeLayerConfig;
+import com.alex.mpchart.marker.data.model.KLineEntry;
+import com.alex.mpchart.marker.databinding.ItemDashboardChartBinding;
+import com.github.mikephil.charting.charts.CombinedChart;
+import com.github.mikephil.charting.components.YAxis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 看板网格的适配器
+ * 每个列表项创建时配置一次图表和标记管理器，滚动复用时只替换数据；
+ * 所有管理器共用同一组渲染资源和后台构建线程池，标记索引在后台构建，主线程只负责绘制
+ */
+class DashboardAdapter extends RecyclerView.Adapter<DashboardAdapter.ChartHolder> {
+
+    // 每个小图显示的K线数量
+    private static final float VISIBLE_BARS = 60f;
+
+    // 成交量图层占图表高度的比例，K线的纵轴范围在生成数据时已为它留出空间
+    static final float VOLUME_HEIGHT_RATIO = 0.2f;
+
+    private final List<DashboardItem> items = new ArrayList<>();
+
+    DashboardAdapter() {
+        setHasStableIds(true);
+    }
+
+    void submit(List<DashboardItem> newItems) {
+        items.clear();
+        if (newItems != null) {
+            items.addAll(newItems);
+        }
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public ChartHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ItemDashboardChartBinding binding = ItemDashboardChartBinding.inflate(
+                LayoutInflater.from(parent.getContext()), parent, false);
+        return new ChartHolder(binding);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ChartHolder holder, int position) {
+        holder.bind(items.get(position));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return items.get(position).symbol.hashCode();
+    }
+
+    @Override
+    public int getItemCount() {
+        return items.size();
+    }
+
+    static class ChartHolder extends RecyclerView.ViewHolder {
+        private final ItemDashboardChartBinding binding;
+        private final CombinedChart chart;
+        private final KLineMarkerManager<KLineEntry> markerManager;
+        private DashboardItem boundItem;
+
+        ChartHolder(ItemDashboardChartBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+            this.chart = binding.chart;
+            setupChart(chart);
+            this.markerManager = new KLineMarkerManager.Builder<KLineEntry>()
+                    .context(chart.getContext())
+                    .chart(chart)
+                    .dataAdapter(KLineEntryAdapter.INSTANCE)
+                    .volumeLayer(new VolumeLayerConfig.Builder()
+                            .heightRatio(VOLUME_HEIGHT_RATIO)
+                            .build())
+                    .build();
+            // 趋势区间由每个图表自己的检测器在后台构建时得出
+            markerManager.setTrendDetector(TrendDetector.withDefaults());
+        }
+
+        private static void setupChart(CombinedChart chart) {
+            chart.getDescription().setEnabled(false);
+            chart.getLegend().setEnabled(false);
+            chart.setDrawGridBackground(false);
+            chart.setDrawOrder(new CombinedChart.DrawOrder[]{CombinedChart.DrawOrder.CANDLE});
+            // 看板中的小图只用于浏览，不响应手势，避免与列表滚动冲突
+            chart.setTouchEnabled(false);
+            chart.setDragEnabled(false);
+            chart.setScaleEnabled(false);
+            chart.setAutoScaleMinMaxEnabled(false);
+
+            float density = chart.getResources().getDisplayMetrics().density;
+            int offset = (int) (4 * density);
+            chart.setViewPortOffsets(offset, offset, offset, offset);
+
+            chart.getXAxis().setEnabled(false);
+            chart.getAxisRight().setEnabled(false);
+            YAxis leftAxis = chart.getAxisLeft();
+            leftAxis.setDrawLabels(false);
+            leftAxis.setDrawAxisLine(false);
+            leftAxis.setDrawGridLines(false);
+        }
+
+        void bind(DashboardItem item) {
+            binding.symbol.setText(item.symbol);
+            if (item == boundItem) {
+                return;
+            }
+            boundItem = item;
+
+            YAxis leftAxis = chart.getAxisLeft();
+            leftAxis.setAxisMinimum(item.axisMinimum);
+            leftAxis.setAxisMaximum(item.axisMaximum);
+            chart.setData(item.chartData);
+            chart.setVisibleXRangeMaximum(VISIBLE_BARS);
+            chart.moveViewToX(item.chartData.getXMax());
+
+            // 两项修改与趋势检测合并为一次后台构建和一次重绘
+            markerManager.batch(() -> {
+                markerManager.setKLineData(item.bars);
+                markerManager.setMarkers(item.markers);
+            });
+        }
+    }
+}
@@ -4,16 +4,21 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.GridLayoutManager;
 
 import com.alex.mpchart.marker.databinding.FragmentDashboardBinding;
 
+/**
+ * 多品种看板：以网格显示多个带标记和趋势区间的小K线图
+ */
 public class DashboardFragment extends Fragment {
 
+    private static final int SPAN_COUNT = 2;
+
     private FragmentDashboardBinding binding;
 
     public View onCreateView(@NonNull LayoutInflater inflater,
@@ -24,8 +29,12 @@ public class DashboardFragment extends Fragment {
         binding = FragmentDashboardBinding.inflate(inflater, container, false);
         View root = binding.getRoot();
 
-        final TextView textView = binding.textDashboard;
-        dashboardViewModel.getText().observe(getViewLifecycleOwner(), textView::setText);
+        DashboardAdapter adapter = new DashboardAdapter();
+        binding.dashboardGrid.setLayoutManager(new GridLayoutManager(requireContext(), SPAN_COUNT));
+        binding.dashboardGrid.setHasFixedSize(true);
+        binding.dashboardGrid.setAdapter(adapter);
+
+        dashboardViewModel.getItems().observe(getViewLifecycleOwner(), adapter::submit);
         return root;
     }
 
@@ -34,4 +43,4 @@ public class DashboardFragment extends Fragment {
         super.onDestroyView();
         binding = null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package com.alex.mpchart.marker.ui.dashboard;
+
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.mpchart.marker.data.model.KLineEntry;
+import com.github.mikephil.charting.data.CombinedData;
+
+import java.util.List;
+
+/**
+ * 看板中的一个品种
+ * 图表数据在后台线程生成，绑定到列表项时直接使用，滚动时不再创建K线数据
+ */
+class DashboardItem {
+    final String symbol;
+    final List<KLineEntry> bars;
+    final List<MarkerData> markers;
+    final CombinedData chartData;
+    final float axisMinimum;
+    final float axisMaximum;
+
+    DashboardItem(String symbol, List<KLineEntry> bars, List<MarkerData> markers,
+                  CombinedData chartData, float axisMinimum, float axisMaximum) {
+        this.symbol = symbol;
+        this.bars = bars;
+        this.markers = markers;
+        this.chartData = chartData;
+        this.axisMinimum = axisMinimum;
+        this.axisMaximum = axisMaximum;
+    }
+}
@@ -1,19 +1,145 @@
 package com.alex.mpchart.marker.ui.dashboard;
 
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.Log;
+
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.alex.klinemarker.data.MarkerConfig;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.MarkerPresets;
+import com.alex.mpchart.marker.data.model.KLineEntry;
+import com.github.mikephil.charting.data.CandleData;
+import com.github.mikephil.charting.data.CandleDataSet;
+import com.github.mikephil.charting.data.CandleEntry;
+import com.github.mikephil.charting.data.CombinedData;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
 public class DashboardViewModel extends ViewModel {
+    private static final String TAG = "DashboardViewModel";
+
+    private static final String[] SYMBOLS = {
+            "600519", "000858", "601318", "600036", "000333", "600276",
+            "601012", "300750", "002594", "600900", "601899", "000651"
+    };
+    private static final int BAR_COUNT = 120;
 
-    private final MutableLiveData<String> mText;
+    // 所有品种共用同一组标记样式，通过 setConfig 让标记引用同一配置对象（构造函数会复制配置）
+    private static final MarkerConfig BUY = MarkerPresets.buy();
+    private static final MarkerConfig SELL = MarkerPresets.sell();
+    private static final MarkerConfig EVENT = MarkerPresets.event();
+
+    private final MutableLiveData<List<DashboardItem>> items = new MutableLiveData<>();
 
     public DashboardViewModel() {
-        mText = new MutableLiveData<>();
-        mText.setValue("This is dashboard fragment");
+        // 图表数据在后台生成，完成后一次性发布
+        CompletableFuture.supplyAsync(DashboardViewModel::generateItems)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        Log.e(TAG, "生成看板数据失败", error);
+                        items.postValue(new ArrayList<>());
+                    } else {
+                        items.postValue(result);
+                    }
+                });
+    }
+
+    LiveData<List<DashboardItem>> getItems() {
+        return items;
+    }
+
+    private static List<DashboardItem> generateItems() {
+        List<DashboardItem> result = new ArrayList<>(SYMBOLS.length);
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            result.add(generateItem(SYMBOLS[i], new Random(SYMBOLS[i].hashCode())));
+        }
+        return result;
+    }
+
+    private static DashboardItem generateItem(String symbol, Random random) {
+        List<KLineEntry> bars = new ArrayList<>(BAR_COUNT);
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_YEAR, -BAR_COUNT);
+
+        float base = 20f + random.nextFloat() * 80f;
+        float highestHigh = -Float.MAX_VALUE;
+        float lowestLow = Float.MAX_VALUE;
+        for (int i = 0; i < BAR_COUNT; i++) {
+            float open = base + (random.nextFloat() * 2 - 1) * base * 0.01f;
+            float close = open + (random.nextFloat() * 2 - 1) * base * 0.03f;
+            float high = Math.max(open, close) + random.nextFloat() * base * 0.01f;
+            float low = Math.min(open, close) - random.nextFloat() * base * 0.01f;
+            base = close;
+            bars.add(new KLineEntry(open, close, high, low, 1000 + random.nextInt(9000), calendar.getTime()));
+            highestHigh = Math.max(highestHigh, high);
+            lowestLow = Math.min(lowestLow, low);
+            calendar.add(Calendar.DAY_OF_YEAR, 1);
+        }
+
+        ArrayList<CandleEntry> candleEntries = new ArrayList<>(BAR_COUNT);
+        for (KLineEntry bar : bars) {
+            candleEntries.add(new CandleEntry(bar.getXValue(), bar.high, bar.low, bar.open, bar.close));
+        }
+        CandleDataSet dataSet = new CandleDataSet(candleEntries, symbol);
+        dataSet.setShadowColor(Color.DKGRAY);
+        dataSet.setShadowWidth(0.5f);
+        dataSet.setDecreasingColor(Color.RED);
+        dataSet.setDecreasingPaintStyle(Paint.Style.FILL);
+        dataSet.setIncreasingColor(Color.GREEN);
+        dataSet.setIncreasingPaintStyle(Paint.Style.FILL);
+        dataSet.setNeutralColor(Color.BLUE);
+        dataSet.setDrawValues(false);
+        dataSet.setHighlightEnabled(false);
+        CombinedData chartData = new CombinedData();
+        chartData.setData(new CandleData(dataSet));
+
+        float padding = (highestHigh - lowestLow) * 0.25f;
+        float axisMaximum = highestHigh + padding;
+        float priceBottom = lowestLow - padding;
+        // 底部留给成交量图层：K线占纵轴范围的 (1 - 比例)
+        float ratio = DashboardAdapter.VOLUME_HEIGHT_RATIO;
+        float axisMinimum = priceBottom - (axisMaximum - priceBottom) * ratio / (1 - ratio);
+        return new DashboardItem(symbol, bars, generateMarkers(bars, random),
+                chartData, axisMinimum, axisMaximum);
+    }
+
+    /**
+     * 约每8根K线一个标记，偶尔同一天有两个标记
+     */
+    private static List<MarkerData> generateMarkers(List<KLineEntry> bars, Random random) {
+        List<MarkerData> markers = new ArrayList<>();
+        for (int i = 5; i < bars.size(); i += 4 + random.nextInt(8)) {
+            KLineEntry bar = bars.get(i);
+            boolean rising = bar.close >= bar.open;
+            markers.add(marker(bar.date, rising ? "B" : "S", rising ? BUY : SELL));
+            if (random.nextInt(4) == 0) {
+                markers.add(marker(bar.date, "E", EVENT));
+            }
+        }
+        return markers;
     }
 
-    public LiveData<String> getText() {
-        return mText;
+    /**
+     * 创建引用共享配置的标记
+     */
+    private static MarkerData marker(Date date, String text, MarkerConfig config) {
+        MarkerData marker = new MarkerData();
+        marker.setDate(date);
+        marker.setText(text);
+        marker.setConfig(config);
+        return marker;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+package com.alex.mpchart.marker.ui.dashboard;
+
+import com.alex.klinemarker.data.KLineDataAdapter;
+import com.alex.mpchart.marker.data.model.KLineEntry;
+
+import java.util.Date;
+
+/**
+ * 将应用的 KLineEntry 适配给标记库
+ * X值与 {@link KLineEntry#getXValue()} 一致，按自然日换算
+ */
+class KLineEntryAdapter implements KLineDataAdapter<KLineEntry> {
+
+    static final KLineEntryAdapter INSTANCE = new KLineEntryAdapter();
+
+    @Override
+    public Date getDate(KLineEntry klineData) {
+        return klineData.date;
+    }
+
+    @Override
+    public float getOpen(KLineEntry klineData) {
+        return klineData.open;
+    }
+
+    @Override
+    public float getClose(KLineEntry klineData) {
+        return klineData.close;
+    }
+
+    @Override
+    public float getHigh(KLineEntry klineData) {
+        return klineData.high;
+    }
+
+    @Override
+    public float getLow(KLineEntry klineData) {
+        return klineData.low;
+    }
+
+    @Override
+    public float getVolume(KLineEntry klineData) {
+        return klineData.volume;
+    }
+
+    @Override
+    public float getXValue(KLineEntry klineData) {
+        return klineData.getXValue();
+    }
+}
@@ -5,7 +5,6 @@ import android.graphics.Color;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
-import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -14,6 +13,9 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
+import com.alex.klinemarker.core.ChartSyncGroup;
+import com.alex.klinemarker.data.TimeAxis;
+import com.alex.mpchart.marker.data.model.KLineChartData;
 import com.alex.mpchart.marker.data.model.KLineEntry;
 import com.alex.mpchart.marker.data.model.TrendRegion;
 import com.alex.mpchart.marker.databinding.FragmentHomeBinding;
@@ -29,14 +31,11 @@ import com.github.mikephil.charting.data.CandleDataSet;
 import com.github.mikephil.charting.data.CandleEntry;
 import com.github.mikephil.charting.data.CombinedData;
 import com.github.mikephil.charting.formatter.ValueFormatter;
-import com.github.mikephil.charting.listener.ChartTouchListener;
-import com.github.mikephil.charting.listener.OnChartGestureListener;
 import com.github.mikephil.charting.renderer.CombinedChartRenderer;
 import com.github.mikephil.charting.utils.ViewPortHandler;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -50,7 +49,9 @@ public class HomeFragment extends Fragment {
     private KLineMarker kLineMarker;
     private TrendRegionDrawer trendRegionDrawer;
     private List<KLineEntry> kLineEntries;
+    private List<TrendRegion> trendRegions;
     private SwipeRefreshLayout swipeRefreshLayout;
+    private ChartSyncGroup chartSyncGroup;
 
     public View onCreateView(@NonNull LayoutInflater inflater,
                              ViewGroup container, Bundle savedInstanceState) {
@@ -103,98 +104,16 @@ public class HomeFragment extends Fragment {
     }
 
     private void setupChartLinkage() {
-        // 为K线图添加手势监听
-        combinedChart.setOnChartGestureListener(new OnChartGestureListener() {
-            @Override
-            public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
-            }
-
-            @Override
-            public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
-            }
-
-            @Override
-            public void onChartLongPressed(MotionEvent me) {
-            }
-
-            @Override
-            public void onChartDoubleTapped(MotionEvent me) {
-            }
-
-            @Override
-            public void onChartSingleTapped(MotionEvent me) {
-            }
-
-            @Override
-            public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
-            }
-
-            @Override
-            public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
-            }
-
-            @Override
-            public void onChartTranslate(MotionEvent me, float dX, float dY) {
-                // 当K线图滑动时，同步滑动成交量图
-                if (volumeChart != null) {
-                    // 获取K线图的可视范围
-                    float lowestX = combinedChart.getLowestVisibleX();
-                    volumeChart.moveViewToX(lowestX);
-                    volumeChart.invalidate();
-                }
-
-                // 滑动时重绘标记
-                if (combinedChart != null && kLineMarker != null) {
-                    combinedChart.invalidate();
-                }
-            }
-        });
-
-        // 为成交量图添加手势监听
-        volumeChart.setOnChartGestureListener(new OnChartGestureListener() {
-            @Override
-            public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
-            }
-
-            @Override
-            public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
-            }
-
-            @Override
-            public void onChartLongPressed(MotionEvent me) {
-            }
-
-            @Override
-            public void onChartDoubleTapped(MotionEvent me) {
-            }
-
-            @Override
-            public void onChartSingleTapped(MotionEvent me) {
-            }
-
-            @Override
-            public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
-            }
-
-            @Override
-            public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
-            }
-
-            @Override
-            public void onChartTranslate(MotionEvent me, float dX, float dY) {
-                // 当成交量图滑动时，同步滑动K线图
-                if (combinedChart != null) {
-                    // 获取成交量图的可视范围
-                    float lowestX = volumeChart.getLowestVisibleX();
-                    combinedChart.moveViewToX(lowestX);
-                    combinedChart.invalidate();
-                }
-            }
-        });
+        // K线图和成交量图的平移、缩放在下一帧同步，每个图表每帧只重绘一次
+        chartSyncGroup = new ChartSyncGroup();
+        chartSyncGroup.add(combinedChart);
+        chartSyncGroup.add(volumeChart);
     }
 
-    private void showCharts(List<KLineEntry> data) {
+    private void showCharts(KLineChartData chartData) {
+        List<KLineEntry> data = chartData.entries;
         this.kLineEntries = data;
+        this.trendRegions = chartData.trendRegions;
 
         // 更新时间显示
         SimpleDateFormat sdf = new SimpleDateFormat("MM-dd HH:mm:ss", Locale.getDefault());
@@ -267,9 +186,7 @@ public class HomeFragment extends Fragment {
             @Override
             public String getFormattedValue(float value) {
                 // 将相对天数转换回日期
-                long baseTime = 1704067200000L; // 2024-01-01 00:00:00 UTC
-                long timestamp = baseTime + (long) (value * 24 * 60 * 60 * 1000);
-                return dateFormat.format(new Date(timestamp));
+                return dateFormat.format(new Date(TimeAxis.DAY.toTime(value)));
             }
         });
 
@@ -325,8 +242,8 @@ public class HomeFragment extends Fragment {
         kLineMarker = new KLineMarker(getContext(), combinedChart, data);
         trendRegionDrawer = new TrendRegionDrawer(getContext(), combinedChart, data);
 
-        // 设置趋势区间数据（使用示例数据）
-        setTrendRegionsExample();
+        // 设置趋势区间数据（与K线一起加载）
+        setTrendRegions(trendRegions);
         
         combinedChart.setRenderer(new CustomCombinedChartRenderer(combinedChart,
                 combinedChart.getAnimator(), combinedChart.getViewPortHandler(),
@@ -423,9 +340,7 @@ public class HomeFragment extends Fragment {
             @Override
             public String getFormattedValue(float value) {
                 // 将相对天数转换回日期
-                long baseTime = 1704067200000L; // 2024-01-01 00:00:00 UTC
-                long timestamp = baseTime + (long) (value * 24 * 60 * 60 * 1000);
-                return dateFormat.format(new Date(timestamp));
+                return dateFormat.format(new Date(TimeAxis.DAY.toTime(value)));
             }
         });
 
@@ -488,41 +403,11 @@ public class HomeFragment extends Fragment {
     }
 
     /**
-     * 设置趋势区间示例数据
-     * 根据用户提供的JSON格式创建趋势区间
+     * 设置趋势区间数据
      */
-    private void setTrendRegionsExample() {
-        if (trendRegionDrawer == null) return;
+    private void setTrendRegions(List<TrendRegion> regions) {
+        if (trendRegionDrawer == null || regions == null) return;
 
-        // 方法1：直接创建趋势区间列表
-        List<TrendRegion> regions = new ArrayList<>();
-
-        // 获取当前日期并计算相对日期
-        Calendar calendar = Calendar.getInstance();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-
-        // 第一个区间：从15天前开始到最后（size=2）
-        calendar.add(Calendar.DAY_OF_YEAR, -15);
-        String start1 = dateFormat.format(calendar.getTime());
-        regions.add(new TrendRegion(start1, null, 2, "2025-05-22T07:09:33.289230Z"));
-
-        // 第二个区间：从80天前到75天前（size=3）
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_YEAR, -80);
-        String start2 = dateFormat.format(calendar.getTime());
-        calendar.add(Calendar.DAY_OF_YEAR, 5); // 5天的区间
-        String end2 = dateFormat.format(calendar.getTime());
-        regions.add(new TrendRegion(start2, end2, 3, "2025-05-22T06:46:10.313136Z"));
-
-        // 第三个区间：从50天前到45天前（size=1）- 额外测试区间
-        calendar = Calendar.getInstance();
-        calendar.add(Calendar.DAY_OF_YEAR, -50);
-        String start3 = dateFormat.format(calendar.getTime());
-        calendar.add(Calendar.DAY_OF_YEAR, 5);
-        String end3 = dateFormat.format(calendar.getTime());
-        regions.add(new TrendRegion(start3, end3, 1, "2025-05-22T05:30:00.000000Z"));
-
-        // 设置趋势区间
         trendRegionDrawer.setTrendRegions(regions);
 
         Log.d("HomeFragment", "Set " + regions.size() + " trend regions:");
@@ -565,6 +450,7 @@ public class HomeFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        chartSyncGroup.clear();
         binding = null;
     }
 }
\ No newline at end of file
@@ -1,24 +1,34 @@
 package com.alex.mpchart.marker.ui.home;
 
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
-import com.alex.mpchart.marker.data.model.KLineEntry;
+import com.alex.mpchart.marker.data.model.KLineChartData;
 import com.alex.mpchart.marker.data.repository.KLineRepository;
 
-import java.util.List;
+public class HomeViewModel extends AndroidViewModel {
+    // 演示数据的品种和周期，作为缓存的键
+    private static final String SYMBOL = "DEMO";
+    private static final String TIMEFRAME = "1d";
 
-public class HomeViewModel extends ViewModel {
-    private final KLineRepository repository = new KLineRepository();
-    private MediatorLiveData<List<KLineEntry>> kLineData;
+    private final KLineRepository repository;
+    private MediatorLiveData<KLineChartData> kLineData;
     private final MutableLiveData<Boolean> isRefreshing = new MutableLiveData<>(false);
 
-    public LiveData<List<KLineEntry>> getKLineData() {
+    public HomeViewModel(@NonNull Application application) {
+        super(application);
+        repository = new KLineRepository(application);
+    }
+
+    public LiveData<KLineChartData> getKLineData() {
         if (kLineData == null) {
             kLineData = new MediatorLiveData<>();
-            loadKLineData();
+            loadKLineData(false);
         }
         return kLineData;
     }
@@ -29,16 +39,19 @@ public class HomeViewModel extends ViewModel {
 
     public void refreshData() {
         isRefreshing.setValue(true);
-        loadKLineData();
+        loadKLineData(true);
     }
 
-    private void loadKLineData() {
-        LiveData<List<KLineEntry>> source = repository.getKLineData();
+    private void loadKLineData(boolean forceRefresh) {
+        LiveData<KLineChartData> source = repository.getKLineData(SYMBOL, TIMEFRAME, forceRefresh);
         kLineData.addSource(source, data -> {
+            // 缓存数据先显示，后台刷新完成后再更新
             kLineData.setValue(data);
-            isRefreshing.setValue(false);
-            // 移除之前的数据源，避免重复观察
-            kLineData.removeSource(source);
+            if (!data.stale) {
+                isRefreshing.setValue(false);
+                // 移除之前的数据源，避免重复观察
+                kLineData.removeSource(source);
+            }
         });
     }
 }
\ No newline at end of file
@@ -121,224 +121,264 @@ public class KLineMarker implements IMarker {
             KLineEntry entry = entries.get(i);
             // 检查该条目是否在可见时间范围内且有标记
             if (entry.getXValue() >= minTime && entry.getXValue() <= maxTime && entry.hasMarker) {
-                // 获取蜡烛图上的坐标
-                float x = entry.getXValue(); // x坐标使用相对天数
-
-                // 设置标记颜色
-                switch (entry.markerType) {
-                    case BUY:
-                        markerPaint.setColor(Color.parseColor("#4CAF50")); // 绿色
-                        dashLinePaint.setColor(Color.parseColor("#4CAF50")); // 虚线也用相同颜色
-                        break;
-                    case SELL:
-                        markerPaint.setColor(Color.parseColor("#F44336")); // 红色
-                        dashLinePaint.setColor(Color.parseColor("#F44336")); // 虚线也用相同颜色
-                        break;
-                    case NUMBER:
-                        markerPaint.setColor(Color.parseColor("#80BDBDBD")); // 半透明浅灰色
-                        dashLinePaint.setColor(Color.parseColor("#BDBDBD")); // 虚线保持不透明
-                        break;
-                    case UP_TRIANGLE:
-                        markerPaint.setColor(Color.parseColor("#FF5722")); // 橙红色，表示激增
-                        dashLinePaint.setColor(Color.parseColor("#FF5722"));
-                        break;
-                    case DOWN_TRIANGLE:
-                        markerPaint.setColor(Color.parseColor("#9C27B0")); // 紫色，表示陡降
-                        dashLinePaint.setColor(Color.parseColor("#9C27B0"));
-                        break;
-                    default:
-                        continue; // 没有标记类型，跳过
+                // 同一天的多个标记按上方、下方分别堆叠，先添加的靠近K线
+                int aboveLevel = 0;
+                int belowLevel = 0;
+                int level = isMarkerOnTop(entry.markerType, i) ? aboveLevel++ : belowLevel++;
+                drawEntryMarker(canvas, entry, i, entry.markerType, entry.markerText, level,
+                        screenTopY, safeTopY, safeBottomY, safeLeftX, safeRightX);
+                if (entry.extraMarkers != null) {
+                    for (int k = 0; k < entry.extraMarkers.size(); k++) {
+                        KLineEntry.Marker extra = entry.extraMarkers.get(k);
+                        level = isMarkerOnTop(extra.type, i) ? aboveLevel++ : belowLevel++;
+                        drawEntryMarker(canvas, entry, i, extra.type, extra.text, level,
+                                screenTopY, safeTopY, safeBottomY, safeLeftX, safeRightX);
+                    }
                 }
+            }
+        }
+    }
 
-                // 确定标记位置（标记方块错开显示）
-                float markerScreenY;
-
-                // 根据标记类型设置不同的垂直偏移，使标记错开显示
-                boolean isMarkerOnTop = false; // 标记是否在上方
-
-                switch (entry.markerType) {
-                    case BUY:
-                        // 买入标记在低点下方小距离处，不要太远
-                        float lowY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                                .getPixelForValues(x, entry.low).y;
-                        markerScreenY = lowY + markerSize * 2.0f; // 只偏移2个标记大小
-
-                        // 确保不超出安全范围
-                        markerScreenY = Math.min(markerScreenY, safeBottomY);
-                        isMarkerOnTop = false;
-                        break;
-                    case SELL:
-                        // 卖出标记在高点上方小距离处，不要太远
-                        float highY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                                .getPixelForValues(x, entry.high).y;
-                        markerScreenY = highY - markerSize * 2.0f; // 只偏移2个标记大小
-
-                        // 确保不超出安全范围
-                        markerScreenY = Math.max(markerScreenY, safeTopY);
-                        isMarkerOnTop = true;
-                        break;
-                    case NUMBER:
-                        // 数字标记直接放在K线上，根据奇偶性放在不同位置避免重叠
-                        float midY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                                .getPixelForValues(x, (entry.high + entry.low) / 2).y;
-
-                        if (i % 2 == 0) {
-                            // 偶数放在中上位置
-                            float upperMidY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                                    .getPixelForValues(x, (entry.high + (entry.high + entry.low) / 2) / 2).y;
-                            markerScreenY = upperMidY;
-                            isMarkerOnTop = true;
-                        } else {
-                            // 奇数放在中下位置
-                            float lowerMidY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                                    .getPixelForValues(x, (entry.low + (entry.high + entry.low) / 2) / 2).y;
-                            markerScreenY = lowerMidY;
-                            isMarkerOnTop = false;
-                        }
-
-                        // 确保在安全范围内
-                        markerScreenY = Math.max(safeTopY, Math.min(markerScreenY, safeBottomY));
-                        break;
-                    case UP_TRIANGLE:
-                        // 上三角标记在高点上方
-                        float upTriangleHighY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                                .getPixelForValues(x, entry.high).y;
-                        markerScreenY = upTriangleHighY - markerSize * 1.5f;
-                        markerScreenY = Math.max(markerScreenY, safeTopY);
-                        isMarkerOnTop = true;
-                        break;
-                    case DOWN_TRIANGLE:
-                        // 下三角标记在低点下方
-                        float downTriangleLowY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                                .getPixelForValues(x, entry.low).y;
-                        markerScreenY = downTriangleLowY + markerSize * 1.5f;
-                        markerScreenY = Math.min(markerScreenY, safeBottomY);
-                        isMarkerOnTop = false;
-                        break;
-                    default:
-                        markerScreenY = screenTopY;
-                        isMarkerOnTop = true;
-                        break;
-                }
+    // 标记是否位于K线上方，与 drawEntryMarker 中的位置规则一致
+    private static boolean isMarkerOnTop(KLineEntry.MarkerType markerType, int index) {
+        switch (markerType) {
+            case SELL:
+            case UP_TRIANGLE:
+                return true;
+            case NUMBER:
+                return index % 2 == 0;
+            default:
+                return false;
+        }
+    }
 
-                // 根据标记位置确定虚线起点
-                float candleY;
-                if (isMarkerOnTop) {
-                    // 标记在上方，虚线起点是K线的最高点
-                    candleY = entry.high;
+    // 绘制K线上的一个标记，stackLevel 为该标记在同一侧堆叠中的序号
+    private void drawEntryMarker(Canvas canvas, KLineEntry entry, int i, KLineEntry.MarkerType markerType,
+                                 String markerText, int stackLevel, float screenTopY, float safeTopY,
+                                 float safeBottomY, float safeLeftX, float safeRightX) {
+        // 获取蜡烛图上的坐标
+        float x = entry.getXValue(); // x坐标使用相对天数
+
+        // 设置标记颜色
+        switch (markerType) {
+            case BUY:
+                markerPaint.setColor(Color.parseColor("#4CAF50")); // 绿色
+                dashLinePaint.setColor(Color.parseColor("#4CAF50")); // 虚线也用相同颜色
+                break;
+            case SELL:
+                markerPaint.setColor(Color.parseColor("#F44336")); // 红色
+                dashLinePaint.setColor(Color.parseColor("#F44336")); // 虚线也用相同颜色
+                break;
+            case NUMBER:
+                markerPaint.setColor(Color.parseColor("#80BDBDBD")); // 半透明浅灰色
+                dashLinePaint.setColor(Color.parseColor("#BDBDBD")); // 虚线保持不透明
+                break;
+            case UP_TRIANGLE:
+                markerPaint.setColor(Color.parseColor("#FF5722")); // 橙红色，表示激增
+                dashLinePaint.setColor(Color.parseColor("#FF5722"));
+                break;
+            case DOWN_TRIANGLE:
+                markerPaint.setColor(Color.parseColor("#9C27B0")); // 紫色，表示陡降
+                dashLinePaint.setColor(Color.parseColor("#9C27B0"));
+                break;
+            default:
+                return; // 没有标记类型，跳过
+        }
+
+        // 确定标记位置（标记方块错开显示）
+        float markerScreenY;
+
+        // 根据标记类型设置不同的垂直偏移，使标记错开显示
+        boolean isMarkerOnTop = false; // 标记是否在上方
+
+        switch (markerType) {
+            case BUY:
+                // 买入标记在低点下方小距离处，不要太远
+                float lowY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                        .getPixelForValues(x, entry.low).y;
+                markerScreenY = lowY + markerSize * 2.0f; // 只偏移2个标记大小
+
+                // 确保不超出安全范围
+                markerScreenY = Math.min(markerScreenY, safeBottomY);
+                isMarkerOnTop = false;
+                break;
+            case SELL:
+                // 卖出标记在高点上方小距离处，不要太远
+                float highY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                        .getPixelForValues(x, entry.high).y;
+                markerScreenY = highY - markerSize * 2.0f; // 只偏移2个标记大小
+
+                // 确保不超出安全范围
+                markerScreenY = Math.max(markerScreenY, safeTopY);
+                isMarkerOnTop = true;
+                break;
+            case NUMBER:
+                // 数字标记直接放在K线上，根据奇偶性放在不同位置避免重叠
+                float midY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                        .getPixelForValues(x, (entry.high + entry.low) / 2).y;
+
+                if (i % 2 == 0) {
+                    // 偶数放在中上位置
+                    float upperMidY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                            .getPixelForValues(x, (entry.high + (entry.high + entry.low) / 2) / 2).y;
+                    markerScreenY = upperMidY;
+                    isMarkerOnTop = true;
                 } else {
-                    // 标记在下方，虚线起点是K线的最低点
-                    candleY = entry.low;
+                    // 奇数放在中下位置
+                    float lowerMidY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                            .getPixelForValues(x, (entry.low + (entry.high + entry.low) / 2) / 2).y;
+                    markerScreenY = lowerMidY;
+                    isMarkerOnTop = false;
                 }
 
-                // 转换为屏幕坐标
-                float screenX = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                        .getPixelForValues(x, candleY).x;
-                float lineStartY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                        .getPixelForValues(x, candleY).y;
-
-                // 检查并调整X坐标，确保标记不会超出左右边界
-                screenX = Math.max(safeLeftX, Math.min(screenX, safeRightX));
-
-                // 处理数字标记和三角形标记的特殊位置（都使用短虚线）
-                if (entry.markerType == KLineEntry.MarkerType.NUMBER ||
-                        entry.markerType == KLineEntry.MarkerType.UP_TRIANGLE ||
-                        entry.markerType == KLineEntry.MarkerType.DOWN_TRIANGLE) {
-
-                    if (entry.markerType == KLineEntry.MarkerType.NUMBER) {
-                        // 更新数字标记的X坐标，使其直接位于K线上方或下方
-                        float originalScreenX = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                                .getPixelForValues(x, (entry.high + entry.low) / 2).x;
-                        screenX = Math.max(safeLeftX, Math.min(originalScreenX, safeRightX));
-                    }
+                // 确保在安全范围内
+                markerScreenY = Math.max(safeTopY, Math.min(markerScreenY, safeBottomY));
+                break;
+            case UP_TRIANGLE:
+                // 上三角标记在高点上方
+                float upTriangleHighY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                        .getPixelForValues(x, entry.high).y;
+                markerScreenY = upTriangleHighY - markerSize * 1.5f;
+                markerScreenY = Math.max(markerScreenY, safeTopY);
+                isMarkerOnTop = true;
+                break;
+            case DOWN_TRIANGLE:
+                // 下三角标记在低点下方
+                float downTriangleLowY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                        .getPixelForValues(x, entry.low).y;
+                markerScreenY = downTriangleLowY + markerSize * 1.5f;
+                markerScreenY = Math.min(markerScreenY, safeBottomY);
+                isMarkerOnTop = false;
+                break;
+            default:
+                markerScreenY = screenTopY;
+                isMarkerOnTop = true;
+                break;
+        }
 
-                    // 为数字标记和三角形标记绘制短虚线
-                    float lineEndY;
-                    if (isMarkerOnTop) {
-                        lineEndY = lineStartY - shortLineLength;
-                    } else {
-                        lineEndY = lineStartY + shortLineLength;
-                    }
-                    canvas.drawLine(screenX, lineStartY, screenX, lineEndY, dashLinePaint);
+        // 根据标记位置确定虚线起点
+        float candleY;
+        if (isMarkerOnTop) {
+            // 标记在上方，虚线起点是K线的最高点
+            candleY = entry.high;
+        } else {
+            // 标记在下方，虚线起点是K线的最低点
+            candleY = entry.low;
+        }
+
+        // 转换为屏幕坐标
+        float screenX = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                .getPixelForValues(x, candleY).x;
+        float lineStartY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                .getPixelForValues(x, candleY).y;
+
+        // 检查并调整X坐标，确保标记不会超出左右边界
+        screenX = Math.max(safeLeftX, Math.min(screenX, safeRightX));
+
+        // 处理数字标记和三角形标记的特殊位置（都使用短虚线）
+        if (markerType == KLineEntry.MarkerType.NUMBER ||
+                markerType == KLineEntry.MarkerType.UP_TRIANGLE ||
+                markerType == KLineEntry.MarkerType.DOWN_TRIANGLE) {
+
+            if (markerType == KLineEntry.MarkerType.NUMBER) {
+                // 更新数字标记的X坐标，使其直接位于K线上方或下方
+                float originalScreenX = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                        .getPixelForValues(x, (entry.high + entry.low) / 2).x;
+                screenX = Math.max(safeLeftX, Math.min(originalScreenX, safeRightX));
+            }
 
-                    // 根据虚线终点调整标记位置
-                    if (isMarkerOnTop) {
-                        markerScreenY = lineEndY - markerSize / 2;
-                    } else {
-                        markerScreenY = lineEndY + markerSize / 2;
+            // 为数字标记和三角形标记绘制短虚线
+            float lineEndY;
+            if (isMarkerOnTop) {
+                lineEndY = lineStartY - shortLineLength;
+            } else {
+                lineEndY = lineStartY + shortLineLength;
+            }
+            if (stackLevel == 0) {
+                canvas.drawLine(screenX, lineStartY, screenX, lineEndY, dashLinePaint);
+            }
+
+            // 根据虚线终点调整标记位置
+            if (isMarkerOnTop) {
+                markerScreenY = lineEndY - markerSize / 2;
+            } else {
+                markerScreenY = lineEndY + markerSize / 2;
+            }
+        } else {
+            // 对于买入卖出点，计算虚线终点
+            float lineEndY;
+
+            // 根据标记位置确定虚线方向
+            if (isMarkerOnTop) {
+                // 标记在K线上方
+                lineEndY = lineStartY - fixedLineLength;
+                // 确保虚线不会太短
+                if (markerScreenY > lineEndY) {
+                    markerScreenY = lineEndY - markerSize;
+                }
+            } else {
+                // 标记在K线下方
+                lineEndY = lineStartY + fixedLineLength;
+                // 确保虚线不会太短
+                if (markerScreenY < lineEndY) {
+                    markerScreenY = lineEndY + markerSize;
+                }
+            }
+
+            // 对于买入卖出点，如果线很短，调整为较短的固定长度
+            if (markerType == KLineEntry.MarkerType.BUY ||
+                    markerType == KLineEntry.MarkerType.SELL) {
+                float minLineLength = fixedLineLength * 0.3f; // 至少30%的长度
+
+                if (isMarkerOnTop) {
+                    if (Math.abs(lineStartY - markerScreenY) < minLineLength) {
+                        markerScreenY = lineStartY - minLineLength - markerSize;
                     }
                 } else {
-                    // 对于买入卖出点，计算虚线终点
-                    float lineEndY;
-
-                    // 根据标记位置确定虚线方向
-                    if (isMarkerOnTop) {
-                        // 标记在K线上方
-                        lineEndY = lineStartY - fixedLineLength;
-                        // 确保虚线不会太短
-                        if (markerScreenY > lineEndY) {
-                            markerScreenY = lineEndY - markerSize;
-                        }
-                    } else {
-                        // 标记在K线下方
-                        lineEndY = lineStartY + fixedLineLength;
-                        // 确保虚线不会太短
-                        if (markerScreenY < lineEndY) {
-                            markerScreenY = lineEndY + markerSize;
-                        }
+                    if (Math.abs(markerScreenY - lineStartY) < minLineLength) {
+                        markerScreenY = lineStartY + minLineLength + markerSize;
                     }
+                }
+            }
 
-                    // 对于买入卖出点，如果线很短，调整为较短的固定长度
-                    if (entry.markerType == KLineEntry.MarkerType.BUY ||
-                            entry.markerType == KLineEntry.MarkerType.SELL) {
-                        float minLineLength = fixedLineLength * 0.3f; // 至少30%的长度
-
-                        if (isMarkerOnTop) {
-                            if (Math.abs(lineStartY - markerScreenY) < minLineLength) {
-                                markerScreenY = lineStartY - minLineLength - markerSize;
-                            }
-                        } else {
-                            if (Math.abs(markerScreenY - lineStartY) < minLineLength) {
-                                markerScreenY = lineStartY + minLineLength + markerSize;
-                            }
-                        }
-                    }
+            // 绘制连接虚线（垂直方向），堆叠的标记共用第一个标记的虚线
+            if (stackLevel == 0) {
+                canvas.drawLine(screenX, lineStartY, screenX, isMarkerOnTop ? markerScreenY + markerSize / 2 : markerScreenY - markerSize / 2, dashLinePaint);
+            }
+        }
 
-                    // 绘制连接虚线（垂直方向）
-                    canvas.drawLine(screenX, lineStartY, screenX, isMarkerOnTop ? markerScreenY + markerSize / 2 : markerScreenY - markerSize / 2, dashLinePaint);
-                }
+        // 同一天的后续标记继续远离K线堆叠
+        markerScreenY += (isMarkerOnTop ? -1 : 1) * stackLevel * markerSize * 1.3f;
 
-                // 最终检查标记位置，确保完全在边界内
-                markerScreenY = Math.max(safeTopY, Math.min(markerScreenY, safeBottomY));
+        // 最终检查标记位置，确保完全在边界内
+        markerScreenY = Math.max(safeTopY, Math.min(markerScreenY, safeBottomY));
 
-                // 根据标记类型选择绘制方式
-                if (entry.markerType == KLineEntry.MarkerType.UP_TRIANGLE ||
-                        entry.markerType == KLineEntry.MarkerType.DOWN_TRIANGLE) {
-                    // 绘制三角形标记
-                    drawTriangleMarker(canvas, screenX, markerScreenY, entry.markerType);
-                } else if (entry.markerType == KLineEntry.MarkerType.NUMBER) {
-                    // 绘制数字标记：引出线 + 文字
-                    drawNumberMarker(canvas, screenX, markerScreenY, entry.markerText, isMarkerOnTop);
-                } else {
-                    // 绘制普通方块标记（买入、卖出）
-                    float left = screenX - markerSize / 2;
-                    float top = markerScreenY - markerSize / 2;
-                    float right = screenX + markerSize / 2;
-                    float bottom = markerScreenY + markerSize / 2;
+        // 根据标记类型选择绘制方式
+        if (markerType == KLineEntry.MarkerType.UP_TRIANGLE ||
+                markerType == KLineEntry.MarkerType.DOWN_TRIANGLE) {
+            // 绘制三角形标记
+            drawTriangleMarker(canvas, screenX, markerScreenY, markerType);
+        } else if (markerType == KLineEntry.MarkerType.NUMBER) {
+            // 绘制数字标记：引出线 + 文字
+            drawNumberMarker(canvas, screenX, markerScreenY, markerText, isMarkerOnTop);
+        } else {
+            // 绘制普通方块标记（买入、卖出）
+            float left = screenX - markerSize / 2;
+            float top = markerScreenY - markerSize / 2;
+            float right = screenX + markerSize / 2;
+            float bottom = markerScreenY + markerSize / 2;
 
-                    RectF rectF = new RectF(left, top, right, bottom);
-                    canvas.drawRoundRect(rectF, padding, padding, markerPaint);
+            RectF rectF = new RectF(left, top, right, bottom);
+            canvas.drawRoundRect(rectF, padding, padding, markerPaint);
 
-                    // 其他标记保持白色文字
-                    textPaint.setColor(Color.WHITE);
+            // 其他标记保持白色文字
+            textPaint.setColor(Color.WHITE);
 
-                    // 绘制标记文本
-                    float textX = screenX;
-                    float textY = markerScreenY + (textPaint.getTextSize() / 3); // 文本垂直居中
+            // 绘制标记文本
+            float textX = screenX;
+            float textY = markerScreenY + (textPaint.getTextSize() / 3); // 文本垂直居中
 
-                    canvas.drawText(entry.markerText, textX, textY, textPaint);
-                }
-            }
+            canvas.drawText(markerText, textX, textY, textPaint);
         }
     }
 
@@ -0,0 +1,162 @@
+package com.alex.mpchart.marker.data.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.MarkerTypeMapping;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * 使用本地 MockWebServer 验证标记接口的条件请求和 gzip 解压
+ */
+public class MarkerDataServiceTest {
+
+    private static final String BODY = "{\"items\":[],\"total\":0}";
+
+    private MockWebServer server;
+    private MarkerDataService service;
+
+    // 记录解析次数和解析器收到的内容
+    private int parseCount;
+    private String parsedBody;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        OkHttpClient client = new OkHttpClient.Builder().build();
+        service = new MarkerDataService(Runnable::run, client, server.url("/markers").toString(),
+                MarkerTypeMapping.defaults(), this::parse);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private List<MarkerData> parse(InputStream input) throws IOException {
+        parseCount++;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n; (n = input.read(buffer)) != -1; ) {
+            out.write(buffer, 0, n);
+        }
+        parsedBody = out.toString(StandardCharsets.UTF_8.name());
+        return new ArrayList<>();
+    }
+
+    @Test
+    public void unchangedFeed_isRevalidatedWith304AndNotReparsed() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        List<MarkerData> first = service.fetchMarkerData().get(5, TimeUnit.SECONDS);
+        List<MarkerData> second = service.fetchMarkerData().get(5, TimeUnit.SECONDS);
+
+        assertSame(first, second);
+        assertEquals(1, parseCount);
+
+        RecordedRequest firstRequest = server.takeRequest();
+        RecordedRequest secondRequest = server.takeRequest();
+        assertNull(firstRequest.getHeader("If-None-Match"));
+        assertEquals("\"v1\"", secondRequest.getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void changedFeed_isParsedAgainAndUpdatesEtag() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody(BODY));
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v2\"").setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        service.fetchMarkerData().get(5, TimeUnit.SECONDS);
+        service.fetchMarkerData().get(5, TimeUnit.SECONDS);
+        service.fetchMarkerData().get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, parseCount);
+        server.takeRequest();
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v2\"", server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void withoutEtag_noConditionalRequest() throws Exception {
+        server.enqueue(new MockResponse().setBody(BODY));
+        server.enqueue(new MockResponse().setBody(BODY));
+
+        service.fetchMarkerData().get(5, TimeUnit.SECONDS);
+        service.fetchMarkerData().get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, parseCount);
+        server.takeRequest();
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void gzipBody_isDecompressedBeforeParsing() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(new Buffer().write(compressed.toByteArray())));
+
+        service.fetchMarkerData().get(5, TimeUnit.SECONDS);
+
+        assertEquals(BODY, parsedBody);
+        assertEquals("gzip", server.takeRequest().getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    public void httpError_failsTheFuture() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        try {
+            service.fetchMarkerData().get(5, TimeUnit.SECONDS);
+            fail("Expected the fetch to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(0, parseCount);
+    }
+
+    @Test
+    public void rejectedByExecutor_failsTheFutureInsteadOfThrowing() throws Exception {
+        MarkerDataService rejecting = new MarkerDataService(runnable -> {
+            throw new RejectedExecutionException("queue full");
+        }, new OkHttpClient.Builder().build(), server.url("/markers").toString(),
+                MarkerTypeMapping.defaults(), this::parse);
+
+        try {
+            rejecting.fetchMarkerData().get(5, TimeUnit.SECONDS);
+            fail("Expected the fetch to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(0, server.getRequestCount());
+    }
+}
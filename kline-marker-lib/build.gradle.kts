@@ -20,11 +20,25 @@ android {
 
     testOptions {
         targetSdk = 35
+        unitTests {
+            // 本地单元测试中 android.util.Log 等方法返回默认值
+            isReturnDefaultValues = true
+            // 基准测试默认跳过，使用 -Pbenchmark=true 运行，-PbenchmarkBars 指定K线数量
+            all { test ->
+                test.systemProperty("klinemarker.benchmark", findProperty("benchmark") ?: "false")
+                findProperty("benchmarkBars")?.let { test.systemProperty("klinemarker.benchmark.bars", it) }
+            }
+        }
     }
     lint {
         targetSdk = 35
     }
 
+    // 测试夹具：可复现的合成K线数据，供基准测试和回归测试使用
+    testFixtures {
+        enable = true
+    }
+
     buildTypes {
         release {
             isMinifyEnabled = false
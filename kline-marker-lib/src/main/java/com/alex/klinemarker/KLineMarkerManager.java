@@ -4,17 +4,29 @@ import android.content.Context;
 import android.graphics.Canvas;
 
 import com.alex.klinemarker.core.KLineMarkerRenderer;
+import com.alex.klinemarker.core.PagedKLineLoader;
+import com.alex.klinemarker.core.RenderSnapshot;
+import com.alex.klinemarker.core.RenderSnapshotStore;
+import com.alex.klinemarker.core.TrendDetector;
 import com.alex.klinemarker.core.TrendRegionConfig;
+import com.alex.klinemarker.core.TrendRegionIndex;
 import com.alex.klinemarker.core.TrendRegionRenderer;
+import com.alex.klinemarker.core.VolumeLayerConfig;
+import com.alex.klinemarker.core.VolumeLayerRenderer;
 import com.alex.klinemarker.data.KLineDataAdapter;
 import com.alex.klinemarker.data.MarkerConfig;
 import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.TimeAxis;
+import com.alex.klinemarker.data.Timeframe;
 import com.alex.klinemarker.data.TrendRegion;
+import com.alex.klinemarker.utils.MarkerFeedParser;
 import com.alex.klinemarker.utils.TrendRegionParser;
 import com.github.mikephil.charting.charts.CombinedChart;
 import com.github.mikephil.charting.renderer.CombinedChartRenderer;
 import com.github.mikephil.charting.utils.ViewPortHandler;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -27,8 +39,10 @@ public class KLineMarkerManager<T> {
     private final CombinedChart chart;
     private final KLineDataAdapter<T> dataAdapter;
     private final KLineMarkerRenderer<T> markerRenderer;
-    private final TrendRegionRenderer<T> trendRegionRenderer;
+    private final TrendRegionRenderer trendRegionRenderer;
+    private final RenderSnapshotStore<T> snapshotStore;
     private CustomCombinedChartRenderer customRenderer;
+    private VolumeLayerRenderer volumeLayerRenderer;
 
     /**
      * 构造函数
@@ -70,7 +84,8 @@ public class KLineMarkerManager<T> {
         this.chart = chart;
         this.dataAdapter = dataAdapter;
         this.markerRenderer = new KLineMarkerRenderer<>(context, chart, dataAdapter);
-        this.trendRegionRenderer = new TrendRegionRenderer<>(context, chart, dataAdapter, trendRegionConfig);
+        this.trendRegionRenderer = new TrendRegionRenderer(context, chart, trendRegionConfig);
+        this.snapshotStore = new RenderSnapshotStore<>(chart, dataAdapter, trendRegionRenderer);
 
         // 设置自定义渲染器
         setupCustomRenderer();
@@ -85,47 +100,230 @@ public class KLineMarkerManager<T> {
                 chart.getAnimator(),
                 chart.getViewPortHandler(),
                 markerRenderer,
-                trendRegionRenderer
+                trendRegionRenderer,
+                snapshotStore
         );
         chart.setRenderer(customRenderer);
     }
 
     /**
      * 设置K线数据
+     * 序列展开和索引构建在后台线程完成，完成后自动重绘；列表交给管理器后不应再修改
      *
      * @param klineData K线数据列表
      */
     public void setKLineData(List<T> klineData) {
-        markerRenderer.setKLineData(klineData);
-        trendRegionRenderer.setKLineData(klineData);
+        snapshotStore.setKLineData(klineData);
     }
 
     /**
-     * 设置标记数据
+     * 在末尾追加一根K线（实时行情新开一根K线）
+     * 只为新K线匹配标记、更新覆盖到末尾的趋势区间（包括没有结束日期的区间）及其平滑上边沿的尾部
+     *
+     * @param bar 新的K线，时间不应早于最后一根K线
+     */
+    public void appendBar(T bar) {
+        snapshotStore.appendBar(bar);
+    }
+
+    /**
+     * 更新最后一根K线（实时行情的逐笔更新），处理方式与 {@link #appendBar(Object)} 相同
+     * 每秒多次调用时连续的更新会合并为一次构建
+     *
+     * @param bar 最后一根K线的最新数据
+     */
+    public void updateLastBar(T bar) {
+        snapshotStore.updateLastBar(bar);
+    }
+
+    /**
+     * 追加单个标记，只为该标记建立索引
+     *
+     * @param marker 标记数据
+     */
+    public void appendMarker(MarkerData marker) {
+        snapshotStore.appendMarker(marker);
+    }
+
+    /**
+     * 启用分页加载历史K线
+     * 加载器在后台加载最新一页，图表平移到窗口边缘附近时加载相邻页，并按LRU淘汰不可见的页；
+     * 窗口变化时通过 {@link PagedKLineLoader.Listener} 通知应用增量更新图表的K线数据，标记和趋势区间自动按新窗口解析，
+     * 通知与新的渲染快照在同一帧生效
+     *
+     * @param builder 加载器配置
+     * @return 已启动的加载器
+     */
+    public PagedKLineLoader<T> enablePaging(PagedKLineLoader.Builder<T> builder) {
+        PagedKLineLoader<T> loader = builder.build(chart, snapshotStore);
+        loader.start();
+        return loader;
+    }
+
+    /**
+     * 设置时间轴（后台重新匹配标记，完成后自动重绘）
+     * 标记与同一时间桶内的K线匹配，默认 {@link TimeAxis#DAY} 按自然日匹配；
+     * 分钟线或小时线应传入对应桶长度的时间轴，例如 {@code TimeAxis.of(5, TimeUnit.MINUTES)}，
+     * 数据适配器的X值也应按同一时间轴换算
+     *
+     * @param timeAxis 时间轴
+     */
+    public void setTimeAxis(TimeAxis timeAxis) {
+        snapshotStore.setTimeAxis(timeAxis);
+    }
+
+    /**
+     * 切换K线周期（后台聚合，完成后自动重绘）
+     * 标记和趋势区间映射到聚合后的K线上，同一周期内有多个标记时显示最后添加的一个。
+     * 切换后应使用 {@link #getRenderSnapshot()} 中聚合后的序列重新生成图表的K线数据；
+     * 每个周期的聚合结果会缓存，数据未变化时来回切换不会重新聚合
+     *
+     * @param timeframe    目标周期，{@link Timeframe#BASE} 表示使用原始K线
+     * @param indexXValues 聚合K线的X值是否使用序号（图表以序号作为X值时为true，以时间作为X值时为false）
+     */
+    public void setTimeframe(Timeframe timeframe, boolean indexXValues) {
+        snapshotStore.setTimeframe(timeframe, indexXValues);
+    }
+
+    /**
+     * 设置标记数据（后台建立索引，完成后自动重绘）
      *
      * @param markers 标记数据列表
      */
     public void setMarkers(List<MarkerData> markers) {
-        markerRenderer.setMarkers(markers);
+        snapshotStore.setMarkers(markers);
+    }
+
+    /**
+     * 追加标记数据，用于分页加载标记历史
+     * 可配合 {@link MarkerFeedParser} 在工作线程中解析后直接调用
+     *
+     * @param markers 新的标记数据
+     */
+    public void addMarkers(List<MarkerData> markers) {
+        snapshotStore.addMarkers(markers);
     }
 
     /**
-     * 设置趋势区间数据
+     * 设置趋势区间数据（后台解析，完成后自动重绘）
      *
      * @param trendRegions 趋势区间数据列表
      */
     public void setTrendRegions(List<TrendRegion> trendRegions) {
-        trendRegionRenderer.setTrendRegions(trendRegions);
+        snapshotStore.setTrendRegions(trendRegions);
     }
 
     /**
-     * 从JSON数据设置趋势区间
+     * 从JSON数据设置趋势区间（解析和构建都在后台线程完成，完成后自动重绘）
      *
      * @param jsonData JSON格式的趋势区间数据
      */
     public void setTrendRegionsFromJson(String jsonData) {
-        List<TrendRegion> regions = TrendRegionParser.parseFromJson(jsonData);
-        setTrendRegions(regions);
+        snapshotStore.setTrendRegionsFromJson(jsonData);
+    }
+
+    /**
+     * 在客户端检测趋势区间（后台检测，完成后自动重绘）
+     * 检测出的区间与 {@link #setTrendRegions(List)} 等方法设置的区间一起显示，ID以 {@link TrendDetector#ID_PREFIX} 开头；
+     * 追加或更新最后一根K线时只从变化的K线继续检测，实时行情不需要再向服务端请求区间。
+     * 清除趋势区间不会停止检测，传入null时停止检测并移除检测出的区间
+     *
+     * @param detector 趋势检测器，交给管理器后不应再直接使用
+     */
+    public void setTrendDetector(TrendDetector detector) {
+        snapshotStore.setTrendDetector(detector);
+    }
+
+    /**
+     * 设置成交量图层
+     * 成交量柱绘制在K线图内容区域底部，直接读取K线序列的成交量列，不需要再单独使用一个成交量图表；
+     * K线需要为成交量区域留出空间，例如调低左轴的最小值
+     *
+     * @param config 成交量图层配置，为null时关闭成交量图层
+     */
+    public void setVolumeLayer(VolumeLayerConfig config) {
+        if (config == null) {
+            volumeLayerRenderer = null;
+        } else if (volumeLayerRenderer == null) {
+            volumeLayerRenderer = new VolumeLayerRenderer(context, chart, config);
+        } else {
+            volumeLayerRenderer.setConfig(config);
+        }
+        customRenderer.setVolumeLayerRenderer(volumeLayerRenderer);
+        snapshotStore.invalidate();
+    }
+
+    /**
+     * 创建与当前K线数据绑定的空区间索引
+     * 可在工作线程中用 {@link TrendRegionParser#parse(java.io.InputStream, TrendRegionIndex)} 填充，
+     * 完成后调用 {@link #setTrendRegionIndex(TrendRegionIndex)}
+     *
+     * @return 空的区间索引
+     */
+    public TrendRegionIndex newTrendRegionIndex() {
+        return snapshotStore.newTrendRegionIndex();
+    }
+
+    /**
+     * 设置已解析的趋势区间索引，索引交给管理器后不应再修改
+     *
+     * @param regionIndex 趋势区间索引
+     */
+    public void setTrendRegionIndex(TrendRegionIndex regionIndex) {
+        snapshotStore.setTrendRegionIndex(regionIndex);
+    }
+
+    /**
+     * 将当前的K线序列、标记和趋势区间写入快照文件
+     * 下次启动时可通过 {@link #restoreSnapshot(File)} 直接恢复，不再重新解析和建立索引
+     *
+     * 写入的是当前已发布的渲染快照，可在工作线程中调用
+     *
+     * @param file 快照文件
+     * @throws IOException 写入失败，或还没有设置K线数据
+     */
+    public void writeSnapshot(File file) throws IOException {
+        snapshotStore.write(file);
+    }
+
+    /**
+     * 从快照文件恢复标记和趋势区间
+     * 读取在后台线程完成，完成后自动重绘带标记的首帧；文件不存在或格式不符时保持当前状态并输出警告日志。
+     * 之后调用 {@link #setKLineData(List)} 等方法时按新数据重新建立索引
+     *
+     * @param file 快照文件
+     */
+    public void restoreSnapshot(File file) {
+        snapshotStore.restore(file);
+    }
+
+    /**
+     * 添加单个趋势区间
+     * 只解析该区间覆盖的K线，其他区间的索引和上边沿保持不变
+     *
+     * @param region 趋势区间，已存在相同ID的区间时替换
+     */
+    public void addTrendRegion(TrendRegion region) {
+        snapshotStore.addTrendRegion(region);
+    }
+
+    /**
+     * 按ID更新单个趋势区间（例如未结束区间的结束日期被确定）
+     * 只重新解析该区间，其他区间的索引和上边沿保持不变
+     *
+     * @param region 新的趋势区间数据，不存在相同ID的区间时添加
+     */
+    public void updateTrendRegion(TrendRegion region) {
+        snapshotStore.updateTrendRegion(region);
+    }
+
+    /**
+     * 按ID移除单个趋势区间
+     *
+     * @param regionId 区间ID，见 {@link TrendRegion#getId()}
+     */
+    public void removeTrendRegion(String regionId) {
+        snapshotStore.removeTrendRegion(regionId);
     }
 
     /**
@@ -134,39 +332,64 @@ public class KLineMarkerManager<T> {
      * @param marker 标记数据
      */
     public void addMarker(MarkerData marker) {
-        // 这里可以实现添加单个标记的逻辑
-        // 为了简化，建议使用setMarkers方法
+        appendMarker(marker);
     }
 
     /**
      * 清除所有标记
      */
     public void clearMarkers() {
-        markerRenderer.setMarkers(null);
-        chart.invalidate();
+        snapshotStore.setMarkers(null);
     }
 
     /**
      * 清除所有趋势区间
      */
     public void clearTrendRegions() {
-        trendRegionRenderer.setTrendRegions(null);
-        chart.invalidate();
+        snapshotStore.setTrendRegions(null);
     }
 
     /**
      * 清除所有标记和趋势区间
      */
     public void clearAll() {
-        clearMarkers();
-        clearTrendRegions();
+        batch(() -> {
+            clearMarkers();
+            clearTrendRegions();
+        });
+    }
+
+    /**
+     * 批量修改：mutations 中的所有修改（K线、标记、趋势区间、刷新等）合并为一次后台构建和一次重绘
+     * 可以嵌套，最外层结束后才开始构建
+     *
+     * @param mutations 依次执行的修改
+     */
+    public void batch(Runnable mutations) {
+        snapshotStore.beginBatch();
+        try {
+            mutations.run();
+        } finally {
+            snapshotStore.endBatch();
+        }
     }
 
     /**
      * 刷新图表显示
+     * 在下一帧重绘，同一帧内的多次刷新以及与正在等待构建的修改只重绘一次
      */
     public void refresh() {
-        chart.invalidate();
+        snapshotStore.invalidate();
+    }
+
+    /**
+     * 获取当前发布的渲染快照（高级用法）
+     * 快照发布后不再修改，可在任意线程读取其中的K线序列和趋势区间
+     *
+     * @return 当前渲染快照
+     */
+    public RenderSnapshot getRenderSnapshot() {
+        return snapshotStore.getSnapshot();
     }
 
     /**
@@ -183,47 +406,77 @@ public class KLineMarkerManager<T> {
      *
      * @return 趋势区间渲染器实例
      */
-    public TrendRegionRenderer<T> getTrendRegionRenderer() {
+    public TrendRegionRenderer getTrendRegionRenderer() {
         return trendRegionRenderer;
     }
 
+    /**
+     * 获取成交量图层渲染器（高级用法）
+     *
+     * @return 成交量图层渲染器，未启用成交量图层时为null
+     */
+    public VolumeLayerRenderer getVolumeLayerRenderer() {
+        return volumeLayerRenderer;
+    }
+
     /**
      * 自定义图表渲染器
-     * 在原有渲染基础上添加趋势区间背景和标记绘制功能
+     * 在原有渲染基础上添加趋势区间背景、成交量图层和标记绘制功能
      */
     private static class CustomCombinedChartRenderer extends CombinedChartRenderer {
         private final KLineMarkerRenderer<?> markerRenderer;
-        private final TrendRegionRenderer<?> trendRegionRenderer;
+        private final TrendRegionRenderer trendRegionRenderer;
+        private final RenderSnapshotStore<?> snapshotStore;
+        private VolumeLayerRenderer volumeLayerRenderer;
 
         public CustomCombinedChartRenderer(CombinedChart chart,
                                            com.github.mikephil.charting.animation.ChartAnimator animator,
                                            ViewPortHandler viewPortHandler,
                                            KLineMarkerRenderer<?> markerRenderer,
-                                           TrendRegionRenderer<?> trendRegionRenderer) {
+                                           TrendRegionRenderer trendRegionRenderer,
+                                           RenderSnapshotStore<?> snapshotStore) {
             super(chart, animator, viewPortHandler);
             this.markerRenderer = markerRenderer;
             this.trendRegionRenderer = trendRegionRenderer;
+            this.snapshotStore = snapshotStore;
+        }
+
+        void setVolumeLayerRenderer(VolumeLayerRenderer volumeLayerRenderer) {
+            this.volumeLayerRenderer = volumeLayerRenderer;
         }
 
         @Override
         public void drawData(Canvas c) {
+            // 每帧只读取一次快照，趋势区间和标记使用同一版本的数据
+            RenderSnapshot snapshot = snapshotStore.getSnapshot();
+
             // 先绘制趋势区间背景（最底层）
             if (trendRegionRenderer != null) {
                 try {
-                    trendRegionRenderer.drawTrendRegions(c);
+                    trendRegionRenderer.drawTrendRegions(c, snapshot);
                 } catch (Exception e) {
                     // 防止趋势区间绘制错误影响主图表
                     android.util.Log.w("ChartRenderer", "Error drawing trend regions", e);
                 }
             }
 
+            // 成交量图层在K线下方
+            if (volumeLayerRenderer != null) {
+                try {
+                    volumeLayerRenderer.drawVolumes(c, snapshot);
+                } catch (Exception e) {
+                    // 防止成交量绘制错误影响主图表
+                    android.util.Log.w("ChartRenderer", "Error drawing volume layer", e);
+                }
+            }
+
             // 再绘制原有的图表数据（K线等）
             super.drawData(c);
 
             // 最后绘制标记（在图表数据之上）
             if (markerRenderer != null) {
                 try {
-                    markerRenderer.drawMarkers(c);
+                    markerRenderer.drawMarkers(c, snapshot);
                 } catch (Exception e) {
                     // 防止标记绘制错误影响主图表
                     android.util.Log.w("ChartRenderer", "Error drawing markers", e);
@@ -241,6 +494,7 @@ public class KLineMarkerManager<T> {
         private KLineDataAdapter<T> dataAdapter;
         private MarkerConfig markerConfig;
         private TrendRegionConfig trendRegionConfig;
+        private VolumeLayerConfig volumeLayerConfig;
 
         public Builder<T> context(Context context) {
             this.context = context;
@@ -267,6 +521,14 @@ public class KLineMarkerManager<T> {
             return this;
         }
 
+        /**
+         * 启用成交量图层，参见 {@link KLineMarkerManager#setVolumeLayer(VolumeLayerConfig)}
+         */
+        public Builder<T> volumeLayer(VolumeLayerConfig config) {
+            this.volumeLayerConfig = config;
+            return this;
+        }
+
         // 保持向后兼容性
         public Builder<T> config(MarkerConfig config) {
             this.markerConfig = config;
@@ -277,7 +539,12 @@ public class KLineMarkerManager<T> {
             if (context == null || chart == null || dataAdapter == null) {
                 throw new IllegalArgumentException("Context, Chart and DataAdapter are required");
             }
-            return new KLineMarkerManager<>(context, chart, dataAdapter, markerConfig, trendRegionConfig);
+            KLineMarkerManager<T> manager = new KLineMarkerManager<>(context, chart, dataAdapter,
+                    markerConfig, trendRegionConfig);
+            if (volumeLayerConfig != null) {
+                manager.setVolumeLayer(volumeLayerConfig);
+            }
+            return manager;
         }
     }
 } 
\ No newline at end of file
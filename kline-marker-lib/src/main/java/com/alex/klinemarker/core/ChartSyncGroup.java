@@ -0,0 +1,276 @@
+package com.alex.klinemarker.core;
+
+import android.graphics.Matrix;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+
+import com.github.mikephil.charting.charts.BarLineChartBase;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
+import com.github.mikephil.charting.utils.ViewPortHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图表视口同步组
+ * 组内任一图表平移或缩放后，在下一帧的 Choreographer 回调中把它的水平缩放和平移复制到其他图表，
+ * 每个图表每帧最多重绘一次；同步本身不会再次触发同步。
+ * 手势结束后仍会逐帧检查视口，惯性滑动和双击缩放动画期间保持同步，视口不再变化时停止。
+ * <p>
+ * 只同步X方向，各图表的Y轴保持独立。组内图表应使用相同的左右偏移和X轴范围（例如K线图和成交量图）。
+ * <p>
+ * 加入同步组时会包装图表当前的手势监听器，之后再设置手势监听器会替换同步监听，应先设置监听器再加入同步组。
+ * 只能在主线程使用。
+ */
+public final class ChartSyncGroup {
+
+    // 连续这么多帧视口都没有变化时停止检查；惯性滑动在绘制阶段才开始，手势结束后的第一帧可能还没有变化
+    private static final int IDLE_FRAMES_BEFORE_STOP = 2;
+
+    private final List<Member> members = new ArrayList<>();
+    private final Choreographer.FrameCallback frameCallback = this::doFrame;
+
+    // 最近一次发生手势的图表，同一帧内多个图表都有变化时以它为准
+    private Member pendingSource;
+    private boolean frameScheduled;
+    private int idleFrames;
+    // 正在把视口复制到其他图表
+    private boolean syncing;
+
+    private final float[] sourceValues = new float[9];
+    private final float[] targetValues = new float[9];
+
+    /**
+     * 将图表加入同步组，图表当前的视口作为它的初始状态
+     */
+    public void add(BarLineChartBase<?> chart) {
+        if (find(chart) != null) {
+            return;
+        }
+        Member member = new Member(chart, chart.getOnChartGestureListener());
+        member.record();
+        members.add(member);
+        chart.setOnChartGestureListener(member.listener);
+    }
+
+    /**
+     * 将图表移出同步组，并恢复加入时的手势监听器
+     */
+    public void remove(BarLineChartBase<?> chart) {
+        Member member = find(chart);
+        if (member == null) {
+            return;
+        }
+        members.remove(member);
+        if (pendingSource == member) {
+            pendingSource = null;
+        }
+        // 图表的监听器在加入之后被替换时保留新的监听器
+        if (chart.getOnChartGestureListener() == member.listener) {
+            chart.setOnChartGestureListener(member.delegate);
+        }
+        if (members.isEmpty()) {
+            cancelFrame();
+        }
+    }
+
+    /**
+     * 移出全部图表并停止逐帧检查，页面销毁时调用
+     */
+    public void clear() {
+        while (!members.isEmpty()) {
+            remove(members.get(members.size() - 1).chart);
+        }
+    }
+
+    /**
+     * 以指定图表的视口为准同步其他图表，用于代码中直接修改视口之后
+     * 视口的修改需要已经生效（{@code moveViewToX} 等方法会延迟到下一次布局后执行）
+     */
+    public void requestSync(BarLineChartBase<?> chart) {
+        Member member = find(chart);
+        if (member != null) {
+            onViewportChanged(member);
+        }
+    }
+
+    private void onViewportChanged(Member member) {
+        if (syncing) {
+            return;
+        }
+        pendingSource = member;
+        idleFrames = 0;
+        if (!frameScheduled) {
+            scheduleFrame();
+        }
+    }
+
+    private void cancelFrame() {
+        if (frameScheduled) {
+            frameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+        }
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        Member source = pendingSource != null && pendingSource.hasChanged() ? pendingSource : null;
+        pendingSource = null;
+        if (source == null) {
+            for (Member member : members) {
+                if (member.hasChanged()) {
+                    source = member;
+                    break;
+                }
+            }
+        }
+        if (source == null) {
+            // 视口不再变化，停止逐帧检查
+            if (++idleFrames < IDLE_FRAMES_BEFORE_STOP) {
+                scheduleFrame();
+            }
+            return;
+        }
+        idleFrames = 0;
+
+        syncing = true;
+        try {
+            source.chart.getViewPortHandler().getMatrixTouch().getValues(sourceValues);
+            source.record();
+            for (Member member : members) {
+                if (member != source) {
+                    member.copyFrom(sourceValues);
+                }
+            }
+        } finally {
+            syncing = false;
+        }
+
+        // 惯性滑动和缩放动画在手势回调之外继续改变视口，下一帧继续检查
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        frameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    private Member find(BarLineChartBase<?> chart) {
+        for (Member member : members) {
+            if (member.chart == chart) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 组内的一个图表
+     */
+    private final class Member {
+        final BarLineChartBase<?> chart;
+        final OnChartGestureListener delegate;
+        final OnChartGestureListener listener;
+
+        // 上次同步后该图表的水平缩放和平移，用于判断视口是否变化
+        float scaleX;
+        float transX;
+
+        Member(BarLineChartBase<?> chart, OnChartGestureListener delegate) {
+            this.chart = chart;
+            this.delegate = delegate;
+            this.listener = new SyncListener(this, delegate);
+        }
+
+        boolean hasChanged() {
+            ViewPortHandler handler = chart.getViewPortHandler();
+            return handler.getScaleX() != scaleX || handler.getTransX() != transX;
+        }
+
+        void record() {
+            ViewPortHandler handler = chart.getViewPortHandler();
+            scaleX = handler.getScaleX();
+            transX = handler.getTransX();
+        }
+
+        /**
+         * 复制水平缩放和平移后重绘一次，记录限制范围后的实际结果，避免下一帧被当作新的变化
+         */
+        void copyFrom(float[] values) {
+            ViewPortHandler handler = chart.getViewPortHandler();
+            Matrix matrix = handler.getMatrixTouch();
+            matrix.getValues(targetValues);
+            if (targetValues[Matrix.MSCALE_X] == values[Matrix.MSCALE_X]
+                    && targetValues[Matrix.MTRANS_X] == values[Matrix.MTRANS_X]) {
+                record();
+                return;
+            }
+            targetValues[Matrix.MSCALE_X] = values[Matrix.MSCALE_X];
+            targetValues[Matrix.MTRANS_X] = values[Matrix.MTRANS_X];
+            matrix.setValues(targetValues);
+            handler.refresh(matrix, chart, true);
+            record();
+        }
+    }
+
+    /**
+     * 在原手势监听器的基础上通知同步组
+     */
+    private final class SyncListener implements OnChartGestureListener {
+        private final Member member;
+        private final OnChartGestureListener delegate;
+
+        SyncListener(Member member, OnChartGestureListener delegate) {
+            this.member = member;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onChartTranslate(MotionEvent me, float dX, float dY) {
+            if (delegate != null) delegate.onChartTranslate(me, dX, dY);
+            onViewportChanged(member);
+        }
+
+        @Override
+        public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+            if (delegate != null) delegate.onChartScale(me, scaleX, scaleY);
+            onViewportChanged(member);
+        }
+
+        @Override
+        public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            if (delegate != null) delegate.onChartGestureStart(me, lastPerformedGesture);
+        }
+
+        @Override
+        public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            if (delegate != null) delegate.onChartGestureEnd(me, lastPerformedGesture);
+            // 手势结束后可能还有惯性滑动
+            onViewportChanged(member);
+        }
+
+        @Override
+        public void onChartLongPressed(MotionEvent me) {
+            if (delegate != null) delegate.onChartLongPressed(me);
+        }
+
+        @Override
+        public void onChartDoubleTapped(MotionEvent me) {
+            if (delegate != null) delegate.onChartDoubleTapped(me);
+            // 双击缩放
+            onViewportChanged(member);
+        }
+
+        @Override
+        public void onChartSingleTapped(MotionEvent me) {
+            if (delegate != null) delegate.onChartSingleTapped(me);
+        }
+
+        @Override
+        public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
+            if (delegate != null) delegate.onChartFling(me1, me2, velocityX, velocityY);
+            onViewportChanged(member);
+        }
+    }
+}
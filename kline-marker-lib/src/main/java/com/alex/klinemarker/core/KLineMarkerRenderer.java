@@ -7,6 +7,7 @@ import android.graphics.Paint;
 import android.util.Log;
 
 import com.alex.klinemarker.data.KLineDataAdapter;
+import com.alex.klinemarker.data.KLineSeries;
 import com.alex.klinemarker.data.MarkerData;
 import com.alex.klinemarker.data.MarkerShape;
 import com.github.mikephil.charting.charts.CombinedChart;
@@ -15,11 +16,6 @@ import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.highlight.Highlight;
 import com.github.mikephil.charting.utils.MPPointF;
 
-import java.text.SimpleDateFormat;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 
 /**
  * K线标记渲染器
@@ -35,29 +31,23 @@ public class KLineMarkerRenderer<T> implements IMarker {
     private final KLineDataAdapter<T> dataAdapter;
     private final MarkerRendererFactory rendererFactory;
 
-    // 绘制相关的Paint对象
+    // 绘制相关的Paint对象（绘制时只修改属性，不逐帧创建）
     private Paint dashLinePaint;
     private Paint linePaint;
-
-    // 数据
-    private List<T> klineData;
-    private List<MarkerData> markers;
-    private final Map<String, MarkerData> dateToMarkerMap;
+    private Paint compressedLinePaint;
+    private Paint solidLinePaint;
 
     // 屏幕密度
     private final float density;
 
-    // 性能优化：复用对象
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-
     public KLineMarkerRenderer(Context context, CombinedChart chart,
                                KLineDataAdapter<T> dataAdapter) {
         this.context = context;
         this.chart = chart;
         this.dataAdapter = dataAdapter;
         this.density = context.getResources().getDisplayMetrics().density;
-        this.dateToMarkerMap = new HashMap<>();
-        this.rendererFactory = new MarkerRendererFactory(context);
+        // 内置的形状渲染器由同一屏幕密度的所有图表共享，这里只保存本图表注册的自定义渲染器
+        this.rendererFactory = new MarkerRendererFactory(MarkerResourcePool.get(context).getRendererFactory());
 
         // 初始化Paint对象
         initPaints();
@@ -78,47 +68,29 @@ public class KLineMarkerRenderer<T> implements IMarker {
         linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         linePaint.setColor(0xFF666666); // 灰色引出线
         linePaint.setStrokeWidth(1.5f * density);
-    }
 
-    /**
-     * 设置K线数据
-     */
-    public void setKLineData(List<T> klineData) {
-        this.klineData = klineData;
-    }
+        // 虚线被压缩时使用的画笔，颜色在绘制时设置
+        compressedLinePaint = new Paint(dashLinePaint);
+        compressedLinePaint.setStrokeWidth(dashLinePaint.getStrokeWidth() * 1.5f);
 
-    /**
-     * 设置标记数据
-     */
-    public void setMarkers(List<MarkerData> markers) {
-        this.markers = markers;
-        updateDateToMarkerMap();
-    }
-
-    /**
-     * 更新日期到标记的映射关系
-     */
-    private void updateDateToMarkerMap() {
-        dateToMarkerMap.clear();
-        if (markers != null) {
-            for (MarkerData marker : markers) {
-                if (marker.getDate() != null) {
-                    String dateStr = dateFormat.format(marker.getDate());
-                    dateToMarkerMap.put(dateStr, marker);
-                }
-            }
-        }
+        // 纯文字标记的斜线画笔
+        solidLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        solidLinePaint.setStyle(Paint.Style.STROKE);
     }
 
     /**
      * 绘制所有标记
+     *
+     * @param snapshot 本帧使用的渲染快照，绘制期间只读取不修改
      */
-    public void drawMarkers(Canvas canvas) {
-        if (klineData == null || markers == null || markers.isEmpty()) {
+    public void drawMarkers(Canvas canvas, RenderSnapshot snapshot) {
+        KLineSeries series = snapshot.getSeries();
+        MarkerIndex markerIndex = snapshot.getMarkerIndex();
+        if (series == null || markerIndex == null || markerIndex.getMarkerCount() == 0) {
             return;
         }
 
-        if (DEBUG) Log.d(TAG, "drawMarkers called, markers size: " + markers.size());
+        if (DEBUG) Log.d(TAG, "drawMarkers called, markers size: " + markerIndex.getMarkerCount());
 
         // 获取图表可见区域的时间范围
         float minTime = chart.getLowestVisibleX();
@@ -145,30 +117,69 @@ public class KLineMarkerRenderer<T> implements IMarker {
             Log.d(TAG, String.format("安全区域: safeTopY=%.1f, safeBottomY=%.1f", safeTopY, safeBottomY));
         }
 
-        // 遍历K线数据，查找对应的标记
-        for (int i = 0; i < klineData.size(); i++) {
-            T klineEntry = klineData.get(i);
-            float xValue = dataAdapter.getXValue(klineEntry);
+        // 同一根K线上的多个标记沿远离K线的方向依次堆叠
+        float stackSpacing = markerSizePx + 2f * density;
+
+        // 二分查找可见范围 [first, end)，只遍历可见的K线
+        int firstBar = series.lowerBoundX(minTime);
+        int endBar = series.lowerBoundX(Math.nextUp(maxTime));
+        for (int i = firstBar; i < endBar; i++) {
+            float xValue = series.getXValue(i);
 
-            // 检查是否在可见范围内
-            if (xValue < minTime || xValue > maxTime) {
+            // 按K线索引查找对应的标记
+            if (markerIndex.getMarkerIndexAt(i) < 0) {
                 continue;
             }
+            int start = markerIndex.getMarkerRunStart(i);
+            int end = markerIndex.getMarkerRunEnd(i);
+
+            // 先统计上方和下方各有几个标记，用于整组贴边时向内收缩
+            int aboveCount = 0;
+            int belowCount = 0;
+            for (int k = start; k < end; k++) {
+                if (isMarkerAbove(markerIndex.getMarker(markerIndex.getRunMarkerIndex(k)), i)) {
+                    aboveCount++;
+                } else {
+                    belowCount++;
+                }
+            }
 
-            // 查找对应的标记
-            String dateStr = dateFormat.format(dataAdapter.getDate(klineEntry));
-            MarkerData marker = dateToMarkerMap.get(dateStr);
-
-            if (marker != null) {
-                drawSingleMarker(canvas, klineEntry, marker, i, safeTopY, safeBottomY, safeLeftX, safeRightX);
+            // 上方和下方的标记分别计数，按添加顺序由近到远排列
+            int aboveLevel = 0;
+            int belowLevel = 0;
+            for (int k = start; k < end; k++) {
+                MarkerData marker = markerIndex.getMarker(markerIndex.getRunMarkerIndex(k));
+                boolean above = isMarkerAbove(marker, i);
+                int level = above ? aboveLevel++ : belowLevel++;
+                int count = above ? aboveCount : belowCount;
+                drawSingleMarker(canvas, series, marker, i, level * stackSpacing, (count - 1) * stackSpacing,
+                        safeTopY, safeBottomY, safeLeftX, safeRightX);
             }
         }
     }
 
+    /**
+     * 标记是否绘制在K线上方，AUTO按K线索引的奇偶性错开
+     */
+    private static boolean isMarkerAbove(MarkerData marker, int index) {
+        switch (marker.getConfig().getPosition()) {
+            case BELOW:
+                return false;
+            case ABOVE:
+                return true;
+            default:
+                return index % 2 == 0;
+        }
+    }
+
     /**
      * 绘制单个标记
+     *
+     * @param stackOffset 堆叠偏移，同一侧的第一个标记为0；堆叠的标记不再绘制连接线
+     * @param stackExtent 同一侧整组堆叠的总偏移
      */
-    private void drawSingleMarker(Canvas canvas, T klineEntry, MarkerData marker, int index,
+    private void drawSingleMarker(Canvas canvas, KLineSeries series, MarkerData marker, int index,
+                                  float stackOffset, float stackExtent,
                                   float safeTopY, float safeBottomY, float safeLeftX, float safeRightX) {
 
         // 获取对应的渲染器
@@ -179,18 +190,21 @@ public class KLineMarkerRenderer<T> implements IMarker {
         }
 
         // 计算标记位置
-        MarkerRenderPosition position = calculateMarkerPosition(klineEntry, marker, index,
+        MarkerRenderPosition position = calculateMarkerPosition(series, marker, index, stackOffset, stackExtent,
                 safeTopY, safeBottomY, safeLeftX, safeRightX);
 
         // 绘制连接线
-        drawConnectionLine(canvas, position, marker);
+        if (stackOffset == 0) {
+            drawConnectionLine(canvas, position, marker);
+        }
 
         // 对于纯文字标记，需要计算引出线末端位置来放置文字
         if (marker.getConfig().getShape() == MarkerShape.NONE) {
             if (position.actualLineLength > 0) {
                 // 有引出线时，计算引出线末端位置
                 float angleRadians = (float) Math.toRadians(30); // 30度角
-                float actualDistance = Math.abs(position.markerScreenY - position.lineStartY);
+                // 堆叠的文字与第一个标记的引出线末端对齐
+                float actualDistance = Math.max(0, Math.abs(position.markerScreenY - position.lineStartY) - stackOffset);
                 float deltaX = actualDistance * (float) Math.cos(angleRadians);
 
                 // 引出线末端X坐标
@@ -210,12 +224,16 @@ public class KLineMarkerRenderer<T> implements IMarker {
 
     /**
      * 计算标记位置
+     *
+     * @param stackOffset 标记在同侧堆叠中的偏移
+     * @param stackExtent 同侧整组堆叠的总偏移（最后一个标记的偏移）
      */
-    private MarkerRenderPosition calculateMarkerPosition(T klineEntry, MarkerData marker, int index,
+    private MarkerRenderPosition calculateMarkerPosition(KLineSeries series, MarkerData marker, int index,
+                                                         float stackOffset, float stackExtent,
                                                          float safeTopY, float safeBottomY, float safeLeftX, float safeRightX) {
-        float xValue = dataAdapter.getXValue(klineEntry);
-        float high = dataAdapter.getHigh(klineEntry);
-        float low = dataAdapter.getLow(klineEntry);
+        float xValue = series.getXValue(index);
+        float high = series.getHigh(index);
+        float low = series.getLow(index);
 
         // 计算屏幕X坐标
         float screenX = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
@@ -226,6 +244,10 @@ public class KLineMarkerRenderer<T> implements IMarker {
                 context, marker.getConfig().getLineLength());
         float actualLineLength = originalLineLength;
 
+        // 整组堆叠标记都要留在安全区域内，第一个标记的边界相应向内收缩
+        float stackTopY = safeTopY + stackExtent;
+        float stackBottomY = safeBottomY - stackExtent;
+
         float lineStartY;
         float markerScreenY;
         boolean isMarkerOnTop;
@@ -239,8 +261,8 @@ public class KLineMarkerRenderer<T> implements IMarker {
                 markerScreenY = lineStartY + originalLineLength;
 
                 // 检查是否超出底部边界
-                if (markerScreenY > safeBottomY) {
-                    markerScreenY = safeBottomY;
+                if (markerScreenY > stackBottomY) {
+                    markerScreenY = stackBottomY;
                     // 动态调整虚线长度
                     actualLineLength = Math.max(0, markerScreenY - lineStartY);
                 }
@@ -254,8 +276,8 @@ public class KLineMarkerRenderer<T> implements IMarker {
                 markerScreenY = lineStartY - originalLineLength;
 
                 // 检查是否超出顶部边界
-                if (markerScreenY < safeTopY) {
-                    markerScreenY = safeTopY;
+                if (markerScreenY < stackTopY) {
+                    markerScreenY = stackTopY;
                     // 动态调整虚线长度
                     actualLineLength = Math.max(0, lineStartY - markerScreenY);
                 }
@@ -271,8 +293,8 @@ public class KLineMarkerRenderer<T> implements IMarker {
                     markerScreenY = lineStartY - originalLineLength;
 
                     // 检查是否超出顶部边界
-                    if (markerScreenY < safeTopY) {
-                        markerScreenY = safeTopY;
+                    if (markerScreenY < stackTopY) {
+                        markerScreenY = stackTopY;
                         actualLineLength = Math.max(0, lineStartY - markerScreenY);
                     }
                     isMarkerOnTop = true;
@@ -283,8 +305,8 @@ public class KLineMarkerRenderer<T> implements IMarker {
                     markerScreenY = lineStartY + originalLineLength;
 
                     // 检查是否超出底部边界
-                    if (markerScreenY > safeBottomY) {
-                        markerScreenY = safeBottomY;
+                    if (markerScreenY > stackBottomY) {
+                        markerScreenY = stackBottomY;
                         actualLineLength = Math.max(0, markerScreenY - lineStartY);
                     }
                     isMarkerOnTop = false;
@@ -292,6 +314,9 @@ public class KLineMarkerRenderer<T> implements IMarker {
                 break;
         }
 
+        // 连接线长度按第一个标记计算，堆叠的标记在其基础上继续远离K线
+        markerScreenY += isMarkerOnTop ? -stackOffset : stackOffset;
+
         return new MarkerRenderPosition(screenX, markerScreenY, lineStartY, isMarkerOnTop, actualLineLength);
     }
 
@@ -326,8 +351,7 @@ public class KLineMarkerRenderer<T> implements IMarker {
 
         if (isCompressed && position.actualLineLength > 0) {
             // 虚线被压缩时，使用更粗的线条以增强视觉效果
-            Paint compressedLinePaint = new Paint(dashLinePaint);
-            compressedLinePaint.setStrokeWidth(dashLinePaint.getStrokeWidth() * 1.5f);
+            compressedLinePaint.setColor(lineColor);
             compressedLinePaint.setAlpha(200); // 稍微降低透明度
             canvas.drawLine(position.screenX, position.lineStartY, position.screenX, position.markerScreenY, compressedLinePaint);
         } else if (position.actualLineLength > 0) {
@@ -356,8 +380,6 @@ public class KLineMarkerRenderer<T> implements IMarker {
         }
 
         // 使用更细的实线画笔
-        Paint solidLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        solidLinePaint.setStyle(Paint.Style.STROKE);
         solidLinePaint.setStrokeWidth(density);
         solidLinePaint.setColor(marker.getConfig().getLineColor());
 
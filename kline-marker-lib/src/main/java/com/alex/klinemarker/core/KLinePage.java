@@ -0,0 +1,54 @@
+package com.alex.klinemarker.core;
+
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.TimeAxis;
+
+import java.util.List;
+
+/**
+ * 分页加载的一页K线
+ * 页内数据在加载时展开为列式序列；K线到标记的映射按页缓存，标记不变时窗口变化无需重新匹配
+ */
+final class KLinePage<T> {
+
+    private final int number;
+    private final List<T> bars;
+    private final KLineSeries series;
+
+    // 以下字段只在快照构建线程访问
+    private int[] barMarkers;
+    private int markerGeneration = -1;
+
+    KLinePage(int number, List<T> bars, KLineSeries series) {
+        this.number = number;
+        this.bars = bars;
+        this.series = series;
+    }
+
+    /**
+     * 页号，0为最新一页，越大越早
+     */
+    int getNumber() {
+        return number;
+    }
+
+    List<T> getBars() {
+        return bars;
+    }
+
+    KLineSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * 页内每根K线对应的标记位置，标记或时间轴变化时（版本递增）重新匹配
+     */
+    int[] getBarMarkers(List<MarkerData> markers, TimeAxis timeAxis, int generation) {
+        if (barMarkers == null || markerGeneration != generation) {
+            barMarkers = MarkerIndex.mapBars(series, timeAxis, markers);
+            markerGeneration = generation;
+        }
+        return barMarkers;
+    }
+}
@@ -0,0 +1,539 @@
+package com.alex.klinemarker.core;
+
+import android.util.Log;
+
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.LineLength;
+import com.alex.klinemarker.data.MarkerConfig;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.MarkerPosition;
+import com.alex.klinemarker.data.MarkerShape;
+import com.alex.klinemarker.data.TimeAxis;
+import com.alex.klinemarker.data.TrendRegion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 标记和趋势区间的二进制快照
+ * 保存库内部已解析的状态：K线时间和价格列、标记列、样式表、K线到标记的映射、区间索引范围和平滑后的上边沿。
+ * 读取时通过 {@link MappedByteBuffer} 按列批量读入基本类型数组，不为每条记录创建对象；
+ * 标记对象在首次绘制时才创建。
+ * <p>
+ * 文件格式（小端序，各段按8字节对齐）：
+ * <pre>
+ * 文件头    magic, version, barCount, markerCount, styleCount, stringCount,
+ *          regionCount, edgeSmoothWindow, edgeValueCount
+ * K线列    long[bar] 时间, float[bar] x/开/高/低/收/量
+ * 字符串表  int[string + 1] 字节偏移, UTF-8字节
+ * 样式表    每个样式16个int
+ * 标记列    long[marker] 时间, int[marker] 样式, int[marker] 文本（字符串表下标，-1为空）
+ * 映射     int[bar] 每根K线对应的标记，-1为无
+ * 区间     int[region] 起止索引/类型/大小/ID/起止日期/更新时间, int[region + 1] 上边沿偏移, float[edge] 上边沿
+ * </pre>
+ * 自定义图标（Drawable）无法序列化，恢复后需要重新设置。
+ */
+public final class KLineSnapshot {
+
+    private static final String TAG = "KLineSnapshot";
+
+    private static final int MAGIC = 0x534D4C4B; // "KLMS"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 9;
+    private static final int STYLE_INTS = 16;
+    private static final int MAX_DASH_VALUES = 4;
+
+    private final KLineSeries series;
+    private final MarkerIndex markerIndex;
+    private final TrendRegionIndex regionIndex;
+    private final int edgeSmoothWindow;
+
+    private KLineSnapshot(KLineSeries series, MarkerIndex markerIndex,
+                          TrendRegionIndex regionIndex, int edgeSmoothWindow) {
+        this.series = series;
+        this.markerIndex = markerIndex;
+        this.regionIndex = regionIndex;
+        this.edgeSmoothWindow = edgeSmoothWindow;
+    }
+
+    public KLineSeries getSeries() {
+        return series;
+    }
+
+    public int getMarkerCount() {
+        return markerIndex.getMarkerCount();
+    }
+
+    public int getRegionCount() {
+        return regionIndex.size();
+    }
+
+    MarkerIndex getMarkerIndex() {
+        return markerIndex;
+    }
+
+    TrendRegionIndex getRegionIndex() {
+        return regionIndex;
+    }
+
+    /**
+     * 写入时区间上边沿使用的平滑窗口，0表示未平滑
+     */
+    int getEdgeSmoothWindow() {
+        return edgeSmoothWindow;
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 将渲染快照写入文件（渲染快照发布后不再修改，可在任意线程调用）
+     * 先写入临时文件再重命名，写入过程中失败不会破坏已有的快照
+     *
+     * @param edgeSmoothWindow 区间上边沿使用的平滑窗口，0表示未平滑
+     * @throws IOException 写入失败，或快照中还没有K线数据
+     */
+    public static void write(File file, RenderSnapshot snapshot, int edgeSmoothWindow) throws IOException {
+        MarkerIndex markers = snapshot.getMarkerIndex();
+        if (snapshot.getSeries() == null || markers == null) {
+            throw new IOException("No K-line data to snapshot");
+        }
+        KLineSeries series = snapshot.getSeries();
+        TrendRegionIndex regions = snapshot.getRegionIndex();
+        int barCount = series.size();
+        int markerCount = markers.getMarkerCount();
+        int regionCount = regions.size();
+
+        // 字符串表和样式表去重
+        StringTable strings = new StringTable();
+        Map<StyleKey, Integer> styleIds = new HashMap<>();
+        List<int[]> styles = new ArrayList<>();
+        long[] markerTimes = new long[markerCount];
+        int[] markerStyles = new int[markerCount];
+        int[] markerTexts = new int[markerCount];
+        for (int i = 0; i < markerCount; i++) {
+            MarkerData marker = markers.peekMarker(i);
+            markerTimes[i] = marker.getDate() != null ? marker.getDate().getTime() : KLineSeries.NO_TIME;
+            markerTexts[i] = strings.indexOf(marker.getText());
+
+            StyleKey key = new StyleKey(encodeStyle(marker.getConfig()));
+            Integer styleId = styleIds.get(key);
+            if (styleId == null) {
+                styleId = styles.size();
+                styles.add(key.values);
+                styleIds.put(key, styleId);
+            }
+            markerStyles[i] = styleId;
+        }
+
+        int[] regionIds = new int[regionCount];
+        int[] regionStarts = new int[regionCount];
+        int[] regionEnds = new int[regionCount];
+        int[] regionUpdates = new int[regionCount];
+        int[] edgeOffsets = new int[regionCount + 1];
+        for (int i = 0; i < regionCount; i++) {
+            TrendRegion region = regions.getRegion(i);
+            regionIds[i] = strings.indexOf(region.getId());
+            regionStarts[i] = strings.indexOf(region.getStart());
+            regionEnds[i] = strings.indexOf(region.getEnd());
+            regionUpdates[i] = strings.indexOf(region.getUpdatedAt());
+            RegionEdge edge = regions.getEdge(i);
+            edgeOffsets[i + 1] = edgeOffsets[i] + (edge != null ? edge.getEdgeValues().length : 0);
+        }
+        int edgeValueCount = edgeOffsets[regionCount];
+        byte[] stringBytes = strings.toBytes();
+
+        long size = align(HEADER_INTS * 4L)
+                + align(barCount * 8L) + 6 * align(barCount * 4L)
+                + align((strings.size() + 1) * 4L) + align(stringBytes.length)
+                + align(styles.size() * STYLE_INTS * 4L)
+                + align(markerCount * 8L) + 2 * align(markerCount * 4L)
+                + align(barCount * 4L)
+                + 8 * align(regionCount * 4L) + align((regionCount + 1) * 4L) + align(edgeValueCount * 4L);
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(size);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            putInts(buffer, new int[]{MAGIC, VERSION, barCount, markerCount, styles.size(), strings.size(),
+                    regionCount, edgeSmoothWindow, edgeValueCount});
+
+            long[] times = new long[barCount];
+            float[][] columns = new float[6][barCount];
+            for (int i = 0; i < barCount; i++) {
+                times[i] = series.getTime(i);
+                columns[0][i] = series.getXValue(i);
+                columns[1][i] = series.getOpen(i);
+                columns[2][i] = series.getHigh(i);
+                columns[3][i] = series.getLow(i);
+                columns[4][i] = series.getClose(i);
+                columns[5][i] = series.getVolume(i);
+            }
+            putLongs(buffer, times);
+            for (float[] column : columns) {
+                putFloats(buffer, column);
+            }
+
+            putInts(buffer, strings.offsets());
+            buffer.put(stringBytes);
+            alignPosition(buffer);
+
+            int[] styleTable = new int[styles.size() * STYLE_INTS];
+            for (int i = 0; i < styles.size(); i++) {
+                System.arraycopy(styles.get(i), 0, styleTable, i * STYLE_INTS, STYLE_INTS);
+            }
+            putInts(buffer, styleTable);
+
+            putLongs(buffer, markerTimes);
+            putInts(buffer, markerStyles);
+            putInts(buffer, markerTexts);
+            putInts(buffer, Arrays.copyOf(markers.getBarMarkers(), barCount));
+
+            int[] starts = new int[regionCount];
+            int[] ends = new int[regionCount];
+            int[] types = new int[regionCount];
+            int[] sizes = new int[regionCount];
+            float[] edgeValues = new float[edgeValueCount];
+            for (int i = 0; i < regionCount; i++) {
+                starts[i] = regions.getStartIndex(i);
+                ends[i] = regions.getEndIndex(i);
+                types[i] = regions.getRegion(i).getType().ordinal();
+                sizes[i] = regions.getRegion(i).getSize();
+                RegionEdge edge = regions.getEdge(i);
+                if (edge != null) {
+                    float[] values = edge.getEdgeValues();
+                    System.arraycopy(values, 0, edgeValues, edgeOffsets[i], values.length);
+                }
+            }
+            putInts(buffer, starts);
+            putInts(buffer, ends);
+            putInts(buffer, types);
+            putInts(buffer, sizes);
+            putInts(buffer, regionIds);
+            putInts(buffer, regionStarts);
+            putInts(buffer, regionEnds);
+            putInts(buffer, regionUpdates);
+            putInts(buffer, edgeOffsets);
+            putFloats(buffer, edgeValues);
+            buffer.force();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Failed to move snapshot into place: " + file);
+        }
+        Log.i(TAG, "Wrote snapshot: " + barCount + " bars, " + markerCount + " markers, "
+                + styles.size() + " styles, " + regionCount + " regions, " + size + " bytes");
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 读取快照文件（可在工作线程中调用）
+     *
+     * @throws IOException 文件不存在、版本不符或数据不完整
+     */
+    public static KLineSnapshot read(File file) throws IOException {
+        return read(file, TimeAxis.DAY);
+    }
+
+    /**
+     * 读取快照文件（可在工作线程中调用）
+     *
+     * @param timeAxis 之后追加的标记按该时间轴匹配K线，快照中已有的匹配结果直接使用
+     * @throws IOException 文件不存在、版本不符或数据不完整
+     */
+    public static KLineSnapshot read(File file, TimeAxis timeAxis) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return read(buffer, timeAxis);
+        } catch (RuntimeException e) {
+            // 截断或损坏的文件在读取时表现为 BufferUnderflowException 等运行时异常
+            throw new IOException("Corrupted snapshot: " + file, e);
+        }
+    }
+
+    private static KLineSnapshot read(ByteBuffer buffer, TimeAxis timeAxis) throws IOException {
+        int[] header = getInts(buffer, HEADER_INTS);
+        if (header[0] != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        if (header[1] != VERSION) {
+            throw new IOException("Unsupported snapshot version " + header[1]);
+        }
+        int barCount = header[2];
+        int markerCount = header[3];
+        int styleCount = header[4];
+        int stringCount = header[5];
+        int regionCount = header[6];
+        int edgeSmoothWindow = header[7];
+        int edgeValueCount = header[8];
+
+        KLineSeries series = KLineSeries.wrap(getLongs(buffer, barCount),
+                getFloats(buffer, barCount), getFloats(buffer, barCount), getFloats(buffer, barCount),
+                getFloats(buffer, barCount), getFloats(buffer, barCount), getFloats(buffer, barCount));
+
+        int[] stringOffsets = getInts(buffer, stringCount + 1);
+        byte[] stringBytes = new byte[stringOffsets[stringCount]];
+        buffer.get(stringBytes);
+        alignPosition(buffer);
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            strings[i] = new String(stringBytes, stringOffsets[i],
+                    stringOffsets[i + 1] - stringOffsets[i], StandardCharsets.UTF_8);
+        }
+
+        int[] styleTable = getInts(buffer, styleCount * STYLE_INTS);
+        MarkerConfig[] styles = new MarkerConfig[styleCount];
+        for (int i = 0; i < styleCount; i++) {
+            styles[i] = decodeStyle(styleTable, i * STYLE_INTS);
+        }
+
+        long[] markerTimes = getLongs(buffer, markerCount);
+        int[] markerStyles = getInts(buffer, markerCount);
+        int[] markerTexts = getInts(buffer, markerCount);
+        int[] barMarkers = getInts(buffer, barCount);
+        MarkerIndex markerIndex = MarkerIndex.fromColumns(series, timeAxis, barMarkers,
+                markerTimes, markerStyles, markerTexts, styles, strings);
+
+        int[] starts = getInts(buffer, regionCount);
+        int[] ends = getInts(buffer, regionCount);
+        int[] types = getInts(buffer, regionCount);
+        int[] sizes = getInts(buffer, regionCount);
+        int[] ids = getInts(buffer, regionCount);
+        int[] startDates = getInts(buffer, regionCount);
+        int[] endDates = getInts(buffer, regionCount);
+        int[] updates = getInts(buffer, regionCount);
+        int[] edgeOffsets = getInts(buffer, regionCount + 1);
+        float[] edgeValues = getFloats(buffer, edgeValueCount);
+
+        TrendRegion.TrendType[] trendTypes = TrendRegion.TrendType.values();
+        List<TrendRegion> regions = new ArrayList<>(regionCount);
+        RegionEdge[] edges = new RegionEdge[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            String start = stringAt(strings, startDates[i]);
+            TrendRegion region = new TrendRegion(start, stringAt(strings, endDates[i]), sizes[i],
+                    stringAt(strings, updates[i]), trendTypes[types[i]]);
+            // 与默认ID相同时不再保存显式ID
+            String id = stringAt(strings, ids[i]);
+            if (id != null && !id.equals(region.getId())) {
+                region.setId(id);
+            }
+            regions.add(region);
+
+            int edgeLength = edgeOffsets[i + 1] - edgeOffsets[i];
+            if (edgeLength > 0 && edgeLength == ends[i] - starts[i] + 1) {
+                float[] xValues = new float[edgeLength];
+                for (int j = 0; j < edgeLength; j++) {
+                    xValues[j] = series.getXValue(starts[i] + j);
+                }
+                edges[i] = new RegionEdge(xValues,
+                        Arrays.copyOfRange(edgeValues, edgeOffsets[i], edgeOffsets[i + 1]));
+            }
+        }
+        TrendRegionIndex regionIndex = new TrendRegionIndex();
+        regionIndex.restore(series, regions, starts, ends, edges);
+
+        Log.i(TAG, "Read snapshot: " + barCount + " bars, " + markerCount + " markers, "
+                + regionCount + " regions");
+        return new KLineSnapshot(series, markerIndex, regionIndex, edgeSmoothWindow);
+    }
+
+    // ==================== 样式编码 ====================
+
+    private static int[] encodeStyle(MarkerConfig config) {
+        int[] values = new int[STYLE_INTS];
+        values[0] = config.getShape().ordinal();
+        values[1] = config.getPosition().ordinal();
+        values[2] = (config.isShowText() ? 1 : 0)
+                | (config.isShowLine() ? 2 : 0)
+                | (config.isDashedLine() ? 4 : 0);
+        values[3] = config.getBackgroundColor();
+        values[4] = config.getTextColor();
+        values[5] = config.getLineColor();
+        values[6] = Float.floatToIntBits(config.getMarkerSize());
+        values[7] = Float.floatToIntBits(config.getTextSize());
+        values[8] = Float.floatToIntBits(config.getLineWidth());
+        values[9] = config.getLineLength().ordinal();
+        values[10] = Float.floatToIntBits(config.getAlpha());
+        values[11] = config.getZIndex();
+        float[] dash = config.getDashPattern();
+        int dashCount = dash != null ? Math.min(dash.length, MAX_DASH_VALUES) : -1;
+        values[12] = dashCount;
+        for (int i = 0; i < dashCount; i++) {
+            values[13 + i] = Float.floatToIntBits(dash[i]);
+        }
+        return values;
+    }
+
+    private static MarkerConfig decodeStyle(int[] table, int offset) {
+        MarkerConfig config = new MarkerConfig();
+        config.setShape(MarkerShape.values()[table[offset]]);
+        config.setPosition(MarkerPosition.values()[table[offset + 1]]);
+        int flags = table[offset + 2];
+        config.setShowText((flags & 1) != 0);
+        config.setShowLine((flags & 2) != 0);
+        config.setDashedLine((flags & 4) != 0);
+        config.setBackgroundColor(table[offset + 3]);
+        config.setTextColor(table[offset + 4]);
+        config.setLineColor(table[offset + 5]);
+        config.setMarkerSize(Float.intBitsToFloat(table[offset + 6]));
+        config.setTextSize(Float.intBitsToFloat(table[offset + 7]));
+        config.setLineWidth(Float.intBitsToFloat(table[offset + 8]));
+        config.setLineLength(LineLength.values()[table[offset + 9]]);
+        config.setAlpha(Float.intBitsToFloat(table[offset + 10]));
+        config.setZIndex(table[offset + 11]);
+        int dashCount = table[offset + 12];
+        if (dashCount < 0) {
+            config.setDashPattern(null);
+        } else {
+            float[] dash = new float[dashCount];
+            for (int i = 0; i < dashCount; i++) {
+                dash[i] = Float.intBitsToFloat(table[offset + 13 + i]);
+            }
+            config.setDashPattern(dash);
+        }
+        return config;
+    }
+
+    private static final class StyleKey {
+        final int[] values;
+        final int hash;
+
+        StyleKey(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StyleKey && Arrays.equals(values, ((StyleKey) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 去重的字符串表，null 对应下标 -1
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private byte[][] encoded;
+
+        int indexOf(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        byte[] toBytes() {
+            encoded = new byte[values.size()][];
+            int length = 0;
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+                length += encoded[i].length;
+            }
+            byte[] bytes = new byte[length];
+            int position = 0;
+            for (byte[] value : encoded) {
+                System.arraycopy(value, 0, bytes, position, value.length);
+                position += value.length;
+            }
+            return bytes;
+        }
+
+        int[] offsets() {
+            int[] offsets = new int[encoded.length + 1];
+            for (int i = 0; i < encoded.length; i++) {
+                offsets[i + 1] = offsets[i] + encoded[i].length;
+            }
+            return offsets;
+        }
+    }
+
+    private static String stringAt(String[] strings, int index) {
+        return index >= 0 ? strings[index] : null;
+    }
+
+    // ==================== 按列读写 ====================
+
+    private static long align(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    private static void alignPosition(ByteBuffer buffer) {
+        buffer.position((int) align(buffer.position()));
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 4);
+        alignPosition(buffer);
+    }
+
+    private static void putLongs(ByteBuffer buffer, long[] values) {
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 8);
+        alignPosition(buffer);
+    }
+
+    private static void putFloats(ByteBuffer buffer, float[] values) {
+        buffer.asFloatBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 4);
+        alignPosition(buffer);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        alignPosition(buffer);
+        return values;
+    }
+
+    private static long[] getLongs(ByteBuffer buffer, int count) {
+        long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * 8);
+        alignPosition(buffer);
+        return values;
+    }
+
+    private static float[] getFloats(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        alignPosition(buffer);
+        return values;
+    }
+}
@@ -0,0 +1,670 @@
+package com.alex.klinemarker.core;
+
+import com.alex.klinemarker.data.KLineAggregation;
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.MarkerConfig;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.TimeAxis;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 标记索引
+ * 按K线索引保存对应的标记位置，绘制时直接按K线下标查找，不再逐帧格式化日期字符串。
+ * 标记与 {@link TimeAxis} 同一个时间桶内的K线匹配（默认为同一自然日）。
+ * 标记既可以来自 {@link MarkerData} 列表，也可以来自快照中的列式数据；
+ * 后者只在标记首次被绘制时才创建 {@link MarkerData} 对象。
+ * <p>
+ * 同一根K线上可以有多个标记：{@code barMarkers} 只记录最后添加的一个，
+ * 完整的标记按CSR方式保存在一组连续区间中（第 i 根K线的标记从 offsets[i] 开始，到下一根K线的起点或全部标记的总数为止）。
+ * 区间在后台线程构建：{@link #withTail}、{@link #aggregate} 和 {@link #withAggregatedTail} 创建索引时一并计算，
+ * 逐个添加标记得到的索引在发布前通过 {@link #withRuns()} 构建，绘制时只读取。
+ * <p>
+ * 另外按时间桶编号记录每个桶中最后添加的标记，K线序列尾部变化时直接按桶查找，不再遍历全部标记。
+ */
+final class MarkerIndex {
+
+    private final KLineSeries series;
+    private final TimeAxis timeAxis;
+
+    // 每根K线对应的最后一个标记位置，-1表示没有标记；长度可能大于K线数量，多出的部分供尾部追加
+    private final int[] barMarkers;
+
+    // 每根K线上全部标记的连续区间，为null时需要先通过 withRuns() 构建
+    private final Runs runs;
+
+    // 是否已从该索引追加过K线：追加会占用共享数组中紧随其后的位置，再次追加时必须复制
+    private boolean barsAppended;
+    // 同上，针对区间数组
+    private boolean runsExtended;
+
+    // 已创建的标记对象，快照中的标记在首次访问时创建
+    private MarkerData[] markers;
+    private int markerCount;
+
+    // 时间桶编号 -> 该桶中最后添加的标记位置，与标记一起在索引之间共享，添加标记前先复制
+    private LongIntMap bucketMarkers;
+
+    // 快照中的列式标记数据（位置小于 columnCount 的标记）
+    private long[] columnTimes;
+    private int[] columnStyles;
+    private int[] columnTexts;
+    private MarkerConfig[] styleTable;
+    private String[] stringTable;
+    private int columnCount;
+
+    MarkerIndex(KLineSeries series, TimeAxis timeAxis) {
+        this(series, timeAxis, new int[series.size()]);
+        Arrays.fill(barMarkers, -1);
+        this.markers = new MarkerData[16];
+        this.bucketMarkers = new LongIntMap(16);
+    }
+
+    private MarkerIndex(KLineSeries series, TimeAxis timeAxis, int[] barMarkers) {
+        this(series, timeAxis, barMarkers, null);
+    }
+
+    private MarkerIndex(KLineSeries series, TimeAxis timeAxis, int[] barMarkers, Runs runs) {
+        this.series = series;
+        this.timeAxis = timeAxis;
+        this.barMarkers = barMarkers;
+        this.runs = runs;
+    }
+
+    /**
+     * 从快照的列式数据恢复，K线到标记的映射直接使用快照中的结果
+     */
+    static MarkerIndex fromColumns(KLineSeries series, TimeAxis timeAxis, int[] barMarkers,
+                                   long[] times, int[] styles, int[] texts,
+                                   MarkerConfig[] styleTable, String[] stringTable) {
+        MarkerIndex index = new MarkerIndex(series, timeAxis);
+        System.arraycopy(barMarkers, 0, index.barMarkers, 0, Math.min(barMarkers.length, index.barMarkers.length));
+        index.columnTimes = times;
+        index.columnStyles = styles;
+        index.columnTexts = texts;
+        index.styleTable = styleTable;
+        index.stringTable = stringTable;
+        index.columnCount = times.length;
+        index.markerCount = times.length;
+        index.markers = new MarkerData[Math.max(16, times.length)];
+        index.bucketMarkers = new LongIntMap(times.length);
+        for (int i = 0; i < times.length; i++) {
+            index.putBucketMarker(times[i], i);
+        }
+        return index;
+    }
+
+    /**
+     * 计算序列中每根K线对应的标记位置（按列表顺序跳过null后的下标），用于按页缓存映射结果
+     */
+    static int[] mapBars(KLineSeries series, TimeAxis timeAxis, List<MarkerData> markers) {
+        MarkerIndex index = new MarkerIndex(series, timeAxis);
+        index.addAll(markers);
+        return index.barMarkers;
+    }
+
+    /**
+     * 使用已计算好的K线到标记映射构建索引，不再逐个匹配日期
+     *
+     * @param barMarkers 每根K线对应的标记在列表中的下标，长度与序列相同
+     */
+    static MarkerIndex fromBarMarkers(KLineSeries series, TimeAxis timeAxis, int[] barMarkers,
+                                      List<MarkerData> markers) {
+        MarkerIndex index = new MarkerIndex(series, timeAxis, barMarkers);
+        index.markers = new MarkerData[Math.max(16, markers != null ? markers.size() : 0)];
+        index.bucketMarkers = new LongIntMap(markers != null ? markers.size() : 0);
+        if (markers != null) {
+            // 与 add 一致地跳过null，保证下标与映射结果对应
+            for (MarkerData marker : markers) {
+                if (marker != null) {
+                    Date date = marker.getDate();
+                    index.putBucketMarker(date != null ? date.getTime() : KLineSeries.NO_TIME, index.markerCount);
+                    index.markers[index.markerCount++] = marker;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 复制索引，用于在不修改已发布索引的前提下追加标记
+     * 快照中的标记在绘制线程上按需创建，这里只复制列数据，不读取绘制线程创建的对象
+     */
+    MarkerIndex copy() {
+        MarkerIndex copy = new MarkerIndex(series, timeAxis);
+        System.arraycopy(barMarkers, 0, copy.barMarkers, 0, series.size());
+        copy.columnTimes = columnTimes;
+        copy.columnStyles = columnStyles;
+        copy.columnTexts = columnTexts;
+        copy.styleTable = styleTable;
+        copy.stringTable = stringTable;
+        copy.columnCount = columnCount;
+        copy.markerCount = markerCount;
+        copy.markers = new MarkerData[Math.max(16, markers.length)];
+        System.arraycopy(markers, columnCount, copy.markers, columnCount, markerCount - columnCount);
+        copy.bucketMarkers = bucketMarkers.copy();
+        return copy;
+    }
+
+    /**
+     * 返回带有标记区间的索引（后台线程调用），已构建时返回自身
+     * 新索引与当前索引共享映射和全部标记，之后不应再向当前索引添加标记
+     */
+    MarkerIndex withRuns() {
+        if (runs != null) {
+            return this;
+        }
+        MarkerIndex index = shareMarkers(new MarkerIndex(series, timeAxis, barMarkers, buildRuns()));
+        index.barsAppended = barsAppended;
+        return index;
+    }
+
+    /**
+     * K线序列尾部变化（追加K线或更新最后一根K线）后更新索引
+     * 只为 firstChanged 及之后的K线匹配标记，其余映射和全部标记与原索引共享；
+     * 追加的K线写入共享数组的空闲位置，原索引的内容不变。标记区间同样只重新计算变化的K线
+     *
+     * @param newSeries    尾部变化后的序列
+     * @param firstChanged 第一根发生变化的K线索引
+     * @return 新的索引
+     */
+    MarkerIndex withTail(KLineSeries newSeries, int firstChanged) {
+        int newSize = newSeries.size();
+        int[] values = new int[newSize - firstChanged];
+        for (int bar = firstChanged; bar < newSize; bar++) {
+            values[bar - firstChanged] = findMarkerForBar(newSeries, bar,
+                    bar > firstChanged ? values[bar - firstChanged - 1] : -2);
+        }
+        int[] newBarMarkers = tailBarMarkers(newSize, firstChanged, values);
+        Runs newRuns = runs != null ? tailRuns(newSize, firstChanged, newBarMarkers) : null;
+        return shareMarkers(new MarkerIndex(newSeries, timeAxis, newBarMarkers, newRuns));
+    }
+
+    /**
+     * 聚合索引的尾部更新：基础索引尾部变化、聚合结果随之增量更新后，
+     * 只重新计算 firstChanged 及之后的聚合K线的标记和区间，之前的部分与当前索引共享
+     * 当前索引需由与 base 共享全部标记的基础索引聚合得到（见 {@link #sharesMarkersWith}）
+     *
+     * @param base         尾部变化后的基础索引
+     * @param aggregation  尾部变化后的聚合结果
+     * @param firstChanged 第一根发生变化的聚合K线索引
+     * @return 新的聚合索引
+     */
+    MarkerIndex withAggregatedTail(MarkerIndex base, KLineAggregation aggregation, int firstChanged) {
+        KLineSeries aggregated = aggregation.getSeries();
+        int newSize = aggregated.size();
+        int[] values = new int[newSize - firstChanged];
+        for (int k = firstChanged; k < newSize; k++) {
+            values[k - firstChanged] = lastMarkerInPeriod(aggregation, k, base.barMarkers);
+        }
+        int[] newBarMarkers = tailBarMarkers(newSize, firstChanged, values);
+
+        Runs baseRuns = base.runs != null ? base.runs : base.buildRuns();
+        int from = runs.start(firstChanged);
+        int[] tailOffsets = new int[newSize - firstChanged];
+        int total = from;
+        for (int k = firstChanged; k < newSize; k++) {
+            total += countPeriodRuns(aggregation, k, base.barMarkers, baseRuns);
+            tailOffsets[k - firstChanged] = total;
+        }
+        int[] tailIndices = new int[total - from];
+        for (int k = firstChanged; k < newSize; k++) {
+            copyPeriodRuns(aggregation, k, base.barMarkers, baseRuns, tailIndices,
+                    k > firstChanged ? tailOffsets[k - firstChanged - 1] - from : 0);
+        }
+        return base.shareMarkers(new MarkerIndex(aggregated, timeAxis, newBarMarkers,
+                writeTailRuns(newSize, firstChanged, tailOffsets, tailIndices)));
+    }
+
+    /**
+     * 是否与另一个索引共享全部标记（只有K线序列变化，没有添加或替换标记）
+     */
+    boolean sharesMarkersWith(MarkerIndex other) {
+        return markers == other.markers && markerCount == other.markerCount && columnTimes == other.columnTimes;
+    }
+
+    /**
+     * 将 firstChanged 及之后的映射写入映射数组
+     * 只写入当前索引不可见的空闲位置，或写入的值不变时共享数组，否则复制
+     */
+    private int[] tailBarMarkers(int newSize, int firstChanged, int[] values) {
+        int oldSize = series.size();
+        boolean rewritesExisting = false;
+        for (int bar = firstChanged; bar < Math.min(oldSize, newSize); bar++) {
+            rewritesExisting |= values[bar - firstChanged] != barMarkers[bar];
+        }
+
+        int[] newBarMarkers;
+        if (rewritesExisting || barsAppended || newSize > barMarkers.length) {
+            // 需要改写原索引可见的位置，或空闲位置已被占用时复制
+            newBarMarkers = Arrays.copyOf(barMarkers, grownCapacity(newSize, barMarkers.length));
+            System.arraycopy(values, 0, newBarMarkers, firstChanged, values.length);
+        } else {
+            // 只写入原索引不可见的空闲位置
+            newBarMarkers = barMarkers;
+            int from = Math.max(firstChanged, oldSize);
+            System.arraycopy(values, from - firstChanged, newBarMarkers, from, newSize - from);
+        }
+        if (newSize > oldSize && newBarMarkers == barMarkers) {
+            barsAppended = true;
+        }
+        return newBarMarkers;
+    }
+
+    /**
+     * 复制共享数组时的新长度：容量不足时翻倍，否则保持原长度，反复复制时长度不会持续增长
+     */
+    private static int grownCapacity(int required, int capacity) {
+        return required > capacity ? Math.max(required, capacity * 2) : capacity;
+    }
+
+    /**
+     * 在当前区间的基础上重新计算 firstChanged 及之后K线的区间
+     * 之前的区间不变；写入位置都在当前索引不可见的部分或写入的值不变时共享数组，否则复制
+     */
+    private Runs tailRuns(int newSize, int firstChanged, int[] newBarMarkers) {
+        int base = runs.start(firstChanged);
+
+        int[] tailOffsets = new int[newSize - firstChanged];
+        int total = base;
+        for (int bar = firstChanged; bar < newSize; bar++) {
+            for (int m = newBarMarkers[bar]; m >= 0; m = runs.previous[m]) {
+                total++;
+            }
+            tailOffsets[bar - firstChanged] = total;
+        }
+        int[] tailIndices = new int[total - base];
+        for (int bar = firstChanged; bar < newSize; bar++) {
+            int position = tailOffsets[bar - firstChanged] - base;
+            for (int m = newBarMarkers[bar]; m >= 0; m = runs.previous[m]) {
+                tailIndices[--position] = m;
+            }
+        }
+        return writeTailRuns(newSize, firstChanged, tailOffsets, tailIndices);
+    }
+
+    /**
+     * 将 firstChanged 及之后的区间写入区间数组，共享方式与 {@link #tailBarMarkers} 相同
+     * 最后一根K线的区间终点保存在 {@link Runs#total} 中，只有最后一个周期的区间变长时不需要改写原索引可见的位置
+     *
+     * @param tailOffsets 从 firstChanged 开始每根K线的区间终点
+     * @param tailIndices 从 firstChanged 的区间起点开始的标记位置
+     */
+    private Runs writeTailRuns(int newSize, int firstChanged, int[] tailOffsets, int[] tailIndices) {
+        int oldSize = series.size();
+        int oldTotal = runs.total;
+        int base = runs.start(firstChanged);
+        int total = base + tailIndices.length;
+
+        boolean rewritesExisting = false;
+        for (int bar = firstChanged + 1; bar < Math.min(oldSize, newSize); bar++) {
+            rewritesExisting |= tailOffsets[bar - firstChanged - 1] != runs.offsets[bar];
+        }
+        for (int p = base; p < Math.min(total, oldTotal); p++) {
+            rewritesExisting |= tailIndices[p - base] != runs.markerIndices[p];
+        }
+        boolean extendsRuns = newSize > oldSize || total > oldTotal;
+
+        int[] offsets = runs.offsets;
+        int[] markerIndices = runs.markerIndices;
+        if (rewritesExisting || extendsRuns && (runsExtended || newSize > offsets.length
+                || total > markerIndices.length)) {
+            offsets = Arrays.copyOf(offsets, grownCapacity(newSize, offsets.length));
+            markerIndices = Arrays.copyOf(markerIndices, grownCapacity(total, markerIndices.length));
+        } else if (extendsRuns) {
+            runsExtended = true;
+        }
+        if (firstChanged < newSize) {
+            offsets[firstChanged] = base;
+            System.arraycopy(tailOffsets, 0, offsets, firstChanged + 1, tailOffsets.length - 1);
+        }
+        System.arraycopy(tailIndices, 0, markerIndices, base, tailIndices.length);
+        return new Runs(offsets, markerIndices, newSize, total, runs.previous);
+    }
+
+    /**
+     * 将标记映射到聚合后的K线上，标记本身与原索引共享
+     * {@link #getMarkerIndexAt(int)} 取周期内最后添加的标记，周期内的全部标记按K线顺序合并为一个区间
+     */
+    MarkerIndex aggregate(KLineAggregation aggregation) {
+        KLineSeries aggregated = aggregation.getSeries();
+        int[] aggregatedMarkers = new int[aggregated.size()];
+        for (int k = 0; k < aggregatedMarkers.length; k++) {
+            aggregatedMarkers[k] = lastMarkerInPeriod(aggregation, k, barMarkers);
+        }
+        Runs baseRuns = runs != null ? runs : buildRuns();
+        return shareMarkers(new MarkerIndex(aggregated, timeAxis, aggregatedMarkers,
+                buildAggregatedRuns(aggregation, baseRuns)));
+    }
+
+    /**
+     * 让新索引与当前索引共享全部标记
+     */
+    private MarkerIndex shareMarkers(MarkerIndex index) {
+        index.markers = markers;
+        index.markerCount = markerCount;
+        index.columnTimes = columnTimes;
+        index.columnStyles = columnStyles;
+        index.columnTexts = columnTexts;
+        index.styleTable = styleTable;
+        index.stringTable = stringTable;
+        index.columnCount = columnCount;
+        index.bucketMarkers = bucketMarkers;
+        return index;
+    }
+
+    /**
+     * 查找与指定K线同一时间桶的最后一个标记
+     * 与前一根K线同一时间桶时直接沿用其结果，新的时间桶按桶编号查表
+     *
+     * @param previousValue 前一根K线的匹配结果，未知时为-2
+     */
+    private int findMarkerForBar(KLineSeries newSeries, int bar, int previousValue) {
+        long time = newSeries.getTime(bar);
+        if (time == KLineSeries.NO_TIME) {
+            return -1;
+        }
+        long key = timeAxis.keyOf(time);
+
+        if (bar > 0) {
+            long previousTime = newSeries.getTime(bar - 1);
+            if (previousTime != KLineSeries.NO_TIME && timeAxis.keyOf(previousTime) == key) {
+                return previousValue != -2 ? previousValue : barMarkers[bar - 1];
+            }
+        }
+        // 表中记录的是同一时间桶最后添加的标记，与 add 的覆盖顺序一致
+        return bucketMarkers.get(key, -1);
+    }
+
+    private void putBucketMarker(long time, int markerIndex) {
+        if (time != KLineSeries.NO_TIME) {
+            bucketMarkers.put(timeAxis.keyOf(time), markerIndex);
+        }
+    }
+
+    private long markerTime(int markerIndex) {
+        if (markerIndex < columnCount) {
+            return columnTimes[markerIndex];
+        }
+        Date date = markers[markerIndex].getDate();
+        return date != null ? date.getTime() : KLineSeries.NO_TIME;
+    }
+
+    /**
+     * 追加标记列表
+     */
+    void addAll(List<MarkerData> newMarkers) {
+        if (newMarkers == null) {
+            return;
+        }
+        for (MarkerData marker : newMarkers) {
+            add(marker);
+        }
+    }
+
+    /**
+     * 追加一个标记，并映射到同一时间桶的所有K线（与已有标记一起保存，最后添加的排在最后）
+     */
+    void add(MarkerData marker) {
+        if (marker == null) {
+            return;
+        }
+        if (runs != null) {
+            throw new IllegalStateException("Markers cannot be added after runs are built, copy() first");
+        }
+        if (markerCount == markers.length) {
+            markers = Arrays.copyOf(markers, markerCount * 2);
+        }
+        int markerIndex = markerCount++;
+        markers[markerIndex] = marker;
+
+        Date date = marker.getDate();
+        if (date == null) {
+            return;
+        }
+        putBucketMarker(date.getTime(), markerIndex);
+        if (series.isEmpty()) {
+            return;
+        }
+        // 按时间轴的时间桶匹配，默认的按日时间轴与按 yyyy-MM-dd 字符串匹配的语义一致
+        long bucketStart = timeAxis.bucketStart(date.getTime());
+        long nextBucketStart = timeAxis.nextBucketStart(bucketStart);
+        for (int bar = series.lowerBound(bucketStart); bar < series.size() && series.getTime(bar) < nextBucketStart; bar++) {
+            barMarkers[bar] = markerIndex;
+        }
+    }
+
+    /**
+     * 获取指定K线上最后添加的标记，没有时返回null
+     */
+    MarkerData getMarkerAt(int bar) {
+        int markerIndex = barMarkers[bar];
+        return markerIndex >= 0 ? getMarker(markerIndex) : null;
+    }
+
+    /**
+     * 获取指定K线上最后添加的标记位置，没有时返回-1
+     */
+    int getMarkerIndexAt(int bar) {
+        return barMarkers[bar];
+    }
+
+    /**
+     * 指定K线的标记区间起点，配合 {@link #getMarkerRunEnd(int)} 和 {@link #getRunMarkerIndex(int)} 遍历该K线上的全部标记
+     */
+    int getMarkerRunStart(int bar) {
+        return runs().start(bar);
+    }
+
+    /**
+     * 指定K线的标记区间终点（不包含）
+     */
+    int getMarkerRunEnd(int bar) {
+        return runs().end(bar);
+    }
+
+    /**
+     * 区间中指定位置的标记位置，同一根K线上的标记按添加顺序排列
+     */
+    int getRunMarkerIndex(int position) {
+        return runs().markerIndices[position];
+    }
+
+    private Runs runs() {
+        if (runs == null) {
+            throw new IllegalStateException("Marker runs are not built, call withRuns() before publishing");
+        }
+        return runs;
+    }
+
+    /**
+     * 由每根K线的最后一个标记沿同一时间桶的前一个标记回溯，得到该K线上的全部标记
+     */
+    private Runs buildRuns() {
+        int size = series.size();
+        int[] previous = previousInBucket();
+        int[] offsets = new int[size];
+        int total = 0;
+        for (int bar = 0; bar < size; bar++) {
+            offsets[bar] = total;
+            for (int m = barMarkers[bar]; m >= 0; m = previous[m]) {
+                total++;
+            }
+        }
+        Runs runs = new Runs(offsets, new int[total], size, total, previous);
+
+        for (int bar = 0; bar < size; bar++) {
+            // 回溯得到的顺序与添加顺序相反，从区间末尾向前填充
+            int position = runs.end(bar);
+            for (int m = barMarkers[bar]; m >= 0; m = previous[m]) {
+                runs.markerIndices[--position] = m;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * 每个标记在同一时间桶内的前一个标记位置，没有时为-1
+     */
+    private int[] previousInBucket() {
+        int[] previous = new int[markerCount];
+        LongIntMap lastInBucket = new LongIntMap(markerCount);
+        for (int i = 0; i < markerCount; i++) {
+            long time = markerTime(i);
+            if (time == KLineSeries.NO_TIME) {
+                previous[i] = -1;
+                continue;
+            }
+            long key = timeAxis.keyOf(time);
+            previous[i] = lastInBucket.get(key, -1);
+            lastInBucket.put(key, i);
+        }
+        return previous;
+    }
+
+    /**
+     * 聚合K线的标记区间：依次合并周期内各基础K线的区间，同一时间桶的相邻K线只计入一次
+     */
+    private Runs buildAggregatedRuns(KLineAggregation aggregation, Runs base) {
+        int size = aggregation.getSeries().size();
+        int[] offsets = new int[size];
+        int total = 0;
+        for (int k = 0; k < size; k++) {
+            offsets[k] = total;
+            total += countPeriodRuns(aggregation, k, barMarkers, base);
+        }
+
+        int[] markerIndices = new int[total];
+        for (int k = 0; k < size; k++) {
+            copyPeriodRuns(aggregation, k, barMarkers, base, markerIndices, offsets[k]);
+        }
+        return new Runs(offsets, markerIndices, size, total, null);
+    }
+
+    /**
+     * 聚合K线周期内最后添加的标记位置，没有时为-1
+     */
+    private static int lastMarkerInPeriod(KLineAggregation aggregation, int k, int[] baseBarMarkers) {
+        int marker = -1;
+        for (int bar = aggregation.getFirstBaseIndex(k); bar <= aggregation.getLastBaseIndex(k); bar++) {
+            marker = Math.max(marker, baseBarMarkers[bar]);
+        }
+        return marker;
+    }
+
+    /**
+     * 聚合K线周期内全部标记的数量
+     */
+    private static int countPeriodRuns(KLineAggregation aggregation, int k, int[] baseBarMarkers, Runs base) {
+        int count = 0;
+        int last = -1;
+        for (int bar = aggregation.getFirstBaseIndex(k); bar <= aggregation.getLastBaseIndex(k); bar++) {
+            int marker = baseBarMarkers[bar];
+            if (marker >= 0 && marker != last) {
+                count += base.end(bar) - base.start(bar);
+                last = marker;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 将聚合K线周期内的全部标记按K线顺序写入 markerIndices 的 position 处
+     */
+    private static void copyPeriodRuns(KLineAggregation aggregation, int k, int[] baseBarMarkers, Runs base,
+                                       int[] markerIndices, int position) {
+        int last = -1;
+        for (int bar = aggregation.getFirstBaseIndex(k); bar <= aggregation.getLastBaseIndex(k); bar++) {
+            int marker = baseBarMarkers[bar];
+            if (marker >= 0 && marker != last) {
+                int count = base.end(bar) - base.start(bar);
+                System.arraycopy(base.markerIndices, base.start(bar), markerIndices, position, count);
+                position += count;
+                last = marker;
+            }
+        }
+    }
+
+    /**
+     * 获取标记，快照中的标记首次访问时创建并缓存
+     * 缓存只由绘制线程写入，{@link #copy()} 和 {@link #peekMarker(int)} 都不读取它，因此只应在绘制线程调用
+     */
+    MarkerData getMarker(int markerIndex) {
+        MarkerData marker = markers[markerIndex];
+        if (marker == null && markerIndex < columnCount) {
+            marker = createMarker(markerIndex);
+            markers[markerIndex] = marker;
+        }
+        return marker;
+    }
+
+    /**
+     * 获取标记但不缓存，供后台线程读取已发布的索引
+     */
+    MarkerData peekMarker(int markerIndex) {
+        return markerIndex < columnCount ? createMarker(markerIndex) : markers[markerIndex];
+    }
+
+    private MarkerData createMarker(int markerIndex) {
+        MarkerData marker = new MarkerData();
+        long time = columnTimes[markerIndex];
+        marker.setDate(time != KLineSeries.NO_TIME ? new Date(time) : null);
+        int text = columnTexts[markerIndex];
+        marker.setText(text >= 0 ? stringTable[text] : "");
+        marker.setConfig(styleTable[columnStyles[markerIndex]]);
+        return marker;
+    }
+
+    int getMarkerCount() {
+        return markerCount;
+    }
+
+    KLineSeries getSeries() {
+        return series;
+    }
+
+    int[] getBarMarkers() {
+        return barMarkers;
+    }
+
+    /**
+     * 每根K线的标记区间（CSR格式）
+     * 数组可能比K线数量长，多出的部分供尾部追加，与 {@code barMarkers} 的共享方式相同
+     */
+    private static final class Runs {
+        // 每根K线的区间起点，至少为K线数量
+        final int[] offsets;
+        // 按K线顺序连续存放的标记位置
+        final int[] markerIndices;
+        // K线数量
+        final int size;
+        // 全部标记的数量，即最后一根K线的区间终点；不写入共享数组，尾部区间变长时原索引可见的位置不变
+        final int total;
+        // 每个标记在同一时间桶内的前一个标记位置，尾部变化时据此重新计算区间；聚合索引为null
+        final int[] previous;
+
+        Runs(int[] offsets, int[] markerIndices, int size, int total, int[] previous) {
+            this.offsets = offsets;
+            this.markerIndices = markerIndices;
+            this.size = size;
+            this.total = total;
+            this.previous = previous;
+        }
+
+        /**
+         * 第 bar 根K线的区间起点，bar 等于K线数量时为全部标记的数量
+         */
+        int start(int bar) {
+            return bar < size ? offsets[bar] : total;
+        }
+
+        /**
+         * 第 bar 根K线的区间终点（不包含）
+         */
+        int end(int bar) {
+            return bar + 1 < size ? offsets[bar + 1] : total;
+        }
+    }
+}
@@ -18,21 +18,42 @@ import java.util.Map;
 
 /**
  * 标记渲染器工厂
- * 负责创建和管理不同形状的标记渲染器
+ * 负责创建和管理不同形状的标记渲染器。
+ * 图表使用的工厂只保存自己注册的自定义渲染器，其余形状从 {@link MarkerResourcePool} 中共享的内置渲染器查找
  */
 public class MarkerRendererFactory {
 
     private final Map<MarkerShape, IMarkerRenderer> renderers;
     private final float density;
 
+    // 共享的内置渲染器，本工厂没有注册的形状从这里查找
+    private final MarkerRendererFactory shared;
+
     public MarkerRendererFactory(Context context) {
-        this.density = context.getResources().getDisplayMetrics().density;
+        this(context.getResources().getDisplayMetrics().density);
+    }
+
+    /**
+     * 创建包含全部内置渲染器的工厂
+     */
+    MarkerRendererFactory(float density) {
+        this.density = density;
         this.renderers = new HashMap<>();
+        this.shared = null;
 
         // 初始化所有渲染器
         initRenderers();
     }
 
+    /**
+     * 创建只保存自定义渲染器的工厂，内置渲染器与其他图表共享
+     */
+    MarkerRendererFactory(MarkerRendererFactory shared) {
+        this.density = shared.density;
+        this.renderers = new HashMap<>();
+        this.shared = shared;
+    }
+
     /**
      * 初始化所有内置渲染器
      */
@@ -74,11 +95,15 @@ public class MarkerRendererFactory {
      * @return 对应的渲染器，如果没有找到则返回null
      */
     public IMarkerRenderer getRenderer(MarkerShape shape) {
-        return renderers.get(shape);
+        IMarkerRenderer renderer = renderers.isEmpty() ? null : renderers.get(shape);
+        if (renderer == null && shared != null) {
+            renderer = shared.getRenderer(shape);
+        }
+        return renderer;
     }
 
     /**
-     * 注册自定义渲染器
+     * 注册自定义渲染器，只对使用本工厂的图表生效
      *
      * @param shape    标记形状
      * @param renderer 渲染器实例
@@ -94,6 +119,6 @@ public class MarkerRendererFactory {
      * @return 是否支持
      */
     public boolean supportsShape(MarkerShape shape) {
-        return renderers.containsKey(shape);
+        return renderers.containsKey(shape) || (shared != null && shared.supportsShape(shape));
     }
 } 
\ No newline at end of file
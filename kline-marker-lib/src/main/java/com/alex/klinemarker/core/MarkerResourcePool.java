@@ -0,0 +1,156 @@
+package com.alex.klinemarker.core;
+
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 标记绘制资源池
+ * 进程内按屏幕密度共享的绘制资源：内置的形状渲染器（及其Paint）和趋势区间着色器缓存。
+ * 同一屏幕上的多个图表（例如多品种看板）使用同一组资源，不再每个管理器各自创建一套。
+ * <p>
+ * 共享的渲染器在绘制时会修改Paint，图表都在主线程绘制，因此可以安全共享；这些资源只应在主线程使用。
+ * <p>
+ * 另外提供所有图表共用的有界后台线程池，用于构建渲染快照（展开序列、匹配标记、解析区间），
+ * 线程数量不随图表数量增长。
+ */
+public final class MarkerResourcePool {
+
+    // 着色器缓存按内容区域和透明度区分，保留最近使用的若干组
+    private static final int MAX_SHADER_CACHES = 16;
+
+    // 构建线程空闲超过该时间后退出，不需要显式释放
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final Map<Float, MarkerResourcePool> POOLS = new HashMap<>();
+    private static ExecutorService buildPool;
+
+    private final float density;
+    private final MarkerRendererFactory rendererFactory;
+
+    // 按访问顺序排列，超出容量时淘汰最久未使用的缓存
+    private final LinkedHashMap<ShaderKey, RegionShaderCache> shaderCaches =
+            new LinkedHashMap<ShaderKey, RegionShaderCache>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ShaderKey, RegionShaderCache> eldest) {
+                    return size() > MAX_SHADER_CACHES;
+                }
+            };
+
+    private MarkerResourcePool(float density) {
+        this.density = density;
+        this.rendererFactory = new MarkerRendererFactory(density);
+    }
+
+    /**
+     * 获取上下文所在屏幕密度的资源池
+     */
+    public static MarkerResourcePool get(Context context) {
+        return forDensity(context.getResources().getDisplayMetrics().density);
+    }
+
+    /**
+     * 获取指定屏幕密度的资源池，同一密度总是返回同一个实例
+     */
+    public static synchronized MarkerResourcePool forDensity(float density) {
+        MarkerResourcePool pool = POOLS.get(density);
+        if (pool == null) {
+            pool = new MarkerResourcePool(density);
+            POOLS.put(density, pool);
+        }
+        return pool;
+    }
+
+    public float getDensity() {
+        return density;
+    }
+
+    /**
+     * 共享的内置渲染器，只应在主线程使用
+     */
+    MarkerRendererFactory getRendererFactory() {
+        return rendererFactory;
+    }
+
+    /**
+     * 获取指定内容区域和透明度的趋势区间着色器缓存
+     * 尺寸相同的图表共用同一组渐变；调用方应在输入不变时复用上次的结果，只在变化时重新获取
+     */
+    RegionShaderCache getRegionShaders(float contentTop, float contentBottom, float topAlpha, float bottomAlpha) {
+        ShaderKey key = new ShaderKey(contentTop, contentBottom, topAlpha, bottomAlpha);
+        RegionShaderCache cache = shaderCaches.get(key);
+        if (cache == null) {
+            cache = new RegionShaderCache(contentTop, contentBottom, topAlpha, bottomAlpha);
+            shaderCaches.put(key, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * 创建一个在共享构建线程池上串行执行任务的执行器，每个渲染快照存储使用一个
+     */
+    static Executor newBuildExecutor() {
+        return new SerialExecutor(buildPool());
+    }
+
+    private static synchronized ExecutorService buildPool() {
+        if (buildPool == null) {
+            // 至少留一个核心给主线程绘制
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "KLineMarker-build-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+            threadPool.allowCoreThreadTimeOut(true);
+            buildPool = threadPool;
+        }
+        return buildPool;
+    }
+
+    /**
+     * 着色器缓存的键
+     */
+    private static final class ShaderKey {
+        private final float top;
+        private final float bottom;
+        private final float topAlpha;
+        private final float bottomAlpha;
+
+        ShaderKey(float top, float bottom, float topAlpha, float bottomAlpha) {
+            this.top = top;
+            this.bottom = bottom;
+            this.topAlpha = topAlpha;
+            this.bottomAlpha = bottomAlpha;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ShaderKey)) return false;
+            ShaderKey other = (ShaderKey) o;
+            return top == other.top && bottom == other.bottom
+                    && topAlpha == other.topAlpha && bottomAlpha == other.bottomAlpha;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Float.floatToIntBits(top);
+            result = 31 * result + Float.floatToIntBits(bottom);
+            result = 31 * result + Float.floatToIntBits(topAlpha);
+            result = 31 * result + Float.floatToIntBits(bottomAlpha);
+            return result;
+        }
+    }
+}
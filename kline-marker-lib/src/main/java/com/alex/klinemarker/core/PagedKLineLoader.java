@@ -0,0 +1,482 @@
+package com.alex.klinemarker.core;
+
+import android.util.Log;
+import android.view.MotionEvent;
+
+import com.alex.klinemarker.data.KLineDataAdapter;
+import com.alex.klinemarker.data.KLinePageSource;
+import com.alex.klinemarker.data.KLineSeries;
+import com.github.mikephil.charting.charts.CombinedChart;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分页K线加载器
+ * 内存中只保留连续的若干页K线（窗口）。图表平移时检查可见范围，可见范围接近窗口边缘时
+ * 在后台线程加载相邻的一页；页数超过上限时按最近可见时间（LRU）淘汰窗口两端不可见的页。
+ * 每页在加载时展开为列式序列，标记映射按页缓存，窗口变化时只需拼接各页的结果。
+ * <p>
+ * 分页加载要求K线的X值与其在列表中的位置无关（例如基于时间），因为窗口两端都会变化。
+ */
+public final class PagedKLineLoader<T> {
+
+    private static final String TAG = "PagedKLineLoader";
+    private static final boolean DEBUG = false;
+
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+    public static final int DEFAULT_MAX_PAGES = 8;
+
+    // 后台线程空闲超过该时间后退出，不需要显式释放
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * 窗口变化监听
+     */
+    public interface Listener<T> {
+        /**
+         * 窗口中的K线发生变化（主线程），应据此增量更新图表的K线数据
+         * 与包含新窗口的渲染快照在同一个主线程消息中执行，标记、趋势区间和K线在同一帧更新
+         *
+         * @param change 相对上一次通知的窗口，两端移除和加入的K线
+         */
+        void onWindowChanged(WindowChange<T> change);
+    }
+
+    /**
+     * 一次窗口变化：先从两端移除K线，再在两端加入新页的K线
+     * 第一次通知时没有移除，全部K线在 {@link #getAddedNewer()} 中
+     */
+    public static final class WindowChange<T> {
+        private final int removedOlder;
+        private final int removedNewer;
+        private final List<T> addedOlder;
+        private final List<T> addedNewer;
+
+        WindowChange(int removedOlder, int removedNewer, List<T> addedOlder, List<T> addedNewer) {
+            this.removedOlder = removedOlder;
+            this.removedNewer = removedNewer;
+            this.addedOlder = Collections.unmodifiableList(addedOlder);
+            this.addedNewer = Collections.unmodifiableList(addedNewer);
+        }
+
+        /**
+         * 从较早一端（列表开头）移除的K线数量
+         */
+        public int getRemovedOlder() {
+            return removedOlder;
+        }
+
+        /**
+         * 从较新一端（列表末尾）移除的K线数量
+         */
+        public int getRemovedNewer() {
+            return removedNewer;
+        }
+
+        /**
+         * 加在列表开头的K线，按时间升序
+         */
+        public List<T> getAddedOlder() {
+            return addedOlder;
+        }
+
+        /**
+         * 加在列表末尾的K线，按时间升序
+         */
+        public List<T> getAddedNewer() {
+            return addedNewer;
+        }
+    }
+
+    private final CombinedChart chart;
+    private final KLinePageSource<T> source;
+    private final KLineDataAdapter<T> dataAdapter;
+    private final RenderSnapshotStore<T> store;
+    private final Listener<T> listener;
+    private final int pageSize;
+    private final int maxPages;
+    private final int prefetchBars;
+    private final ExecutorService executor;
+
+    // 待检查的可见范围，主线程写入，加载线程取出
+    private final Object lock = new Object();
+    private float pendingLowestX;
+    private float pendingHighestX;
+    private boolean checkScheduled;
+
+    // 以下字段只在加载线程访问
+    private final LinkedHashMap<Integer, KLinePage<T>> lruPages = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<KLinePage<T>> window = new ArrayList<>();   // 按时间升序的连续页
+    private boolean reachedOldest;
+    private KLinePage<T> lastLoaded;
+    // 上一次通知监听器时的窗口，用于计算增量
+    private List<KLinePage<T>> publishedWindow = Collections.emptyList();
+
+    private PagedKLineLoader(Builder<T> builder, CombinedChart chart, RenderSnapshotStore<T> store) {
+        this.chart = chart;
+        this.store = store;
+        this.source = builder.source;
+        this.dataAdapter = store.getDataAdapter();
+        this.listener = builder.listener;
+        this.pageSize = Math.max(1, builder.pageSize);
+        this.maxPages = Math.max(2, builder.maxPages);
+        this.prefetchBars = builder.prefetchBars >= 0 ? builder.prefetchBars : pageSize / 4;
+
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(1, 1,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "KLineMarker-page");
+            thread.setDaemon(true);
+            return thread;
+        });
+        threadPool.allowCoreThreadTimeOut(true);
+        this.executor = threadPool;
+    }
+
+    /**
+     * 加载最新一页并开始响应图表平移
+     * 会包装图表当前的手势监听器；之后如果替换了监听器，需要在其 onChartTranslate 中调用 {@link #onVisibleRangeChanged()}
+     */
+    public void start() {
+        chart.setOnChartGestureListener(new TranslateListener(chart.getOnChartGestureListener()));
+        executor.execute(() -> {
+            try {
+                if (window.isEmpty() && loadPage(0, false)) {
+                    publish();
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to load the latest page: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 图表可见范围变化时调用（主线程），连续多次调用只触发一次检查
+     */
+    public void onVisibleRangeChanged() {
+        synchronized (lock) {
+            pendingLowestX = chart.getLowestVisibleX();
+            pendingHighestX = chart.getHighestVisibleX();
+            if (checkScheduled) {
+                return;
+            }
+            checkScheduled = true;
+        }
+        executor.execute(this::checkVisibleRange);
+    }
+
+    // ==================== 加载线程 ====================
+
+    private void checkVisibleRange() {
+        float lowestX;
+        float highestX;
+        synchronized (lock) {
+            lowestX = pendingLowestX;
+            highestX = pendingHighestX;
+            checkScheduled = false;
+        }
+        if (window.isEmpty()) {
+            return;
+        }
+
+        touchVisiblePages(lowestX, highestX);
+        boolean changed = false;
+        try {
+            // 每轮最多加载一页，直到可见范围两侧都留有足够的预取余量
+            for (int round = 0; round < maxPages; round++) {
+                int barsBefore = countBarsBefore(lowestX);
+                int barsAfter = windowSize() - countBarsBefore(highestX);
+                boolean loaded = false;
+                if (barsBefore < prefetchBars && !reachedOldest) {
+                    loaded = loadPage(window.get(0).getNumber() + 1, true);
+                } else if (barsAfter < prefetchBars && window.get(window.size() - 1).getNumber() > 0) {
+                    loaded = loadPage(window.get(window.size() - 1).getNumber() - 1, false);
+                }
+                if (!loaded) {
+                    break;
+                }
+                changed = true;
+                evict(lowestX, highestX);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to load page: " + e.getMessage());
+        }
+        if (changed) {
+            publish();
+        }
+    }
+
+    /**
+     * 加载一页并加入窗口
+     *
+     * @param older 是否加在窗口的较早一端
+     * @return 是否加载到了数据
+     */
+    private boolean loadPage(int number, boolean older) throws IOException {
+        List<T> bars = source.loadPage(number, pageSize);
+        if (bars == null || bars.isEmpty()) {
+            reachedOldest |= older;
+            return false;
+        }
+        if (older && bars.size() < pageSize) {
+            reachedOldest = true;
+        }
+        KLinePage<T> page = new KLinePage<>(number, bars, KLineSeries.from(bars, dataAdapter));
+        window.add(older ? 0 : window.size(), page);
+        lruPages.put(number, page);
+        lastLoaded = page;
+        if (DEBUG) Log.d(TAG, "Loaded page " + number + " with " + bars.size() + " bars");
+        return true;
+    }
+
+    /**
+     * 页数超过上限时淘汰最久未可见的页；为保持窗口连续，只淘汰窗口两端不可见的页，刚加载的页不淘汰
+     */
+    private void evict(float lowestX, float highestX) {
+        while (lruPages.size() > maxPages) {
+            KLinePage<T> victim = null;
+            for (KLinePage<T> page : lruPages.values()) {
+                boolean atEdge = page == window.get(0) || page == window.get(window.size() - 1);
+                if (atEdge && page != lastLoaded && !isVisible(page, lowestX, highestX)) {
+                    victim = page;
+                    break;
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            if (victim == window.get(0)) {
+                reachedOldest = false;
+            }
+            window.remove(victim);
+            lruPages.remove(victim.getNumber());
+            if (DEBUG) Log.d(TAG, "Evicted page " + victim.getNumber());
+        }
+    }
+
+    /**
+     * 更新可见页的访问顺序
+     */
+    private void touchVisiblePages(float lowestX, float highestX) {
+        for (KLinePage<T> page : window) {
+            if (isVisible(page, lowestX, highestX)) {
+                lruPages.get(page.getNumber());
+            }
+        }
+    }
+
+    private static boolean isVisible(KLinePage<?> page, float lowestX, float highestX) {
+        KLineSeries series = page.getSeries();
+        return series.getXValue(0) <= highestX && series.getXValue(series.size() - 1) >= lowestX;
+    }
+
+    /**
+     * 窗口中X值小于指定值的K线数量
+     */
+    private int countBarsBefore(float x) {
+        int count = 0;
+        for (KLinePage<T> page : window) {
+            KLineSeries series = page.getSeries();
+            if (series.getXValue(series.size() - 1) < x) {
+                count += series.size();
+                continue;
+            }
+            int low = 0;
+            int high = series.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (series.getXValue(mid) < x) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return count + low;
+        }
+        return count;
+    }
+
+    private int windowSize() {
+        int size = 0;
+        for (KLinePage<T> page : window) {
+            size += page.getSeries().size();
+        }
+        return size;
+    }
+
+    /**
+     * 将当前窗口交给快照存储构建索引，并在主线程通知窗口变化
+     * 通知与新快照一起发布，只包含相对上一次通知加入和移除的页
+     */
+    private void publish() {
+        if (listener == null) {
+            store.setPages(window, null);
+            return;
+        }
+        WindowChange<T> change = diff(publishedWindow, window);
+        publishedWindow = new ArrayList<>(window);
+        store.setPages(window, () -> listener.onWindowChanged(change));
+    }
+
+    /**
+     * 计算两个窗口之间的变化
+     * 两个窗口都是按时间升序的连续页，它们的交集也是连续的
+     */
+    private static <T> WindowChange<T> diff(List<KLinePage<T>> previous, List<KLinePage<T>> current) {
+        int start = previous.isEmpty() ? -1 : current.indexOf(previous.get(0));
+        int keepFrom;      // previous 中第一个保留的页
+        int currentFrom;   // current 中第一个保留的页
+        if (start >= 0) {
+            keepFrom = 0;
+            currentFrom = start;
+        } else {
+            int first = current.isEmpty() ? -1 : previous.indexOf(current.get(0));
+            keepFrom = first >= 0 ? first : previous.size();
+            currentFrom = 0;
+        }
+        int keepTo = keepFrom;
+        int currentTo = currentFrom;
+        while (keepTo < previous.size() && currentTo < current.size()
+                && previous.get(keepTo) == current.get(currentTo)) {
+            keepTo++;
+            currentTo++;
+        }
+        if (keepTo == keepFrom) {
+            // 没有重叠：全部移除，全部作为较新一端加入
+            return new WindowChange<>(barCount(previous, 0, previous.size()), 0,
+                    Collections.<T>emptyList(), bars(current, 0, current.size()));
+        }
+        return new WindowChange<>(barCount(previous, 0, keepFrom), barCount(previous, keepTo, previous.size()),
+                bars(current, 0, currentFrom), bars(current, currentTo, current.size()));
+    }
+
+    private static <T> int barCount(List<KLinePage<T>> pages, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            count += pages.get(i).getBars().size();
+        }
+        return count;
+    }
+
+    private static <T> List<T> bars(List<KLinePage<T>> pages, int from, int to) {
+        List<T> bars = new ArrayList<>(barCount(pages, from, to));
+        for (int i = from; i < to; i++) {
+            bars.addAll(pages.get(i).getBars());
+        }
+        return bars;
+    }
+
+    /**
+     * 在原手势监听器的基础上响应图表平移
+     */
+    private final class TranslateListener implements OnChartGestureListener {
+        private final OnChartGestureListener delegate;
+
+        TranslateListener(OnChartGestureListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onChartTranslate(MotionEvent me, float dX, float dY) {
+            if (delegate != null) delegate.onChartTranslate(me, dX, dY);
+            onVisibleRangeChanged();
+        }
+
+        @Override
+        public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+            if (delegate != null) delegate.onChartScale(me, scaleX, scaleY);
+            onVisibleRangeChanged();
+        }
+
+        @Override
+        public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            if (delegate != null) delegate.onChartGestureStart(me, lastPerformedGesture);
+        }
+
+        @Override
+        public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            if (delegate != null) delegate.onChartGestureEnd(me, lastPerformedGesture);
+        }
+
+        @Override
+        public void onChartLongPressed(MotionEvent me) {
+            if (delegate != null) delegate.onChartLongPressed(me);
+        }
+
+        @Override
+        public void onChartDoubleTapped(MotionEvent me) {
+            if (delegate != null) delegate.onChartDoubleTapped(me);
+        }
+
+        @Override
+        public void onChartSingleTapped(MotionEvent me) {
+            if (delegate != null) delegate.onChartSingleTapped(me);
+        }
+
+        @Override
+        public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
+            if (delegate != null) delegate.onChartFling(me1, me2, velocityX, velocityY);
+        }
+    }
+
+    /**
+     * 加载器配置
+     */
+    public static final class Builder<T> {
+        private KLinePageSource<T> source;
+        private Listener<T> listener;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+        private int maxPages = DEFAULT_MAX_PAGES;
+        private int prefetchBars = -1;
+
+        public Builder<T> source(KLinePageSource<T> source) {
+            this.source = source;
+            return this;
+        }
+
+        public Builder<T> listener(Listener<T> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * 每页K线数量，建议为256的整数倍，此时拼接窗口时各页直接共享列数据
+         */
+        public Builder<T> pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * 内存中最多保留的页数（至少2页），内存占用上限约为 pageSize * maxPages 根K线
+         */
+        public Builder<T> maxPages(int maxPages) {
+            this.maxPages = maxPages;
+            return this;
+        }
+
+        /**
+         * 可见范围距窗口边缘少于该K线数量时加载相邻页，默认为pageSize的1/4
+         */
+        public Builder<T> prefetchBars(int prefetchBars) {
+            this.prefetchBars = prefetchBars;
+            return this;
+        }
+
+        public PagedKLineLoader<T> build(CombinedChart chart, RenderSnapshotStore<T> store) {
+            if (source == null) {
+                throw new IllegalStateException("Page source is required");
+            }
+            return new PagedKLineLoader<>(this, chart, store);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.alex.klinemarker.core;
+
+import android.view.View;
+
+/**
+ * 重绘合并器
+ * 管理器发起的所有重绘都经过这里：一帧内的多次请求合并为一次，在下一帧的动画阶段重绘整个图表。
+ * <p>
+ * 不按区域重绘：API 21起硬件加速的视图会忽略 {@code invalidate(Rect)} 的矩形参数（该方法在API 28废弃），
+ * 区域重绘与整体重绘的开销相同。
+ * <p>
+ * 请求可以在任意线程发出（例如后台构建线程发布快照之后），重绘在主线程执行。
+ */
+final class RedrawCoalescer {
+
+    private final View chart;
+    private final Runnable flush = this::flush;
+
+    private final Object lock = new Object();
+    private boolean scheduled;
+
+    RedrawCoalescer(View chart) {
+        this.chart = chart;
+    }
+
+    /**
+     * 请求在下一帧重绘
+     */
+    void request() {
+        synchronized (lock) {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        chart.postOnAnimation(flush);
+    }
+
+    private void flush() {
+        synchronized (lock) {
+            scheduled = false;
+        }
+        chart.invalidate();
+    }
+}
@@ -0,0 +1,228 @@
+package com.alex.klinemarker.core;
+
+import java.util.Arrays;
+
+/**
+ * 趋势区间上边沿数据
+ * 保存区间内每根K线的X值和（平滑后的）边沿值，并预先构建最小/最大值抽稀金字塔：
+ * 第k层每个桶覆盖 2^k 根K线，只保留桶内的最小值点和最大值点（按X顺序）。
+ * 绘制时根据每像素对应的K线数量直接选层，使路径顶点数受屏幕宽度约束，而不是受历史长度约束。
+ */
+final class RegionEdge {
+
+    // 第0层：原始点
+    private final float[] xValues;
+    private final float[] edgeValues;
+
+    // 第1层及以上：每个桶两个点（最小值点和最大值点，按X排序）
+    private final float[][] levelXValues;
+    private final float[][] levelEdgeValues;
+
+    private final float minX;
+    private final float maxX;
+    private final float xSpacing;
+
+    RegionEdge(float[] xValues, float[] edgeValues) {
+        this(null, xValues, edgeValues, 0);
+    }
+
+    /**
+     * 基于已有上边沿构建，抽稀金字塔中只重新计算包含 firstChanged 及之后点的桶，之前的桶直接复制
+     * 用于区间尾部追加或更新K线
+     *
+     * @param base         原上边沿，其前 firstChanged 个点与新数据相同
+     * @param firstChanged 第一个发生变化的点
+     */
+    RegionEdge(RegionEdge base, float[] xValues, float[] edgeValues, int firstChanged) {
+        this.xValues = xValues;
+        this.edgeValues = edgeValues;
+
+        int count = xValues.length;
+        this.minX = count > 0 ? xValues[0] : 0f;
+        this.maxX = count > 0 ? xValues[count - 1] : 0f;
+        this.xSpacing = count > 1 ? Math.max((maxX - minX) / (count - 1), Float.MIN_VALUE) : 1f;
+
+        // 计算层数：直到单个桶覆盖整个区间
+        int levels = 0;
+        while ((1 << levels) < count) {
+            levels++;
+        }
+        levelXValues = new float[levels + 1][];
+        levelEdgeValues = new float[levels + 1][];
+        levelXValues[0] = xValues;
+        levelEdgeValues[0] = edgeValues;
+
+        // 每层第一个需要重新计算的桶，原上边沿没有该层时从头计算
+        int fromBucket = firstChanged;
+        for (int level = 1; level <= levels; level++) {
+            fromBucket = base != null && level < base.levelXValues.length ? fromBucket / 2 : 0;
+            if (level == 1) {
+                buildFirstLevel(base, fromBucket);
+            } else {
+                buildLevel(base, level, fromBucket);
+            }
+        }
+    }
+
+    /**
+     * 从原上边沿复制同层中不需要重新计算的桶
+     */
+    private static void copyBuckets(RegionEdge base, int level, int buckets, float[] xs, float[] vs) {
+        if (buckets > 0) {
+            System.arraycopy(base.levelXValues[level], 0, xs, 0, buckets * 2);
+            System.arraycopy(base.levelEdgeValues[level], 0, vs, 0, buckets * 2);
+        }
+    }
+
+    /**
+     * 第1层：每两根K线合并为一个桶
+     */
+    private void buildFirstLevel(RegionEdge base, int fromBucket) {
+        int count = xValues.length;
+        int buckets = (count + 1) / 2;
+        float[] xs = new float[buckets * 2];
+        float[] vs = new float[buckets * 2];
+        copyBuckets(base, 1, fromBucket, xs, vs);
+        for (int b = fromBucket; b < buckets; b++) {
+            int i = b * 2;
+            int j = Math.min(i + 1, count - 1);
+            writeBucket(xs, vs, b, xValues[i], edgeValues[i], xValues[j], edgeValues[j]);
+        }
+        levelXValues[1] = xs;
+        levelEdgeValues[1] = vs;
+    }
+
+    /**
+     * 第k层：合并第k-1层相邻的两个桶（最多4个候选点）
+     */
+    private void buildLevel(RegionEdge base, int level, int fromBucket) {
+        float[] prevX = levelXValues[level - 1];
+        float[] prevV = levelEdgeValues[level - 1];
+        int prevBuckets = prevX.length / 2;
+        int buckets = (prevBuckets + 1) / 2;
+        float[] xs = new float[buckets * 2];
+        float[] vs = new float[buckets * 2];
+        copyBuckets(base, level, fromBucket, xs, vs);
+
+        for (int b = fromBucket; b < buckets; b++) {
+            int first = b * 4;
+            int last = Math.min(first + 4, prevBuckets * 2);
+
+            int minIndex = first;
+            int maxIndex = first;
+            for (int i = first + 1; i < last; i++) {
+                if (prevV[i] < prevV[minIndex]) minIndex = i;
+                if (prevV[i] > prevV[maxIndex]) maxIndex = i;
+            }
+            writeBucket(xs, vs, b, prevX[minIndex], prevV[minIndex], prevX[maxIndex], prevV[maxIndex]);
+        }
+        levelXValues[level] = xs;
+        levelEdgeValues[level] = vs;
+    }
+
+    /**
+     * 写入一个桶的最小值点和最大值点，保持X递增
+     */
+    private static void writeBucket(float[] xs, float[] vs, int bucket,
+                                    float x1, float v1, float x2, float v2) {
+        int i = bucket * 2;
+        if (x1 <= x2) {
+            xs[i] = x1;
+            vs[i] = v1;
+            xs[i + 1] = x2;
+            vs[i + 1] = v2;
+        } else {
+            xs[i] = x2;
+            vs[i] = v2;
+            xs[i + 1] = x1;
+            vs[i + 1] = v1;
+        }
+    }
+
+    /**
+     * 根据每像素对应的X轴跨度选择抽稀层级，O(1)
+     *
+     * @param xPerPixel 每个像素对应的X轴跨度
+     * @return 抽稀层级，0表示不抽稀
+     */
+    int levelFor(float xPerPixel) {
+        int barsPerPixel = (int) Math.ceil(xPerPixel / xSpacing);
+        if (barsPerPixel <= 1) {
+            return 0;
+        }
+        // 取 ceil(log2(barsPerPixel))，保证每个桶不超过一个像素宽，即每像素最多两个点
+        int level = 32 - Integer.numberOfLeadingZeros(barsPerPixel - 1);
+        return Math.min(level, levelXValues.length - 1);
+    }
+
+    /**
+     * 指定层级下的最大点数，用于预分配缓冲区
+     */
+    int pointCapacity(int level) {
+        return levelXValues[level].length;
+    }
+
+    /**
+     * 将指定层级中X值位于[minX, maxX]的点以(x, y)对的形式写入缓冲区
+     *
+     * @return 写入的点数
+     */
+    int collectPoints(int level, float visibleMinX, float visibleMaxX, float[] out) {
+        float[] xs = levelXValues[level];
+        float[] vs = levelEdgeValues[level];
+
+        int from = lowerBound(xs, visibleMinX);
+        int count = 0;
+        for (int i = from; i < xs.length && xs[i] <= visibleMaxX; i++) {
+            out[count * 2] = xs[i];
+            out[count * 2 + 1] = vs[i];
+            count++;
+        }
+        return count;
+    }
+
+    private static int lowerBound(float[] xs, float value) {
+        int index = Arrays.binarySearch(xs, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // 存在相同X值时回退到第一个
+        while (index > 0 && xs[index - 1] == value) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * 第0层的X值（每根K线一个）
+     */
+    float[] getXValues() {
+        return xValues;
+    }
+
+    /**
+     * 第0层的边沿值（每根K线一个）
+     */
+    float[] getEdgeValues() {
+        return edgeValues;
+    }
+
+    boolean isEmpty() {
+        return xValues.length == 0;
+    }
+
+    /**
+     * 第0层的点数（每根K线一个）
+     */
+    int size() {
+        return xValues.length;
+    }
+
+    float getMinX() {
+        return minX;
+    }
+
+    float getMaxX() {
+        return maxX;
+    }
+}
@@ -0,0 +1,84 @@
+package com.alex.klinemarker.core;
+
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Shader;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+/**
+ * 趋势区间着色器缓存
+ * 渐变只依赖于（基础颜色、顶部/底部透明度、内容区上下边界），
+ * 每个缓存对应一组固定的内容区域和透明度，按基础颜色缓存；内容区域或透明度变化时换用另一组缓存。
+ * 缓存由 {@link MarkerResourcePool} 统一管理，尺寸相同的图表共用，只应在主线程使用
+ */
+class RegionShaderCache {
+
+    // 渐变着色器缓存：基础颜色 -> LinearGradient
+    private final SparseArray<Shader> gradientCache = new SparseArray<>();
+
+    // 纯色缓存：基础颜色 -> 带透明度的颜色
+    private final SparseIntArray flatColorCache = new SparseIntArray();
+
+    // 生成缓存使用的输入
+    private final float top;
+    private final float bottom;
+    private final float topAlpha;
+    private final float bottomAlpha;
+
+    /**
+     * @param contentTop    内容区顶部
+     * @param contentBottom 内容区底部
+     * @param topAlpha      顶部透明度
+     * @param bottomAlpha   底部透明度
+     */
+    RegionShaderCache(float contentTop, float contentBottom, float topAlpha, float bottomAlpha) {
+        this.top = contentTop;
+        this.bottom = contentBottom;
+        this.topAlpha = topAlpha;
+        this.bottomAlpha = bottomAlpha;
+    }
+
+    /**
+     * 缓存是否对应指定的内容区域和透明度
+     */
+    boolean matches(float contentTop, float contentBottom, float topAlpha, float bottomAlpha) {
+        return contentTop == top && contentBottom == bottom
+                && topAlpha == this.topAlpha && bottomAlpha == this.bottomAlpha;
+    }
+
+    /**
+     * 获取渐变着色器
+     */
+    Shader getGradient(int baseColor) {
+        Shader gradient = gradientCache.get(baseColor);
+        if (gradient == null) {
+            gradient = new LinearGradient(
+                    0, top,
+                    0, bottom,
+                    withAlpha(baseColor, topAlpha),
+                    withAlpha(baseColor, bottomAlpha),
+                    Shader.TileMode.CLAMP
+            );
+            gradientCache.put(baseColor, gradient);
+        }
+        return gradient;
+    }
+
+    /**
+     * 获取纯色填充颜色（使用顶部透明度）
+     */
+    int getFlatColor(int baseColor) {
+        int index = flatColorCache.indexOfKey(baseColor);
+        if (index >= 0) {
+            return flatColorCache.valueAt(index);
+        }
+        int color = withAlpha(baseColor, topAlpha);
+        flatColorCache.put(baseColor, color);
+        return color;
+    }
+
+    private static int withAlpha(int baseColor, float alpha) {
+        return Color.argb((int) (alpha * 255), Color.red(baseColor), Color.green(baseColor), Color.blue(baseColor));
+    }
+}
@@ -0,0 +1,113 @@
+package com.alex.klinemarker.core;
+
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.Timeframe;
+import com.alex.klinemarker.data.TrendRegion;
+
+import java.util.List;
+
+/**
+ * 渲染快照
+ * 一次绘制所需的全部数据：K线序列、标记索引、区间索引（含已构建的上边沿）和合并后的区间。
+ * 快照在后台线程构建完成后整体发布，发布后不再修改；绘制线程每帧只读取一次当前快照。
+ * <p>
+ * 修改采用写时复制：新快照只复制被修改的部分，未修改的序列、索引和上边沿与旧快照共享，
+ * 因此持有旧快照的线程可以继续安全地读取。唯一的例外是从快照文件恢复的标记对象，
+ * 它们由绘制线程在首次绘制时创建并缓存，只应在绘制线程中通过索引读取。
+ * <p>
+ * 切换到聚合周期后，快照中的序列、标记和区间都是聚合后的结果，同时保留基础周期的快照用于后续修改。
+ */
+public final class RenderSnapshot {
+
+    static final RenderSnapshot EMPTY = new RenderSnapshot(0, null, null, new TrendRegionIndex(), null);
+
+    private final long version;
+    private final Timeframe timeframe;
+    // 基础周期的快照，未聚合时为自身
+    private final RenderSnapshot base;
+
+    private final KLineSeries series;
+    private final MarkerIndex markerIndex;
+    private final TrendRegionIndex regionIndex;
+    private final TrendRegionIndex mergedIndex;
+
+    RenderSnapshot(long version, KLineSeries series, MarkerIndex markerIndex,
+                   TrendRegionIndex regionIndex, TrendRegionIndex mergedIndex) {
+        this.version = version;
+        this.timeframe = Timeframe.BASE;
+        this.base = this;
+        this.series = series;
+        this.markerIndex = markerIndex;
+        this.regionIndex = regionIndex;
+        this.mergedIndex = mergedIndex;
+    }
+
+    /**
+     * 基于基础周期快照的聚合周期快照，版本与基础快照相同
+     */
+    RenderSnapshot(RenderSnapshot base, Timeframe timeframe, KLineSeries series, MarkerIndex markerIndex,
+                   TrendRegionIndex regionIndex, TrendRegionIndex mergedIndex) {
+        this.version = base.version;
+        this.timeframe = timeframe;
+        this.base = base;
+        this.series = series;
+        this.markerIndex = markerIndex;
+        this.regionIndex = regionIndex;
+        this.mergedIndex = mergedIndex;
+    }
+
+    /**
+     * 快照版本，每次发布递增，可用于判断数据是否已变化
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 快照对应的K线周期
+     */
+    public Timeframe getTimeframe() {
+        return timeframe;
+    }
+
+    /**
+     * K线序列（聚合周期下为聚合后的序列，可用于生成图表的K线数据），尚未设置K线数据时为null
+     */
+    public KLineSeries getSeries() {
+        return series;
+    }
+
+    public int getMarkerCount() {
+        return markerIndex != null ? markerIndex.getMarkerCount() : 0;
+    }
+
+    public int getRegionCount() {
+        return regionIndex.size();
+    }
+
+    /**
+     * 全部趋势区间（只读）
+     */
+    public List<TrendRegion> getTrendRegions() {
+        return regionIndex.getRegions();
+    }
+
+    RenderSnapshot getBase() {
+        return base;
+    }
+
+    MarkerIndex getMarkerIndex() {
+        return markerIndex;
+    }
+
+    TrendRegionIndex getRegionIndex() {
+        return regionIndex;
+    }
+
+    /**
+     * 实际绘制的区间：启用合并时为合并结果，否则为原始区间
+     */
+    TrendRegionIndex getRenderRegions() {
+        return mergedIndex != null ? mergedIndex : regionIndex;
+    }
+}
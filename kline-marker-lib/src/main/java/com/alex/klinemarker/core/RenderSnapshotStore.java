@@ -0,0 +1,875 @@
+package com.alex.klinemarker.core;
+
+import android.util.Log;
+
+import com.alex.klinemarker.data.KLineAggregation;
+import com.alex.klinemarker.data.KLineDataAdapter;
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.TimeAxis;
+import com.alex.klinemarker.data.Timeframe;
+import com.alex.klinemarker.data.TrendRegion;
+import com.alex.klinemarker.utils.TrendRegionParser;
+import com.github.mikephil.charting.charts.CombinedChart;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 渲染快照存储
+ * 所有数据修改都交给串行的后台执行器：修改先进入待处理队列，后台线程一次取出全部待处理修改，
+ * 在当前快照的基础上构建出完整的新快照，再通过一次 volatile 写入发布，随后只请求一次
+ * {@code postInvalidateOnAnimation}。调用线程（通常是主线程）只做入队，不做任何索引构建。
+ * <p>
+ * 连续的多次修改（例如依次设置K线、标记和趋势区间）会合并为一次构建和一次重绘；
+ * 在 {@link #beginBatch()} 和 {@link #endBatch()} 之间的修改会等到批量结束后再一起构建。
+ * 所有重绘请求都经过 {@link RedrawCoalescer}，每帧最多重绘一次。
+ * <p>
+ * 修改总是作用于基础周期的数据；切换到聚合周期后，后台线程在基础快照之上派生聚合快照再发布。
+ * 每个周期的聚合结果都会缓存，基础数据未变化时切换周期不需要重新聚合。
+ * <p>
+ * 构建任务运行在所有图表共用的有界线程池上（见 {@link MarkerResourcePool}），同一个存储的构建按顺序逐个执行。
+ */
+public final class RenderSnapshotStore<T> {
+
+    private static final String TAG = "RenderSnapshotStore";
+    private static final boolean DEBUG = false;
+
+    private final CombinedChart chart;
+    private final KLineDataAdapter<T> dataAdapter;
+    private final TrendRegionRenderer regionRenderer;
+    private final Executor executor;
+    private final RedrawCoalescer redraws;
+
+    // 当前发布的快照，绘制线程每帧读取一次
+    private volatile RenderSnapshot snapshot = RenderSnapshot.EMPTY;
+    // 已提交到主线程、尚未发布的快照数量；不为0时后续快照也经主线程按顺序发布
+    private final AtomicInteger mainThreadPublishes = new AtomicInteger();
+
+    // 待处理的修改，调用线程写入，后台线程取出
+    private final Object lock = new Object();
+    private List<Update<Draft>> pendingUpdates = new ArrayList<>();
+    private boolean buildScheduled;
+    private int batchDepth;
+    // 批量修改期间或构建前请求的整体重绘，随下一次构建一起执行
+    private boolean redrawRequested;
+
+    // 以下字段只在构建任务中访问，构建任务串行执行。
+    // 构建中的修改先暂存在 Draft 中，构建成功后才写回，构建失败时保持与 built 一致
+    private RenderSnapshot built = RenderSnapshot.EMPTY;   // 最近一次构建的快照，下一次构建以它为基础
+    private List<MarkerData> markers;   // 标记源数据，K线变化时据此重建索引；从快照恢复后为null。不在原列表上修改
+    private int markerGeneration;       // 标记源数据或时间轴每次变化时更新，用于判断分页缓存的映射是否有效
+    private int lastMarkerGeneration;   // 已分配的最大代数，构建失败也不回退，避免分页缓存误用失败构建中的映射
+    private TimeAxis timeAxis = TimeAxis.DAY;
+    private Timeframe timeframe = Timeframe.BASE;
+    private boolean indexXValues;
+    private final Map<Timeframe, TimeframeView> views = new EnumMap<>(Timeframe.class);
+    private TrendDetector trendDetector;
+    private List<TrendRegion> detectedRegions = Collections.emptyList();   // 上次加入区间索引的检测结果
+    private boolean detectorResync;     // 检测器在失败的构建中已前进，下次构建需要完整重新检测
+
+    public RenderSnapshotStore(CombinedChart chart, KLineDataAdapter<T> dataAdapter,
+                               TrendRegionRenderer regionRenderer) {
+        this.chart = chart;
+        this.dataAdapter = dataAdapter;
+        this.regionRenderer = regionRenderer;
+        this.executor = MarkerResourcePool.newBuildExecutor();
+        this.redraws = new RedrawCoalescer(chart);
+    }
+
+    KLineDataAdapter<T> getDataAdapter() {
+        return dataAdapter;
+    }
+
+    /**
+     * 设置标记匹配K线使用的时间轴，标记会按新的时间桶重新匹配
+     * 默认为 {@link TimeAxis#DAY}，分钟线或小时线应使用对应桶长度的时间轴
+     */
+    public void setTimeAxis(TimeAxis timeAxis) {
+        TimeAxis target = timeAxis != null ? timeAxis : TimeAxis.DAY;
+        enqueue(draft -> draft.setTimeAxis(target));
+    }
+
+    /**
+     * 切换显示的K线周期，聚合在后台线程完成，完成后整体重绘
+     * 切换后的快照序列为聚合后的K线，图表的K线数据应据此重新生成
+     *
+     * @param timeframe    目标周期，{@link Timeframe#BASE} 表示使用原始K线
+     * @param indexXValues 聚合K线的X值是否使用序号，见 {@link KLineAggregation#aggregate}
+     */
+    public void setTimeframe(Timeframe timeframe, boolean indexXValues) {
+        Timeframe target = timeframe != null ? timeframe : Timeframe.BASE;
+        enqueue(draft -> draft.setTimeframe(target, indexXValues));
+    }
+
+    /**
+     * 获取当前发布的快照（任意线程）
+     */
+    public RenderSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 开始批量修改，之后的修改在对应的 {@link #endBatch()} 之后合并为一次构建和一次重绘
+     * 可以嵌套，最外层结束时才开始构建
+     */
+    public void beginBatch() {
+        synchronized (lock) {
+            batchDepth++;
+        }
+    }
+
+    /**
+     * 结束批量修改
+     */
+    public void endBatch() {
+        boolean build = false;
+        boolean redraw = false;
+        synchronized (lock) {
+            if (batchDepth == 0) {
+                throw new IllegalStateException("endBatch() without matching beginBatch()");
+            }
+            if (--batchDepth > 0) {
+                return;
+            }
+            if (!pendingUpdates.isEmpty()) {
+                build = !buildScheduled;
+                buildScheduled = true;
+            } else if (redrawRequested) {
+                redrawRequested = false;
+                redraw = true;
+            }
+        }
+        if (build) {
+            executor.execute(this::build);
+        } else if (redraw) {
+            redraws.request();
+        }
+    }
+
+    /**
+     * 请求整体重绘（任意线程）
+     * 有修改正在等待构建时与构建完成后的重绘合并，否则在下一帧重绘；同一帧内的多次请求只重绘一次
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            if (batchDepth > 0 || buildScheduled) {
+                redrawRequested = true;
+                return;
+            }
+        }
+        redraws.request();
+    }
+
+    /**
+     * 设置K线数据，K线对象交给后台线程读取，调用后不应再修改
+     */
+    public void setKLineData(List<T> klineData) {
+        // 调用线程只复制引用列表，展开为列式序列在后台线程完成
+        List<T> copy = klineData != null ? new ArrayList<>(klineData) : null;
+        enqueue(draft -> draft.setSeries(copy != null ? KLineSeries.from(copy, dataAdapter) : null));
+    }
+
+    /**
+     * 使用分页加载的K线窗口（按时间升序排列的连续多页）
+     * 标记映射按页缓存，只为新加载的页匹配标记
+     *
+     * @param onPublished 在主线程中与包含该窗口的快照一起执行（例如更新图表的K线数据），
+     *                    快照和图表数据在同一帧生效；可以为null
+     */
+    void setPages(List<KLinePage<T>> pages, Runnable onPublished) {
+        List<KLinePage<T>> copy = new ArrayList<>(pages);
+        enqueue(draft -> {
+            draft.setPages(copy);
+            if (onPublished != null) {
+                draft.publishActions.add(onPublished);
+            }
+        });
+    }
+
+    /**
+     * 在末尾追加一根K线（实时行情新开一根K线）
+     * 只为新K线匹配标记、只重新解析覆盖到序列末尾的区间并更新其上边沿尾部，完成后自动重绘
+     */
+    public void appendBar(T bar) {
+        if (bar != null) {
+            enqueue(draft -> draft.appendBar(bar));
+        }
+    }
+
+    /**
+     * 更新最后一根K线（实时行情的逐笔更新），增量处理方式与 {@link #appendBar(Object)} 相同
+     * 连续多次更新会合并为一次构建
+     */
+    public void updateLastBar(T bar) {
+        if (bar != null) {
+            enqueue(draft -> draft.updateLastBar(bar));
+        }
+    }
+
+    /**
+     * 追加单个标记，只为该标记建立索引
+     */
+    public void appendMarker(MarkerData marker) {
+        if (marker != null) {
+            addMarkers(Collections.singletonList(marker));
+        }
+    }
+
+    public void setMarkers(List<MarkerData> newMarkers) {
+        List<MarkerData> copy = newMarkers != null ? new ArrayList<>(newMarkers) : null;
+        enqueue(draft -> draft.setMarkers(copy));
+    }
+
+    public void addMarkers(List<MarkerData> newMarkers) {
+        if (newMarkers == null || newMarkers.isEmpty()) {
+            return;
+        }
+        List<MarkerData> copy = new ArrayList<>(newMarkers);
+        enqueue(draft -> draft.addMarkers(copy));
+    }
+
+    public void setTrendRegions(List<TrendRegion> trendRegions) {
+        List<TrendRegion> copy = trendRegions != null ? new ArrayList<>(trendRegions) : null;
+        enqueue(draft -> draft.setTrendRegions(copy));
+    }
+
+    /**
+     * 从JSON数据设置趋势区间，解析在后台线程中随构建一起完成
+     */
+    public void setTrendRegionsFromJson(String jsonData) {
+        enqueue(draft -> draft.setTrendRegions(TrendRegionParser.parseFromJson(jsonData)));
+    }
+
+    /**
+     * 设置趋势检测器，为null时停止检测并移除已检测出的区间
+     * 检测结果与其他趋势区间一起显示；K线尾部变化时检测器只从变化的K线继续检测，只更新变化的区间
+     */
+    public void setTrendDetector(TrendDetector detector) {
+        enqueue(draft -> draft.setTrendDetector(detector));
+    }
+
+    /**
+     * 创建与当前K线序列绑定的空区间索引，可在工作线程中填充后交给 {@link #setTrendRegionIndex(TrendRegionIndex)}
+     */
+    public TrendRegionIndex newTrendRegionIndex() {
+        TrendRegionIndex index = new TrendRegionIndex();
+        index.setSeries(snapshot.getBase().getSeries());
+        return index;
+    }
+
+    /**
+     * 使用已解析的区间索引
+     * 后台线程会复制一份再使用，调用方之后修改该索引不会影响已发布的快照
+     */
+    public void setTrendRegionIndex(TrendRegionIndex index) {
+        enqueue(draft -> draft.setTrendRegionIndex(index));
+    }
+
+    public void addTrendRegion(TrendRegion region) {
+        if (region != null) {
+            enqueue(draft -> draft.putTrendRegion(region));
+        }
+    }
+
+    public void updateTrendRegion(TrendRegion region) {
+        if (region != null) {
+            enqueue(draft -> draft.putTrendRegion(region));
+        }
+    }
+
+    public void removeTrendRegion(String regionId) {
+        if (regionId != null) {
+            enqueue(draft -> draft.removeTrendRegion(regionId));
+        }
+    }
+
+    /**
+     * 从快照文件恢复，读取和构建都在后台线程完成
+     */
+    public void restore(File file) {
+        enqueue(draft -> draft.restore(file));
+    }
+
+    /**
+     * 将当前发布的快照写入文件（任意线程，通常在工作线程中调用），总是写入基础周期的数据
+     *
+     * @throws IOException 写入失败，或还没有设置K线数据
+     */
+    public void write(File file) throws IOException {
+        KLineSnapshot.write(file, snapshot.getBase(), regionRenderer.getEdgeSmoothWindow());
+    }
+
+    // ==================== 后台构建 ====================
+
+    private interface Update<D> {
+        void apply(D draft);
+    }
+
+    private void enqueue(Update<Draft> update) {
+        synchronized (lock) {
+            pendingUpdates.add(update);
+            if (buildScheduled || batchDepth > 0) {
+                return;
+            }
+            buildScheduled = true;
+        }
+        executor.execute(this::build);
+    }
+
+    private void build() {
+        List<Update<Draft>> updates;
+        boolean redraw;
+        synchronized (lock) {
+            updates = pendingUpdates;
+            pendingUpdates = new ArrayList<>();
+            buildScheduled = false;
+            redraw = redrawRequested;
+            redrawRequested = false;
+        }
+
+        Draft draft = new Draft(built.getBase());
+        RenderSnapshot result;
+        try {
+            for (Update<Draft> update : updates) {
+                update.apply(draft);
+            }
+            RenderSnapshot base = draft.finish();
+            if (draft.timeframe != Timeframe.BASE) {
+                base = deriveView(base, draft.timeframe, draft.indexXValues, draft.timeAxis.getZone(),
+                        built.getBase().getSeries(), draft.tailChangedBar());
+            }
+            result = base;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to build render snapshot, keeping the previous one", e);
+            detectorResync |= draft.detectorUpdated;
+            if (!draft.publishActions.isEmpty()) {
+                // 保持调用方的状态与通知一致，快照不变
+                publish(built, draft.publishActions);
+            } else if (redraw) {
+                redraws.request();
+            }
+            return;
+        }
+        draft.commit();
+        built = result;
+        publish(result, draft.publishActions);
+    }
+
+    /**
+     * 发布快照并在下一帧重绘
+     * 没有需要与快照同步执行的操作时在构建线程中通过一次 volatile 写入发布；
+     * 否则在主线程中发布快照并执行这些操作，两者在同一帧生效。主线程发布尚未完成时，
+     * 之后的快照也经主线程发布，保证按构建顺序生效
+     */
+    private void publish(RenderSnapshot result, List<Runnable> actions) {
+        if (actions.isEmpty() && mainThreadPublishes.get() == 0) {
+            snapshot = result;
+            redraws.request();
+            return;
+        }
+        mainThreadPublishes.incrementAndGet();
+        chart.post(() -> {
+            snapshot = result;
+            for (Runnable action : actions) {
+                action.run();
+            }
+            // 在快照写入之后递减，构建线程看到0时直接发布的快照一定更新
+            mainThreadPublishes.decrementAndGet();
+            redraws.request();
+        });
+    }
+
+    /**
+     * 在基础快照之上派生当前周期的聚合快照
+     * 只重新计算基础数据变化的部分：K线未变化时复用聚合序列，标记或区间未变化时复用对应的聚合索引；
+     * 只有序列尾部变化时增量更新聚合序列，并只重新映射最后一个周期及之后的标记和区间
+     *
+     * @param previousSeries  上一次构建的基础序列
+     * @param firstChangedBar 与 previousSeries 相比只有尾部变化时为第一根变化的K线索引，否则为-1
+     */
+    private RenderSnapshot deriveView(RenderSnapshot base, Timeframe timeframe, boolean indexXValues,
+                                      TimeZone zone, KLineSeries previousSeries, int firstChangedBar) {
+        KLineSeries series = base.getSeries();
+        if (series == null) {
+            return new RenderSnapshot(base, timeframe, null, null, base.getRegionIndex(), null);
+        }
+
+        // 周期按时间轴的时区划分，与标记匹配使用的时间桶一致
+        TimeframeView view = views.get(timeframe);
+        if (view != null && (view.aggregation.isIndexXValues() != indexXValues
+                || view.aggregation.getZone() != zone)) {
+            view = null;
+        }
+        // 第一根可能变化的聚合K线，-1表示不能增量更新
+        int firstChangedBucket = -1;
+        KLineAggregation aggregation;
+        if (view != null && view.aggregation.getBaseSeries() == series) {
+            aggregation = view.aggregation;
+        } else if (view != null && firstChangedBar >= 0 && view.aggregation.getBaseSeries() == previousSeries) {
+            firstChangedBucket = firstChangedBucket(view.aggregation, firstChangedBar);
+            aggregation = view.aggregation.withTail(series, firstChangedBar);
+        } else {
+            view = null;
+            aggregation = KLineAggregation.aggregate(series, timeframe, indexXValues, zone);
+            if (DEBUG) Log.d(TAG, "Aggregated " + series.size() + " bars into "
+                    + aggregation.getSeries().size() + " " + timeframe + " bars");
+        }
+        boolean tail = firstChangedBucket >= 0;
+
+        // 先全部计算再写回缓存，计算失败时缓存保持一致
+        MarkerIndex markerIndex = base.getMarkerIndex();
+        MarkerIndex aggregatedMarkers;
+        if (markerIndex == null) {
+            aggregatedMarkers = null;
+        } else if (view != null && !tail && view.baseMarkerIndex == markerIndex) {
+            aggregatedMarkers = view.markerIndex;
+        } else if (tail && view.markerIndex != null && markerIndex.sharesMarkersWith(view.baseMarkerIndex)) {
+            aggregatedMarkers = view.markerIndex.withAggregatedTail(markerIndex, aggregation, firstChangedBucket);
+        } else {
+            aggregatedMarkers = markerIndex.aggregate(aggregation);
+        }
+
+        TrendRegionIndex regionIndex = base.getRegionIndex();
+        TrendRegionIndex aggregatedRegions;
+        if (view != null && !tail && view.baseRegionIndex == regionIndex) {
+            aggregatedRegions = view.regionIndex;
+        } else {
+            aggregatedRegions = regionIndex.aggregate(aggregation);
+            if (tail) {
+                // 起点不变的区间在上一次聚合结果的上边沿基础上更新尾部
+                int[] stale = aggregatedRegions.keepEdges(view.regionIndex);
+                regionRenderer.updateTailEdges(aggregatedRegions, stale, firstChangedBucket);
+            }
+            regionRenderer.buildEdges(aggregatedRegions);
+        }
+
+        // 合并结果同样按索引范围映射，不按日期重新解析
+        TrendRegionIndex mergedIndex = base.getRenderRegions() != regionIndex ? base.getRenderRegions() : null;
+        TrendRegionIndex aggregatedMerged;
+        if (mergedIndex == null) {
+            aggregatedMerged = null;
+        } else if (view != null && !tail && view.baseMergedIndex == mergedIndex) {
+            aggregatedMerged = view.mergedIndex;
+        } else {
+            aggregatedMerged = mergedIndex.aggregate(aggregation);
+            if (tail && view.mergedIndex != null) {
+                regionRenderer.reuseMergedEdges(aggregatedMerged, view.mergedIndex, firstChangedBucket);
+            }
+            regionRenderer.buildEdges(aggregatedMerged);
+        }
+
+        if (view == null) {
+            view = new TimeframeView();
+            views.put(timeframe, view);
+        }
+        view.aggregation = aggregation;
+        view.baseMarkerIndex = markerIndex;
+        view.markerIndex = aggregatedMarkers;
+        view.baseRegionIndex = regionIndex;
+        view.regionIndex = aggregatedRegions;
+        view.baseMergedIndex = mergedIndex;
+        view.mergedIndex = aggregatedMerged;
+        return new RenderSnapshot(base, timeframe, aggregation.getSeries(),
+                aggregatedMarkers, aggregatedRegions, aggregatedMerged);
+    }
+
+    /**
+     * 基础序列从 firstChanged 开始变化时，第一根可能变化的聚合K线：firstChanged 所在的周期，追加时为最后一个周期
+     */
+    private static int firstChangedBucket(KLineAggregation aggregation, int firstChanged) {
+        if (firstChanged < aggregation.getBaseSeries().size()) {
+            return aggregation.getAggregatedIndex(firstChanged);
+        }
+        return Math.max(0, aggregation.getSeries().size() - 1);
+    }
+
+    /**
+     * 一个聚合周期的缓存（只在后台线程使用），记录派生时使用的基础数据以判断是否需要重新计算
+     */
+    private static final class TimeframeView {
+        KLineAggregation aggregation;
+
+        MarkerIndex baseMarkerIndex;
+        MarkerIndex markerIndex;
+        TrendRegionIndex baseRegionIndex;
+        TrendRegionIndex regionIndex;
+        TrendRegionIndex baseMergedIndex;
+        TrendRegionIndex mergedIndex;
+    }
+
+    /**
+     * 基于当前快照的待发布状态（只在后台线程使用）
+     * 被修改的部分在首次修改时复制，未修改的部分与当前快照共享；
+     * 存储级别的状态（周期、时间轴、标记源数据、检测器）同样暂存，构建成功后由 {@link #commit()} 写回
+     */
+    private final class Draft {
+        private Timeframe timeframe = RenderSnapshotStore.this.timeframe;
+        private boolean indexXValues = RenderSnapshotStore.this.indexXValues;
+        private TimeAxis timeAxis = RenderSnapshotStore.this.timeAxis;
+        private List<MarkerData> markers = RenderSnapshotStore.this.markers;
+        private boolean markersCopied;
+        private int markerGeneration = RenderSnapshotStore.this.markerGeneration;
+        private TrendDetector trendDetector = RenderSnapshotStore.this.trendDetector;
+        private List<TrendRegion> detectedRegions = RenderSnapshotStore.this.detectedRegions;
+        // 本次构建中检测器的状态已前进
+        private boolean detectorUpdated;
+
+        private KLineSeries series;
+        private MarkerIndex markerIndex;
+        private TrendRegionIndex regionIndex;
+        private TrendRegionIndex mergedIndex;
+        private final long version;
+
+        private boolean seriesChanged;
+        // 序列被整体替换（设置K线或从快照恢复），上一次的合并结果不能复用
+        private boolean seriesReplaced;
+        private boolean markersChanged;
+        private boolean markerIndexCopied;
+        private boolean regionIndexCopied;
+        private boolean regionsChanged;
+        private boolean detectorChanged;
+        // 区间索引被整体替换，检测出的区间需要重新加入
+        private boolean detectedRegionsCleared;
+
+        // 与本次构建的快照一起在主线程执行的操作
+        private final List<Runnable> publishActions = new ArrayList<>();
+
+        // 序列尾部第一根发生变化的K线，没有尾部变化时为Integer.MAX_VALUE
+        private int firstChangedBar = Integer.MAX_VALUE;
+
+        Draft(RenderSnapshot base) {
+            this.version = base.getVersion();
+            this.series = base.getSeries();
+            this.markerIndex = base.getMarkerIndex();
+            this.regionIndex = base.getRegionIndex();
+            this.mergedIndex = base.getRenderRegions() != base.getRegionIndex() ? base.getRenderRegions() : null;
+            // 检测器的状态与已构建的快照不一致，从头检测
+            this.detectorChanged = detectorResync;
+        }
+
+        /**
+         * 本次构建只有序列尾部变化时返回第一根变化的K线索引，否则返回-1
+         */
+        int tailChangedBar() {
+            return seriesChanged || seriesReplaced || firstChangedBar == Integer.MAX_VALUE ? -1 : firstChangedBar;
+        }
+
+        /**
+         * 构建成功后写回暂存的存储级别状态
+         */
+        void commit() {
+            RenderSnapshotStore.this.timeframe = timeframe;
+            RenderSnapshotStore.this.indexXValues = indexXValues;
+            RenderSnapshotStore.this.timeAxis = timeAxis;
+            RenderSnapshotStore.this.markers = markers;
+            RenderSnapshotStore.this.markerGeneration = markerGeneration;
+            RenderSnapshotStore.this.trendDetector = trendDetector;
+            RenderSnapshotStore.this.detectedRegions = detectedRegions;
+            if (detectorUpdated || trendDetector == null) {
+                detectorResync = false;
+            }
+        }
+
+        private void nextMarkerGeneration() {
+            markerGeneration = ++lastMarkerGeneration;
+        }
+
+        void setTimeframe(Timeframe newTimeframe, boolean newIndexXValues) {
+            timeframe = newTimeframe;
+            indexXValues = newIndexXValues;
+        }
+
+        void setTimeAxis(TimeAxis newTimeAxis) {
+            if (newTimeAxis == timeAxis) {
+                return;
+            }
+            ensureMarkerList();
+            timeAxis = newTimeAxis;
+            nextMarkerGeneration();
+            markersChanged = true;
+        }
+
+        void setSeries(KLineSeries newSeries) {
+            ensureMarkerList();
+            series = newSeries;
+            seriesChanged = true;
+            seriesReplaced = true;
+            markersChanged = true;
+        }
+
+        void appendBar(T bar) {
+            if (series == null) {
+                setSeries(KLineSeries.from(Collections.singletonList(bar), dataAdapter));
+                return;
+            }
+            int oldSize = series.size();
+            series = series.append(bar, dataAdapter);
+            onTailChanged(oldSize);
+        }
+
+        void updateLastBar(T bar) {
+            if (series == null || series.isEmpty()) {
+                appendBar(bar);
+                return;
+            }
+            series = series.replaceLast(bar, dataAdapter);
+            onTailChanged(series.size() - 1);
+        }
+
+        /**
+         * 序列尾部变化：标记索引只匹配变化的K线，区间在 finish 中统一处理
+         */
+        private void onTailChanged(int firstChanged) {
+            firstChangedBar = Math.min(firstChangedBar, firstChanged);
+            if (!markersChanged && markerIndex != null) {
+                markerIndex = markerIndex.withTail(series, firstChanged);
+                // 新索引与原索引共享标记数组，追加标记前仍需复制
+                markerIndexCopied = false;
+            }
+        }
+
+        void setPages(List<KLinePage<T>> pages) {
+            ensureMarkerList();
+            List<KLineSeries> parts = new ArrayList<>(pages.size());
+            for (KLinePage<T> page : pages) {
+                parts.add(page.getSeries());
+            }
+            setSeries(KLineSeries.concat(parts));
+
+            int[] barMarkers = new int[series.size()];
+            int offset = 0;
+            for (KLinePage<T> page : pages) {
+                int[] pageMarkers = page.getBarMarkers(markers, timeAxis, markerGeneration);
+                System.arraycopy(pageMarkers, 0, barMarkers, offset, page.getSeries().size());
+                offset += page.getSeries().size();
+            }
+            markerIndex = MarkerIndex.fromBarMarkers(series, timeAxis, barMarkers, markers);
+            markerIndexCopied = true;
+            markersChanged = false;
+        }
+
+        void setMarkers(List<MarkerData> newMarkers) {
+            markers = newMarkers;
+            markersCopied = true;
+            nextMarkerGeneration();
+            markersChanged = true;
+        }
+
+        void addMarkers(List<MarkerData> newMarkers) {
+            ensureMarkerList();
+            if (!markersCopied) {
+                // 存储中的列表可能属于上一次成功的构建，复制后再追加
+                List<MarkerData> copy = new ArrayList<>((markers != null ? markers.size() : 0) + newMarkers.size());
+                if (markers != null) {
+                    copy.addAll(markers);
+                }
+                markers = copy;
+                markersCopied = true;
+            }
+            markers.addAll(newMarkers);
+            nextMarkerGeneration();
+            if (!markersChanged && markerIndex != null) {
+                // 只为新标记建立索引，已发布的索引保持不变
+                if (!markerIndexCopied) {
+                    markerIndex = markerIndex.copy();
+                    markerIndexCopied = true;
+                }
+                markerIndex.addAll(newMarkers);
+            }
+        }
+
+        void setTrendDetector(TrendDetector detector) {
+            if (detector == trendDetector) {
+                return;
+            }
+            trendDetector = detector;
+            detectorChanged = true;
+        }
+
+        void setTrendRegions(List<TrendRegion> regions) {
+            detectedRegionsCleared = true;
+            regionIndex = new TrendRegionIndex();
+            regionIndex.setSeries(series);
+            regionIndex.setRegions(regions);
+            regionIndexCopied = true;
+            regionsChanged = true;
+            if (DEBUG) Log.d(TAG, "Set " + regionIndex.size() + " trend regions");
+        }
+
+        void setTrendRegionIndex(TrendRegionIndex index) {
+            if (index == null) {
+                setTrendRegions(null);
+                return;
+            }
+            // 复制后再绑定当前序列，K线数据在解析期间未变化时不再重新解析
+            detectedRegionsCleared = true;
+            regionIndex = index.copy();
+            regionIndex.setSeries(series);
+            regionIndexCopied = true;
+            regionsChanged = true;
+        }
+
+        /**
+         * 按ID添加或替换单个区间，只解析该区间，其他区间的范围和上边沿保持共享
+         */
+        void putTrendRegion(TrendRegion region) {
+            ensureRegionIndexWritable();
+            int slot = regionIndex.indexOfId(region.getId());
+            if (slot >= 0) {
+                regionIndex.set(slot, region);
+            } else {
+                regionIndex.add(region);
+                slot = regionIndex.size() - 1;
+            }
+            regionRenderer.buildEdge(regionIndex, slot);
+            regionsChanged = true;
+        }
+
+        void removeTrendRegion(String regionId) {
+            int slot = regionIndex.indexOfId(regionId);
+            if (slot < 0) {
+                return;
+            }
+            ensureRegionIndexWritable();
+            regionIndex.remove(slot);
+            regionsChanged = true;
+        }
+
+        void restore(File file) {
+            KLineSnapshot restored;
+            try {
+                restored = KLineSnapshot.read(file, timeAxis);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to restore snapshot: " + e.getMessage());
+                return;
+            }
+            series = restored.getSeries();
+            markerIndex = restored.getMarkerIndex();
+            regionIndex = restored.getRegionIndex();
+            detectedRegionsCleared = true;
+            markers = null;
+            markersCopied = false;
+            nextMarkerGeneration();
+            seriesChanged = false;
+            seriesReplaced = true;
+            firstChangedBar = Integer.MAX_VALUE;
+            markersChanged = false;
+            markerIndexCopied = true;
+            regionIndexCopied = true;
+            regionsChanged = true;
+            // 平滑参数与快照不一致时重新构建上边沿
+            if (restored.getEdgeSmoothWindow() != regionRenderer.getEdgeSmoothWindow()) {
+                for (int slot = 0; slot < regionIndex.size(); slot++) {
+                    regionIndex.setEdge(slot, null);
+                }
+            }
+        }
+
+        /**
+         * 从已发布的索引中取回标记源数据（从快照恢复后需要）
+         */
+        private void ensureMarkerList() {
+            if (markers == null && markerIndex != null && markerIndex.getMarkerCount() > 0) {
+                markers = new ArrayList<>(markerIndex.getMarkerCount());
+                for (int i = 0; i < markerIndex.getMarkerCount(); i++) {
+                    markers.add(markerIndex.peekMarker(i));
+                }
+                markersCopied = true;
+                nextMarkerGeneration();
+            }
+        }
+
+        private void ensureRegionIndexWritable() {
+            if (!regionIndexCopied) {
+                regionIndex = regionIndex.copy();
+                regionIndexCopied = true;
+            }
+        }
+
+        /**
+         * 运行趋势检测并把变化的检测结果写入区间索引，需要在区间索引绑定当前序列之后调用
+         * 尾部变化时只有最后几个检测区间可能变化，只替换或移除这些区间
+         */
+        private void syncDetectedRegions() {
+            List<TrendRegion> previous = detectedRegionsCleared ? Collections.emptyList() : detectedRegions;
+            List<TrendRegion> current;
+            int from;
+            if (trendDetector == null || series == null) {
+                current = Collections.emptyList();
+                from = 0;
+            } else {
+                boolean full = detectorChanged || seriesChanged || seriesReplaced;
+                detectorUpdated = true;
+                from = trendDetector.update(series, full ? 0 : firstChangedBar);
+                current = trendDetector.getRegions();
+            }
+            if (detectedRegionsCleared) {
+                from = 0;
+            }
+
+            for (int k = from; k < previous.size(); k++) {
+                String id = previous.get(k).getId();
+                if (k >= current.size() || !id.equals(current.get(k).getId())) {
+                    removeTrendRegion(id);
+                }
+            }
+            for (int k = from; k < current.size(); k++) {
+                TrendRegion region = current.get(k);
+                if (k < previous.size() && previous.get(k) == region) {
+                    continue;
+                }
+                putTrendRegion(region);
+            }
+            detectedRegions = current;
+            if (DEBUG) Log.d(TAG, "Detected " + current.size() + " trend regions, updated from " + from);
+        }
+
+        RenderSnapshot finish() {
+            int firstChanged = series != null ? series.size() : 0;
+            if (seriesChanged) {
+                ensureRegionIndexWritable();
+                // 重新解析全部区间的索引范围
+                regionIndex.setSeries(series);
+                regionsChanged = true;
+            } else if (firstChangedBar != Integer.MAX_VALUE) {
+                // 只重新解析覆盖到序列末尾的区间，并在原上边沿的基础上更新尾部
+                ensureRegionIndexWritable();
+                int[] stale = regionIndex.resolveTail(series, firstChangedBar);
+                regionRenderer.updateTailEdges(regionIndex, stale, firstChangedBar);
+                regionsChanged = true;
+                firstChanged = firstChangedBar;
+            }
+            if (detectorChanged || trendDetector != null && (seriesChanged || seriesReplaced
+                    || firstChangedBar != Integer.MAX_VALUE || detectedRegionsCleared)) {
+                syncDetectedRegions();
+            }
+            if (markersChanged) {
+                if (series != null) {
+                    markerIndex = new MarkerIndex(series, timeAxis);
+                    markerIndex.addAll(markers);
+                } else {
+                    markerIndex = null;
+                }
+            }
+            if (markerIndex != null) {
+                // 绘制时逐帧遍历的标记区间在这里构建，不留到绘制线程
+                markerIndex = markerIndex.withRuns();
+            }
+            if (regionsChanged) {
+                regionRenderer.buildEdges(regionIndex);
+                mergedIndex = regionRenderer.mergeRegions(regionIndex,
+                        seriesReplaced ? null : mergedIndex, firstChanged);
+            }
+            return new RenderSnapshot(version + 1, series, markerIndex, regionIndex, mergedIndex);
+        }
+    }
+}
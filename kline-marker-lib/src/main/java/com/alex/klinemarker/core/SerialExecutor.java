@@ -0,0 +1,42 @@
+package com.alex.klinemarker.core;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * 串行执行器
+ * 在共享线程池上按提交顺序逐个执行任务，同一时间最多只有一个任务在运行，
+ * 前一个任务的写入对后一个任务可见，因此可以像单线程执行器一样使用“只在后台线程访问”的字段。
+ * 每个串行执行器在共享线程池中最多只占用一个排队位置。
+ */
+final class SerialExecutor implements Executor {
+
+    private final Executor pool;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private Runnable active;
+
+    SerialExecutor(Executor pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.offer(() -> {
+            try {
+                task.run();
+            } finally {
+                scheduleNext();
+            }
+        });
+        if (active == null) {
+            scheduleNext();
+        }
+    }
+
+    private synchronized void scheduleNext() {
+        active = tasks.poll();
+        if (active != null) {
+            pool.execute(active);
+        }
+    }
+}
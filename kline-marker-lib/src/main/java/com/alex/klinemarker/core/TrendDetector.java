@@ -0,0 +1,296 @@
+package com.alex.klinemarker.core;
+
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.TrendRegion;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 趋势检测器
+ * 单次遍历K线序列的收盘价，将连续同向变化的K线识别为上涨或下跌趋势区间，不需要服务端下发区间数据。
+ * <p>
+ * 规则：
+ * <ul>
+ *     <li>收盘价相对前一根的变化幅度不超过 {@link Builder#neutralThreshold(float)} 时视为持平，否则按涨跌计为一次同向变化</li>
+ *     <li>连续同向变化至少 {@link Builder#minMoves(int)} 次、覆盖至少 {@link Builder#minBars(int)} 根K线时成为趋势区间</li>
+ *     <li>趋势中最多允许连续 {@link Builder#maxNeutralGap(int)} 根持平的K线，超过后趋势在最后一次同向变化处结束；
+ *     反向变化立即结束当前趋势并开始新的趋势</li>
+ * </ul>
+ * 区间从趋势开始前一根K线（第一次变化的基准）到最后一次同向变化的K线；尚未结束的趋势没有结束日期，延续到序列末尾。
+ * <p>
+ * 检测是增量的：K线序列只有尾部变化（追加K线或更新最后一根K线）时，只从变化的K线继续检测，
+ * 已结束的区间保持不变。检测器保存了遍历状态，同一时间只应在一个线程中使用；
+ * 交给 {@link com.alex.klinemarker.KLineMarkerManager#setTrendDetector(TrendDetector)} 后由后台构建线程使用，不应再直接调用。
+ * <p>
+ * 区间按日期（yyyy-MM-dd）描述，适用于日线及以上周期的K线。
+ */
+public final class TrendDetector {
+
+    /**
+     * 检测出的区间ID前缀，ID由前缀和区间起点的时间戳组成，同一趋势在延续和结束时ID保持不变
+     */
+    public static final String ID_PREFIX = "trend@";
+
+    public static final int DEFAULT_MIN_MOVES = 3;
+    public static final int DEFAULT_MIN_BARS = 4;
+    public static final int DEFAULT_MAX_NEUTRAL_GAP = 1;
+
+    private final int minMoves;
+    private final int minBars;
+    private final int maxNeutralGap;
+    private final float neutralThreshold;
+
+    // 只在检测线程中使用
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+
+    // 当前遍历状态，以及处理最后一根K线之前的状态（更新最后一根K线时从这里继续）
+    private final State state = new State();
+    private final State checkpoint = new State();
+
+    // 已结束的区间，以及未结束但已满足条件的区间
+    private final List<TrendRegion> closedRegions = new ArrayList<>();
+    private TrendRegion openRegion;
+    private KLineSeries series;
+
+    private TrendDetector(Builder builder) {
+        this.minMoves = builder.minMoves;
+        this.minBars = builder.minBars;
+        this.maxNeutralGap = builder.maxNeutralGap;
+        this.neutralThreshold = builder.neutralThreshold;
+    }
+
+    /**
+     * 使用默认规则创建检测器：连续3次同向变化、至少4根K线，允许1根持平的K线
+     */
+    public static TrendDetector withDefaults() {
+        return new Builder().build();
+    }
+
+    /**
+     * 对整个序列重新检测
+     *
+     * @param series K线序列
+     * @return 按起点排序的趋势区间，最后一个区间可能尚未结束（没有结束日期）
+     */
+    public List<TrendRegion> detect(KLineSeries series) {
+        update(series, 0);
+        return getRegions();
+    }
+
+    /**
+     * 序列变化后继续检测
+     * 变化只涉及尾部时从变化的K线继续遍历，否则重新检测整个序列
+     *
+     * @param newSeries    变化后的序列
+     * @param firstChanged 第一根发生变化的K线索引，整个序列被替换时传0
+     * @return {@link #getRegions()} 中第一个可能变化的区间位置，之前的区间与上次的结果相同
+     */
+    int update(KLineSeries newSeries, int firstChanged) {
+        series = newSeries;
+        int size = newSeries != null ? newSeries.size() : 0;
+        if (firstChanged <= 0 || firstChanged < checkpoint.processed || firstChanged > state.processed) {
+            state.reset();
+            checkpoint.reset();
+        } else if (firstChanged < state.processed) {
+            state.set(checkpoint);
+        }
+        // 回退后撤销在回退点之后结束的区间
+        while (closedRegions.size() > state.closedCount) {
+            closedRegions.remove(closedRegions.size() - 1);
+        }
+        int stable = closedRegions.size();
+
+        while (state.processed < size) {
+            if (state.processed == size - 1) {
+                checkpoint.set(state);
+            }
+            process(state.processed);
+            state.processed++;
+        }
+        updateOpenRegion();
+        return stable;
+    }
+
+    /**
+     * 当前检测出的全部区间（按起点排序），返回的列表是副本，之后的检测不会修改它
+     */
+    public List<TrendRegion> getRegions() {
+        List<TrendRegion> regions = new ArrayList<>(closedRegions.size() + 1);
+        regions.addAll(closedRegions);
+        if (openRegion != null) {
+            regions.add(openRegion);
+        }
+        return regions;
+    }
+
+    /**
+     * 清除遍历状态和检测结果
+     */
+    public void reset() {
+        state.reset();
+        checkpoint.reset();
+        closedRegions.clear();
+        openRegion = null;
+        series = null;
+    }
+
+    private void process(int index) {
+        if (index == 0) {
+            return;
+        }
+        float previous = series.getClose(index - 1);
+        float change = series.getClose(index) - previous;
+        int direction = Math.abs(change) <= Math.abs(previous) * neutralThreshold ? 0 : (change > 0 ? 1 : -1);
+
+        if (direction == 0) {
+            if (state.direction != 0 && ++state.gap > maxNeutralGap) {
+                closeRun();
+            }
+        } else if (direction == state.direction) {
+            state.moves++;
+            state.lastMove = index;
+            state.gap = 0;
+        } else {
+            closeRun();
+            state.direction = direction;
+            state.runStart = index - 1;
+            state.lastMove = index;
+            state.moves = 1;
+            state.gap = 0;
+        }
+    }
+
+    private void closeRun() {
+        if (state.direction != 0 && qualifies()) {
+            closedRegions.add(newRegion(series.getTime(state.lastMove)));
+            state.closedCount++;
+        }
+        state.direction = 0;
+    }
+
+    /**
+     * 未结束的趋势满足条件时作为没有结束日期的区间，内容未变化时保留原对象
+     */
+    private void updateOpenRegion() {
+        if (state.direction == 0 || !qualifies()) {
+            openRegion = null;
+            return;
+        }
+        String id = ID_PREFIX + series.getTime(state.runStart);
+        if (openRegion != null && openRegion.getId().equals(id)
+                && openRegion.getSize() == state.moves && openRegion.getType() == currentType()) {
+            return;
+        }
+        openRegion = newRegion(KLineSeries.NO_TIME);
+    }
+
+    private boolean qualifies() {
+        return state.moves >= minMoves
+                && state.lastMove - state.runStart + 1 >= minBars
+                && series.getTime(state.runStart) != KLineSeries.NO_TIME
+                && series.getTime(state.lastMove) != KLineSeries.NO_TIME;
+    }
+
+    private TrendRegion.TrendType currentType() {
+        return state.direction > 0 ? TrendRegion.TrendType.RISING : TrendRegion.TrendType.FALLING;
+    }
+
+    /**
+     * 创建当前趋势的区间，大小为同向变化的次数
+     *
+     * @param endTime 结束K线的时间，{@link KLineSeries#NO_TIME} 表示尚未结束
+     */
+    private TrendRegion newRegion(long endTime) {
+        long startTime = series.getTime(state.runStart);
+        TrendRegion region = new TrendRegion(dateFormat.format(new Date(startTime)),
+                endTime != KLineSeries.NO_TIME ? dateFormat.format(new Date(endTime)) : null,
+                state.moves, null, currentType());
+        region.setId(ID_PREFIX + startTime);
+        return region;
+    }
+
+    /**
+     * 遍历状态
+     */
+    private static final class State {
+        int processed;      // 已处理的K线数量
+        int direction;      // 当前趋势方向：1上涨，-1下跌，0没有趋势
+        int runStart;       // 趋势区间的第一根K线
+        int lastMove;       // 最后一次同向变化的K线
+        int moves;          // 同向变化次数
+        int gap;            // 最后一次同向变化之后连续持平的K线数量
+        int closedCount;    // 已结束的区间数量
+
+        void reset() {
+            processed = 0;
+            direction = 0;
+            runStart = 0;
+            lastMove = 0;
+            moves = 0;
+            gap = 0;
+            closedCount = 0;
+        }
+
+        void set(State other) {
+            processed = other.processed;
+            direction = other.direction;
+            runStart = other.runStart;
+            lastMove = other.lastMove;
+            moves = other.moves;
+            gap = other.gap;
+            closedCount = other.closedCount;
+        }
+    }
+
+    public static final class Builder {
+        private int minMoves = DEFAULT_MIN_MOVES;
+        private int minBars = DEFAULT_MIN_BARS;
+        private int maxNeutralGap = DEFAULT_MAX_NEUTRAL_GAP;
+        private float neutralThreshold;
+
+        /**
+         * 成为趋势所需的最少连续同向变化次数（例如连续3次收盘价走高）
+         */
+        public Builder minMoves(int minMoves) {
+            this.minMoves = minMoves;
+            return this;
+        }
+
+        /**
+         * 趋势区间至少覆盖的K线数量（包括持平的K线）
+         */
+        public Builder minBars(int minBars) {
+            this.minBars = minBars;
+            return this;
+        }
+
+        /**
+         * 趋势中允许连续持平的K线数量，为0时任何持平都会结束趋势
+         */
+        public Builder maxNeutralGap(int maxNeutralGap) {
+            this.maxNeutralGap = maxNeutralGap;
+            return this;
+        }
+
+        /**
+         * 视为持平的最大变化幅度（相对前一根收盘价的比例），默认为0，即只有收盘价相同才算持平
+         */
+        public Builder neutralThreshold(float neutralThreshold) {
+            this.neutralThreshold = neutralThreshold;
+            return this;
+        }
+
+        public TrendDetector build() {
+            if (minMoves < 1 || minBars < 2 || maxNeutralGap < 0 || !(neutralThreshold >= 0)) {
+                throw new IllegalArgumentException("Invalid trend rules: minMoves=" + minMoves
+                        + ", minBars=" + minBars + ", maxNeutralGap=" + maxNeutralGap
+                        + ", neutralThreshold=" + neutralThreshold);
+            }
+            return new TrendDetector(this);
+        }
+    }
+}
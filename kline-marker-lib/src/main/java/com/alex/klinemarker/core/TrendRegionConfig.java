@@ -37,6 +37,9 @@ public class TrendRegionConfig {
     private boolean enablePerformanceMode = false; // 性能模式，禁用复杂渲染
     private int maxVisibleRegions = 10; // 最大可见区间数量
 
+    // 合成配置
+    private boolean mergeOverlappingRegions = false; // 是否合并重叠或相邻的同类型区间
+
     public TrendRegionConfig() {
         // 使用默认配置
     }
@@ -112,6 +115,11 @@ public class TrendRegionConfig {
             return this;
         }
 
+        public Builder mergeOverlappingRegions(boolean enable) {
+            config.mergeOverlappingRegions = enable;
+            return this;
+        }
+
         public TrendRegionConfig build() {
             return config;
         }
@@ -165,4 +173,8 @@ public class TrendRegionConfig {
     public int getMaxVisibleRegions() {
         return maxVisibleRegions;
     }
+
+    public boolean isMergeOverlappingRegions() {
+        return mergeOverlappingRegions;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,314 @@
+package com.alex.klinemarker.core;
+
+import com.alex.klinemarker.data.KLineAggregation;
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.TrendRegion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * 趋势区间索引
+ * 将每个趋势区间解析为K线序列上的索引范围 [startIndex, endIndex]，
+ * 每个区间只占用两个int，内存与区间数量成正比，与区间覆盖的K线数量无关
+ */
+public final class TrendRegionIndex {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final List<TrendRegion> regions = new ArrayList<>();
+    private int[] startIndices = new int[INITIAL_CAPACITY];
+    private int[] endIndices = new int[INITIAL_CAPACITY];
+
+    // 区间上边沿缓存，首次绘制时构建
+    private RegionEdge[] edges = new RegionEdge[INITIAL_CAPACITY];
+
+    private KLineSeries series;
+
+    /**
+     * 替换全部区间并重新解析
+     */
+    public void setRegions(List<TrendRegion> newRegions) {
+        regions.clear();
+        if (newRegions != null) {
+            regions.addAll(newRegions);
+        }
+        ensureCapacity(regions.size());
+        Arrays.fill(edges, null);
+        resolveAll();
+    }
+
+    /**
+     * 复制索引，区间对象和已构建的上边沿（均不再修改）与原索引共享
+     */
+    TrendRegionIndex copy() {
+        TrendRegionIndex copy = new TrendRegionIndex();
+        copy.series = series;
+        copy.regions.addAll(regions);
+        copy.startIndices = startIndices.clone();
+        copy.endIndices = endIndices.clone();
+        copy.edges = edges.clone();
+        return copy;
+    }
+
+    /**
+     * 直接使用快照中已解析的索引范围和上边沿，不再重新解析
+     */
+    void restore(KLineSeries series, List<TrendRegion> newRegions,
+                 int[] starts, int[] ends, RegionEdge[] newEdges) {
+        this.series = series;
+        regions.clear();
+        regions.addAll(newRegions);
+        int count = regions.size();
+        startIndices = Arrays.copyOf(starts, Math.max(count, INITIAL_CAPACITY));
+        endIndices = Arrays.copyOf(ends, Math.max(count, INITIAL_CAPACITY));
+        edges = Arrays.copyOf(newEdges, Math.max(count, INITIAL_CAPACITY));
+    }
+
+    /**
+     * 将区间的索引范围映射到聚合后的K线上（不按日期重新解析），上边沿需重新构建
+     * 得到的索引只用于绘制
+     */
+    TrendRegionIndex aggregate(KLineAggregation aggregation) {
+        TrendRegionIndex aggregated = new TrendRegionIndex();
+        aggregated.series = aggregation.getSeries();
+        aggregated.regions.addAll(regions);
+        aggregated.ensureCapacity(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            if (isEmptyRange(i)) {
+                aggregated.startIndices[i] = 0;
+                aggregated.endIndices[i] = -1;
+            } else {
+                aggregated.startIndices[i] = aggregation.getAggregatedIndex(startIndices[i]);
+                aggregated.endIndices[i] = aggregation.getAggregatedIndex(endIndices[i]);
+            }
+        }
+        return aggregated;
+    }
+
+    /**
+     * 聚合索引的尾部更新：在重新映射得到的聚合索引中沿用上一次聚合结果的上边沿
+     * 区间对象和聚合后的起点都不变的非空区间保留原上边沿，由调用方在其基础上更新尾部，
+     * 与 {@link #resolveTail} 一致；其他区间的上边沿需重新构建
+     *
+     * @param previous 上一次的聚合索引，其聚合序列与当前聚合序列只有尾部不同
+     * @return 保留了原上边沿、需要更新尾部的区间位置
+     */
+    int[] keepEdges(TrendRegionIndex previous) {
+        IdentityHashMap<TrendRegion, Integer> previousSlots = new IdentityHashMap<>(previous.size());
+        for (int i = 0; i < previous.size(); i++) {
+            previousSlots.put(previous.regions.get(i), i);
+        }
+        int[] stale = new int[regions.size()];
+        int staleCount = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            Integer slot = previousSlots.get(regions.get(i));
+            if (slot == null || isEmptyRange(i) || previous.edges[slot] == null
+                    || previous.startIndices[slot] != startIndices[i]) {
+                continue;
+            }
+            edges[i] = previous.edges[slot];
+            stale[staleCount++] = i;
+        }
+        return Arrays.copyOf(stale, staleCount);
+    }
+
+    /**
+     * 设置K线序列并重新解析全部区间，序列未变化时保留已解析的结果
+     */
+    public void setSeries(KLineSeries series) {
+        if (this.series == series) {
+            return;
+        }
+        this.series = series;
+        resolveAll();
+    }
+
+    /**
+     * K线序列尾部变化（追加K线或更新最后一根K线）后只重新解析可能受影响的区间：
+     * 覆盖到变化前一根K线的区间，以及起点落在变化范围内的区间。其他区间的范围和上边沿保持不变。
+     * 起点不变的受影响区间保留原上边沿，由调用方在其基础上更新尾部；起点变化的区间清除上边沿
+     *
+     * @param newSeries    尾部变化后的序列
+     * @param firstChanged 第一根发生变化的K线索引
+     * @return 保留了原上边沿、需要更新尾部的区间位置
+     */
+    int[] resolveTail(KLineSeries newSeries, int firstChanged) {
+        this.series = newSeries;
+        int[] stale = new int[regions.size()];
+        int staleCount = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            if (endIndices[i] < firstChanged - 1 && startIndices[i] < firstChanged) {
+                continue;
+            }
+            RegionEdge edge = edges[i];
+            int oldStart = startIndices[i];
+            resolve(i);
+            if (edge != null && startIndices[i] == oldStart && !isEmptyRange(i)) {
+                edges[i] = edge;
+                stale[staleCount++] = i;
+            }
+        }
+        return Arrays.copyOf(stale, staleCount);
+    }
+
+    /**
+     * 追加区间，只解析该区间
+     */
+    public void add(TrendRegion region) {
+        int index = regions.size();
+        regions.add(region);
+        ensureCapacity(regions.size());
+        resolve(index);
+    }
+
+    /**
+     * 替换指定位置的区间，只重新解析该区间
+     *
+     * @return 被替换的区间
+     */
+    public TrendRegion set(int index, TrendRegion region) {
+        TrendRegion oldRegion = regions.set(index, region);
+        resolve(index);
+        return oldRegion;
+    }
+
+    /**
+     * 移除指定位置的区间
+     *
+     * @return 被移除的区间
+     */
+    public TrendRegion remove(int index) {
+        TrendRegion oldRegion = regions.remove(index);
+        int tail = regions.size() - index;
+        System.arraycopy(startIndices, index + 1, startIndices, index, tail);
+        System.arraycopy(endIndices, index + 1, endIndices, index, tail);
+        System.arraycopy(edges, index + 1, edges, index, tail);
+        edges[regions.size()] = null;
+        return oldRegion;
+    }
+
+    /**
+     * 查找指定ID的区间位置
+     *
+     * @return 区间位置，不存在时返回-1
+     */
+    public int indexOfId(String regionId) {
+        if (regionId == null) {
+            return -1;
+        }
+        for (int i = 0; i < regions.size(); i++) {
+            if (regionId.equals(regions.get(i).getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return regions.size();
+    }
+
+    public boolean isEmpty() {
+        return regions.isEmpty();
+    }
+
+    public TrendRegion getRegion(int index) {
+        return regions.get(index);
+    }
+
+    public List<TrendRegion> getRegions() {
+        return Collections.unmodifiableList(regions);
+    }
+
+    /**
+     * 区间覆盖的第一根K线索引
+     */
+    public int getStartIndex(int index) {
+        return startIndices[index];
+    }
+
+    /**
+     * 区间覆盖的最后一根K线索引（包含），区间内没有K线时小于起始索引
+     */
+    public int getEndIndex(int index) {
+        return endIndices[index];
+    }
+
+    /**
+     * 区间内是否没有K线
+     */
+    public boolean isEmptyRange(int index) {
+        return endIndices[index] < startIndices[index];
+    }
+
+    KLineSeries getSeries() {
+        return series;
+    }
+
+    RegionEdge getEdge(int index) {
+        return edges[index];
+    }
+
+    void setEdge(int index, RegionEdge edge) {
+        edges[index] = edge;
+    }
+
+    private void resolveAll() {
+        for (int i = 0; i < regions.size(); i++) {
+            resolve(i);
+        }
+    }
+
+    /**
+     * 通过二分查找将区间的起止日期解析为K线索引范围
+     * 与 {@link TrendRegion#containsDate(Date)} 的语义一致：包含起始日和结束日当天的所有K线
+     */
+    private void resolve(int index) {
+        edges[index] = null;
+        startIndices[index] = 0;
+        endIndices[index] = -1;
+        if (series == null || series.isEmpty()) {
+            return;
+        }
+
+        TrendRegion region = regions.get(index);
+        Date startDate = region.getStartDate();
+        if (startDate == null) {
+            return;
+        }
+        int first = series.lowerBound(startDate.getTime());
+
+        int last;
+        if (region.getEnd() == null) {
+            // 没有结束日期表示延续到最后
+            last = series.size() - 1;
+        } else {
+            Date endDate = region.getEndDate();
+            if (endDate == null) {
+                return;
+            }
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(endDate);
+            calendar.add(Calendar.DAY_OF_YEAR, 1);
+            last = series.lowerBound(calendar.getTimeInMillis()) - 1;
+        }
+
+        startIndices[index] = first;
+        endIndices[index] = last;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > startIndices.length) {
+            int newCapacity = Math.max(capacity, startIndices.length * 2);
+            startIndices = Arrays.copyOf(startIndices, newCapacity);
+            endIndices = Arrays.copyOf(endIndices, newCapacity);
+            edges = Arrays.copyOf(edges, newCapacity);
+        }
+    }
+}
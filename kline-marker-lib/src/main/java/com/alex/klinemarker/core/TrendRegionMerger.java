@@ -0,0 +1,96 @@
+package com.alex.klinemarker.core;
+
+import com.alex.klinemarker.data.TrendRegion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 趋势区间合并工具
+ * 将同一类型、K线索引范围重叠或相邻的区间合并为一个区间，
+ * 合并后每组只需一次填充，重叠部分也不会因半透明叠加而颜色加深
+ */
+final class TrendRegionMerger {
+
+    private TrendRegionMerger() {
+    }
+
+    /**
+     * 合并重叠或相邻的同类型区间
+     *
+     * @param index 已解析为K线索引范围的原始区间
+     * @return 按起始索引排序的合并结果，未发生合并的区间保持原对象
+     */
+    static List<TrendRegion> merge(TrendRegionIndex index) {
+        int count = index.size();
+        List<TrendRegion> regions = index.getRegions();
+        int[] firstIndex = new int[count];
+        int[] lastIndex = new int[count];
+        Integer[] order = new Integer[count];
+        int resolved = 0;
+        for (int i = 0; i < count; i++) {
+            firstIndex[i] = index.getStartIndex(i);
+            lastIndex[i] = index.getEndIndex(i);
+            if (!index.isEmptyRange(i)) {
+                order[resolved++] = i;
+            }
+        }
+        order = Arrays.copyOf(order, resolved);
+
+        // 按类型分组，组内按起始索引排序
+        Arrays.sort(order, (a, b) -> {
+            int byType = regions.get(a).getType().compareTo(regions.get(b).getType());
+            return byType != 0 ? byType : Integer.compare(firstIndex[a], firstIndex[b]);
+        });
+
+        List<TrendRegion> merged = new ArrayList<>();
+        List<Integer> mergedFirst = new ArrayList<>();
+        int i = 0;
+        while (i < order.length) {
+            int head = order[i];
+            int groupLast = lastIndex[head];
+            int tail = head;
+            boolean openEnded = regions.get(head).getEnd() == null;
+            int size = regions.get(head).getSize();
+            int j = i + 1;
+
+            // 同类型且与当前组重叠或相邻（索引差不超过1）时并入当前组
+            while (j < order.length
+                    && regions.get(order[j]).getType() == regions.get(head).getType()
+                    && firstIndex[order[j]] <= groupLast + 1) {
+                int next = order[j];
+                if (lastIndex[next] > groupLast) {
+                    groupLast = lastIndex[next];
+                    tail = next;
+                }
+                openEnded |= regions.get(next).getEnd() == null;
+                size = Math.max(size, regions.get(next).getSize());
+                j++;
+            }
+
+            if (j == i + 1) {
+                merged.add(regions.get(head));
+            } else {
+                TrendRegion first = regions.get(head);
+                merged.add(new TrendRegion(first.getStart(),
+                        openEnded ? null : regions.get(tail).getEnd(),
+                        size, first.getUpdatedAt(), first.getType()));
+            }
+            mergedFirst.add(firstIndex[head]);
+            i = j;
+        }
+
+        // 恢复按起始索引的绘制顺序
+        Integer[] drawOrder = new Integer[merged.size()];
+        for (int k = 0; k < drawOrder.length; k++) {
+            drawOrder[k] = k;
+        }
+        Arrays.sort(drawOrder, (a, b) -> Integer.compare(mergedFirst.get(a), mergedFirst.get(b)));
+        List<TrendRegion> result = new ArrayList<>(merged.size());
+        for (Integer position : drawOrder) {
+            result.add(merged.get(position));
+        }
+        return result;
+    }
+}
@@ -2,62 +2,51 @@ package com.alex.klinemarker.core;
 
 import android.content.Context;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.LinearGradient;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.Shader;
 import android.util.Log;
 
-import com.alex.klinemarker.data.KLineDataAdapter;
+import com.alex.klinemarker.data.KLineSeries;
 import com.alex.klinemarker.data.TrendRegion;
 import com.github.mikephil.charting.charts.CombinedChart;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Locale;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * 趋势区间渲染器
- * 负责在K线图上绘制趋势区间背景
+ * 负责在K线图上绘制趋势区间背景。
+ * 数据来自 {@link RenderSnapshot}，区间的上边沿和合并结果由后台线程在快照发布前构建，绘制时只读取。
  */
-public class TrendRegionRenderer<T> {
+public class TrendRegionRenderer {
 
     private static final String TAG = "TrendRegionRenderer";
-    private static final boolean DEBUG = true; // 临时启用调试，验证修复效果
+    private static final boolean DEBUG = false; // 生产版本关闭DEBUG，绘制路径上每帧都会输出日志
 
-    private final Context context;
     private final CombinedChart chart;
-    private final KLineDataAdapter<T> dataAdapter;
     private final TrendRegionConfig config;
 
     // 绘制相关的Paint对象
     private Paint trendRegionPaint;
 
-    // 数据
-    private List<T> klineData;
-    private List<TrendRegion> trendRegions;
-
     // 屏幕密度
     private final float density;
 
-    // 缓存相关
-    private final Map<String, List<T>> regionEntriesCache = new HashMap<>();
+    // 缓存相关：着色器缓存来自进程内共享的资源池，内容区域或透明度变化时才重新获取
+    private final MarkerResourcePool resourcePool;
+    private RegionShaderCache shaderCache;
 
     // 性能优化：复用对象
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+    private final Path regionPath = new Path();
+    private float[] pointBuffer = new float[64];
 
-    public TrendRegionRenderer(Context context, CombinedChart chart,
-                               KLineDataAdapter<T> dataAdapter, TrendRegionConfig config) {
-        this.context = context;
+    /**
+     * @param context 只在构造时用于读取屏幕密度和获取共享资源池，不会被持有
+     */
+    public TrendRegionRenderer(Context context, CombinedChart chart, TrendRegionConfig config) {
         this.chart = chart;
-        this.dataAdapter = dataAdapter;
         this.config = config != null ? config : new TrendRegionConfig();
         this.density = context.getResources().getDisplayMetrics().density;
-        this.trendRegions = new ArrayList<>();
+        this.resourcePool = MarkerResourcePool.get(context);
 
         // 初始化Paint对象
         initPaints();
@@ -72,36 +61,101 @@ public class TrendRegionRenderer<T> {
     }
 
     /**
-     * 设置K线数据
+     * 当前配置下区间上边沿的平滑窗口，未启用平滑时为0
+     * 快照中的上边沿只有在平滑参数一致时才能直接使用
+     */
+    int getEdgeSmoothWindow() {
+        return config.isEnableSmoothing() ? config.getSmoothWindowSize() : 0;
+    }
+
+    // ==================== 快照构建（后台线程调用，只读取配置和传入的索引） ====================
+
+    /**
+     * 为索引中所有尚未构建上边沿的非空区间构建上边沿
+     */
+    void buildEdges(TrendRegionIndex index) {
+        for (int slot = 0; slot < index.size(); slot++) {
+            buildEdge(index, slot);
+        }
+    }
+
+    /**
+     * 为单个区间构建上边沿，已构建或区间内没有K线时跳过
+     */
+    void buildEdge(TrendRegionIndex index, int slot) {
+        if (index.getSeries() == null || index.isEmptyRange(slot) || index.getEdge(slot) != null) {
+            return;
+        }
+        index.setEdge(slot, buildRegionEdge(index.getSeries(), index.getStartIndex(slot), index.getEndIndex(slot)));
+    }
+
+    /**
+     * K线序列尾部变化后，在原上边沿的基础上只更新受影响区间的尾部
+     *
+     * @param slots        {@link TrendRegionIndex#resolveTail} 或 {@link TrendRegionIndex#keepEdges} 返回的区间位置
+     * @param firstChanged 第一根发生变化的K线索引
      */
-    public void setKLineData(List<T> klineData) {
-        this.klineData = klineData;
-        // 清除缓存，因为数据已改变
-        clearCache();
+    void updateTailEdges(TrendRegionIndex index, int[] slots, int firstChanged) {
+        for (int slot : slots) {
+            index.setEdge(slot, updateRegionEdge(index.getEdge(slot), index.getSeries(),
+                    index.getStartIndex(slot), index.getEndIndex(slot), firstChanged));
+        }
     }
 
     /**
-     * 设置趋势区间数据
+     * 按配置合并区间
+     * 启用合并时，将K线索引范围重叠或相邻的同类型区间合成一个外轮廓并构建上边沿；未启用时返回null
+     *
+     * @param previous     上一次的合并结果，其中起点和类型相同的合并区间复用或增量更新上边沿，可为null
+     * @param firstChanged 与上一次相比第一根数据发生变化的K线索引，K线没有变化时为序列长度
      */
-    public void setTrendRegions(List<TrendRegion> trendRegions) {
-        this.trendRegions = trendRegions != null ? trendRegions : new ArrayList<>();
-        if (DEBUG) Log.d(TAG, "Set " + this.trendRegions.size() + " trend regions");
-        // 清除缓存，因为趋势区间已改变
-        clearCache();
+    TrendRegionIndex mergeRegions(TrendRegionIndex index, TrendRegionIndex previous, int firstChanged) {
+        if (!config.isMergeOverlappingRegions()) {
+            return null;
+        }
+        TrendRegionIndex merged = new TrendRegionIndex();
+        merged.setSeries(index.getSeries());
+        merged.setRegions(TrendRegionMerger.merge(index));
+        if (previous != null && previous.getSeries() != null && merged.getSeries() != null) {
+            reuseMergedEdges(merged, previous, firstChanged);
+        }
+        buildEdges(merged);
+        if (DEBUG) {
+            Log.d(TAG, "Merged " + index.size() + " trend regions into " + merged.size());
+        }
+        return merged;
     }
 
     /**
-     * 清除所有缓存
+     * 两次合并结果（或其聚合结果）都按起始索引排序，按起点和类型配对后复用上一次的上边沿
      */
-    private void clearCache() {
-        regionEntriesCache.clear();
+    void reuseMergedEdges(TrendRegionIndex merged, TrendRegionIndex previous, int firstChanged) {
+        int p = 0;
+        for (int slot = 0; slot < merged.size(); slot++) {
+            int start = merged.getStartIndex(slot);
+            while (p < previous.size() && previous.getStartIndex(p) < start) {
+                p++;
+            }
+            for (int q = p; q < previous.size() && previous.getStartIndex(q) == start; q++) {
+                RegionEdge edge = previous.getEdge(q);
+                if (edge != null && previous.getRegion(q).getType() == merged.getRegion(slot).getType()) {
+                    merged.setEdge(slot, updateRegionEdge(edge, merged.getSeries(),
+                            start, merged.getEndIndex(slot), firstChanged));
+                    break;
+                }
+            }
+        }
     }
 
+    // ==================== 绘制（主线程） ====================
+
     /**
      * 绘制趋势区间背景
+     *
+     * @param snapshot 本帧使用的渲染快照，绘制期间只读取不修改
      */
-    public void drawTrendRegions(Canvas canvas) {
-        if (klineData == null || trendRegions.isEmpty()) {
+    public void drawTrendRegions(Canvas canvas, RenderSnapshot snapshot) {
+        if (snapshot.getSeries() == null || snapshot.getRegionIndex().isEmpty()) {
             return;
         }
 
@@ -113,167 +167,135 @@ public class TrendRegionRenderer<T> {
         float contentTop = chart.getViewPortHandler().contentTop();
         float contentBottom = chart.getViewPortHandler().contentBottom();
 
+        // 内容区域变化时才换用对应的着色器缓存
+        if (shaderCache == null || !shaderCache.matches(contentTop, contentBottom,
+                config.getTopAlpha(), config.getBottomAlpha())) {
+            shaderCache = resourcePool.getRegionShaders(contentTop, contentBottom,
+                    config.getTopAlpha(), config.getBottomAlpha());
+        }
+
+        // 获取实际绘制的区间（可选合并重叠的同类型区间）
+        TrendRegionIndex regions = snapshot.getRenderRegions();
+
         // 性能优化：限制绘制的区间数量
         int maxRegions = config.isEnablePerformanceMode() ?
-                Math.min(config.getMaxVisibleRegions(), trendRegions.size()) :
-                trendRegions.size();
+                Math.min(config.getMaxVisibleRegions(), regions.size()) :
+                regions.size();
 
-        // 为每个趋势区间绘制背景
-        for (int regionIndex = 0; regionIndex < maxRegions; regionIndex++) {
-            TrendRegion region = trendRegions.get(regionIndex);
+        // 每个像素对应的X轴跨度，用于选择抽稀层级
+        float contentWidth = chart.getViewPortHandler().contentWidth();
+        float xPerPixel = contentWidth > 0 ? (maxTime - minTime) / contentWidth : 0f;
 
-            // 检查该区间是否在可见范围内
-            if (!isRegionVisible(region, minTime, maxTime)) {
+        // 为每个趋势区间绘制背景
+        for (int slot = 0; slot < maxRegions; slot++) {
+            if (regions.isEmptyRange(slot)) {
                 continue;
             }
 
-            // 查找该区间内的所有K线数据（不限制可见范围）
-            String regionKey = getRegionKey(region, regionIndex);
-            List<T> allRegionEntries = regionEntriesCache.get(regionKey);
-            if (allRegionEntries == null) {
-                allRegionEntries = findAllEntriesInRegion(region);
-                regionEntriesCache.put(regionKey, allRegionEntries);
+            // 获取该区间的上边沿数据（快照发布前已在后台构建）
+            RegionEdge edge = regions.getEdge(slot);
+            if (edge == null) {
+                continue;
             }
 
-            if (allRegionEntries.isEmpty()) {
+            // 检查该区间是否在可见范围内
+            if (edge.getMaxX() < minTime || edge.getMinX() > maxTime) {
                 continue;
             }
 
             // 绘制区间背景
-            drawRegionBackground(canvas, allRegionEntries, region, contentTop, contentBottom, minTime, maxTime);
+            drawRegionBackground(canvas, edge, regions.getRegion(slot), contentBottom, minTime, maxTime, xPerPixel);
         }
     }
 
     /**
-     * 检查区间是否在可见范围内
+     * 构建区间上边沿：X值和（平滑后的）开收盘中点
      */
-    private boolean isRegionVisible(TrendRegion region, float minTime, float maxTime) {
-        // 获取区间的起始和结束时间对应的X值
-        float regionStartX = getDateXValue(region.getStart());
-        float regionEndX = region.getEnd() != null ? getDateXValue(region.getEnd()) : Float.MAX_VALUE;
-
-        // 检查区间是否与可见范围有交集
-        boolean isVisible = !(regionEndX < minTime || regionStartX > maxTime);
-
-        if (DEBUG) {
-            Log.d(TAG, String.format("Region %s to %s: startX=%.1f, endX=%.1f, minTime=%.1f, maxTime=%.1f, visible=%b",
-                    region.getStart(), region.getEnd(), regionStartX, regionEndX, minTime, maxTime, isVisible));
+    private RegionEdge buildRegionEdge(KLineSeries series, int startIndex, int endIndex) {
+        int count = endIndex - startIndex + 1;
+        float[] xValues = new float[count];
+        for (int i = 0; i < count; i++) {
+            xValues[i] = series.getXValue(startIndex + i);
         }
-
-        return isVisible;
+        float[] edgeValues = new float[count];
+        fillEdgeValues(series, startIndex, count, edgeValues, 0);
+        return new RegionEdge(xValues, edgeValues);
     }
 
     /**
-     * 获取日期对应的X值
+     * 在原上边沿的基础上更新区间尾部
+     * 原上边沿从同一根K线开始；只重新计算平滑窗口覆盖到变化K线的点，其余点和抽稀桶直接复制
+     *
+     * @param edge         原上边沿
+     * @param startIndex   区间第一根K线的索引
+     * @param endIndex     区间最后一根K线的索引（包含）
+     * @param firstChanged 第一根数据发生变化的K线索引，没有K线变化时为序列长度
      */
-    private float getDateXValue(String dateStr) {
-        if (klineData == null || klineData.isEmpty()) {
-            return 0f;
-        }
-
-        // 遍历K线数据找到对应日期的X值
-        for (T entry : klineData) {
-            if (dataAdapter.getDate(entry) != null) {
-                String entryDateStr = dateFormat.format(dataAdapter.getDate(entry));
-                if (dateStr.equals(entryDateStr)) {
-                    return dataAdapter.getXValue(entry);
-                }
-            }
+    private RegionEdge updateRegionEdge(RegionEdge edge, KLineSeries series,
+                                        int startIndex, int endIndex, int firstChanged) {
+        int oldCount = edge.size();
+        int count = endIndex - startIndex + 1;
+        int half = config.isEnableSmoothing() ? config.getSmoothWindowSize() / 2 : 0;
+        // 区间变短，或原区间比平滑窗口还短（窗口大小随区间长度变化）时整体重建
+        if (count < oldCount || (config.isEnableSmoothing() && oldCount < config.getSmoothWindowSize())) {
+            return buildRegionEdge(series, startIndex, endIndex);
         }
-        return 0f;
-    }
-
-    /**
-     * 查找指定趋势区间内的所有K线数据（不限制可见范围）
-     */
-    private List<T> findAllEntriesInRegion(TrendRegion region) {
-        List<T> regionEntries = new ArrayList<>();
-
-        for (T entry : klineData) {
-            // 检查该K线条目是否在趋势区间的时间范围内
-            if (dataAdapter.getDate(entry) != null) {
-                String entryDateStr = dateFormat.format(dataAdapter.getDate(entry));
-                if (region.containsDate(entryDateStr)) {
-                    regionEntries.add(entry);
-                }
-            }
+        int firstChangedPoint = Math.min(firstChanged - startIndex, oldCount);
+        if (count == oldCount && firstChangedPoint >= oldCount) {
+            return edge;
         }
 
-        return regionEntries;
-    }
-
-    /**
-     * 查找指定趋势区间内的K线数据（已弃用，保留用于兼容）
-     */
-    @Deprecated
-    private List<T> findEntriesInRegion(TrendRegion region, float minTime, float maxTime) {
-        List<T> regionEntries = new ArrayList<>();
-
-        for (T entry : klineData) {
-            float xValue = dataAdapter.getXValue(entry);
-
-            // 检查该K线条目是否在可见时间范围内
-            if (xValue >= minTime && xValue <= maxTime) {
-                // 检查该K线条目是否在趋势区间的时间范围内
-                if (dataAdapter.getDate(entry) != null) {
-                    String entryDateStr = dateFormat.format(dataAdapter.getDate(entry));
-                    if (region.containsDate(entryDateStr)) {
-                        regionEntries.add(entry);
-                    }
-                }
-            }
+        float[] xValues = Arrays.copyOf(edge.getXValues(), count);
+        for (int i = firstChangedPoint; i < count; i++) {
+            xValues[i] = series.getXValue(startIndex + i);
         }
-
-        return regionEntries;
+        // 窗口在区间末端截断，区间变长时末端附近的点也会变化
+        int firstDirty = Math.max(0, firstChangedPoint - half);
+        float[] edgeValues = Arrays.copyOf(edge.getEdgeValues(), count);
+        fillEdgeValues(series, startIndex, count, edgeValues, firstDirty);
+        return new RegionEdge(edge, xValues, edgeValues, firstDirty);
     }
 
     /**
      * 绘制区间背景
      */
-    private void drawRegionBackground(Canvas canvas, List<T> allRegionEntries,
-                                      TrendRegion region, float contentTop, float contentBottom,
-                                      float minTime, float maxTime) {
-        if (allRegionEntries.isEmpty()) return;
-
-        // 筛选出可见范围内的条目
-        List<T> visibleEntries = new ArrayList<>();
-        for (T entry : allRegionEntries) {
-            float xValue = dataAdapter.getXValue(entry);
-            if (xValue >= minTime && xValue <= maxTime) {
-                visibleEntries.add(entry);
-            }
+    private void drawRegionBackground(Canvas canvas, RegionEdge edge, TrendRegion region,
+                                      float contentBottom, float minTime, float maxTime, float xPerPixel) {
+        // 按缩放级别选择抽稀层级，顶点数不超过约两倍屏幕宽度
+        int level = edge.levelFor(xPerPixel);
+
+        // 预留两个额外的点用于左右边界
+        int capacity = (edge.pointCapacity(level) + 2) * 2;
+        if (pointBuffer.length < capacity) {
+            pointBuffer = new float[capacity];
         }
 
-        if (visibleEntries.isEmpty()) {
+        int count = edge.collectPoints(level, minTime, maxTime, pointBuffer);
+        if (count == 0) {
             if (DEBUG) {
-                Log.d(TAG, String.format("Region %s to %s: no visible entries (total=%d)",
-                        region.getStart(), region.getEnd(), allRegionEntries.size()));
+                Log.d(TAG, String.format("Region %s to %s: no visible entries",
+                        region.getStart(), region.getEnd()));
             }
             return;
         }
 
         if (DEBUG) {
-            Log.d(TAG, String.format("Drawing region %s to %s: %d visible entries out of %d total",
-                    region.getStart(), region.getEnd(), visibleEntries.size(), allRegionEntries.size()));
+            Log.d(TAG, String.format("Drawing region %s to %s: %d points at level %d",
+                    region.getStart(), region.getEnd(), count, level));
         }
 
         // 获取基础颜色
         int baseColor = getRegionColor(region);
 
-        // 创建路径（每次都重新创建，因为屏幕坐标会变化）
-        Path backgroundPath = createRegionPath(visibleEntries, contentBottom);
+        // 创建路径（复用Path对象，屏幕坐标每帧重新计算）
+        Path backgroundPath = createRegionPath(count, level == 0, contentBottom);
 
-        // 设置画笔和渐变
+        // 设置画笔和渐变（着色器和颜色均来自缓存）
         if (config.isEnableGradient()) {
-            setupGradientPaint(baseColor, contentTop, contentBottom);
+            setupGradientPaint(baseColor);
         } else {
-            trendRegionPaint.setColor(Color.argb(
-                    (int) (config.getTopAlpha() * 255),
-                    Color.red(baseColor),
-                    Color.green(baseColor),
-                    Color.blue(baseColor)
-            ));
             trendRegionPaint.setShader(null);
+            trendRegionPaint.setColor(shaderCache.getFlatColor(baseColor));
         }
 
         // 绘制路径
@@ -282,79 +304,58 @@ public class TrendRegionRenderer<T> {
 
     /**
      * 创建区间路径
+     *
+     * @param count       缓冲区中的有效点数
+     * @param allowBezier 是否允许贝塞尔曲线（抽稀后的最小/最大值点只用直线连接）
      */
-    private Path createRegionPath(List<T> regionEntries, float contentBottom) {
-        Path backgroundPath = new Path();
+    private Path createRegionPath(int count, boolean allowBezier, float contentBottom) {
+        Path backgroundPath = regionPath;
+        backgroundPath.rewind();
 
         // 添加一些边距
         float dayMargin = 0.5f;
 
-        // 获取区间的起始和结束X坐标
-        T firstEntry = regionEntries.get(0);
-        T lastEntry = regionEntries.get(regionEntries.size() - 1);
-
-        float startX = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                .getPixelForValues(dataAdapter.getXValue(firstEntry) - dayMargin, 0).x;
-        float endX = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                .getPixelForValues(dataAdapter.getXValue(lastEntry) + dayMargin, 0).x;
+        // 左右边界点追加在缓冲区末尾，与边沿点一起批量转换为屏幕坐标
+        float[] points = pointBuffer;
+        points[count * 2] = points[0] - dayMargin;
+        points[count * 2 + 1] = 0;
+        points[count * 2 + 2] = points[(count - 1) * 2] + dayMargin;
+        points[count * 2 + 3] = 0;
+        chart.getTransformer(chart.getAxisLeft().getAxisDependency())
+                .getValueToPixelMatrix().mapPoints(points, 0, points, 0, count + 2);
+
+        float startX = points[count * 2];
+        float endX = points[count * 2 + 2];
+        float offsetPx = config.getOffsetDp() * density;
+        boolean useBezier = allowBezier && config.isEnableBezierCurve();
 
         // 从左下角开始
         backgroundPath.moveTo(startX, contentBottom);
 
-        // 计算平滑的中点（如果启用平滑）
-        List<Float> smoothedMidPoints = config.isEnableSmoothing() ?
-                calculateSmoothedMidPoints(regionEntries) :
-                calculateDirectMidPoints(regionEntries);
-
         // 沿着平滑的中点绘制上边沿
-        for (int i = 0; i < regionEntries.size(); i++) {
-            T entry = regionEntries.get(i);
-            float smoothedMidPoint = smoothedMidPoints.get(i);
-
-            // 使用平滑后的中点作为上边沿
-            float x = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                    .getPixelForValues(dataAdapter.getXValue(entry), smoothedMidPoint).x;
-            float y = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                    .getPixelForValues(dataAdapter.getXValue(entry), smoothedMidPoint).y;
-
-            // 添加偏移
-            float offsetPx = config.getOffsetDp() * density;
-            y += offsetPx;
+        float prevX = 0;
+        float prevY = 0;
+        for (int i = 0; i < count; i++) {
+            float x = points[i * 2];
+            float y = points[i * 2 + 1] + offsetPx;
 
             if (i == 0) {
                 // 第一个点，先连接到左上角，再到平滑中点
                 backgroundPath.lineTo(startX, y);
                 backgroundPath.lineTo(x, y);
-            } else if (config.isEnableBezierCurve()) {
-                // 使用贝塞尔曲线连接
-                T prevEntry = regionEntries.get(i - 1);
-                float prevSmoothedMidPoint = smoothedMidPoints.get(i - 1);
-                float prevX = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                        .getPixelForValues(dataAdapter.getXValue(prevEntry), prevSmoothedMidPoint).x;
-                float prevY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                        .getPixelForValues(dataAdapter.getXValue(prevEntry), prevSmoothedMidPoint).y;
-                prevY += offsetPx;
-
-                // 计算控制点
-                float controlX = (prevX + x) / 2;
-                float controlY = (prevY + y) / 2;
-
-                // 使用二次贝塞尔曲线
-                backgroundPath.quadTo(controlX, controlY, x, y);
+            } else if (useBezier) {
+                // 使用二次贝塞尔曲线连接，控制点位于两点之间
+                backgroundPath.quadTo((prevX + x) / 2, (prevY + y) / 2, x, y);
             } else {
                 // 直线连接
                 backgroundPath.lineTo(x, y);
             }
+            prevX = x;
+            prevY = y;
         }
 
         // 闭合路径
-        float lastSmoothedMidPoint = smoothedMidPoints.get(regionEntries.size() - 1);
-        float lastY = (float) chart.getTransformer(chart.getAxisLeft().getAxisDependency())
-                .getPixelForValues(dataAdapter.getXValue(lastEntry), lastSmoothedMidPoint).y;
-        float offsetPx = config.getOffsetDp() * density;
-        lastY += offsetPx;
-
-        backgroundPath.lineTo(endX, lastY);
+        backgroundPath.lineTo(endX, prevY);
         backgroundPath.lineTo(endX, contentBottom);
         backgroundPath.close();
 
@@ -379,70 +380,45 @@ public class TrendRegionRenderer<T> {
     /**
      * 设置渐变画笔
      */
-    private void setupGradientPaint(int baseColor, float topY, float bottomY) {
-        float topAlpha = config.getTopAlpha();
-        float bottomAlpha = config.getBottomAlpha();
-
-        int topColor = Color.argb((int) (topAlpha * 255), Color.red(baseColor), Color.green(baseColor), Color.blue(baseColor));
-        int bottomColor = Color.argb((int) (bottomAlpha * 255), Color.red(baseColor), Color.green(baseColor), Color.blue(baseColor));
-
-        LinearGradient gradient = new LinearGradient(
-                0, topY,
-                0, bottomY,
-                topColor,
-                bottomColor,
-                Shader.TileMode.CLAMP
-        );
-
-        trendRegionPaint.setShader(gradient);
+    private void setupGradientPaint(int baseColor) {
+        trendRegionPaint.setShader(shaderCache.getGradient(baseColor));
     }
 
     /**
-     * 计算平滑的中点值
+     * 计算区间内第 from 个点及之后的（平滑后的）开收盘中点
+     * 启用平滑时使用以每个点为中心、在区间两端截断的窗口平均
+     *
+     * @param startIndex 区间第一根K线的索引
+     * @param size       区间内的K线数量
+     * @param out        输出数组，长度不小于size
+     * @param from       第一个需要计算的点
      */
-    private List<Float> calculateSmoothedMidPoints(List<T> regionEntries) {
-        List<Float> smoothedMidPoints = new ArrayList<>();
-        int windowSize = Math.min(config.getSmoothWindowSize(), regionEntries.size());
+    private void fillEdgeValues(KLineSeries series, int startIndex, int size, float[] out, int from) {
+        if (!config.isEnableSmoothing()) {
+            for (int i = from; i < size; i++) {
+                out[i] = midPoint(series, startIndex + i);
+            }
+            return;
+        }
 
-        for (int i = 0; i < regionEntries.size(); i++) {
+        int windowSize = Math.min(config.getSmoothWindowSize(), size);
+        for (int i = from; i < size; i++) {
             float sum = 0;
             int count = 0;
 
             int start = Math.max(0, i - windowSize / 2);
-            int end = Math.min(regionEntries.size() - 1, i + windowSize / 2);
+            int end = Math.min(size - 1, i + windowSize / 2);
 
             for (int j = start; j <= end; j++) {
-                T entry = regionEntries.get(j);
-                float midPoint = (dataAdapter.getOpen(entry) + dataAdapter.getClose(entry)) / 2;
-                sum += midPoint;
+                sum += midPoint(series, startIndex + j);
                 count++;
             }
 
-            float smoothedMidPoint = sum / count;
-            smoothedMidPoints.add(smoothedMidPoint);
+            out[i] = sum / count;
         }
-
-        return smoothedMidPoints;
     }
 
-    /**
-     * 计算直接的中点值（不平滑）
-     */
-    private List<Float> calculateDirectMidPoints(List<T> regionEntries) {
-        List<Float> midPoints = new ArrayList<>();
-
-        for (T entry : regionEntries) {
-            float midPoint = (dataAdapter.getOpen(entry) + dataAdapter.getClose(entry)) / 2;
-            midPoints.add(midPoint);
-        }
-
-        return midPoints;
-    }
-
-    /**
-     * 生成区间缓存键
-     */
-    private String getRegionKey(TrendRegion region, int index) {
-        return region.getStart() + "_" + region.getEnd() + "_" + index;
+    private static float midPoint(KLineSeries series, int index) {
+        return (series.getOpen(index) + series.getClose(index)) / 2;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package com.alex.klinemarker.core;
+
+import android.graphics.Color;
+
+/**
+ * 成交量图层配置类
+ * 成交量柱绘制在K线图内容区域底部的一段高度中，不需要再单独使用一个成交量图表
+ */
+public class VolumeLayerConfig {
+
+    // 默认颜色配置
+    public static final int DEFAULT_RISING_COLOR = Color.parseColor("#4CAF50");    // 绿色
+    public static final int DEFAULT_FALLING_COLOR = Color.parseColor("#F44336");   // 红色
+
+    // 区域配置
+    private float heightRatio = 0.2f;     // 成交量区域占内容区域高度的比例
+    private float topMarginDp = 2f;       // 成交量区域顶部留白（dp），最高的柱不会贴着K线
+
+    // 柱形配置
+    private float barWidthRatio = 0.7f;   // 柱宽占一根K线宽度的比例
+    private float alpha = 0.6f;           // 透明度
+
+    // 颜色配置
+    private int risingColor = DEFAULT_RISING_COLOR;   // 收盘价不低于开盘价
+    private int fallingColor = DEFAULT_FALLING_COLOR; // 收盘价低于开盘价
+
+    public VolumeLayerConfig() {
+        // 使用默认配置
+    }
+
+    // Builder模式
+    public static class Builder {
+        private final VolumeLayerConfig config = new VolumeLayerConfig();
+
+        /**
+         * 成交量区域占内容区域高度的比例，取值 (0, 1)，默认0.2
+         * K线需要为这段高度留出空间，例如调低左轴的最小值
+         */
+        public Builder heightRatio(float ratio) {
+            config.heightRatio = ratio;
+            return this;
+        }
+
+        public Builder topMarginDp(float margin) {
+            config.topMarginDp = margin;
+            return this;
+        }
+
+        /**
+         * 柱宽占一根K线宽度的比例，取值 (0, 1]，默认0.7
+         */
+        public Builder barWidthRatio(float ratio) {
+            config.barWidthRatio = ratio;
+            return this;
+        }
+
+        public Builder alpha(float alpha) {
+            config.alpha = alpha;
+            return this;
+        }
+
+        public Builder risingColor(int color) {
+            config.risingColor = color;
+            return this;
+        }
+
+        public Builder fallingColor(int color) {
+            config.fallingColor = color;
+            return this;
+        }
+
+        public VolumeLayerConfig build() {
+            if (!(config.heightRatio > 0 && config.heightRatio < 1)
+                    || !(config.barWidthRatio > 0 && config.barWidthRatio <= 1)
+                    || !(config.alpha >= 0 && config.alpha <= 1) || !(config.topMarginDp >= 0)) {
+                throw new IllegalArgumentException("Invalid volume layer config: heightRatio=" + config.heightRatio
+                        + ", barWidthRatio=" + config.barWidthRatio + ", alpha=" + config.alpha
+                        + ", topMarginDp=" + config.topMarginDp);
+            }
+            return config;
+        }
+    }
+
+    // Getters
+    public float getHeightRatio() {
+        return heightRatio;
+    }
+
+    public float getTopMarginDp() {
+        return topMarginDp;
+    }
+
+    public float getBarWidthRatio() {
+        return barWidthRatio;
+    }
+
+    public float getAlpha() {
+        return alpha;
+    }
+
+    public int getRisingColor() {
+        return risingColor;
+    }
+
+    public int getFallingColor() {
+        return fallingColor;
+    }
+}
@@ -0,0 +1,189 @@
+package com.alex.klinemarker.core;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.Log;
+
+import com.alex.klinemarker.data.KLineSeries;
+import com.github.mikephil.charting.charts.CombinedChart;
+
+/**
+ * 成交量图层渲染器
+ * 在K线图内容区域底部绘制成交量柱，数据直接读取 {@link RenderSnapshot} 中K线序列的成交量列，
+ * 不需要为成交量再创建一组 BarEntry 和一个同步滚动的图表。
+ * <p>
+ * 柱高按可见范围内的最大成交量缩放；同一颜色的柱收集到一个坐标数组中，用一次 {@code drawLines} 绘制
+ * （线宽等于柱宽，平头线段即矩形），每帧每种颜色只有一次绘制调用。
+ * K线比像素还窄时，落在同一像素列的同色柱合并为最高的一根，线段数量不超过内容区域的像素宽度。
+ * <p>
+ * 只能在主线程使用。
+ */
+public class VolumeLayerRenderer {
+
+    private static final String TAG = "VolumeLayerRenderer";
+    private static final boolean DEBUG = false; // 生产版本关闭DEBUG，绘制路径上每帧都会输出日志
+
+    // 与趋势区间相同的左右边距，保证可见范围两端露出一半的K线也会绘制
+    private static final float BAR_MARGIN = 0.5f;
+
+    private final CombinedChart chart;
+    private final float density;
+    private VolumeLayerConfig config;
+
+    private final Paint risingPaint = new Paint();
+    private final Paint fallingPaint = new Paint();
+
+    // 复用的线段坐标（每根柱4个值：x, bottom, x, top）
+    private final BarBatch risingBatch = new BarBatch();
+    private final BarBatch fallingBatch = new BarBatch();
+    private final float[] xMapping = new float[4];
+
+    public VolumeLayerRenderer(Context context, CombinedChart chart, VolumeLayerConfig config) {
+        this.chart = chart;
+        this.density = context.getResources().getDisplayMetrics().density;
+        risingPaint.setStyle(Paint.Style.STROKE);
+        risingPaint.setStrokeCap(Paint.Cap.BUTT);
+        fallingPaint.setStyle(Paint.Style.STROKE);
+        fallingPaint.setStrokeCap(Paint.Cap.BUTT);
+        setConfig(config);
+    }
+
+    /**
+     * 更换配置，下一次绘制时生效
+     *
+     * @param config 成交量图层配置，为null时使用默认配置
+     */
+    public void setConfig(VolumeLayerConfig config) {
+        this.config = config != null ? config : new VolumeLayerConfig();
+        int alpha = Math.round(this.config.getAlpha() * 255);
+        risingPaint.setColor(this.config.getRisingColor());
+        risingPaint.setAlpha(alpha);
+        fallingPaint.setColor(this.config.getFallingColor());
+        fallingPaint.setAlpha(alpha);
+    }
+
+    public VolumeLayerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 绘制成交量图层
+     *
+     * @param snapshot 本帧使用的渲染快照，绘制期间只读取不修改
+     */
+    public void drawVolumes(Canvas canvas, RenderSnapshot snapshot) {
+        KLineSeries series = snapshot.getSeries();
+        if (series == null || series.isEmpty()) {
+            return;
+        }
+
+        float minX = chart.getLowestVisibleX() - BAR_MARGIN;
+        float maxX = chart.getHighestVisibleX() + BAR_MARGIN;
+        int first = series.lowerBoundX(minX);
+        int end = series.lowerBoundX(Math.nextUp(maxX));
+        if (first >= end) {
+            return;
+        }
+
+        // 可见范围内的最大成交量决定柱高比例
+        float maxVolume = 0f;
+        for (int i = first; i < end; i++) {
+            maxVolume = Math.max(maxVolume, series.getVolume(i));
+        }
+        if (!(maxVolume > 0f)) {
+            return;
+        }
+
+        float contentLeft = chart.getViewPortHandler().contentLeft();
+        float contentRight = chart.getViewPortHandler().contentRight();
+        float contentBottom = chart.getViewPortHandler().contentBottom();
+        float bandHeight = chart.getViewPortHandler().contentHeight() * config.getHeightRatio()
+                - config.getTopMarginDp() * density;
+        if (bandHeight <= 0f) {
+            return;
+        }
+
+        // X轴到屏幕的变换是线性的，换算两个点得到比例和偏移，不再逐根K线调用变换器
+        xMapping[0] = 0f;
+        xMapping[1] = 0f;
+        xMapping[2] = 1f;
+        xMapping[3] = 0f;
+        chart.getTransformer(chart.getAxisLeft().getAxisDependency()).pointValuesToPixel(xMapping);
+        float pixelsPerX = xMapping[2] - xMapping[0];
+        float pixelOffset = xMapping[0];
+
+        // 柱宽至少1像素
+        float barWidth = Math.max(1f, pixelsPerX * config.getBarWidthRatio());
+        float volumeScale = bandHeight / maxVolume;
+
+        risingBatch.reset();
+        fallingBatch.reset();
+        for (int i = first; i < end; i++) {
+            float volume = series.getVolume(i);
+            if (!(volume > 0f)) {
+                continue;
+            }
+            float x = series.getXValue(i) * pixelsPerX + pixelOffset;
+            float top = contentBottom - volume * volumeScale;
+            BarBatch batch = series.getClose(i) >= series.getOpen(i) ? risingBatch : fallingBatch;
+            batch.add(x, contentBottom, top);
+        }
+
+        if (DEBUG) {
+            Log.d(TAG, "drawVolumes: bars=" + (end - first) + ", rising=" + risingBatch.bars
+                    + ", falling=" + fallingBatch.bars + ", barWidth=" + barWidth);
+        }
+
+        // 两端的柱只露出一部分，裁剪到内容区域
+        int saveCount = canvas.save();
+        canvas.clipRect(contentLeft, chart.getViewPortHandler().contentTop(), contentRight, contentBottom);
+        risingPaint.setStrokeWidth(barWidth);
+        fallingPaint.setStrokeWidth(barWidth);
+        risingBatch.draw(canvas, risingPaint);
+        fallingBatch.draw(canvas, fallingPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 同一颜色的柱，绘制时一次提交
+     */
+    private static final class BarBatch {
+        float[] points = new float[256];
+        int bars;
+        // 最后一根柱所在的像素列，与它同列的柱只保留最高的
+        int lastColumn;
+
+        void reset() {
+            bars = 0;
+            lastColumn = Integer.MIN_VALUE;
+        }
+
+        void add(float x, float bottom, float top) {
+            int column = (int) Math.floor(x);
+            if (bars > 0 && column == lastColumn) {
+                int topIndex = bars * 4 - 1;
+                points[topIndex] = Math.min(points[topIndex], top);
+                return;
+            }
+            if (bars * 4 + 4 > points.length) {
+                float[] grown = new float[points.length * 2];
+                System.arraycopy(points, 0, grown, 0, bars * 4);
+                points = grown;
+            }
+            int offset = bars * 4;
+            points[offset] = x;
+            points[offset + 1] = bottom;
+            points[offset + 2] = x;
+            points[offset + 3] = top;
+            bars++;
+            lastColumn = column;
+        }
+
+        void draw(Canvas canvas, Paint paint) {
+            if (bars > 0) {
+                canvas.drawLines(points, 0, bars * 4, paint);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.alex.klinemarker.data;
+
+import java.util.List;
+
+/**
+ * 批量读取的K线数据适配器接口（可选）
+ * 构建K线序列时，库会按列一次读取一段K线，而不是对每根K线分别调用7个读取方法。
+ * 适用于数据本身已经按列保存的场景（例如行情接口直接返回价格数组），可以直接用 {@link System#arraycopy} 复制；
+ * 没有实现该接口的适配器仍按单个K线读取。
+ * <p>
+ * 每个方法将列表中 [from, to) 范围内的K线写入目标数组的 [0, to - from) 位置。
+ */
+public interface BulkKLineDataAdapter<T> extends KLineDataAdapter<T> {
+
+    /**
+     * 批量读取时间戳（毫秒），日期为空的K线写入 {@link KLineSeries#NO_TIME}
+     */
+    void fillTimes(List<T> klineData, long[] dest, int from, int to);
+
+    /**
+     * 批量读取X轴坐标值
+     */
+    void fillXValues(List<T> klineData, float[] dest, int from, int to);
+
+    /**
+     * 批量读取开盘价
+     */
+    void fillOpen(List<T> klineData, float[] dest, int from, int to);
+
+    /**
+     * 批量读取最高价
+     */
+    void fillHigh(List<T> klineData, float[] dest, int from, int to);
+
+    /**
+     * 批量读取最低价
+     */
+    void fillLow(List<T> klineData, float[] dest, int from, int to);
+
+    /**
+     * 批量读取收盘价
+     */
+    void fillClose(List<T> klineData, float[] dest, int from, int to);
+
+    /**
+     * 批量读取成交量
+     */
+    void fillVolume(List<T> klineData, float[] dest, int from, int to);
+}
@@ -0,0 +1,324 @@
+package com.alex.klinemarker.data;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * K线周期聚合结果
+ * 一次遍历基础序列，按周期合并为更粗的K线：开盘取第一根、收盘取最后一根、最高取最大值、最低取最小值、成交量求和。
+ * 同时保存基础K线与聚合K线之间的索引映射，用于将标记和趋势区间映射到聚合后的K线上。
+ * <p>
+ * 基础序列尾部变化（追加K线或更新最后一根K线）时，{@link #withTail} 只重新计算最后一个周期及之后的聚合K线，
+ * 其余聚合K线和索引映射与原结果共享，原结果的内容不变。
+ */
+public final class KLineAggregation {
+
+    private final Timeframe timeframe;
+    private final boolean indexXValues;
+    private final TimeZone zone;
+    private final KLineSeries baseSeries;
+    private final KLineSeries series;
+
+    // 每根基础K线所属的聚合K线；长度可能大于基础K线数量，多出的部分供尾部更新
+    private final int[] aggregatedIndices;
+    // 每根聚合K线的第一根基础K线；长度可能大于聚合K线数量
+    private final int[] firstBaseIndices;
+    // 最后一个周期去掉最后一根基础K线后的累计值，更新最后一根K线时从这里继续；周期只有一根K线时为null
+    private final Bucket lastBucketPrefix;
+
+    // 是否已从该结果增量更新过：更新会占用共享数组中紧随其后的位置，再次更新时必须复制
+    private boolean extended;
+
+    private KLineAggregation(Timeframe timeframe, boolean indexXValues, TimeZone zone, KLineSeries baseSeries,
+                             KLineSeries series, int[] aggregatedIndices, int[] firstBaseIndices,
+                             Bucket lastBucketPrefix) {
+        this.timeframe = timeframe;
+        this.indexXValues = indexXValues;
+        this.zone = zone;
+        this.baseSeries = baseSeries;
+        this.series = series;
+        this.aggregatedIndices = aggregatedIndices;
+        this.firstBaseIndices = firstBaseIndices;
+        this.lastBucketPrefix = lastBucketPrefix;
+    }
+
+    /**
+     * 按本地时区聚合基础序列，见 {@link #aggregate(KLineSeries, Timeframe, boolean, TimeZone)}
+     */
+    public static KLineAggregation aggregate(KLineSeries base, Timeframe timeframe, boolean indexXValues) {
+        return aggregate(base, timeframe, indexXValues, TimeZone.getDefault());
+    }
+
+    /**
+     * 聚合基础序列
+     * 日期为空的K线并入前一根K线所在的周期
+     *
+     * @param base          基础K线序列（按时间升序）
+     * @param timeframe     目标周期
+     * @param indexXValues  true 时聚合K线的X值为其序号（适用于以序号作为X值的图表），
+     *                      false 时沿用每个周期第一根K线的X值（适用于以时间作为X值的图表）
+     * @param zone          划分日、周、月的时区，应与匹配标记的 {@link TimeAxis} 时区一致
+     * @return 聚合结果
+     */
+    public static KLineAggregation aggregate(KLineSeries base, Timeframe timeframe, boolean indexXValues,
+                                             TimeZone zone) {
+        Pass pass = new Pass(base, timeframe, indexXValues, zone, 0, 0, null);
+        return new KLineAggregation(timeframe, indexXValues, zone, base, pass.series(),
+                pass.aggregatedIndices, pass.firstBaseIndices, pass.lastBucketPrefix);
+    }
+
+    /**
+     * 基础序列尾部变化后更新聚合结果
+     * 追加K线时从最后一个周期的累计值继续，更新最后一根K线时从该周期不含这根K线的累计值继续，
+     * 都只计算变化的K线；其他情况从第一根变化的K线所在周期的起点重新聚合。之前的聚合K线保持共享
+     *
+     * @param newBase      尾部变化后的基础序列，之前的K线与 {@link #getBaseSeries()} 相同
+     * @param firstChanged 第一根发生变化的基础K线索引
+     * @return 新的聚合结果，当前结果的内容不变
+     */
+    public KLineAggregation withTail(KLineSeries newBase, int firstChanged) {
+        int oldSize = baseSeries.size();
+        int newSize = newBase.size();
+        int count = series.size();
+        if (count == 0 || firstChanged <= 0 || firstChanged > oldSize || newSize < oldSize) {
+            return aggregate(newBase, timeframe, indexXValues, zone);
+        }
+
+        int firstBucket;
+        int startBar;
+        Bucket open;
+        if (firstChanged == oldSize) {
+            firstBucket = count - 1;
+            startBar = oldSize;
+            open = Bucket.of(series, firstBucket, firstBaseIndices[firstBucket]);
+        } else if (firstChanged == oldSize - 1 && lastBucketPrefix != null) {
+            firstBucket = count - 1;
+            startBar = firstChanged;
+            open = lastBucketPrefix;
+        } else {
+            firstBucket = aggregatedIndices[firstChanged];
+            startBar = firstBaseIndices[firstBucket];
+            open = null;
+        }
+        Pass pass = new Pass(newBase, timeframe, indexXValues, zone, startBar, firstBucket, open);
+        int newCount = firstBucket + pass.count;
+
+        // 与 KLineSeries 的追加方式相同：只写入原结果不可见的位置，或写入的值不变时共享数组
+        boolean rewritesExisting = false;
+        for (int i = startBar; i < oldSize; i++) {
+            rewritesExisting |= pass.aggregatedIndices[i - startBar] != aggregatedIndices[i];
+        }
+        for (int k = firstBucket; k < Math.min(count, newCount); k++) {
+            rewritesExisting |= pass.firstBaseIndices[k - firstBucket] != firstBaseIndices[k];
+        }
+        boolean grows = newSize > oldSize || newCount > count;
+        int[] newAggregatedIndices = aggregatedIndices;
+        int[] newFirstBaseIndices = firstBaseIndices;
+        if (rewritesExisting || grows && (extended || newSize > aggregatedIndices.length
+                || newCount > firstBaseIndices.length)) {
+            newAggregatedIndices = Arrays.copyOf(aggregatedIndices, grownCapacity(newSize, aggregatedIndices.length));
+            newFirstBaseIndices = Arrays.copyOf(firstBaseIndices, grownCapacity(newCount, firstBaseIndices.length));
+        } else if (grows) {
+            extended = true;
+        }
+        System.arraycopy(pass.aggregatedIndices, 0, newAggregatedIndices, startBar, newSize - startBar);
+        System.arraycopy(pass.firstBaseIndices, 0, newFirstBaseIndices, firstBucket, pass.count);
+
+        return new KLineAggregation(timeframe, indexXValues, zone, newBase,
+                series.replaceTail(firstBucket, pass.series()), newAggregatedIndices, newFirstBaseIndices,
+                pass.lastBucketPrefix);
+    }
+
+    public Timeframe getTimeframe() {
+        return timeframe;
+    }
+
+    public boolean isIndexXValues() {
+        return indexXValues;
+    }
+
+    /**
+     * 划分周期使用的时区
+     */
+    public TimeZone getZone() {
+        return zone;
+    }
+
+    /**
+     * 聚合前的基础序列
+     */
+    public KLineSeries getBaseSeries() {
+        return baseSeries;
+    }
+
+    /**
+     * 聚合后的序列，每根K线的时间为其周期内第一根基础K线的时间
+     */
+    public KLineSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * 基础K线所属的聚合K线索引
+     */
+    public int getAggregatedIndex(int baseIndex) {
+        return aggregatedIndices[baseIndex];
+    }
+
+    /**
+     * 聚合K线包含的第一根基础K线索引
+     */
+    public int getFirstBaseIndex(int index) {
+        return firstBaseIndices[index];
+    }
+
+    /**
+     * 聚合K线包含的最后一根基础K线索引（包含）
+     */
+    public int getLastBaseIndex(int index) {
+        return index + 1 < series.size() ? firstBaseIndices[index + 1] - 1 : baseSeries.size() - 1;
+    }
+
+    /**
+     * 复制共享数组时的新长度：容量不足时翻倍，否则保持原长度
+     */
+    private static int grownCapacity(int required, int capacity) {
+        return required > capacity ? Math.max(required, capacity * 2) : capacity;
+    }
+
+    private static long[] trim(long[] values, int count) {
+        return values.length == count ? values : Arrays.copyOf(values, count);
+    }
+
+    private static float[] trim(float[] values, int count) {
+        return values.length == count ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * 一个周期的累计值
+     */
+    private static final class Bucket {
+        final int firstBase;
+        final long time;
+        final float xValue;
+        final float open;
+        final float high;
+        final float low;
+        final float close;
+        final float volume;
+
+        Bucket(int firstBase, long time, float xValue, float open, float high, float low, float close,
+               float volume) {
+            this.firstBase = firstBase;
+            this.time = time;
+            this.xValue = xValue;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+        }
+
+        static Bucket of(KLineSeries series, int index, int firstBase) {
+            return new Bucket(firstBase, series.getTime(index), series.getXValue(index), series.getOpen(index),
+                    series.getHigh(index), series.getLow(index), series.getClose(index), series.getVolume(index));
+        }
+    }
+
+    /**
+     * 从指定的基础K线开始的一次聚合遍历，得到从 firstBucket 开始的聚合K线
+     */
+    private static final class Pass {
+        // 从 startBar 开始每根基础K线所属的聚合K线
+        final int[] aggregatedIndices;
+        // 从 firstBucket 开始每根聚合K线的第一根基础K线
+        final int[] firstBaseIndices;
+        final long[] times;
+        final float[] xValues;
+        final float[] opens;
+        final float[] highs;
+        final float[] lows;
+        final float[] closes;
+        final float[] volumes;
+        int count;
+        Bucket lastBucketPrefix;
+
+        /**
+         * @param open 未结束的周期在 startBar 之前的累计值，为null时 startBar 开始一个新的周期
+         */
+        Pass(KLineSeries base, Timeframe timeframe, boolean indexXValues, TimeZone zone,
+             int startBar, int firstBucket, Bucket open) {
+            int size = base.size();
+            int capacity = size - startBar + 1;
+            aggregatedIndices = new int[capacity];
+            firstBaseIndices = new int[capacity];
+            times = new long[capacity];
+            xValues = new float[capacity];
+            opens = new float[capacity];
+            highs = new float[capacity];
+            lows = new float[capacity];
+            closes = new float[capacity];
+            volumes = new float[capacity];
+
+            Calendar calendar = Calendar.getInstance(zone);
+            long periodStart = Long.MAX_VALUE;
+            long periodEnd = Long.MIN_VALUE;
+            if (open != null) {
+                count = 1;
+                firstBaseIndices[0] = open.firstBase;
+                times[0] = open.time;
+                xValues[0] = open.xValue;
+                opens[0] = open.open;
+                highs[0] = open.high;
+                lows[0] = open.low;
+                closes[0] = open.close;
+                volumes[0] = open.volume;
+                if (open.time != KLineSeries.NO_TIME) {
+                    periodStart = timeframe.periodStart(calendar, open.time);
+                    periodEnd = timeframe.nextPeriodStart(calendar, periodStart);
+                }
+            }
+            for (int i = startBar; i < size; i++) {
+                long time = base.getTime(i);
+                // 只在离开当前周期时才计算新周期的边界
+                boolean newPeriod = count == 0 || (time != KLineSeries.NO_TIME && (time < periodStart || time >= periodEnd));
+                if (i == size - 1) {
+                    lastBucketPrefix = newPeriod ? null : bucket(count - 1);
+                }
+                if (newPeriod) {
+                    if (time != KLineSeries.NO_TIME) {
+                        periodStart = timeframe.periodStart(calendar, time);
+                        periodEnd = timeframe.nextPeriodStart(calendar, periodStart);
+                    }
+                    int k = count++;
+                    firstBaseIndices[k] = i;
+                    times[k] = time;
+                    xValues[k] = indexXValues ? firstBucket + k : base.getXValue(i);
+                    opens[k] = base.getOpen(i);
+                    highs[k] = base.getHigh(i);
+                    lows[k] = base.getLow(i);
+                    closes[k] = base.getClose(i);
+                    volumes[k] = base.getVolume(i);
+                } else {
+                    int k = count - 1;
+                    highs[k] = Math.max(highs[k], base.getHigh(i));
+                    lows[k] = Math.min(lows[k], base.getLow(i));
+                    closes[k] = base.getClose(i);
+                    volumes[k] += base.getVolume(i);
+                }
+                aggregatedIndices[i - startBar] = firstBucket + count - 1;
+            }
+        }
+
+        private Bucket bucket(int k) {
+            return new Bucket(firstBaseIndices[k], times[k], xValues[k], opens[k], highs[k], lows[k], closes[k],
+                    volumes[k]);
+        }
+
+        KLineSeries series() {
+            return KLineSeries.wrap(trim(times, count), trim(xValues, count), trim(opens, count),
+                    trim(highs, count), trim(lows, count), trim(closes, count), trim(volumes, count));
+        }
+    }
+}
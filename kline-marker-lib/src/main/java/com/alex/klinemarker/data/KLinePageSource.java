@@ -0,0 +1,22 @@
+package com.alex.klinemarker.data;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 分页K线数据源
+ * 与 {@link KLineDataAdapter} 配合使用：数据源按固定大小的页提供历史K线，适配器负责读取每根K线的字段。
+ * 页号从最新的一页开始编号，0为最新一页，页号越大数据越早。
+ */
+public interface KLinePageSource<T> {
+
+    /**
+     * 加载一页K线数据，在后台线程中调用
+     *
+     * @param page     页号，0为最新一页
+     * @param pageSize 每页K线数量
+     * @return 按时间升序排列的K线，最早的一页可以不足pageSize，返回空列表表示没有更早的数据
+     * @throws IOException 加载失败
+     */
+    List<T> loadPage(int page, int pageSize) throws IOException;
+}
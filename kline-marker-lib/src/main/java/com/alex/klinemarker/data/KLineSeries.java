@@ -0,0 +1,339 @@
+package com.alex.klinemarker.data;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * K线原始数据序列（列式存储）
+ * 将适配器中的K线对象一次性展开为基本类型数组，
+ * 库内部的索引、区间解析和绘制都基于该序列，避免每帧通过适配器逐条读取
+ * <p>
+ * 列数据按固定大小分块保存，序列本身不可变：{@link #append} 和 {@link #replaceLast} 返回新序列，
+ * 新序列与原序列共享未变化的分块。追加时直接写入最后一个分块的空闲位置，
+ * 更新最后一根K线时只复制最后一个分块，原序列的内容始终保持不变。
+ */
+public class KLineSeries {
+
+    // 日期为空的K线使用该时间戳，不会落入任何区间
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    // 每个分块256根K线
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Chunk[] chunks;
+    private final int size;
+
+    // 是否已从该序列追加过K线：追加会占用共享分块中紧随其后的位置，再次从该序列追加时必须复制
+    private boolean appended;
+
+    private KLineSeries(Chunk[] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    private static KLineSeries allocate(int size) {
+        Chunk[] chunks = new Chunk[(size + CHUNK_MASK) >>> CHUNK_SHIFT];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Chunk();
+        }
+        return new KLineSeries(chunks, size);
+    }
+
+    /**
+     * 使用已有的列数据构建序列（例如从快照中读取），数据会被复制到分块中
+     * 所有数组长度必须一致
+     */
+    public static KLineSeries wrap(long[] times, float[] xValues, float[] opens, float[] highs,
+                                   float[] lows, float[] closes, float[] volumes) {
+        int size = times.length;
+        if (xValues.length != size || opens.length != size || highs.length != size
+                || lows.length != size || closes.length != size || volumes.length != size) {
+            throw new IllegalArgumentException("Column lengths differ from times length " + size);
+        }
+        KLineSeries series = allocate(size);
+        for (int c = 0; c < series.chunks.length; c++) {
+            Chunk chunk = series.chunks[c];
+            int from = c << CHUNK_SHIFT;
+            int length = Math.min(CHUNK_SIZE, size - from);
+            System.arraycopy(times, from, chunk.times, 0, length);
+            System.arraycopy(xValues, from, chunk.xValues, 0, length);
+            System.arraycopy(opens, from, chunk.opens, 0, length);
+            System.arraycopy(highs, from, chunk.highs, 0, length);
+            System.arraycopy(lows, from, chunk.lows, 0, length);
+            System.arraycopy(closes, from, chunk.closes, 0, length);
+            System.arraycopy(volumes, from, chunk.volumes, 0, length);
+        }
+        return series;
+    }
+
+    /**
+     * 从K线数据列表构建序列
+     * 适配器实现了 {@link BulkKLineDataAdapter} 时按分块批量读取每一列，否则逐根K线读取
+     *
+     * @param klineData   K线数据列表（按时间升序）
+     * @param dataAdapter K线数据适配器
+     * @return K线序列
+     */
+    public static <T> KLineSeries from(List<T> klineData, KLineDataAdapter<T> dataAdapter) {
+        int size = klineData != null ? klineData.size() : 0;
+        KLineSeries series = allocate(size);
+        if (dataAdapter instanceof BulkKLineDataAdapter) {
+            BulkKLineDataAdapter<T> bulkAdapter = (BulkKLineDataAdapter<T>) dataAdapter;
+            for (int c = 0; c < series.chunks.length; c++) {
+                int from = c << CHUNK_SHIFT;
+                series.chunks[c].fill(klineData, from, Math.min(from + CHUNK_SIZE, size), bulkAdapter);
+            }
+            return series;
+        }
+        for (int i = 0; i < size; i++) {
+            series.chunks[i >>> CHUNK_SHIFT].set(i & CHUNK_MASK, klineData.get(i), dataAdapter);
+        }
+        return series;
+    }
+
+    /**
+     * 按顺序拼接多个序列（例如分页加载的多页数据）
+     * 除最后一个序列外长度都是分块大小的整数倍时直接共享分块，否则复制数据；
+     * 最后一个不完整的分块总是复制，之后的追加不会写入原序列的分块
+     *
+     * @param parts 按时间升序排列的序列
+     * @return 拼接后的序列
+     */
+    public static KLineSeries concat(List<KLineSeries> parts) {
+        int size = 0;
+        boolean aligned = true;
+        for (int i = 0; i < parts.size(); i++) {
+            int partSize = parts.get(i).size;
+            size += partSize;
+            aligned &= i == parts.size() - 1 || (partSize & CHUNK_MASK) == 0;
+        }
+
+        if (!aligned) {
+            KLineSeries series = allocate(size);
+            int offset = 0;
+            for (KLineSeries part : parts) {
+                for (int i = 0; i < part.size; i++, offset++) {
+                    Chunk from = part.chunks[i >>> CHUNK_SHIFT];
+                    series.chunks[offset >>> CHUNK_SHIFT].copyFrom(from, i & CHUNK_MASK, offset & CHUNK_MASK);
+                }
+            }
+            return series;
+        }
+
+        Chunk[] chunks = new Chunk[(size + CHUNK_MASK) >>> CHUNK_SHIFT];
+        int count = 0;
+        for (KLineSeries part : parts) {
+            int partChunks = (part.size + CHUNK_MASK) >>> CHUNK_SHIFT;
+            System.arraycopy(part.chunks, 0, chunks, count, partChunks);
+            count += partChunks;
+        }
+        if ((size & CHUNK_MASK) != 0) {
+            chunks[count - 1] = chunks[count - 1].copy();
+        }
+        return new KLineSeries(chunks, size);
+    }
+
+    /**
+     * 在末尾追加一根K线，均摊O(1)
+     * 返回的新序列与当前序列共享已有数据，当前序列的内容不变。从同一个序列追加应在同一线程中进行
+     *
+     * @param entry       新的K线，时间不应早于最后一根K线
+     * @param dataAdapter K线数据适配器
+     * @return 追加后的序列
+     */
+    public <T> KLineSeries append(T entry, KLineDataAdapter<T> dataAdapter) {
+        int chunkIndex = size >>> CHUNK_SHIFT;
+        int slot = size & CHUNK_MASK;
+
+        Chunk[] newChunks = chunks;
+        if (appended || chunkIndex >= chunks.length) {
+            newChunks = Arrays.copyOf(chunks, Math.max(chunkIndex + 1, chunks.length * 2));
+        }
+        if (slot == 0) {
+            newChunks[chunkIndex] = new Chunk();
+        } else if (appended) {
+            // 该位置已被其他序列占用
+            newChunks[chunkIndex] = newChunks[chunkIndex].copy();
+        }
+        appended = true;
+
+        newChunks[chunkIndex].set(slot, entry, dataAdapter);
+        return new KLineSeries(newChunks, size + 1);
+    }
+
+    /**
+     * 替换最后一根K线，只复制最后一个分块
+     * 返回的新序列与当前序列共享其余分块，当前序列的内容不变
+     *
+     * @param entry       最后一根K线的最新数据
+     * @param dataAdapter K线数据适配器
+     * @return 替换后的序列
+     * @throws IllegalStateException 序列为空
+     */
+    public <T> KLineSeries replaceLast(T entry, KLineDataAdapter<T> dataAdapter) {
+        if (size == 0) {
+            throw new IllegalStateException("Cannot replace the last bar of an empty series");
+        }
+        int last = size - 1;
+        Chunk[] newChunks = chunks.clone();
+        Chunk chunk = chunks[last >>> CHUNK_SHIFT].copy();
+        chunk.set(last & CHUNK_MASK, entry, dataAdapter);
+        newChunks[last >>> CHUNK_SHIFT] = chunk;
+        return new KLineSeries(newChunks, size);
+    }
+
+    /**
+     * 保留前 from 根K线，之后替换为 tail 中的K线（聚合序列尾部增量更新使用）
+     * 与当前序列共享 from 之前的完整分块，包含 from 的分块复制后再写入，当前序列的内容不变
+     */
+    KLineSeries replaceTail(int from, KLineSeries tail) {
+        int newSize = from + tail.size;
+        Chunk[] newChunks = Arrays.copyOf(chunks, (newSize + CHUNK_MASK) >>> CHUNK_SHIFT);
+        int firstChunk = from >>> CHUNK_SHIFT;
+        for (int c = firstChunk; c < newChunks.length; c++) {
+            boolean keepsPrefix = c == firstChunk && (from & CHUNK_MASK) != 0;
+            newChunks[c] = keepsPrefix ? chunks[c].copy() : new Chunk();
+        }
+        for (int i = 0; i < tail.size; i++) {
+            int at = from + i;
+            newChunks[at >>> CHUNK_SHIFT].copyFrom(tail.chunks[i >>> CHUNK_SHIFT], i & CHUNK_MASK, at & CHUNK_MASK);
+        }
+        return new KLineSeries(newChunks, newSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTime(int index) {
+        return chunks[index >>> CHUNK_SHIFT].times[index & CHUNK_MASK];
+    }
+
+    public float getXValue(int index) {
+        return chunks[index >>> CHUNK_SHIFT].xValues[index & CHUNK_MASK];
+    }
+
+    public float getOpen(int index) {
+        return chunks[index >>> CHUNK_SHIFT].opens[index & CHUNK_MASK];
+    }
+
+    public float getHigh(int index) {
+        return chunks[index >>> CHUNK_SHIFT].highs[index & CHUNK_MASK];
+    }
+
+    public float getLow(int index) {
+        return chunks[index >>> CHUNK_SHIFT].lows[index & CHUNK_MASK];
+    }
+
+    public float getClose(int index) {
+        return chunks[index >>> CHUNK_SHIFT].closes[index & CHUNK_MASK];
+    }
+
+    public float getVolume(int index) {
+        return chunks[index >>> CHUNK_SHIFT].volumes[index & CHUNK_MASK];
+    }
+
+    /**
+     * 查找第一根时间不早于指定时间戳的K线索引（二分查找，要求序列按时间升序）
+     *
+     * @param time 时间戳（毫秒）
+     * @return K线索引，所有K线都早于该时间时返回size()
+     */
+    public int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getTime(mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 查找第一根X值不小于指定值的K线索引（二分查找，X值与时间同序升序排列）
+     * 用于按图表可见的X轴范围确定需要绘制的K线
+     *
+     * @param xValue 图表X值
+     * @return K线索引，所有K线的X值都小于该值时返回size()
+     */
+    public int lowerBoundX(float xValue) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getXValue(mid) < xValue) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 一个分块的列数据
+     */
+    private static final class Chunk {
+        final long[] times = new long[CHUNK_SIZE];
+        final float[] xValues = new float[CHUNK_SIZE];
+        final float[] opens = new float[CHUNK_SIZE];
+        final float[] highs = new float[CHUNK_SIZE];
+        final float[] lows = new float[CHUNK_SIZE];
+        final float[] closes = new float[CHUNK_SIZE];
+        final float[] volumes = new float[CHUNK_SIZE];
+
+        <T> void set(int slot, T entry, KLineDataAdapter<T> dataAdapter) {
+            Date date = dataAdapter.getDate(entry);
+            times[slot] = date != null ? date.getTime() : NO_TIME;
+            xValues[slot] = dataAdapter.getXValue(entry);
+            opens[slot] = dataAdapter.getOpen(entry);
+            highs[slot] = dataAdapter.getHigh(entry);
+            lows[slot] = dataAdapter.getLow(entry);
+            closes[slot] = dataAdapter.getClose(entry);
+            volumes[slot] = dataAdapter.getVolume(entry);
+        }
+
+        <T> void fill(List<T> klineData, int from, int to, BulkKLineDataAdapter<T> dataAdapter) {
+            dataAdapter.fillTimes(klineData, times, from, to);
+            dataAdapter.fillXValues(klineData, xValues, from, to);
+            dataAdapter.fillOpen(klineData, opens, from, to);
+            dataAdapter.fillHigh(klineData, highs, from, to);
+            dataAdapter.fillLow(klineData, lows, from, to);
+            dataAdapter.fillClose(klineData, closes, from, to);
+            dataAdapter.fillVolume(klineData, volumes, from, to);
+        }
+
+        void copyFrom(Chunk from, int fromSlot, int slot) {
+            times[slot] = from.times[fromSlot];
+            xValues[slot] = from.xValues[fromSlot];
+            opens[slot] = from.opens[fromSlot];
+            highs[slot] = from.highs[fromSlot];
+            lows[slot] = from.lows[fromSlot];
+            closes[slot] = from.closes[fromSlot];
+            volumes[slot] = from.volumes[fromSlot];
+        }
+
+        Chunk copy() {
+            Chunk copy = new Chunk();
+            System.arraycopy(times, 0, copy.times, 0, CHUNK_SIZE);
+            System.arraycopy(xValues, 0, copy.xValues, 0, CHUNK_SIZE);
+            System.arraycopy(opens, 0, copy.opens, 0, CHUNK_SIZE);
+            System.arraycopy(highs, 0, copy.highs, 0, CHUNK_SIZE);
+            System.arraycopy(lows, 0, copy.lows, 0, CHUNK_SIZE);
+            System.arraycopy(closes, 0, copy.closes, 0, CHUNK_SIZE);
+            System.arraycopy(volumes, 0, copy.volumes, 0, CHUNK_SIZE);
+            return copy;
+        }
+    }
+}
@@ -87,14 +87,17 @@ public class MarkerData {
     }
 
     /**
-     * 获取日期的x轴坐标值，用于图表显示
+     * 获取日期的x轴坐标值，用于图表显示（按 {@link TimeAxis#DAY} 换算为相对天数）
      */
     public float getXValue() {
-        if (date == null) return 0;
-        // 使用相对天数，以2024年1月1日为基准
-        long baseTime = 1704067200000L; // 2024-01-01 00:00:00 UTC
-        long daysSinceBase = (date.getTime() - baseTime) / (24 * 60 * 60 * 1000);
-        return (float) daysSinceBase;
+        return getXValue(TimeAxis.DAY);
+    }
+
+    /**
+     * 按指定时间轴获取日期的x轴坐标值
+     */
+    public float getXValue(TimeAxis timeAxis) {
+        return timeAxis.toXValue(date);
     }
 
     @Override
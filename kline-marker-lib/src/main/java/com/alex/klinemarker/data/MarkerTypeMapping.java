@@ -0,0 +1,113 @@
+package com.alex.klinemarker.data;
+
+import android.util.SparseArray;
+
+/**
+ * 标记类型映射
+ * 将数据源中的整数标记类型映射为标记配置和默认文本，供 {@link com.alex.klinemarker.utils.MarkerFeedParser} 使用。
+ * <p>
+ * 同一类型的所有标记共享同一个配置对象，解析大量历史标记时不会逐条复制配置（这是有意的内存取舍，
+ * 与 {@link MarkerData#MarkerData(java.util.Date, String, MarkerConfig)} 复制配置的做法不同）。
+ * 因此修改某个解析出的标记的 {@code getConfig()} 会改变同一类型的全部标记；只需调整单个标记时，
+ * 先用 {@code marker.setConfig(marker.getConfig().copy())} 换成独立的配置。
+ * 映射本身在 {@link Builder#map} 时复制传入的配置，之后修改调用方的配置对象不会影响映射。
+ */
+public class MarkerTypeMapping {
+
+    private final SparseArray<Entry> entries;
+    private final Entry fallback;
+
+    private MarkerTypeMapping(Builder builder) {
+        this.entries = builder.entries;
+        this.fallback = builder.fallback;
+    }
+
+    /**
+     * 默认映射，与标记数据接口的类型定义一致：
+     * 0-数字标记，1-买入，2-卖出，3-上三角，4-下三角，其他类型使用信息标记
+     */
+    public static MarkerTypeMapping defaults() {
+        return new Builder()
+                .map(0, MarkerPresets.info(), "N")
+                .map(1, MarkerPresets.buy(), "B")
+                .map(2, MarkerPresets.sell(), "S")
+                .map(3, MarkerPresets.customize(MarkerPresets.stockGreen())
+                        .shape(MarkerShape.TRIANGLE_UP)
+                        .position(MarkerPosition.BELOW)
+                        .build(), "↑")
+                .map(4, MarkerPresets.customize(MarkerPresets.sell())
+                        .shape(MarkerShape.TRIANGLE_DOWN)
+                        .position(MarkerPosition.ABOVE)
+                        .build(), "↓")
+                .fallback(MarkerPresets.info(), "?")
+                .build();
+    }
+
+    /**
+     * 获取指定类型的标记配置，未映射的类型返回兜底配置
+     */
+    public MarkerConfig getConfig(int type) {
+        return resolve(type).config;
+    }
+
+    /**
+     * 获取指定类型的默认文本（数据中没有文本时使用），未映射的类型返回兜底文本
+     */
+    public String getDefaultText(int type) {
+        return resolve(type).defaultText;
+    }
+
+    /**
+     * 指定类型是否有显式映射
+     */
+    public boolean isMapped(int type) {
+        return entries.get(type) != null;
+    }
+
+    private Entry resolve(int type) {
+        Entry entry = entries.get(type);
+        return entry != null ? entry : fallback;
+    }
+
+    private static final class Entry {
+        final MarkerConfig config;
+        final String defaultText;
+
+        Entry(MarkerConfig config, String defaultText) {
+            this.config = config;
+            this.defaultText = defaultText;
+        }
+    }
+
+    /**
+     * 构建器
+     */
+    public static class Builder {
+        private final SparseArray<Entry> entries = new SparseArray<>();
+        private Entry fallback = new Entry(MarkerPresets.info(), "?");
+
+        /**
+         * 映射一个标记类型
+         *
+         * @param type        数据源中的类型值
+         * @param config      标记配置
+         * @param defaultText 数据中没有文本时显示的默认文本
+         */
+        public Builder map(int type, MarkerConfig config, String defaultText) {
+            entries.put(type, new Entry(config.copy(), defaultText));
+            return this;
+        }
+
+        /**
+         * 设置未映射类型使用的配置和默认文本
+         */
+        public Builder fallback(MarkerConfig config, String defaultText) {
+            this.fallback = new Entry(config.copy(), defaultText);
+            return this;
+        }
+
+        public MarkerTypeMapping build() {
+            return new MarkerTypeMapping(this);
+        }
+    }
+}
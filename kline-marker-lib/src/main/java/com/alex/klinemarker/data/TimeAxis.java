@@ -0,0 +1,170 @@
+package com.alex.klinemarker.data;
+
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间轴
+ * 按固定的时间桶（例如1天、1小时、5分钟）划分时间，将毫秒时间戳换算为图表X值和用于匹配标记的桶编号。
+ * 同一个桶内的K线与标记互相匹配，换算只使用整数运算，不格式化日期字符串，因此也适用于分钟线和小时线。
+ * <p>
+ * 桶按指定时区的本地时间划分：桶编号 = floor((时间戳 + 时区偏移 - 起点) / 桶长度)。
+ * 实例不可变，可以在任意线程使用。
+ */
+public final class TimeAxis {
+
+    // 2024-01-01 00:00:00 UTC
+    public static final long DEFAULT_ORIGIN = 1704067200000L;
+
+    /**
+     * 默认时间轴：按本地时区的自然日划分，X值为相对2024年1月1日的天数
+     */
+    public static final TimeAxis DAY = new Builder().build();
+
+    private final long bucketMillis;
+    private final long originMillis;
+    private final TimeZone zone;
+    // 时区没有夏令时时直接使用固定偏移
+    private final boolean fixedOffset;
+    private final int rawOffset;
+
+    private TimeAxis(Builder builder) {
+        this.bucketMillis = builder.bucketMillis;
+        this.originMillis = builder.originMillis;
+        this.zone = builder.zone != null ? builder.zone : TimeZone.getDefault();
+        this.fixedOffset = !zone.useDaylightTime();
+        this.rawOffset = zone.getRawOffset();
+    }
+
+    /**
+     * 按本地时区划分的时间轴，桶长度为指定的时间
+     */
+    public static TimeAxis of(long duration, TimeUnit unit) {
+        return new Builder().bucket(duration, unit).build();
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public long getOriginMillis() {
+        return originMillis;
+    }
+
+    public TimeZone getZone() {
+        return zone;
+    }
+
+    /**
+     * 时间戳所在的桶编号，同一个桶内的K线和标记互相匹配
+     */
+    public long keyOf(long time) {
+        long local = time + offset(time) - originMillis;
+        long key = local / bucketMillis;
+        // 向下取整，起点之前的时间也落在正确的桶里
+        return local % bucketMillis < 0 ? key - 1 : key;
+    }
+
+    /**
+     * 时间戳对应的图表X值（桶编号）
+     * X值为float，桶编号超过2^24（例如1分钟的桶约32年）后会损失精度
+     */
+    public float toXValue(long time) {
+        return (float) keyOf(time);
+    }
+
+    /**
+     * 日期对应的图表X值，日期为null时返回0
+     */
+    public float toXValue(Date date) {
+        return date != null ? toXValue(date.getTime()) : 0;
+    }
+
+    /**
+     * 图表X值（桶编号）对应的桶起始时间戳，用于坐标轴标签等反向换算
+     */
+    public long toTime(float xValue) {
+        long local = originMillis + (long) Math.floor(xValue) * bucketMillis;
+        return local - offset(local - rawOffset);
+    }
+
+    /**
+     * 时间戳所在桶的起始时间戳
+     */
+    public long bucketStart(long time) {
+        int offset = offset(time);
+        long remainder = (time + offset - originMillis) % bucketMillis;
+        long start = time - (remainder < 0 ? remainder + bucketMillis : remainder);
+        if (fixedOffset) {
+            return start;
+        }
+        // 桶起点与时间戳之间跨过夏令时切换时，按起点处的偏移修正
+        return start + offset - offset(start);
+    }
+
+    /**
+     * 下一个桶的起始时间戳
+     * 跨过夏令时切换时桶的实际长度可能不等于桶长度，因此从下一个桶的中间反推起点
+     */
+    public long nextBucketStart(long bucketStart) {
+        if (fixedOffset) {
+            return bucketStart + bucketMillis;
+        }
+        return bucketStart(bucketStart + bucketMillis + bucketMillis / 2);
+    }
+
+    private int offset(long time) {
+        return fixedOffset ? rawOffset : zone.getOffset(time);
+    }
+
+    @Override
+    public String toString() {
+        return "TimeAxis{" +
+                "bucketMillis=" + bucketMillis +
+                ", originMillis=" + originMillis +
+                ", zone=" + zone.getID() +
+                '}';
+    }
+
+    /**
+     * 时间轴构建器，默认按本地时区的自然日划分，起点为2024年1月1日
+     */
+    public static class Builder {
+        private long bucketMillis = TimeUnit.DAYS.toMillis(1);
+        private long originMillis = DEFAULT_ORIGIN;
+        private TimeZone zone;
+
+        /**
+         * 桶长度，例如 {@code bucket(5, TimeUnit.MINUTES)} 表示5分钟线
+         */
+        public Builder bucket(long duration, TimeUnit unit) {
+            long millis = unit.toMillis(duration);
+            if (millis <= 0) {
+                throw new IllegalArgumentException("Bucket must be positive: " + duration + " " + unit);
+            }
+            this.bucketMillis = millis;
+            return this;
+        }
+
+        /**
+         * X值为0的本地时间（按UTC表示的毫秒数），桶从该时间开始对齐
+         */
+        public Builder origin(long originMillis) {
+            this.originMillis = originMillis;
+            return this;
+        }
+
+        /**
+         * 划分桶使用的时区，默认为创建时的本地时区
+         */
+        public Builder zone(TimeZone zone) {
+            this.zone = zone;
+            return this;
+        }
+
+        public TimeAxis build() {
+            return new TimeAxis(this);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.alex.klinemarker.data;
+
+import java.util.Calendar;
+
+/**
+ * K线周期枚举
+ * 用于将基础K线聚合为更粗的周期，周期按传入的日历对象的时区划分
+ */
+public enum Timeframe {
+    /**
+     * 基础周期 - 不聚合，直接使用原始K线
+     */
+    BASE,
+
+    /**
+     * 日线 - 同一自然日的K线合并为一根
+     */
+    DAY,
+
+    /**
+     * 周线 - 同一周（周一至周日）的K线合并为一根
+     */
+    WEEK,
+
+    /**
+     * 月线 - 同一自然月的K线合并为一根
+     */
+    MONTH;
+
+    /**
+     * 计算时间所在周期的起始时间
+     *
+     * @param calendar 复用的日历对象，决定划分周期的时区，调用后其时间为周期起始时间
+     * @param time     时间戳（毫秒）
+     * @return 周期起始时间戳，BASE 周期返回原时间
+     */
+    public long periodStart(Calendar calendar, long time) {
+        if (this == BASE) {
+            return time;
+        }
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (this == WEEK) {
+            // 周一为一周的第一天：周一偏移0，周日偏移6
+            int offset = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+            calendar.add(Calendar.DAY_OF_MONTH, -offset);
+        } else if (this == MONTH) {
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * 计算下一个周期的起始时间
+     *
+     * @param calendar 复用的日历对象
+     * @param start    由 {@link #periodStart(Calendar, long)} 得到的周期起始时间
+     * @return 下一个周期的起始时间戳，BASE 周期返回 start + 1
+     */
+    public long nextPeriodStart(Calendar calendar, long start) {
+        if (this == BASE) {
+            return start + 1;
+        }
+        calendar.setTimeInMillis(start);
+        if (this == DAY) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        } else if (this == WEEK) {
+            calendar.add(Calendar.DAY_OF_MONTH, 7);
+        } else {
+            calendar.add(Calendar.MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+}
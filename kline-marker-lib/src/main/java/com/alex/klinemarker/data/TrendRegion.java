@@ -10,8 +10,15 @@ import java.util.Locale;
  * 基于起始和结束日期定义的趋势区间
  */
 public class TrendRegion {
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+    // SimpleDateFormat 非线程安全，每个线程使用独立实例，区间可以在工作线程中解析
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        }
+    };
 
+    private String id;           // 区间ID，用于增量更新
     private String start;        // 起始日期，格式：yyyy-MM-dd
     private String end;          // 结束日期，格式：yyyy-MM-dd，可以为null表示到最后
     private int size;            // 趋势强度或大小
@@ -52,7 +59,7 @@ public class TrendRegion {
      */
     public Date getStartDate() {
         try {
-            return start != null ? DATE_FORMAT.parse(start) : null;
+            return start != null ? DATE_FORMAT.get().parse(start) : null;
         } catch (ParseException e) {
             e.printStackTrace();
             return null;
@@ -67,7 +74,7 @@ public class TrendRegion {
             return null; // 表示到最后
         }
         try {
-            return DATE_FORMAT.parse(end);
+            return DATE_FORMAT.get().parse(end);
         } catch (ParseException e) {
             e.printStackTrace();
             return null;
@@ -79,7 +86,7 @@ public class TrendRegion {
      */
     public boolean containsDate(String dateStr) {
         try {
-            Date date = DATE_FORMAT.parse(dateStr);
+            Date date = DATE_FORMAT.get().parse(dateStr);
             return containsDate(date);
         } catch (ParseException e) {
             e.printStackTrace();
@@ -107,6 +114,20 @@ public class TrendRegion {
     }
 
     // Getters and Setters
+
+    /**
+     * 获取区间ID
+     * 未显式设置时由起始日期和趋势类型组成（例如 "2024-03-01#RISING"），同一天开始的上涨和下跌区间不会互相覆盖。
+     * 默认ID不包含结束日期，未结束区间确定结束日期后仍能按ID更新；起始日期和类型都相同的多个区间需要显式设置ID
+     */
+    public String getId() {
+        return id != null ? id : start + "#" + type;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
     public String getStart() {
         return start;
     }
@@ -150,7 +171,8 @@ public class TrendRegion {
     @Override
     public String toString() {
         return "TrendRegion{" +
-                "start='" + start + '\'' +
+                "id='" + id + '\'' +
+                ", start='" + start + '\'' +
                 ", end='" + end + '\'' +
                 ", size=" + size +
                 ", type=" + type +
@@ -1,6 +1,7 @@
 package com.alex.klinemarker.utils;
 
 import com.alex.klinemarker.data.KLineDataAdapter;
+import com.alex.klinemarker.data.TimeAxis;
 
 import java.util.Date;
 
@@ -10,6 +11,19 @@ import java.util.Date;
  */
 public class DefaultKLineDataAdapter implements KLineDataAdapter<DefaultKLineDataAdapter.DefaultKLineData> {
 
+    private final TimeAxis timeAxis;
+
+    public DefaultKLineDataAdapter() {
+        this(TimeAxis.DAY);
+    }
+
+    /**
+     * @param timeAxis X值按该时间轴换算，应与标记管理器使用的时间轴一致
+     */
+    public DefaultKLineDataAdapter(TimeAxis timeAxis) {
+        this.timeAxis = timeAxis;
+    }
+
     @Override
     public Date getDate(DefaultKLineData klineData) {
         return klineData.date;
@@ -42,11 +56,7 @@ public class DefaultKLineDataAdapter implements KLineDataAdapter<DefaultKLineDat
 
     @Override
     public float getXValue(DefaultKLineData klineData) {
-        if (klineData.date == null) return 0;
-        // 使用相对天数，以2024年1月1日为基准
-        long baseTime = 1704067200000L; // 2024-01-01 00:00:00 UTC
-        long daysSinceBase = (klineData.date.getTime() - baseTime) / (24 * 60 * 60 * 1000);
-        return (float) daysSinceBase;
+        return timeAxis.toXValue(klineData.date);
     }
 
     /**
@@ -0,0 +1,267 @@
+package com.alex.klinemarker.utils;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.MarkerTypeMapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 标记数据流式解析工具
+ * 基于 {@link JsonReader} 解析分页标记接口，逐条转换为 {@link MarkerData}，不构建完整的JSON对象树。
+ * 解析器本身无状态，可以在工作线程中调用，解析结果在主线程中交给
+ * {@link com.alex.klinemarker.KLineMarkerManager#addMarkers(List)}。
+ * <p>
+ * 解析出的标记直接引用 {@link MarkerTypeMapping} 中该类型的配置，同一类型的标记共享同一个配置对象，
+ * 修改其中一个标记的配置会改变同一类型的全部标记，详见 {@link MarkerTypeMapping}。
+ */
+public class MarkerFeedParser {
+    private static final String TAG = "MarkerFeedParser";
+
+    /**
+     * 分页信息和解析统计
+     */
+    public static class Page {
+        private int total;
+        private int page;
+        private int size;
+        private int pages;
+        private int parsed;
+        private int skipped;
+        private boolean complete;
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getPages() {
+            return pages;
+        }
+
+        /**
+         * 成功解析的标记数量
+         */
+        public int getParsed() {
+            return parsed;
+        }
+
+        /**
+         * 因缺少或无法识别日期而跳过的条目数量
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * 数据是否完整解析（为false时表示中途出错，已解析的标记仍然有效）
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * 是否还有下一页
+         */
+        public boolean hasNextPage() {
+            return page < pages;
+        }
+
+        @Override
+        public String toString() {
+            return "Page{" +
+                    "total=" + total +
+                    ", page=" + page +
+                    ", size=" + size +
+                    ", pages=" + pages +
+                    ", parsed=" + parsed +
+                    ", skipped=" + skipped +
+                    ", complete=" + complete +
+                    '}';
+        }
+    }
+
+    /**
+     * 从输入流解析一页标记数据（UTF-8编码）
+     *
+     * @param input   JSON输入流，解析结束后关闭。格式如下：
+     *                {
+     *                "items": [
+     *                {
+     *                "updated_at": "2025-05-22T07:09:33.289230Z",
+     *                "flag_at": "2025-05-15",
+     *                "type": 1,
+     *                "extra": "B"
+     *                }
+     *                ],
+     *                "total": 1,
+     *                "page": 1,
+     *                "size": 50,
+     *                "pages": 1
+     *                }
+     * @param mapping 标记类型映射，为null时使用 {@link MarkerTypeMapping#defaults()}
+     * @param out     解析出的标记追加到该列表
+     * @return 分页信息和解析统计
+     */
+    public static Page parse(InputStream input, MarkerTypeMapping mapping, List<MarkerData> out) {
+        MarkerTypeMapping typeMapping = mapping != null ? mapping : MarkerTypeMapping.defaults();
+        Page page = new Page();
+        Calendar calendar = Calendar.getInstance();
+
+        try (JsonReader reader = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "items":
+                        readItems(reader, typeMapping, calendar, out, page);
+                        break;
+                    case "total":
+                        page.total = reader.nextInt();
+                        break;
+                    case "page":
+                        page.page = reader.nextInt();
+                        break;
+                    case "size":
+                        page.size = reader.nextInt();
+                        break;
+                    case "pages":
+                        page.pages = reader.nextInt();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            page.complete = true;
+
+            Log.i(TAG, "Parsed " + page.parsed + " markers (skipped " + page.skipped + "), page "
+                    + page.page + "/" + page.pages + ", total " + page.total);
+
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // 只输出错误信息和已解析数量，不输出原始数据
+            Log.e(TAG, "Failed to parse marker feed after " + page.parsed + " markers: " + e.getMessage(), e);
+        }
+
+        return page;
+    }
+
+    private static void readItems(JsonReader reader, MarkerTypeMapping mapping, Calendar calendar,
+                                  List<MarkerData> out, Page page) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                page.skipped++;
+                continue;
+            }
+            MarkerData marker = readItem(reader, mapping, calendar);
+            if (marker != null) {
+                out.add(marker);
+                page.parsed++;
+            } else {
+                page.skipped++;
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * 解析单个标记，缺少或无法识别标记日期时返回null
+     */
+    private static MarkerData readItem(JsonReader reader, MarkerTypeMapping mapping,
+                                       Calendar calendar) throws IOException {
+        String flagAt = null;
+        int type = 0;
+        String extra = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "flag_at":
+                    flagAt = reader.nextString();
+                    break;
+                case "type":
+                    type = reader.nextInt();
+                    break;
+                case "extra":
+                    extra = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        long time = parseDay(flagAt, calendar);
+        if (time == Long.MIN_VALUE) {
+            return null;
+        }
+
+        // 直接设置共享的类型配置，不经过会复制配置的构造函数（有意共享，见类注释）
+        MarkerData marker = new MarkerData();
+        marker.setDate(new Date(time));
+        marker.setText(extra != null && !extra.trim().isEmpty() ? extra : mapping.getDefaultText(type));
+        marker.setConfig(mapping.getConfig(type));
+        return marker;
+    }
+
+    /**
+     * 解析 yyyy-MM-dd 开头的日期为本地时区当天零点的时间戳，格式不符时返回 Long.MIN_VALUE
+     * 逐字符解析，避免为每个条目调用 SimpleDateFormat
+     */
+    static long parseDay(String value, Calendar calendar) {
+        if (value == null || value.length() < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int year = parseDigits(value, 0, 4);
+        int month = parseDigits(value, 5, 7);
+        int day = parseDigits(value, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return Long.MIN_VALUE;
+        }
+
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTimeInMillis();
+    }
+
+    private static int parseDigits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
@@ -1,22 +1,46 @@
 package com.alex.klinemarker.utils;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 
+import com.alex.klinemarker.core.TrendRegionIndex;
 import com.alex.klinemarker.data.TrendRegion;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * 趋势区间JSON数据解析工具
+ * 基于 {@link JsonReader} 流式解析，逐条产出区间，不构建完整的JSON对象树。
+ * 解析器本身无状态，可以在工作线程中调用；解析到 {@link TrendRegionIndex} 时，
+ * 该索引在交给渲染器之前只能由当前线程访问。
  */
 public class TrendRegionParser {
     private static final String TAG = "TrendRegionParser";
 
+    /**
+     * 逐条接收解析结果
+     */
+    private interface RegionSink {
+        void accept(TrendRegion region);
+    }
+
+    /**
+     * 解析统计，只在解析结束时输出一次汇总日志
+     */
+    private static final class ParseStats {
+        int parsed;
+        int skipped;
+        int unknownTypes;
+    }
+
     /**
      * 解析JSON格式的趋势区间数据
      *
@@ -49,46 +73,141 @@ public class TrendRegionParser {
             return regions;
         }
 
-        try {
-            JSONObject root = new JSONObject(jsonData);
-            JSONArray items = root.getJSONArray("items");
+        parse(new StringReader(jsonData), regions::add);
+        return regions;
+    }
 
-            for (int i = 0; i < items.length(); i++) {
-                JSONObject item = items.getJSONObject(i);
+    /**
+     * 从输入流解析趋势区间（UTF-8编码），直接写入区间索引
+     *
+     * @param input JSON输入流，解析结束后关闭
+     * @param index 目标区间索引，区间在加入时即被解析为K线索引范围
+     * @return 成功解析的区间数量
+     */
+    public static int parse(InputStream input, TrendRegionIndex index) {
+        return parse(new InputStreamReader(input, StandardCharsets.UTF_8), index);
+    }
 
-                String start = item.getString("start");
-                String end = item.optString("end", null);
-                if ("null".equals(end) || end.isEmpty()) {
-                    end = null;
+    /**
+     * 从字符流解析趋势区间，直接写入区间索引
+     *
+     * @param reader JSON字符流，解析结束后关闭
+     * @param index  目标区间索引，区间在加入时即被解析为K线索引范围
+     * @return 成功解析的区间数量
+     */
+    public static int parse(Reader reader, TrendRegionIndex index) {
+        return parse(reader, index::add);
+    }
+
+    private static int parse(Reader reader, RegionSink sink) {
+        ParseStats stats = new ParseStats();
+
+        try (JsonReader jsonReader = new JsonReader(reader)) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                if ("items".equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    readItems(jsonReader, sink, stats);
+                } else {
+                    jsonReader.skipValue();
                 }
+            }
+            jsonReader.endObject();
 
-                int size = item.getInt("size");
-                String updatedAt = item.getString("updated_at");
+            Log.i(TAG, "Successfully parsed " + stats.parsed + " trend regions from JSON"
+                    + " (skipped " + stats.skipped + ", unknown types " + stats.unknownTypes + ")");
 
-                // 解析趋势类型
-                String typeStr = item.optString("type", "NEUTRAL");
-                TrendRegion.TrendType type = parseTrendType(typeStr);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // 只输出错误信息和已解析数量，不输出原始数据
+            Log.e(TAG, "Failed to parse JSON data after " + stats.parsed + " trend regions: "
+                    + e.getMessage(), e);
+        }
 
-                TrendRegion region = new TrendRegion(start, end, size, updatedAt, type);
-                regions.add(region);
+        return stats.parsed;
+    }
 
-                Log.d(TAG, "Parsed trend region: " + region);
+    private static void readItems(JsonReader reader, RegionSink sink, ParseStats stats) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                stats.skipped++;
+                continue;
+            }
+            TrendRegion region = readItem(reader, stats);
+            if (region != null) {
+                sink.accept(region);
+                stats.parsed++;
+            } else {
+                stats.skipped++;
             }
+        }
+        reader.endArray();
+    }
 
-            Log.i(TAG, "Successfully parsed " + regions.size() + " trend regions from JSON");
+    /**
+     * 解析单个区间，缺少起始日期时返回null
+     */
+    private static TrendRegion readItem(JsonReader reader, ParseStats stats) throws IOException {
+        String id = null;
+        String start = null;
+        String end = null;
+        int size = 0;
+        String updatedAt = null;
+        TrendRegion.TrendType type = TrendRegion.TrendType.NEUTRAL;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "start":
+                    start = reader.nextString();
+                    break;
+                case "end":
+                    end = reader.nextString();
+                    break;
+                case "size":
+                    size = reader.nextInt();
+                    break;
+                case "updated_at":
+                    updatedAt = reader.nextString();
+                    break;
+                case "type":
+                    type = parseTrendType(reader.nextString(), stats);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
 
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to parse JSON data: " + e.getMessage(), e);
-            Log.e(TAG, "JSON data was: " + jsonData);
+        if (start == null || start.isEmpty()) {
+            return null;
+        }
+        if (end != null && ("null".equals(end) || end.isEmpty())) {
+            end = null;
         }
 
-        return regions;
+        TrendRegion region = new TrendRegion(start, end, size, updatedAt, type);
+
+        // 可选的区间ID，用于增量更新
+        if (id != null && !"null".equals(id) && !id.isEmpty()) {
+            region.setId(id);
+        }
+        return region;
     }
 
     /**
      * 解析趋势类型字符串
      */
-    private static TrendRegion.TrendType parseTrendType(String typeStr) {
+    private static TrendRegion.TrendType parseTrendType(String typeStr, ParseStats stats) {
         if (typeStr == null || typeStr.trim().isEmpty()) {
             return TrendRegion.TrendType.NEUTRAL;
         }
@@ -96,7 +215,8 @@ public class TrendRegionParser {
         try {
             return TrendRegion.TrendType.valueOf(typeStr.toUpperCase());
         } catch (IllegalArgumentException e) {
-            Log.w(TAG, "Unknown trend type: " + typeStr + ", using NEUTRAL");
+            // 未知类型按中性处理，只计数，避免逐条输出日志
+            stats.unknownTypes++;
             return TrendRegion.TrendType.NEUTRAL;
         }
     }
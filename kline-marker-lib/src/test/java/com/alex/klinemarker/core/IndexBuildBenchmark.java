@@ -0,0 +1,140 @@
+package com.alex.klinemarker.core;
+
+import static org.junit.Assume.assumeTrue;
+
+import com.alex.klinemarker.data.KLineAggregation;
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.TimeAxis;
+import com.alex.klinemarker.data.Timeframe;
+import com.alex.klinemarker.testing.SyntheticKLineData;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter.DefaultKLineData;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 构建索引的基准测试，数据由 {@link SyntheticKLineData} 按固定种子生成，每次运行的输入完全相同
+ * 默认跳过，运行方式：
+ * <pre>
+ * ./gradlew :kline-marker-lib:testDebugUnitTest --tests "*IndexBuildBenchmark" -Pbenchmark=true -PbenchmarkBars=1000000
+ * </pre>
+ * 每项先预热再取多次运行的最短耗时，结果输出到标准输出（测试报告的 Standard output 中）。
+ */
+public class IndexBuildBenchmark {
+
+    private static final int DEFAULT_BARS = 1_000_000;
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    private static final int TAIL_UPDATES = 10_000;
+
+    @Test
+    public void run() {
+        assumeTrue("Benchmark disabled, run with -Pbenchmark=true", Boolean.getBoolean("klinemarker.benchmark"));
+        int barCount = Integer.getInteger("klinemarker.benchmark.bars", DEFAULT_BARS);
+
+        long start = System.nanoTime();
+        SyntheticKLineData data = new SyntheticKLineData.Builder()
+                .barCount(barCount)
+                .timeAxis(TimeAxis.of(1, TimeUnit.MINUTES))
+                .trendRegionCount(Math.max(1, barCount / 1000))
+                .build();
+        report("generate", barCount, System.nanoTime() - start);
+
+        DefaultKLineDataAdapter adapter = new DefaultKLineDataAdapter(data.getTimeAxis());
+        List<DefaultKLineData> bars = data.toBars();
+        KLineSeries series = data.toSeries();
+
+        measure("series from adapter", barCount, () -> KLineSeries.from(bars, adapter).size());
+        measure("map markers", data.getMarkers().size(),
+                () -> MarkerIndex.mapBars(series, data.getTimeAxis(), data.getMarkers()).length);
+        measure("detect trends", barCount, () -> TrendDetector.withDefaults().detect(series).size());
+        measure("aggregate weeks", barCount, () -> KLineAggregation.aggregate(series, Timeframe.WEEK, false,
+                data.getTimeAxis().getZone()).getSeries().size());
+        measure("tail updates", TAIL_UPDATES, () -> new Tail(data, bars, adapter), Tail::run);
+    }
+
+    /**
+     * 模拟实时行情：从去掉尾部的序列开始逐根追加，每根K线追加后再更新一次，同时维护周线视图
+     * 构建初始索引不计入耗时
+     */
+    private static final class Tail {
+        private final List<DefaultKLineData> bars;
+        private final DefaultKLineDataAdapter adapter;
+        private final int first;
+        private KLineSeries series;
+        private MarkerIndex markers;
+        private KLineAggregation weeks;
+        private MarkerIndex weekMarkers;
+        private final TrendDetector detector = TrendDetector.withDefaults();
+
+        Tail(SyntheticKLineData data, List<DefaultKLineData> bars, DefaultKLineDataAdapter adapter) {
+            this.bars = bars;
+            this.adapter = adapter;
+            this.first = Math.max(0, bars.size() - TAIL_UPDATES);
+            series = KLineSeries.from(bars.subList(0, first), adapter);
+            MarkerIndex index = new MarkerIndex(series, data.getTimeAxis());
+            index.addAll(data.getMarkers());
+            // 与发布的快照一致，尾部更新同时维护标记区间
+            markers = index.withRuns();
+            weeks = KLineAggregation.aggregate(series, Timeframe.WEEK, false, data.getTimeAxis().getZone());
+            weekMarkers = markers.aggregate(weeks);
+            detector.update(series, 0);
+        }
+
+        int run() {
+            for (int i = first; i < bars.size(); i++) {
+                series = series.append(bars.get(i), adapter);
+                update(series.size() - 1);
+                series = series.replaceLast(bars.get(i), adapter);
+                update(series.size() - 1);
+            }
+            return markers.getSeries().size() + weekMarkers.getSeries().size() + detector.getRegions().size();
+        }
+
+        private void update(int firstChanged) {
+            // 追加的K线从最后一个周期开始重新计算，与快照的派生方式一致
+            int firstWeek = firstChanged < weeks.getBaseSeries().size()
+                    ? weeks.getAggregatedIndex(firstChanged) : weeks.getSeries().size() - 1;
+            markers = markers.withTail(series, firstChanged);
+            weeks = weeks.withTail(series, firstChanged);
+            weekMarkers = weekMarkers.withAggregatedTail(markers, weeks, firstWeek);
+            detector.update(series, firstChanged);
+        }
+    }
+
+    private static void measure(String name, int items, Supplier<Integer> task) {
+        measure(name, items, () -> null, ignored -> task.get());
+    }
+
+    /**
+     * 每次运行前调用 setup 准备输入，只统计 task 的耗时
+     */
+    private static <S> void measure(String name, int items, Supplier<S> setup, Function<S, Integer> task) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            sink += task.apply(setup.get());
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            S input = setup.get();
+            long start = System.nanoTime();
+            sink += task.apply(input);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        // 使用结果，避免任务被优化掉
+        if (sink == Integer.MIN_VALUE) {
+            System.out.println(sink);
+        }
+        report(name, items, best);
+    }
+
+    private static void report(String name, int items, long nanos) {
+        System.out.printf("%-20s %,12d items %10.2f ms %8.1f ns/item%n",
+                name, items, nanos / 1e6, items > 0 ? (double) nanos / items : 0.0);
+    }
+}
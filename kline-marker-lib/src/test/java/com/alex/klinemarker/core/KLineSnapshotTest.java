@@ -0,0 +1,177 @@
+package com.alex.klinemarker.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.LineLength;
+import com.alex.klinemarker.data.MarkerConfig;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.MarkerPresets;
+import com.alex.klinemarker.data.MarkerShape;
+import com.alex.klinemarker.data.TrendRegion;
+import com.alex.klinemarker.testing.SyntheticKLineData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 验证快照文件的写入和读取：K线、标记（含样式和文本）、区间和上边沿在往返后保持不变
+ */
+public class KLineSnapshotTest {
+
+    private static final int EDGE_SMOOTH_WINDOW = 3;
+
+    private final SyntheticKLineData data = new SyntheticKLineData.Builder()
+            .barCount(5000)
+            .trendRegionCount(40)
+            .build();
+
+    private File file;
+    private KLineSeries series;
+    private MarkerIndex markers;
+    private TrendRegionIndex regions;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("kline-snapshot", ".bin");
+        series = data.toSeries();
+
+        List<MarkerData> markerList = new ArrayList<>(data.getMarkers());
+        // 加入一个带虚线和自定义样式、没有文本的标记
+        MarkerConfig dashed = MarkerPresets.customize(MarkerPresets.event())
+                .shape(MarkerShape.DIAMOND)
+                .lineLength(LineLength.LONG)
+                .dashPattern(new float[]{4f, 2f})
+                .build();
+        markerList.add(new MarkerData(new Date(series.getTime(series.size() - 1)), null, dashed));
+        markers = new MarkerIndex(series, data.getTimeAxis());
+        markers.addAll(markerList);
+
+        regions = new TrendRegionIndex();
+        regions.setSeries(series);
+        regions.setRegions(data.getTrendRegions());
+        // 为第一个区间构建上边沿
+        int first = regions.getStartIndex(0);
+        int length = regions.getEndIndex(0) - first + 1;
+        float[] xValues = new float[length];
+        float[] edgeValues = new float[length];
+        for (int i = 0; i < length; i++) {
+            xValues[i] = series.getXValue(first + i);
+            edgeValues[i] = series.getHigh(first + i) * 1.01f;
+        }
+        regions.setEdge(0, new RegionEdge(xValues, edgeValues));
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void writeThenRead_restoresSeriesMarkersAndRegions() throws IOException {
+        KLineSnapshot.write(file, new RenderSnapshot(1, series, markers, regions, null), EDGE_SMOOTH_WINDOW);
+        KLineSnapshot restored = KLineSnapshot.read(file, data.getTimeAxis());
+
+        assertEquals(EDGE_SMOOTH_WINDOW, restored.getEdgeSmoothWindow());
+
+        KLineSeries restoredSeries = restored.getSeries();
+        assertEquals(series.size(), restoredSeries.size());
+        for (int i = 0; i < series.size(); i++) {
+            assertEquals(series.getTime(i), restoredSeries.getTime(i));
+            assertEquals(series.getXValue(i), restoredSeries.getXValue(i), 0f);
+            assertEquals(series.getOpen(i), restoredSeries.getOpen(i), 0f);
+            assertEquals(series.getHigh(i), restoredSeries.getHigh(i), 0f);
+            assertEquals(series.getLow(i), restoredSeries.getLow(i), 0f);
+            assertEquals(series.getClose(i), restoredSeries.getClose(i), 0f);
+            assertEquals(series.getVolume(i), restoredSeries.getVolume(i), 0f);
+        }
+
+        MarkerIndex restoredMarkers = restored.getMarkerIndex();
+        assertEquals(markers.getMarkerCount(), restored.getMarkerCount());
+        for (int bar = 0; bar < series.size(); bar++) {
+            assertEquals("bar " + bar, markers.getMarkerIndexAt(bar), restoredMarkers.getMarkerIndexAt(bar));
+        }
+        for (int i = 0; i < markers.getMarkerCount(); i++) {
+            assertMarker("marker " + i, markers.getMarker(i), restoredMarkers.getMarker(i));
+        }
+
+        TrendRegionIndex restoredRegions = restored.getRegionIndex();
+        assertEquals(regions.size(), restored.getRegionCount());
+        for (int i = 0; i < regions.size(); i++) {
+            TrendRegion expected = regions.getRegion(i);
+            TrendRegion actual = restoredRegions.getRegion(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getStart(), actual.getStart());
+            assertEquals(expected.getEnd(), actual.getEnd());
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getSize(), actual.getSize());
+            assertEquals(regions.getStartIndex(i), restoredRegions.getStartIndex(i));
+            assertEquals(regions.getEndIndex(i), restoredRegions.getEndIndex(i));
+        }
+        assertArrayEquals(regions.getEdge(0).getEdgeValues(), restoredRegions.getEdge(0).getEdgeValues(), 0f);
+        assertArrayEquals(regions.getEdge(0).getXValues(), restoredRegions.getEdge(0).getXValues(), 0f);
+        assertNull(restoredRegions.getEdge(1));
+    }
+
+    @Test
+    public void restoredIndex_matchesAppendedMarkersByBucket() throws IOException {
+        KLineSnapshot.write(file, new RenderSnapshot(1, series, markers, regions, null), EDGE_SMOOTH_WINDOW);
+        MarkerIndex restored = KLineSnapshot.read(file, data.getTimeAxis()).getMarkerIndex().copy();
+
+        int bar = series.size() / 2;
+        restored.add(new MarkerData(new Date(series.getTime(bar)), "N", MarkerPresets.info()));
+        assertEquals(markers.getMarkerCount(), restored.getMarkerIndexAt(bar));
+    }
+
+    @Test
+    public void truncatedFile_failsWithIOException() throws IOException {
+        KLineSnapshot.write(file, new RenderSnapshot(1, series, markers, regions, null), EDGE_SMOOTH_WINDOW);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        try {
+            KLineSnapshot.read(file, data.getTimeAxis());
+            fail("Expected a truncated snapshot to be rejected");
+        } catch (IOException expected) {
+            // 截断的文件不能被当作有效快照
+        }
+    }
+
+    private static void assertMarker(String message, MarkerData expected, MarkerData actual) {
+        assertEquals(message, expected.getDate(), actual.getDate());
+        // 没有文本的标记恢复为空字符串，与 MarkerData 的默认值一致
+        assertEquals(message, expected.getText() != null ? expected.getText() : "", actual.getText());
+        MarkerConfig e = expected.getConfig();
+        MarkerConfig a = actual.getConfig();
+        assertEquals(message, e.getShape(), a.getShape());
+        assertEquals(message, e.getPosition(), a.getPosition());
+        assertEquals(message, e.isShowText(), a.isShowText());
+        assertEquals(message, e.isShowLine(), a.isShowLine());
+        assertEquals(message, e.isDashedLine(), a.isDashedLine());
+        assertEquals(message, e.getBackgroundColor(), a.getBackgroundColor());
+        assertEquals(message, e.getTextColor(), a.getTextColor());
+        assertEquals(message, e.getLineColor(), a.getLineColor());
+        assertEquals(message, e.getMarkerSize(), a.getMarkerSize(), 0f);
+        assertEquals(message, e.getTextSize(), a.getTextSize(), 0f);
+        assertEquals(message, e.getLineWidth(), a.getLineWidth(), 0f);
+        assertEquals(message, e.getLineLength(), a.getLineLength());
+        assertEquals(message, e.getAlpha(), a.getAlpha(), 0f);
+        assertEquals(message, e.getZIndex(), a.getZIndex());
+        if (e.getDashPattern() == null) {
+            assertNull(message, a.getDashPattern());
+        } else {
+            assertArrayEquals(message, e.getDashPattern(), a.getDashPattern(), 0f);
+        }
+    }
+}
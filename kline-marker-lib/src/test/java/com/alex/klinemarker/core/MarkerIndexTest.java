@@ -0,0 +1,240 @@
+package com.alex.klinemarker.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.alex.klinemarker.data.KLineAggregation;
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.MarkerConfig;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.Timeframe;
+import com.alex.klinemarker.testing.SyntheticKLineData;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter.DefaultKLineData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用合成数据验证标记索引：全量构建与尾部增量更新的映射结果一致，
+ * 同一根K线上的多个标记都出现在该K线的标记区间中
+ */
+public class MarkerIndexTest {
+
+    private static final int BARS = 20_000;
+    private static final int TAIL = 600;
+
+    private final SyntheticKLineData data = new SyntheticKLineData.Builder()
+            .barCount(BARS)
+            .markerDensity(0.3f)
+            .duplicateDateRate(0.2f)
+            .build();
+
+    @Test
+    public void fullBuild_mapsEachBarToItsLastMarker() {
+        KLineSeries series = data.toSeries();
+        List<MarkerData> markers = data.getMarkers();
+
+        // 合成标记的时间与所在K线相同，同一根K线取最后添加的标记
+        int[] expected = new int[series.size()];
+        Arrays.fill(expected, -1);
+        for (int i = 0; i < markers.size(); i++) {
+            expected[series.lowerBound(markers.get(i).getDate().getTime())] = i;
+        }
+
+        MarkerIndex index = new MarkerIndex(series, data.getTimeAxis());
+        index.addAll(markers);
+        assertEquals(markers.size(), index.getMarkerCount());
+        for (int bar = 0; bar < series.size(); bar++) {
+            assertEquals("bar " + bar, expected[bar], index.getMarkerIndexAt(bar));
+        }
+        assertRuns(expectedRuns(series), index.withRuns());
+    }
+
+    @Test
+    public void appendedAndReplacedTail_matchesFullBuild() {
+        DefaultKLineDataAdapter adapter = new DefaultKLineDataAdapter(data.getTimeAxis());
+        List<DefaultKLineData> bars = data.toBars();
+
+        KLineSeries series = KLineSeries.from(bars.subList(0, BARS - TAIL), adapter);
+        MarkerIndex index = new MarkerIndex(series, data.getTimeAxis());
+        index.addAll(data.getMarkers());
+        MarkerIndex previous = index;
+        int[] previousMapping = mapping(previous);
+
+        for (int i = BARS - TAIL; i < BARS; i++) {
+            series = series.append(bars.get(i), adapter);
+            index = index.withTail(series, series.size() - 1);
+            // 实时行情中最后一根K线会被反复更新
+            series = series.replaceLast(bars.get(i), adapter);
+            index = index.withTail(series, series.size() - 1);
+        }
+
+        int[] expected = MarkerIndex.mapBars(data.toSeries(), data.getTimeAxis(), data.getMarkers());
+        assertArrayEquals(Arrays.copyOf(expected, BARS), mapping(index));
+        // 增量更新不改变原索引
+        assertArrayEquals(previousMapping, mapping(previous));
+    }
+
+    @Test
+    public void appendedAndReplacedTail_updatesRunsIncrementally() {
+        DefaultKLineDataAdapter adapter = new DefaultKLineDataAdapter(data.getTimeAxis());
+        List<DefaultKLineData> bars = data.toBars();
+
+        KLineSeries series = KLineSeries.from(bars.subList(0, BARS - TAIL), adapter);
+        MarkerIndex index = new MarkerIndex(series, data.getTimeAxis());
+        index.addAll(data.getMarkers());
+        index = index.withRuns();
+        MarkerIndex previous = index;
+        List<int[]> previousRuns = expectedRuns(series);
+
+        for (int i = BARS - TAIL; i < BARS; i++) {
+            series = series.append(bars.get(i), adapter);
+            index = index.withTail(series, series.size() - 1);
+            series = series.replaceLast(bars.get(i), adapter);
+            index = index.withTail(series, series.size() - 1);
+        }
+
+        assertRuns(expectedRuns(series), index);
+        assertRuns(previousRuns, previous);
+    }
+
+    @Test
+    public void restoredColumns_haveRunsForEveryMarker() {
+        KLineSeries series = data.toSeries();
+        List<MarkerData> markers = data.getMarkers();
+        long[] times = new long[markers.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = markers.get(i).getDate().getTime();
+        }
+        int[] barMarkers = MarkerIndex.mapBars(series, data.getTimeAxis(), markers);
+
+        MarkerIndex index = MarkerIndex.fromColumns(series, data.getTimeAxis(), barMarkers, times,
+                new int[times.length], new int[times.length], new MarkerConfig[]{new MarkerConfig()}, new String[0]);
+        assertRuns(expectedRuns(series), index.withRuns());
+    }
+
+    @Test
+    public void aggregatedIndex_mergesRunsOfEachPeriod() {
+        KLineSeries series = data.toSeries();
+        MarkerIndex index = new MarkerIndex(series, data.getTimeAxis());
+        index.addAll(data.getMarkers());
+        KLineAggregation weeks = KLineAggregation.aggregate(series, Timeframe.WEEK, false,
+                data.getTimeAxis().getZone());
+
+        // 周期内各K线的标记按K线顺序排列
+        List<int[]> baseRuns = expectedRuns(series);
+        List<int[]> expected = new ArrayList<>();
+        for (int k = 0; k < weeks.getSeries().size(); k++) {
+            List<Integer> run = new ArrayList<>();
+            for (int bar = weeks.getFirstBaseIndex(k); bar <= weeks.getLastBaseIndex(k); bar++) {
+                for (int marker : baseRuns.get(bar)) {
+                    run.add(marker);
+                }
+            }
+            expected.add(run.stream().mapToInt(Integer::intValue).toArray());
+        }
+        assertRuns(expected, index.withRuns().aggregate(weeks));
+    }
+
+    @Test
+    public void aggregatedTail_matchesFullAggregation() {
+        DefaultKLineDataAdapter adapter = new DefaultKLineDataAdapter(data.getTimeAxis());
+        List<DefaultKLineData> bars = data.toBars();
+
+        KLineSeries series = KLineSeries.from(bars.subList(0, BARS - TAIL), adapter);
+        MarkerIndex index = new MarkerIndex(series, data.getTimeAxis());
+        index.addAll(data.getMarkers());
+        index = index.withRuns();
+        KLineAggregation weeks = KLineAggregation.aggregate(series, Timeframe.WEEK, false,
+                data.getTimeAxis().getZone());
+        MarkerIndex aggregated = index.aggregate(weeks);
+        MarkerIndex previous = aggregated;
+        List<int[]> previousRuns = runsOf(previous);
+        int[] previousMapping = mapping(previous);
+
+        for (int i = BARS - TAIL; i < BARS; i++) {
+            // 追加的K线从最后一个周期开始重新计算，更新最后一根K线时从它所在的周期开始
+            int firstBucket = weeks.getSeries().size() - 1;
+            series = series.append(bars.get(i), adapter);
+            index = index.withTail(series, series.size() - 1);
+            weeks = weeks.withTail(series, series.size() - 1);
+            aggregated = aggregated.withAggregatedTail(index, weeks, firstBucket);
+
+            firstBucket = weeks.getAggregatedIndex(series.size() - 1);
+            series = series.replaceLast(bars.get(i), adapter);
+            index = index.withTail(series, series.size() - 1);
+            weeks = weeks.withTail(series, series.size() - 1);
+            aggregated = aggregated.withAggregatedTail(index, weeks, firstBucket);
+        }
+
+        MarkerIndex full = index.aggregate(weeks);
+        assertArrayEquals(mapping(full), mapping(aggregated));
+        assertRuns(runsOf(full), aggregated);
+        assertArrayEquals(previousMapping, mapping(previous));
+        assertRuns(previousRuns, previous);
+    }
+
+    private static List<int[]> runsOf(MarkerIndex index) {
+        List<int[]> runs = new ArrayList<>();
+        for (int bar = 0; bar < index.getSeries().size(); bar++) {
+            int start = index.getMarkerRunStart(bar);
+            int[] run = new int[index.getMarkerRunEnd(bar) - start];
+            for (int k = 0; k < run.length; k++) {
+                run[k] = index.getRunMarkerIndex(start + k);
+            }
+            runs.add(run);
+        }
+        return runs;
+    }
+
+    /**
+     * 每根K线上的全部标记：与K线同一时间桶的标记，按添加顺序排列
+     */
+    private List<int[]> expectedRuns(KLineSeries series) {
+        List<MarkerData> markers = data.getMarkers();
+        Map<Long, List<Integer>> buckets = new HashMap<>();
+        for (int i = 0; i < markers.size(); i++) {
+            long key = data.getTimeAxis().keyOf(markers.get(i).getDate().getTime());
+            buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+        List<int[]> runs = new ArrayList<>(series.size());
+        for (int bar = 0; bar < series.size(); bar++) {
+            List<Integer> run = buckets.get(data.getTimeAxis().keyOf(series.getTime(bar)));
+            runs.add(run != null ? run.stream().mapToInt(Integer::intValue).toArray() : new int[0]);
+        }
+        return runs;
+    }
+
+    private static void assertRuns(List<int[]> expected, MarkerIndex index) {
+        assertEquals(expected.size(), index.getSeries().size());
+        int multiple = 0;
+        for (int bar = 0; bar < expected.size(); bar++) {
+            int start = index.getMarkerRunStart(bar);
+            int[] run = new int[index.getMarkerRunEnd(bar) - start];
+            for (int k = 0; k < run.length; k++) {
+                run[k] = index.getRunMarkerIndex(start + k);
+            }
+            assertArrayEquals("bar " + bar, expected.get(bar), run);
+            if (run.length > 1) {
+                multiple++;
+            }
+        }
+        // 合成数据中有多个标记的K线占一定比例，保证测试覆盖了同一根K线多个标记的情况
+        assertTrue("bars with several markers: " + multiple, multiple > expected.size() / 100);
+    }
+
+    private static int[] mapping(MarkerIndex index) {
+        int[] result = new int[index.getSeries().size()];
+        for (int bar = 0; bar < result.length; bar++) {
+            result[bar] = index.getMarkerIndexAt(bar);
+        }
+        return result;
+    }
+}
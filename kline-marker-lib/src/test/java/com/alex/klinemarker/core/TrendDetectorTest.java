@@ -0,0 +1,115 @@
+package com.alex.klinemarker.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.TrendRegion;
+import com.alex.klinemarker.testing.SyntheticKLineData;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter.DefaultKLineData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 验证增量检测：追加K线、更新最后一根K线（从检查点回退）后的结果与对整个序列重新检测一致
+ */
+public class TrendDetectorTest {
+
+    private static final int BARS = 3000;
+    private static final int PREFIX = 2000;
+
+    private final SyntheticKLineData data = SyntheticKLineData.generate(BARS);
+    private final DefaultKLineDataAdapter adapter = new DefaultKLineDataAdapter(data.getTimeAxis());
+    private final List<DefaultKLineData> bars = data.toBars();
+
+    @Test
+    public void detect_findsRegionsInSyntheticData() {
+        List<TrendRegion> regions = TrendDetector.withDefaults().detect(data.toSeries());
+        assertTrue("regions: " + regions.size(), regions.size() > 50);
+        for (int i = 1; i < regions.size(); i++) {
+            assertTrue(regions.get(i - 1).getEnd() != null);
+            assertTrue(regions.get(i - 1).getStartDate().compareTo(regions.get(i).getStartDate()) <= 0);
+        }
+    }
+
+    @Test
+    public void append_matchesFullDetection() {
+        TrendDetector detector = TrendDetector.withDefaults();
+        KLineSeries series = KLineSeries.from(bars.subList(0, PREFIX), adapter);
+        detector.update(series, 0);
+        for (int i = PREFIX; i < BARS; i++) {
+            series = series.append(bars.get(i), adapter);
+            List<TrendRegion> before = detector.getRegions();
+            int stable = detector.update(series, series.size() - 1);
+
+            List<TrendRegion> expected = TrendDetector.withDefaults().detect(series);
+            assertRegions("bar " + i, expected, detector.getRegions());
+            // stable 之前的区间与上一次的结果相同
+            assertRegions("bar " + i, before.subList(0, stable), expected.subList(0, stable));
+        }
+    }
+
+    @Test
+    public void replaceLast_rollsBackToCheckpoint() {
+        TrendDetector detector = TrendDetector.withDefaults();
+        KLineSeries series = KLineSeries.from(bars.subList(0, PREFIX), adapter);
+        detector.update(series, 0);
+        for (int i = PREFIX; i < BARS; i++) {
+            // 先以相反方向的收盘价出现，可能提前结束或开始一个趋势，随后更新为真实数据
+            DefaultKLineData reversed = reversed(bars.get(i - 1), bars.get(i));
+            series = series.append(reversed, adapter);
+            detector.update(series, series.size() - 1);
+            assertRegions("reversed bar " + i, TrendDetector.withDefaults().detect(series), detector.getRegions());
+
+            series = series.replaceLast(bars.get(i), adapter);
+            detector.update(series, series.size() - 1);
+            assertRegions("bar " + i, TrendDetector.withDefaults().detect(series), detector.getRegions());
+        }
+    }
+
+    @Test
+    public void changeBeforeCheckpoint_redetectsWholeSeries() {
+        TrendDetector detector = TrendDetector.withDefaults();
+        KLineSeries series = data.toSeries();
+        detector.update(series, 0);
+
+        // 修改中间的一根K线后从该位置更新，检查点之前的变化会重新检测整个序列
+        List<DefaultKLineData> changed = new ArrayList<>(bars);
+        int middle = BARS / 2;
+        changed.set(middle, reversed(bars.get(middle - 1), bars.get(middle)));
+        KLineSeries changedSeries = KLineSeries.from(changed, adapter);
+        detector.update(changedSeries, middle);
+
+        assertRegions("changed", TrendDetector.withDefaults().detect(changedSeries), detector.getRegions());
+    }
+
+    /**
+     * 与真实K线同一时间、但相对前一根K线反向变化的K线
+     */
+    private static DefaultKLineData reversed(DefaultKLineData previous, DefaultKLineData bar) {
+        float close = previous.close - (bar.close - previous.close);
+        if (close == previous.close) {
+            close = previous.close * 1.05f;
+        }
+        return new DefaultKLineData(new Date(bar.date.getTime()), bar.open, close,
+                Math.max(bar.high, close), Math.min(bar.low, close), bar.volume);
+    }
+
+    private static void assertRegions(String message, List<TrendRegion> expected, List<TrendRegion> actual) {
+        assertEquals(message, describe(expected), describe(actual));
+    }
+
+    private static List<String> describe(List<TrendRegion> regions) {
+        List<String> result = new ArrayList<>(regions.size());
+        for (TrendRegion region : regions) {
+            result.add(region.getId() + " " + region.getStart() + ".." + region.getEnd()
+                    + " " + region.getType() + " x" + region.getSize());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,113 @@
+package com.alex.klinemarker.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.TrendRegion;
+import com.alex.klinemarker.data.TrendRegion.TrendType;
+import com.alex.klinemarker.testing.SyntheticKLineData;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 验证区间合并：同类型且重叠或相邻的区间合并为一个，其余区间保持原对象，结果按起始K线排序
+ */
+public class TrendRegionMergerTest {
+
+    private final SyntheticKLineData data = SyntheticKLineData.generate(200);
+    private final KLineSeries series = data.toSeries();
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+
+    {
+        dateFormat.setTimeZone(data.getTimeAxis().getZone());
+    }
+
+    @Test
+    public void overlappingAndAdjacentSameType_areMerged() {
+        List<TrendRegion> merged = merge(
+                region(10, 20, 3, TrendType.RISING),
+                region(15, 30, 5, TrendType.RISING),
+                region(31, 40, 2, TrendType.RISING));
+
+        assertEquals(1, merged.size());
+        assertRange(merged.get(0), 10, 40);
+        assertEquals(5, merged.get(0).getSize());
+        assertEquals(TrendType.RISING, merged.get(0).getType());
+    }
+
+    @Test
+    public void gapOrDifferentType_keepsOriginalRegions() {
+        TrendRegion rising = region(10, 20, 3, TrendType.RISING);
+        TrendRegion separated = region(22, 30, 3, TrendType.RISING);
+        TrendRegion falling = region(15, 25, 4, TrendType.FALLING);
+
+        List<TrendRegion> merged = merge(separated, falling, rising);
+
+        // 按起始K线排序，未合并的区间保持原对象
+        assertEquals(3, merged.size());
+        assertSame(rising, merged.get(0));
+        assertSame(falling, merged.get(1));
+        assertSame(separated, merged.get(2));
+    }
+
+    @Test
+    public void openEndedMember_makesMergedRegionOpenEnded() {
+        TrendRegion open = new TrendRegion(day(150), null, 4, null, TrendType.FALLING);
+        List<TrendRegion> merged = merge(
+                region(120, 160, 3, TrendType.FALLING),
+                open,
+                region(50, 60, 2, TrendType.RISING));
+
+        assertEquals(2, merged.size());
+        assertRange(merged.get(0), 50, 60);
+        assertEquals(day(120), merged.get(1).getStart());
+        assertNull(merged.get(1).getEnd());
+        assertRange(merged.get(1), 120, series.size() - 1);
+    }
+
+    @Test
+    public void regionOutsideSeries_isDropped() {
+        String beforeFirst = dateFormat.format(new Date(series.getTime(0) - 10 * 86_400_000L));
+        String alsoBefore = dateFormat.format(new Date(series.getTime(0) - 5 * 86_400_000L));
+        TrendRegion inside = region(5, 8, 2, TrendType.RISING);
+
+        List<TrendRegion> merged = merge(new TrendRegion(beforeFirst, alsoBefore, 2, null, TrendType.RISING), inside);
+
+        assertEquals(1, merged.size());
+        assertSame(inside, merged.get(0));
+    }
+
+    private List<TrendRegion> merge(TrendRegion... regions) {
+        TrendRegionIndex index = new TrendRegionIndex();
+        index.setSeries(series);
+        index.setRegions(Arrays.asList(regions));
+        return TrendRegionMerger.merge(index);
+    }
+
+    /**
+     * 合并结果重新解析后的K线范围
+     */
+    private void assertRange(TrendRegion region, int first, int last) {
+        TrendRegionIndex index = new TrendRegionIndex();
+        index.setSeries(series);
+        index.setRegions(Arrays.asList(region));
+        assertEquals(first, index.getStartIndex(0));
+        assertEquals(last, index.getEndIndex(0));
+    }
+
+    private TrendRegion region(int first, int last, int size, TrendType type) {
+        return new TrendRegion(day(first), day(last), size, null, type);
+    }
+
+    private String day(int bar) {
+        return dateFormat.format(new Date(series.getTime(bar)));
+    }
+}
@@ -0,0 +1,148 @@
+package com.alex.klinemarker.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.alex.klinemarker.testing.SyntheticKLineData;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter.DefaultKLineData;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 验证聚合结果：每根聚合K线恰好包含同一周期内的基础K线，周期按传入的时区划分；
+ * 尾部增量更新的结果与全量聚合一致
+ */
+public class KLineAggregationTest {
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static final int TAIL = 200;
+
+    private final SyntheticKLineData data = new SyntheticKLineData.Builder()
+            .timeAxis(new TimeAxis.Builder().bucket(1, TimeUnit.HOURS).zone(NEW_YORK).build())
+            .barCount(366 * 24)
+            .build();
+    private final KLineSeries hours = data.toSeries();
+
+    @Test
+    public void day_groupsBarsByLocalDayIncludingDstDays() {
+        KLineAggregation aggregation = KLineAggregation.aggregate(hours, Timeframe.DAY, false, NEW_YORK);
+        // 2024年从纽约时间1月1日零点开始的8784小时正好覆盖366天
+        assertEquals(366, aggregation.getSeries().size());
+        assertGroups(aggregation, new TimeAxis.Builder().zone(NEW_YORK).build());
+        assertValues(aggregation, false);
+    }
+
+    @Test
+    public void day_usesGivenZoneRatherThanDefault() {
+        KLineAggregation newYork = KLineAggregation.aggregate(hours, Timeframe.DAY, false, NEW_YORK);
+        KLineAggregation utc = KLineAggregation.aggregate(hours, Timeframe.DAY, false, UTC);
+        assertGroups(utc, new TimeAxis.Builder().zone(UTC).build());
+        // 纽约零点是UTC的4点或5点，两种划分的第一天长度不同
+        assertNotEquals(newYork.getLastBaseIndex(0), utc.getLastBaseIndex(0));
+    }
+
+    @Test
+    public void month_withIndexXValues_numbersBarsInOrder() {
+        KLineAggregation aggregation = KLineAggregation.aggregate(hours, Timeframe.MONTH, true, NEW_YORK);
+        assertEquals(12, aggregation.getSeries().size());
+        assertValues(aggregation, true);
+    }
+
+    @Test
+    public void appendedAndReplacedTail_matchesFullAggregation() {
+        DefaultKLineDataAdapter adapter = new DefaultKLineDataAdapter(data.getTimeAxis());
+        List<DefaultKLineData> bars = data.toBars();
+        for (Timeframe timeframe : new Timeframe[]{Timeframe.DAY, Timeframe.WEEK}) {
+            KLineSeries series = KLineSeries.from(bars.subList(0, bars.size() - TAIL), adapter);
+            KLineAggregation aggregation = KLineAggregation.aggregate(series, timeframe, true, NEW_YORK);
+            KLineAggregation first = aggregation;
+
+            for (int i = bars.size() - TAIL; i < bars.size(); i++) {
+                DefaultKLineData bar = bars.get(i);
+                // 实时行情先推送未完成的K线，再以最终数据更新
+                DefaultKLineData partial = new DefaultKLineData(bar.date, bar.open, bar.open, bar.open, bar.open, 1);
+                series = series.append(partial, adapter);
+                aggregation = aggregation.withTail(series, series.size() - 1);
+                series = series.replaceLast(bar, adapter);
+                aggregation = aggregation.withTail(series, series.size() - 1);
+                assertSameAggregation(KLineAggregation.aggregate(series, timeframe, true, NEW_YORK), aggregation);
+            }
+            // 增量更新不改变原结果
+            KLineSeries firstBase = KLineSeries.from(bars.subList(0, bars.size() - TAIL), adapter);
+            assertSameAggregation(KLineAggregation.aggregate(firstBase, timeframe, true, NEW_YORK), first);
+        }
+    }
+
+    private static void assertSameAggregation(KLineAggregation expected, KLineAggregation actual) {
+        KLineSeries expectedSeries = expected.getSeries();
+        KLineSeries actualSeries = actual.getSeries();
+        assertEquals(expectedSeries.size(), actualSeries.size());
+        for (int k = 0; k < expectedSeries.size(); k++) {
+            assertEquals("first " + k, expected.getFirstBaseIndex(k), actual.getFirstBaseIndex(k));
+            assertEquals("last " + k, expected.getLastBaseIndex(k), actual.getLastBaseIndex(k));
+            assertEquals("time " + k, expectedSeries.getTime(k), actualSeries.getTime(k));
+            assertEquals("x " + k, expectedSeries.getXValue(k), actualSeries.getXValue(k), 0f);
+            assertEquals("open " + k, expectedSeries.getOpen(k), actualSeries.getOpen(k), 0f);
+            assertEquals("high " + k, expectedSeries.getHigh(k), actualSeries.getHigh(k), 0f);
+            assertEquals("low " + k, expectedSeries.getLow(k), actualSeries.getLow(k), 0f);
+            assertEquals("close " + k, expectedSeries.getClose(k), actualSeries.getClose(k), 0f);
+            assertEquals("volume " + k, expectedSeries.getVolume(k), actualSeries.getVolume(k), 0f);
+        }
+        for (int i = 0; i < expected.getBaseSeries().size(); i++) {
+            assertEquals("bar " + i, expected.getAggregatedIndex(i), actual.getAggregatedIndex(i));
+        }
+    }
+
+    /**
+     * 每组内的基础K线属于同一个桶，相邻两组属于相邻的桶，映射互为逆
+     */
+    private void assertGroups(KLineAggregation aggregation, TimeAxis dayAxis) {
+        KLineSeries series = aggregation.getSeries();
+        int expectedFirst = 0;
+        for (int k = 0; k < series.size(); k++) {
+            int first = aggregation.getFirstBaseIndex(k);
+            int last = aggregation.getLastBaseIndex(k);
+            assertEquals("group " + k, expectedFirst, first);
+            long key = dayAxis.keyOf(hours.getTime(first));
+            for (int i = first; i <= last; i++) {
+                assertEquals("bar " + i, key, dayAxis.keyOf(hours.getTime(i)));
+                assertEquals("bar " + i, k, aggregation.getAggregatedIndex(i));
+            }
+            if (last + 1 < hours.size()) {
+                assertEquals("bar " + (last + 1), key + 1, dayAxis.keyOf(hours.getTime(last + 1)));
+            }
+            expectedFirst = last + 1;
+        }
+        assertEquals(hours.size(), expectedFirst);
+    }
+
+    private void assertValues(KLineAggregation aggregation, boolean indexXValues) {
+        KLineSeries series = aggregation.getSeries();
+        for (int k = 0; k < series.size(); k++) {
+            int first = aggregation.getFirstBaseIndex(k);
+            int last = aggregation.getLastBaseIndex(k);
+            float high = -Float.MAX_VALUE;
+            float low = Float.MAX_VALUE;
+            float volume = 0f;
+            for (int i = first; i <= last; i++) {
+                high = Math.max(high, hours.getHigh(i));
+                low = Math.min(low, hours.getLow(i));
+                volume += hours.getVolume(i);
+            }
+            assertEquals("time " + k, hours.getTime(first), series.getTime(k));
+            assertEquals("x " + k, indexXValues ? k : hours.getXValue(first), series.getXValue(k), 0f);
+            assertEquals("open " + k, hours.getOpen(first), series.getOpen(k), 0f);
+            assertEquals("close " + k, hours.getClose(last), series.getClose(k), 0f);
+            assertEquals("high " + k, high, series.getHigh(k), 0f);
+            assertEquals("low " + k, low, series.getLow(k), 0f);
+            assertEquals("volume " + k, volume, series.getVolume(k), volume * 1e-6f);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.alex.klinemarker.data;
+
+import static org.junit.Assert.assertEquals;
+
+import com.alex.klinemarker.testing.SyntheticKLineData;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter.DefaultKLineData;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 验证分块序列的追加和替换：新序列与原序列共享分块，但原序列的内容始终不变
+ */
+public class KLineSeriesTest {
+
+    // 跨过多个256根K线的分块边界
+    private static final int BARS = 1000;
+    private static final int PREFIX = 250;
+
+    private final SyntheticKLineData data = SyntheticKLineData.generate(BARS);
+    private final DefaultKLineDataAdapter adapter = new DefaultKLineDataAdapter(data.getTimeAxis());
+    private final List<DefaultKLineData> bars = data.toBars();
+
+    @Test
+    public void append_acrossChunks_matchesBulkBuild() {
+        KLineSeries series = KLineSeries.from(bars.subList(0, PREFIX), adapter);
+        for (int i = PREFIX; i < BARS; i++) {
+            series = series.append(bars.get(i), adapter);
+        }
+        assertSameBars(data.toSeries(), series, BARS);
+    }
+
+    @Test
+    public void append_twiceFromSameSeries_doesNotOverwriteEither() {
+        KLineSeries base = KLineSeries.from(bars.subList(0, PREFIX), adapter);
+        KLineSeries first = base.append(bars.get(PREFIX), adapter);
+        KLineSeries second = base.append(shifted(bars.get(PREFIX), 10f), adapter);
+
+        assertEquals(PREFIX, base.size());
+        assertEquals(bars.get(PREFIX).close, first.getClose(PREFIX), 0f);
+        assertEquals(bars.get(PREFIX).close + 10f, second.getClose(PREFIX), 0f);
+        assertSameBars(first, second, PREFIX);
+
+        // 从旧序列继续追加也不会影响已经分出的序列
+        KLineSeries longer = first.append(bars.get(PREFIX + 1), adapter);
+        assertEquals(bars.get(PREFIX).close, longer.getClose(PREFIX), 0f);
+        assertEquals(bars.get(PREFIX).close + 10f, second.getClose(PREFIX), 0f);
+    }
+
+    @Test
+    public void replaceLast_leavesPreviousSeriesUnchanged() {
+        KLineSeries series = data.toSeries();
+        int last = BARS - 1;
+        float close = series.getClose(last);
+
+        KLineSeries replaced = series.replaceLast(shifted(bars.get(last), 5f), adapter);
+        assertEquals(close, series.getClose(last), 0f);
+        assertEquals(close + 5f, replaced.getClose(last), 0f);
+        assertEquals(BARS, replaced.size());
+        assertSameBars(series, replaced, last);
+
+        // 替换后追加，再替换追加的K线
+        KLineSeries appended = replaced.append(shifted(bars.get(last), 1f), adapter);
+        KLineSeries updated = appended.replaceLast(shifted(bars.get(last), 2f), adapter);
+        assertEquals(close + 1f, appended.getClose(BARS), 0f);
+        assertEquals(close + 2f, updated.getClose(BARS), 0f);
+        assertEquals(close + 5f, updated.getClose(last), 0f);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void replaceLast_onEmptySeries_throws() {
+        KLineSeries.from(bars.subList(0, 0), adapter).replaceLast(bars.get(0), adapter);
+    }
+
+    private static DefaultKLineData shifted(DefaultKLineData bar, float delta) {
+        return new DefaultKLineData(new Date(bar.date.getTime()), bar.open, bar.close + delta,
+                Math.max(bar.high, bar.close + delta), bar.low, bar.volume);
+    }
+
+    private static void assertSameBars(KLineSeries expected, KLineSeries actual, int count) {
+        for (int i = 0; i < count; i++) {
+            assertEquals("time " + i, expected.getTime(i), actual.getTime(i));
+            assertEquals("x " + i, expected.getXValue(i), actual.getXValue(i), 0f);
+            assertEquals("open " + i, expected.getOpen(i), actual.getOpen(i), 0f);
+            assertEquals("high " + i, expected.getHigh(i), actual.getHigh(i), 0f);
+            assertEquals("low " + i, expected.getLow(i), actual.getLow(i), 0f);
+            assertEquals("close " + i, expected.getClose(i), actual.getClose(i), 0f);
+            assertEquals("volume " + i, expected.getVolume(i), actual.getVolume(i), 0f);
+        }
+    }
+}
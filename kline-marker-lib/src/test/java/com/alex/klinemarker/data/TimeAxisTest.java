@@ -0,0 +1,104 @@
+package com.alex.klinemarker.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.alex.klinemarker.testing.SyntheticKLineData;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 验证按日划分的时间轴在夏令时切换日的桶边界
+ * 使用纽约时区的合成小时K线覆盖2024全年，其中3月10日只有23小时，11月3日有25小时
+ */
+public class TimeAxisTest {
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final TimeAxis dayAxis = new TimeAxis.Builder().zone(NEW_YORK).build();
+    private final KLineSeries hours = new SyntheticKLineData.Builder()
+            .timeAxis(new TimeAxis.Builder().bucket(1, TimeUnit.HOURS).zone(NEW_YORK).build())
+            .barCount(366 * 24)
+            .build()
+            .toSeries();
+
+    @Test
+    public void keyOf_advancesByOneAtEachLocalMidnight() {
+        long previousKey = dayAxis.keyOf(hours.getTime(0));
+        int hoursInDay = 1;
+        int shortDays = 0;
+        int longDays = 0;
+        for (int i = 1; i < hours.size(); i++) {
+            long key = dayAxis.keyOf(hours.getTime(i));
+            if (key == previousKey) {
+                hoursInDay++;
+                continue;
+            }
+            assertEquals("bar " + i, previousKey + 1, key);
+            assertEquals("bar " + i, 0, localHour(hours.getTime(i)));
+            shortDays += hoursInDay == 23 ? 1 : 0;
+            longDays += hoursInDay == 25 ? 1 : 0;
+            assertTrue("bar " + i + " closes a day of " + hoursInDay + " hours",
+                    hoursInDay >= 23 && hoursInDay <= 25);
+            previousKey = key;
+            hoursInDay = 1;
+        }
+        assertEquals(1, shortDays);
+        assertEquals(1, longDays);
+    }
+
+    @Test
+    public void bucketStart_isLocalMidnightAndContainsTime() {
+        for (int i = 0; i < hours.size(); i++) {
+            long time = hours.getTime(i);
+            long start = dayAxis.bucketStart(time);
+            long next = dayAxis.nextBucketStart(start);
+
+            assertTrue("bar " + i, start <= time && time < next);
+            assertEquals("bar " + i, dayAxis.keyOf(time), dayAxis.keyOf(start));
+            assertEquals("bar " + i, dayAxis.keyOf(time) + 1, dayAxis.keyOf(next));
+            assertEquals("bar " + i, dayAxis.keyOf(time), dayAxis.keyOf(next - 1));
+            assertEquals("bar " + i, midnight(time), start);
+        }
+    }
+
+    @Test
+    public void nextBucketStart_followsDaylightSavingTransitions() {
+        assertEquals(23 * HOUR, dayLength(2024, Calendar.MARCH, 10));
+        assertEquals(25 * HOUR, dayLength(2024, Calendar.NOVEMBER, 3));
+        assertEquals(24 * HOUR, dayLength(2024, Calendar.JULY, 1));
+
+        TimeAxis utc = new TimeAxis.Builder().zone(TimeZone.getTimeZone("UTC")).build();
+        long start = utc.bucketStart(hours.getTime(hours.size() / 2));
+        assertEquals(24 * HOUR, utc.nextBucketStart(start) - start);
+    }
+
+    private long dayLength(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance(NEW_YORK);
+        calendar.clear();
+        calendar.set(year, month, day, 12, 0);
+        long start = dayAxis.bucketStart(calendar.getTimeInMillis());
+        return dayAxis.nextBucketStart(start) - start;
+    }
+
+    private static long midnight(long time) {
+        Calendar calendar = Calendar.getInstance(NEW_YORK);
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static int localHour(long time) {
+        Calendar calendar = Calendar.getInstance(NEW_YORK);
+        calendar.setTimeInMillis(time);
+        return calendar.get(Calendar.HOUR_OF_DAY);
+    }
+}
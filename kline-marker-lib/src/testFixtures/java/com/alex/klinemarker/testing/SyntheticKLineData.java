@@ -0,0 +1,301 @@
+package com.alex.klinemarker.testing;
+
+import com.alex.klinemarker.data.KLineSeries;
+import com.alex.klinemarker.data.MarkerConfig;
+import com.alex.klinemarker.data.MarkerData;
+import com.alex.klinemarker.data.MarkerPresets;
+import com.alex.klinemarker.data.TimeAxis;
+import com.alex.klinemarker.data.TrendRegion;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter;
+import com.alex.klinemarker.utils.DefaultKLineDataAdapter.DefaultKLineData;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 可复现的合成K线数据，用于基准测试和回归测试
+ * 相同的参数（包括种子）总是生成完全相同的K线、标记和趋势区间，可以生成到千万根K线的规模。
+ * <p>
+ * K线、标记和趋势区间各自使用由种子派生的独立随机数序列，调整标记密度或区间数量不会改变K线数据。
+ * K线数据以列数组保存，1000万根K线约占用320MB；{@link #toBars()} 会额外为每根K线创建对象，
+ * 只在需要测试适配器路径时使用。
+ * <p>
+ * 每根K线位于时间轴上一个桶的中间，第一根K线位于编号为0的桶，X值按时间轴换算，
+ * 与使用同一时间轴的 {@link DefaultKLineDataAdapter} 一致。趋势区间按日期（yyyy-MM-dd）描述，
+ * 日期不能超过9999年：默认的日线时间轴最多约290万根K线，更大规模的数据应使用分钟或小时时间轴，
+ * 否则 {@link Builder#build()} 会抛出异常。
+ */
+public final class SyntheticKLineData {
+
+    public static final long DEFAULT_SEED = 20240101L;
+    public static final int MAX_BARS = 10_000_000;
+
+    // 派生独立随机数序列时使用的常量
+    private static final long MARKER_STREAM = 0x9E3779B97F4A7C15L;
+    private static final long REGION_STREAM = 0xC2B2AE3D27D4EB4FL;
+
+    // 所有标记通过 setConfig 引用同一组配置（构造函数会复制配置）
+    private static final MarkerConfig BUY = MarkerPresets.buy();
+    private static final MarkerConfig SELL = MarkerPresets.sell();
+    private static final MarkerConfig EVENT = MarkerPresets.event();
+
+    private final TimeAxis timeAxis;
+    private final long[] times;
+    private final float[] xValues;
+    private final float[] opens;
+    private final float[] highs;
+    private final float[] lows;
+    private final float[] closes;
+    private final float[] volumes;
+    private final List<MarkerData> markers;
+    private final List<TrendRegion> trendRegions;
+
+    private SyntheticKLineData(Builder builder) {
+        int count = builder.barCount;
+        this.timeAxis = builder.timeAxis;
+        this.times = new long[count];
+        this.xValues = new float[count];
+        this.opens = new float[count];
+        this.highs = new float[count];
+        this.lows = new float[count];
+        this.closes = new float[count];
+        this.volumes = new float[count];
+        generateBars(new Random(builder.seed), builder.startPrice, builder.volatility);
+        this.markers = generateMarkers(new Random(builder.seed ^ MARKER_STREAM),
+                builder.markerDensity, builder.duplicateDateRate);
+        this.trendRegions = generateTrendRegions(new Random(builder.seed ^ REGION_STREAM),
+                builder.trendRegionCount);
+    }
+
+    /**
+     * 使用默认参数生成指定数量的K线
+     */
+    public static SyntheticKLineData generate(int barCount) {
+        return new Builder().barCount(barCount).build();
+    }
+
+    /**
+     * 第 index 根K线的时间：编号为 index 的桶的中间，夏令时切换不会让K线落入相邻的桶
+     */
+    private static long barTime(TimeAxis timeAxis, int index) {
+        long bucket = timeAxis.getBucketMillis();
+        long origin = timeAxis.getOriginMillis() - timeAxis.getZone().getOffset(timeAxis.getOriginMillis());
+        return origin + index * bucket + bucket / 2;
+    }
+
+    private void generateBars(Random random, float startPrice, float volatility) {
+        float price = startPrice;
+        for (int i = 0; i < times.length; i++) {
+            long time = barTime(timeAxis, i);
+            float open = price * (1 + (float) random.nextGaussian() * volatility * 0.2f);
+            float close = open * (1 + (float) random.nextGaussian() * volatility);
+            // 价格保持为正数
+            close = Math.max(close, startPrice * 0.01f);
+            float high = Math.max(open, close) * (1 + random.nextFloat() * volatility * 0.5f);
+            float low = Math.min(open, close) * (1 - random.nextFloat() * volatility * 0.5f);
+
+            times[i] = time;
+            xValues[i] = timeAxis.toXValue(time);
+            opens[i] = open;
+            highs[i] = high;
+            lows[i] = low;
+            closes[i] = close;
+            volumes[i] = 500 + random.nextInt(10_000);
+            price = close;
+        }
+    }
+
+    /**
+     * 每根K线以 density 的概率带一个买入或卖出标记（按K线涨跌），
+     * 带标记的K线再以 duplicateRate 的概率在同一时间增加一个事件标记
+     */
+    private List<MarkerData> generateMarkers(Random random, float density, float duplicateRate) {
+        List<MarkerData> result = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8,
+                (long) (times.length * density * (1 + duplicateRate)) + 16));
+        for (int i = 0; i < times.length; i++) {
+            if (random.nextFloat() >= density) {
+                continue;
+            }
+            Date date = new Date(times[i]);
+            boolean rising = closes[i] >= opens[i];
+            result.add(marker(date, rising ? "B" : "S", rising ? BUY : SELL));
+            if (random.nextFloat() < duplicateRate) {
+                result.add(marker(date, "E", EVENT));
+            }
+        }
+        return result;
+    }
+
+    private static MarkerData marker(Date date, String text, MarkerConfig config) {
+        MarkerData marker = new MarkerData();
+        marker.setDate(date);
+        marker.setText(text);
+        marker.setConfig(config);
+        return marker;
+    }
+
+    /**
+     * 将序列均分为 count 段，每段中放置一个随机位置和长度的区间；最后一个区间没有结束日期
+     */
+    private List<TrendRegion> generateTrendRegions(Random random, int count) {
+        List<TrendRegion> result = new ArrayList<>(count);
+        if (count == 0 || times.length == 0) {
+            return result;
+        }
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        dateFormat.setTimeZone(timeAxis.getZone());
+        long slot = Math.max(1, (long) times.length / count);
+        for (int k = 0; k < count; k++) {
+            int slotStart = (int) Math.min(times.length - 1, k * slot);
+            int slotLength = (int) Math.min(slot, times.length - slotStart);
+            int length = 1 + random.nextInt(Math.max(1, slotLength / 2));
+            int first = slotStart + random.nextInt(Math.max(1, slotLength - length + 1));
+            int last = Math.min(times.length - 1, first + length - 1);
+            boolean open = k == count - 1;
+
+            TrendRegion.TrendType type = random.nextBoolean()
+                    ? TrendRegion.TrendType.RISING : TrendRegion.TrendType.FALLING;
+            TrendRegion region = new TrendRegion(dateFormat.format(new Date(times[first])),
+                    open ? null : dateFormat.format(new Date(times[last])), length, null, type);
+            region.setId("synthetic-" + k);
+            result.add(region);
+        }
+        return result;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public TimeAxis getTimeAxis() {
+        return timeAxis;
+    }
+
+    /**
+     * 以列式序列返回K线（每次调用都会复制一份列数据）
+     */
+    public KLineSeries toSeries() {
+        return KLineSeries.wrap(times, xValues, opens, highs, lows, closes, volumes);
+    }
+
+    /**
+     * 以K线对象列表返回，配合 {@code new DefaultKLineDataAdapter(getTimeAxis())} 使用
+     */
+    public List<DefaultKLineData> toBars() {
+        List<DefaultKLineData> bars = new ArrayList<>(times.length);
+        for (int i = 0; i < times.length; i++) {
+            bars.add(new DefaultKLineData(new Date(times[i]), opens[i], closes[i], highs[i], lows[i], volumes[i]));
+        }
+        return bars;
+    }
+
+    public List<MarkerData> getMarkers() {
+        return markers;
+    }
+
+    public List<TrendRegion> getTrendRegions() {
+        return trendRegions;
+    }
+
+    public static final class Builder {
+        private long seed = DEFAULT_SEED;
+        private int barCount = 1000;
+        private TimeAxis timeAxis = TimeAxis.DAY;
+        private float startPrice = 100f;
+        private float volatility = 0.02f;
+        private float markerDensity = 0.1f;
+        private float duplicateDateRate = 0.05f;
+        private int trendRegionCount = 10;
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * K线数量，最多 {@link #MAX_BARS} 根
+         */
+        public Builder barCount(int barCount) {
+            this.barCount = barCount;
+            return this;
+        }
+
+        /**
+         * 时间轴，每个桶一根K线，默认为 {@link TimeAxis#DAY}
+         */
+        public Builder timeAxis(TimeAxis timeAxis) {
+            this.timeAxis = timeAxis;
+            return this;
+        }
+
+        public Builder startPrice(float startPrice) {
+            this.startPrice = startPrice;
+            return this;
+        }
+
+        /**
+         * 每根K线收盘价相对开盘价变化的标准差（比例），默认0.02
+         */
+        public Builder volatility(float volatility) {
+            this.volatility = volatility;
+            return this;
+        }
+
+        /**
+         * 每根K线带标记的概率，默认0.1
+         */
+        public Builder markerDensity(float markerDensity) {
+            this.markerDensity = markerDensity;
+            return this;
+        }
+
+        /**
+         * 带标记的K线在同一时间再有一个标记的概率，默认0.05
+         */
+        public Builder duplicateDateRate(float duplicateDateRate) {
+            this.duplicateDateRate = duplicateDateRate;
+            return this;
+        }
+
+        /**
+         * 趋势区间数量，默认10
+         */
+        public Builder trendRegionCount(int trendRegionCount) {
+            this.trendRegionCount = trendRegionCount;
+            return this;
+        }
+
+        public SyntheticKLineData build() {
+            if (barCount < 0 || barCount > MAX_BARS) {
+                throw new IllegalArgumentException("barCount must be in [0, " + MAX_BARS + "]: " + barCount);
+            }
+            if (timeAxis == null || startPrice <= 0 || volatility < 0
+                    || markerDensity < 0 || markerDensity > 1
+                    || duplicateDateRate < 0 || duplicateDateRate > 1 || trendRegionCount < 0) {
+                throw new IllegalArgumentException("Invalid synthetic data parameters");
+            }
+            // 趋势区间的日期格式只有4位年份
+            if (trendRegionCount > 0 && barCount > 0
+                    && barTime(timeAxis, barCount - 1) >= maxRegionTime(timeAxis)) {
+                throw new IllegalArgumentException(barCount + " bars on a " + timeAxis.getBucketMillis()
+                        + "ms axis run past year 9999, use a finer time axis");
+            }
+            return new SyntheticKLineData(this);
+        }
+
+        /**
+         * 时间轴所在时区的10000年1月1日零点
+         */
+        private static long maxRegionTime(TimeAxis timeAxis) {
+            Calendar calendar = Calendar.getInstance(timeAxis.getZone(), Locale.ROOT);
+            calendar.clear();
+            calendar.set(10000, Calendar.JANUARY, 1);
+            return calendar.getTimeInMillis();
+        }
+    }
+}